@@ -0,0 +1,598 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.annotation.processors;
+
+import static com.mastfrog.giulius.annotation.processors.BsonCodecAnnotationProcessor.BSON_CODEC_ANNOTATION_TYPE;
+import com.mastfrog.util.service.AbstractLineOrientedRegistrationAnnotationProcessor;
+import com.mastfrog.util.service.ServiceProvider;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a BSON codec, which reads and writes fields directly rather than
+ * by reflection, for each class annotated with
+ * <code>&#064;com.mastfrog.giulius.mongodb.async.BsonCodec</code>, and
+ * registers a provider for it as a service, which giulius-mongodb-async
+ * picks up. Since the generated code and its registration are plain classes
+ * and a services file, nothing needs registering for reflection under
+ * GraalVM native-image.
+ *
+ * @author agent
+ */
+@ServiceProvider(Processor.class)
+@SupportedAnnotationTypes(BSON_CODEC_ANNOTATION_TYPE)
+@SupportedSourceVersion(SourceVersion.RELEASE_8)
+public class BsonCodecAnnotationProcessor extends AbstractLineOrientedRegistrationAnnotationProcessor {
+
+    static final String BSON_CODEC_ANNOTATION_TYPE = "com.mastfrog.giulius.mongodb.async.BsonCodec";
+    static final String PROVIDER_SERVICE_TYPE = "com.mastfrog.giulius.mongodb.async.GeneratedCodecProvider";
+    static final String SERVICES_PATH = "META-INF/services/" + PROVIDER_SERVICE_TYPE;
+    private static final String SUPPORT = "com.mastfrog.giulius.mongodb.async.GeneratedCodecSupport";
+    private static final String CODEC_SUFFIX = "BsonCodec";
+
+    public BsonCodecAnnotationProcessor() {
+        super(true);
+    }
+
+    @Override
+    protected void handleOne(Element e, AnnotationMirror anno, int order) {
+        if (e.getKind() != ElementKind.CLASS) {
+            fail(e, anno, "@BsonCodec can only be used on classes");
+            return;
+        }
+        TypeElement type = (TypeElement) e;
+        String idField = utils.annotationValue(anno, "idField", String.class);
+        if (idField == null) {
+            idField = "id";
+        }
+        CodecModel model = analyze(type, anno, idField);
+        if (model == null) {
+            return;
+        }
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(model.qualifiedCodecName(), type);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                model.write(out);
+            }
+        } catch (IOException ex) {
+            fail(e, anno, "Could not write codec: " + ex);
+            return;
+        }
+        addLine(SERVICES_PATH, model.qualifiedCodecName() + "$Provider", e);
+    }
+
+    private void fail(Element e, AnnotationMirror anno, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, e, anno);
+    }
+
+    private CodecModel analyze(TypeElement type, AnnotationMirror anno, String idField) {
+        boolean ok = true;
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            fail(type, anno, "Cannot generate a codec for an abstract class");
+            ok = false;
+        }
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            fail(type, anno, "Cannot generate a codec for a private class");
+            ok = false;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            fail(type, anno, "Cannot generate a codec for a non-static inner class");
+            ok = false;
+        } else if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            fail(type, anno, "Cannot generate a codec for a local or anonymous class");
+            ok = false;
+        }
+        boolean hasConstructor = false;
+        for (ExecutableElement ctor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (ctor.getParameters().isEmpty() && !ctor.getModifiers().contains(Modifier.PRIVATE)) {
+                hasConstructor = true;
+            }
+        }
+        if (!hasConstructor) {
+            fail(type, anno, "@BsonCodec classes need a non-private no-argument constructor");
+            ok = false;
+        }
+        List<ExecutableElement> methods = new ArrayList<>();
+        List<VariableElement> fields = new ArrayList<>();
+        for (TypeElement t = type; t != null && !"java.lang.Object".equals(t.getQualifiedName().toString());
+                t = superclassOf(t)) {
+            methods.addAll(ElementFilter.methodsIn(t.getEnclosedElements()));
+            fields.addAll(0, ElementFilter.fieldsIn(t.getEnclosedElements()));
+        }
+        Map<String, FieldModel> models = new LinkedHashMap<>();
+        for (VariableElement field : fields) {
+            Set<Modifier> mods = field.getModifiers();
+            if (mods.contains(Modifier.STATIC) || mods.contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            if (models.containsKey(name)) {
+                fail(field, anno, "Field " + name + " hides a superclass field of the same name");
+                ok = false;
+                continue;
+            }
+            boolean accessible = !mods.contains(Modifier.PRIVATE) && visibleToCodec(type, field);
+            String getter = accessible ? "value." + name : null;
+            String setter = accessible && !mods.contains(Modifier.FINAL) ? "result." + name + " = %s;" : null;
+            String cap = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            for (ExecutableElement m : methods) {
+                if (m.getModifiers().contains(Modifier.PRIVATE) || m.getModifiers().contains(Modifier.STATIC)
+                        || !visibleToCodec(type, m)) {
+                    continue;
+                }
+                String mn = m.getSimpleName().toString();
+                if (getter == null && m.getParameters().isEmpty() && (mn.equals("get" + cap) || mn.equals("is" + cap))
+                        && types().isSameType(m.getReturnType(), field.asType())) {
+                    getter = "value." + mn + "()";
+                } else if (setter == null && mn.equals("set" + cap) && m.getParameters().size() == 1
+                        && types().isSameType(m.getParameters().get(0).asType(), field.asType())) {
+                    setter = "result." + mn + "(%s);";
+                }
+            }
+            if (getter == null || setter == null) {
+                fail(field, anno, "Field " + name + " needs to be non-private"
+                        + (getter == null ? "" : " and non-final") + ", or have a non-private "
+                        + (getter == null ? "getter" : "setter"));
+                ok = false;
+                continue;
+            }
+            ValueModel value = valueModel(field, anno, field.asType());
+            if (value == null) {
+                ok = false;
+                continue;
+            }
+            models.put(name, new FieldModel(name, name.equals(idField) ? "_id" : name, getter, setter, value));
+        }
+        if (!ok) {
+            return null;
+        }
+        List<FieldModel> ordered = new ArrayList<>(models.values());
+        // Write the id first, as the server would put it there anyway
+        ordered.sort((a, b) -> Boolean.compare(!"_id".equals(a.bsonName), !"_id".equals(b.bsonName)));
+        return new CodecModel(type, ordered);
+    }
+
+    private TypeElement superclassOf(TypeElement t) {
+        TypeMirror sup = t.getSuperclass();
+        return sup.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) sup).asElement() : null;
+    }
+
+    private boolean visibleToCodec(TypeElement type, Element member) {
+        // The codec is generated into the same package as the type
+        return processingEnv.getElementUtils().getPackageOf(type)
+                .equals(processingEnv.getElementUtils().getPackageOf(member))
+                || member.getModifiers().contains(Modifier.PUBLIC);
+    }
+
+    private Types types() {
+        return processingEnv.getTypeUtils();
+    }
+
+    private boolean is(TypeMirror type, String name) {
+        TypeElement el = processingEnv.getElementUtils().getTypeElement(name);
+        return el != null && types().isSameType(types().erasure(type), types().erasure(el.asType()));
+    }
+
+    private ValueModel valueModel(Element field, AnnotationMirror anno, TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return scalar(type.getKind(), true);
+        }
+        if (type.getKind() == TypeKind.ARRAY) {
+            if (((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE) {
+                return new ValueModel("byte[]", "writer.writeBinaryData(new org.bson.BsonBinary(%s));",
+                        "reader.readBinaryData().getData()", false);
+            }
+            fail(field, anno, "Arrays other than byte[] are not supported - use a List");
+            return null;
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            fail(field, anno, "Unsupported type " + type);
+            return null;
+        }
+        try {
+            TypeKind unboxed = types().unboxedType(type).getKind();
+            ValueModel result = scalar(unboxed, false);
+            result.javaType = type.toString();
+            return result;
+        } catch (IllegalArgumentException notBoxed) {
+            // fall through
+        }
+        String name = types().erasure(type).toString();
+        switch (name) {
+            case "java.lang.String":
+                return new ValueModel(name, "writer.writeString(%s);", "reader.readString()", false);
+            case "org.bson.types.ObjectId":
+                return new ValueModel(name, "writer.writeObjectId(%s);", "reader.readObjectId()", false);
+            case "java.util.Date":
+                return new ValueModel(name, "writer.writeDateTime(%s.getTime());",
+                        "new java.util.Date(reader.readDateTime())", false);
+            case "java.util.List":
+            case "java.util.Collection":
+            case "java.lang.Iterable":
+            case "java.util.ArrayList":
+                return collection(field, anno, (DeclaredType) type, "java.util.ArrayList");
+            case "java.util.Set":
+            case "java.util.LinkedHashSet":
+                return collection(field, anno, (DeclaredType) type, "java.util.LinkedHashSet");
+            case "java.util.HashSet":
+                return collection(field, anno, (DeclaredType) type, "java.util.HashSet");
+            case "java.util.SortedSet":
+            case "java.util.NavigableSet":
+            case "java.util.TreeSet":
+                return collection(field, anno, (DeclaredType) type, "java.util.TreeSet");
+            default:
+                break;
+        }
+        TypeElement el = (TypeElement) ((DeclaredType) type).asElement();
+        if (el.getKind() == ElementKind.ENUM) {
+            String enumName = el.getQualifiedName().toString();
+            return new ValueModel(enumName, "writer.writeString(%s.name());",
+                    enumName + ".valueOf(reader.readString())", false);
+        }
+        ValueModel result = new ValueModel(type.toString(),
+                "encoderContext.encodeWithChildContext(%2$s(), writer, %1$s);",
+                "(" + type + ") decoderContext.decodeWithChildContext(%2$s(), reader)", false);
+        result.delegateTo = name;
+        return result;
+    }
+
+    private ValueModel collection(Element field, AnnotationMirror anno, DeclaredType type, String impl) {
+        if (type.getTypeArguments().size() != 1) {
+            fail(field, anno, "Collection fields need an element type");
+            return null;
+        }
+        TypeMirror element = type.getTypeArguments().get(0);
+        if (element.getKind() == TypeKind.WILDCARD) {
+            element = ((WildcardType) element).getExtendsBound();
+        }
+        if (element == null || element.getKind() != TypeKind.DECLARED || is(element, "java.lang.Object")) {
+            fail(field, anno, "Collection fields need a concrete element type");
+            return null;
+        }
+        ValueModel elementModel = valueModel(field, anno, element);
+        if (elementModel == null) {
+            return null;
+        }
+        ValueModel result = new ValueModel(type.toString(), null, null, false);
+        result.element = elementModel;
+        result.collectionType = impl + "<" + element + ">";
+        return result;
+    }
+
+    private ValueModel scalar(TypeKind kind, boolean primitive) {
+        switch (kind) {
+            case BOOLEAN:
+                return new ValueModel("boolean", "writer.writeBoolean(%s);", "reader.readBoolean()", primitive);
+            case INT:
+                return new ValueModel("int", "writer.writeInt32(%s);", SUPPORT + ".readInt32(reader)", primitive);
+            case SHORT:
+                return new ValueModel("short", "writer.writeInt32(%s);", SUPPORT + ".readInt16(reader)", primitive);
+            case BYTE:
+                return new ValueModel("byte", "writer.writeInt32(%s);", SUPPORT + ".readInt8(reader)", primitive);
+            case LONG:
+                return new ValueModel("long", "writer.writeInt64(%s);", SUPPORT + ".readInt64(reader)", primitive);
+            case FLOAT:
+                return new ValueModel("float", "writer.writeDouble(%s);", SUPPORT + ".readFloat(reader)", primitive);
+            case DOUBLE:
+                return new ValueModel("double", "writer.writeDouble(%s);", SUPPORT + ".readDouble(reader)", primitive);
+            case CHAR:
+                return new ValueModel("char", "writer.writeString(String.valueOf(%s));", SUPPORT + ".readChar(reader)", primitive);
+            default:
+                throw new AssertionError(kind);
+        }
+    }
+
+    static final class ValueModel {
+
+        String javaType;
+        final String write;
+        final String read;
+        final boolean primitive;
+        String delegateTo;
+        ValueModel element;
+        String collectionType;
+
+        ValueModel(String javaType, String write, String read, boolean primitive) {
+            this.javaType = javaType;
+            this.write = write;
+            this.read = read;
+            this.primitive = primitive;
+        }
+    }
+
+    static final class FieldModel {
+
+        final String name;
+        final String bsonName;
+        final String getter;
+        final String setter;
+        final ValueModel value;
+
+        FieldModel(String name, String bsonName, String getter, String setter, ValueModel value) {
+            this.name = name;
+            this.bsonName = bsonName;
+            this.getter = getter;
+            this.setter = setter;
+            this.value = value;
+        }
+    }
+
+    final class CodecModel {
+
+        private final TypeElement type;
+        private final List<FieldModel> fields;
+        private final Map<String, String> delegates = new LinkedHashMap<>();
+        private final List<String> helpers = new ArrayList<>();
+        private int helperCount;
+
+        CodecModel(TypeElement type, List<FieldModel> fields) {
+            this.type = type;
+            this.fields = fields;
+        }
+
+        String packageName() {
+            return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        }
+
+        String codecName() {
+            String qualified = type.getQualifiedName().toString();
+            String pkg = packageName();
+            String local = pkg.isEmpty() ? qualified : qualified.substring(pkg.length() + 1);
+            return local.replace('.', '_') + CODEC_SUFFIX;
+        }
+
+        String qualifiedCodecName() {
+            String pkg = packageName();
+            return pkg.isEmpty() ? codecName() : pkg + "." + codecName();
+        }
+
+        private String delegate(String rawType) {
+            return delegates.computeIfAbsent(rawType, t -> "codec" + delegates.size());
+        }
+
+        private String writeValue(ValueModel v, String expr, String indent) {
+            if (v.element != null) {
+                String el = "item" + (indent.length() / 4);
+                StringBuilder sb = new StringBuilder();
+                sb.append(indent).append("writer.writeStartArray();\n");
+                sb.append(indent).append("for (").append(elementType(v.element)).append(' ').append(el)
+                        .append(" : ").append(expr).append(") {\n");
+                sb.append(indent).append("    if (").append(el).append(" == null) {\n");
+                sb.append(indent).append("        writer.writeNull();\n");
+                sb.append(indent).append("    } else {\n");
+                sb.append(writeValue(v.element, el, indent + "        "));
+                sb.append(indent).append("    }\n");
+                sb.append(indent).append("}\n");
+                sb.append(indent).append("writer.writeEndArray();\n");
+                return sb.toString();
+            }
+            String codec = v.delegateTo == null ? null : delegate(v.delegateTo);
+            return indent + String.format(v.write, expr, codec) + "\n";
+        }
+
+        private String elementType(ValueModel v) {
+            return v.javaType;
+        }
+
+        private String readValue(FieldModel f, ValueModel v) {
+            if (v.element != null) {
+                String method = "read_" + f.name + "_" + helperCount++;
+                StringBuilder sb = new StringBuilder();
+                sb.append("    private ").append(v.collectionType).append(' ').append(method)
+                        .append("(org.bson.BsonReader reader, org.bson.codecs.DecoderContext decoderContext) {\n");
+                sb.append("        ").append(v.collectionType).append(" result = new ").append(v.collectionType).append("();\n");
+                sb.append("        reader.readStartArray();\n");
+                sb.append("        while (reader.readBsonType() != org.bson.BsonType.END_OF_DOCUMENT) {\n");
+                sb.append("            if (reader.getCurrentBsonType() == org.bson.BsonType.NULL) {\n");
+                sb.append("                reader.readNull();\n");
+                sb.append("                result.add(null);\n");
+                sb.append("            } else {\n");
+                sb.append("                result.add(").append(readValue(f, v.element)).append(");\n");
+                sb.append("            }\n");
+                sb.append("        }\n");
+                sb.append("        reader.readEndArray();\n");
+                sb.append("        return result;\n");
+                sb.append("    }\n");
+                helpers.add(sb.toString());
+                return method + "(reader, decoderContext)";
+            }
+            String codec = v.delegateTo == null ? null : delegate(v.delegateTo);
+            return String.format(v.read, null, codec);
+        }
+
+        /**
+         * The methods of CollectibleCodec, which let the driver find the id
+         * of a document it is inserting or replacing, and generate one for
+         * an ObjectId id which is not set.
+         */
+        private String collectible(String target, FieldModel id) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("    @Override\n");
+            sb.append("    public boolean documentHasId(").append(target).append(" value) {\n");
+            sb.append("        return ").append(id.value.primitive ? "true" : id.getter + " != null").append(";\n");
+            sb.append("    }\n\n");
+            sb.append("    @Override\n");
+            sb.append("    public org.bson.BsonValue getDocumentId(").append(target).append(" value) {\n");
+            sb.append("        if (!documentHasId(value)) {\n");
+            sb.append("            throw new IllegalStateException(\"The document does not contain an _id\");\n");
+            sb.append("        }\n");
+            sb.append("        ").append(id.value.javaType).append(" documentId = ").append(id.getter).append(";\n");
+            sb.append("        org.bson.BsonDocument holder = new org.bson.BsonDocument();\n");
+            sb.append("        org.bson.BsonDocumentWriter writer = new org.bson.BsonDocumentWriter(holder);\n");
+            sb.append("        org.bson.codecs.EncoderContext encoderContext = org.bson.codecs.EncoderContext.builder().build();\n");
+            sb.append("        writer.writeStartDocument();\n");
+            sb.append("        writer.writeName(\"_id\");\n");
+            sb.append(writeValue(id.value, "documentId", "        "));
+            sb.append("        writer.writeEndDocument();\n");
+            sb.append("        return holder.get(\"_id\");\n");
+            sb.append("    }\n\n");
+            sb.append("    @Override\n");
+            sb.append("    public ").append(target).append(" generateIdIfAbsentFromDocument(").append(target).append(" result) {\n");
+            if ("org.bson.types.ObjectId".equals(id.value.javaType)) {
+                sb.append("        if (!documentHasId(result)) {\n");
+                sb.append("            ").append(String.format(id.setter, "new org.bson.types.ObjectId()")).append('\n');
+                sb.append("        }\n");
+            }
+            sb.append("        return result;\n");
+            sb.append("    }\n");
+            return sb.toString();
+        }
+
+        void write(PrintWriter out) {
+            String target = type.getQualifiedName().toString();
+            StringBuilder encode = new StringBuilder();
+            for (FieldModel f : fields) {
+                if (f.value.primitive) {
+                    encode.append("        writer.writeName(\"").append(f.bsonName).append("\");\n");
+                    encode.append(writeValue(f.value, f.getter, "        "));
+                } else {
+                    String local = "v_" + f.name;
+                    encode.append("        ").append(f.value.javaType).append(' ').append(local)
+                            .append(" = ").append(f.getter).append(";\n");
+                    encode.append("        if (").append(local).append(" != null) {\n");
+                    encode.append("            writer.writeName(\"").append(f.bsonName).append("\");\n");
+                    encode.append(writeValue(f.value, local, "            "));
+                    encode.append("        }\n");
+                }
+            }
+            StringBuilder decode = new StringBuilder();
+            for (FieldModel f : fields) {
+                decode.append("                case \"").append(f.bsonName).append("\":\n");
+                decode.append("                    if (reader.getCurrentBsonType() == org.bson.BsonType.NULL) {\n");
+                decode.append("                        reader.readNull();\n");
+                if (!f.value.primitive) {
+                    decode.append("                        ").append(String.format(f.setter, "null")).append('\n');
+                }
+                decode.append("                    } else {\n");
+                decode.append("                        ").append(String.format(f.setter, readValue(f, f.value))).append('\n');
+                decode.append("                    }\n");
+                decode.append("                    break;\n");
+            }
+            // Built before the fields are written, since it may add delegates
+            FieldModel id = fields.isEmpty() || !"_id".equals(fields.get(0).bsonName) ? null : fields.get(0);
+            String collectible = id == null ? null : collectible(target, id);
+            String pkg = packageName();
+            if (!pkg.isEmpty()) {
+                out.println("package " + pkg + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Generated from " + target + " by " + BsonCodecAnnotationProcessor.class.getSimpleName() + ".");
+            out.println(" */");
+            out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            out.println("public final class " + codecName() + " implements org.bson.codecs."
+                    + (id == null ? "Codec<" : "CollectibleCodec<") + target + "> {");
+            out.println();
+            out.println("    private final org.bson.codecs.configuration.CodecRegistry registry;");
+            for (String codec : delegates.values()) {
+                out.println("    private org.bson.codecs.Codec " + codec + ";");
+            }
+            out.println();
+            out.println("    public " + codecName() + "(org.bson.codecs.configuration.CodecRegistry registry) {");
+            out.println("        this.registry = registry;");
+            out.println("    }");
+            out.println();
+            for (Map.Entry<String, String> e : delegates.entrySet()) {
+                // Looked up lazily, so classes which refer to themselves work
+                out.println("    private org.bson.codecs.Codec " + e.getValue() + "() {");
+                out.println("        org.bson.codecs.Codec result = " + e.getValue() + ";");
+                out.println("        if (result == null) {");
+                out.println("            " + e.getValue() + " = result = registry.get(" + e.getKey() + ".class);");
+                out.println("        }");
+                out.println("        return result;");
+                out.println("    }");
+                out.println();
+            }
+            out.println("    @Override");
+            out.println("    public Class<" + target + "> getEncoderClass() {");
+            out.println("        return " + target + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void encode(org.bson.BsonWriter writer, " + target + " value, org.bson.codecs.EncoderContext encoderContext) {");
+            out.println("        writer.writeStartDocument();");
+            out.print(encode);
+            out.println("        writer.writeEndDocument();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + target + " decode(org.bson.BsonReader reader, org.bson.codecs.DecoderContext decoderContext) {");
+            out.println("        " + target + " result = new " + target + "();");
+            out.println("        reader.readStartDocument();");
+            out.println("        while (reader.readBsonType() != org.bson.BsonType.END_OF_DOCUMENT) {");
+            out.println("            switch (reader.readName()) {");
+            out.print(decode);
+            out.println("                default:");
+            out.println("                    reader.skipValue();");
+            out.println("            }");
+            out.println("        }");
+            out.println("        reader.readEndDocument();");
+            out.println("        return result;");
+            out.println("    }");
+            if (collectible != null) {
+                out.println();
+                out.print(collectible);
+            }
+            for (String helper : helpers) {
+                out.println();
+                out.print(helper);
+            }
+            out.println();
+            out.println("    public static final class Provider implements " + PROVIDER_SERVICE_TYPE + " {");
+            out.println();
+            out.println("        @Override");
+            out.println("        public <T> org.bson.codecs.Codec<T> get(Class<T> type, org.bson.codecs.configuration.CodecRegistry registry) {");
+            out.println("            return type == " + target + ".class ? (org.bson.codecs.Codec<T>) new " + codecName() + "(registry) : null;");
+            out.println("        }");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async.benchmarks;
+
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.giulius.mongodb.async.DynamicCodecs;
+import com.mastfrog.giulius.mongodb.async.GiuliusMongoAsyncModule;
+import com.mastfrog.giulius.mongodb.async.InMemoryMongo;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonBoolean;
+import org.bson.BsonDateTime;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonJavaScript;
+import org.bson.BsonMinKey;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonString;
+import org.bson.BsonSymbol;
+import org.bson.BsonTimestamp;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.Binary;
+import org.bson.types.Code;
+import org.bson.types.CodeWithScope;
+import org.bson.types.Decimal128;
+import org.bson.types.MaxKey;
+import org.bson.types.MinKey;
+import org.bson.types.ObjectId;
+import org.bson.types.Symbol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Looks up codecs for 50 types through the module's CodecRegistry - driver
+ * value and BSON types, java.time types and two types only DynamicCodecs
+ * can handle - from a registry which has not resolved them yet, and from
+ * one which has.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CodecResolutionBenchmark {
+
+    static final Class<?>[] TYPES = {
+        String.class, Integer.class, Long.class, Double.class, Float.class,
+        Short.class, Byte.class, Character.class, Boolean.class, Date.class,
+        ObjectId.class, Decimal128.class, Binary.class, Code.class, MinKey.class,
+        MaxKey.class, Symbol.class, Pattern.class, AtomicBoolean.class, AtomicInteger.class,
+        AtomicLong.class, byte[].class, UUID.class, BsonString.class, BsonInt32.class,
+        BsonInt64.class, BsonDouble.class, BsonBoolean.class, BsonDateTime.class, BsonObjectId.class,
+        BsonArray.class, BsonDocument.class, BsonBinary.class, BsonNull.class, BsonRegularExpression.class,
+        BsonTimestamp.class, BsonDecimal128.class, BsonJavaScript.class, BsonSymbol.class, BsonMinKey.class,
+        Document.class, CodeWithScope.class, RawBsonDocument.class, Instant.class, ZonedDateTime.class,
+        LocalDateTime.class, OffsetDateTime.class, Duration.class, Unregistered.class, AlsoUnregistered.class
+    };
+
+    @Benchmark
+    public void cold(Cold state, Blackhole bh) {
+        resolveAll(state.registry, bh);
+    }
+
+    @Benchmark
+    public void warm(Warm state, Blackhole bh) {
+        resolveAll(state.registry, bh);
+    }
+
+    static void resolveAll(CodecRegistry registry, Blackhole bh) {
+        for (Class<?> type : TYPES) {
+            bh.consume(registry.get(type));
+        }
+    }
+
+    static Dependencies dependencies() throws Exception {
+        GiuliusMongoAsyncModule m = new GiuliusMongoAsyncModule().withDynamicCodecs(FallbackCodecs.class);
+        return Dependencies.builder().addDefaultSettings().add(m, new InMemoryMongo.Module()).build();
+    }
+
+    /**
+     * A registry no codec has been looked up in, created for each call.
+     */
+    @State(Scope.Thread)
+    public static class Cold {
+
+        Dependencies deps;
+        CodecRegistry registry;
+
+        @Setup(Level.Invocation)
+        public void setup() throws Exception {
+            deps = dependencies();
+            registry = deps.getInstance(CodecRegistry.class);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            deps.shutdown();
+        }
+    }
+
+    /**
+     * A registry every type has already been looked up in.
+     */
+    @State(Scope.Benchmark)
+    public static class Warm {
+
+        Dependencies deps;
+        CodecRegistry registry;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            deps = dependencies();
+            registry = deps.getInstance(CodecRegistry.class);
+            for (Class<?> type : TYPES) {
+                registry.get(type);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            deps.shutdown();
+        }
+    }
+
+    public static final class Unregistered {
+    }
+
+    public static final class AlsoUnregistered {
+    }
+
+    public static final class FallbackCodecs implements DynamicCodecs {
+
+        @Override
+        public <T> Codec<T> createCodec(Class<T> type, CodecConfigurationException ex) {
+            return new NullCodec<>(type);
+        }
+    }
+
+    static final class NullCodec<T> implements Codec<T> {
+
+        private final Class<T> type;
+
+        NullCodec(Class<T> type) {
+            this.type = type;
+        }
+
+        @Override
+        public T decode(BsonReader reader, DecoderContext decoderContext) {
+            reader.readNull();
+            return null;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+            writer.writeNull();
+        }
+
+        @Override
+        public Class<T> getEncoderClass() {
+            return type;
+        }
+    }
+}
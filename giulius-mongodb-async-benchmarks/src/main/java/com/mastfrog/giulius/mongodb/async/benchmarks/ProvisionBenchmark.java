@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async.benchmarks;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.giulius.mongodb.async.GiuliusMongoAsyncModule;
+import com.mastfrog.giulius.mongodb.async.InMemoryMongo;
+import com.mastfrog.giulius.mongodb.async.MongoFutureCollection;
+import com.mongodb.ReadPreference;
+import com.mongodb.async.client.MongoCollection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of injecting collection bindings once the collection
+ * exists, which is what a request-scoped consumer pays on every request.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProvisionBenchmark {
+
+    private Dependencies deps;
+    private Provider<MongoCollection<Map>> typed;
+    private Provider<MongoFutureCollection<Map>> futureTyped;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        GiuliusMongoAsyncModule m = new GiuliusMongoAsyncModule();
+        m.bindCollection("maps", Map.class);
+        deps = Dependencies.builder().addDefaultSettings().add(m, new InMemoryMongo.Module()).build();
+        typed = deps.getInjector().getProvider(Key.get(new TypeLiteral<MongoCollection<Map>>() {
+        }, Names.named("maps")));
+        futureTyped = deps.getInjector().getProvider(Key.get(new TypeLiteral<MongoFutureCollection<Map>>() {
+        }, Names.named("maps")));
+        // Create the collection before measuring anything
+        typed.get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deps.shutdown();
+    }
+
+    @Benchmark
+    public MongoCollection<Map> typedCollection() {
+        return typed.get();
+    }
+
+    @Benchmark
+    public MongoFutureCollection<Map> futureCollection() {
+        return futureTyped.get();
+    }
+
+    @Benchmark
+    public MongoCollection<Map> derivedCollection() {
+        return futureTyped.get().withReadPreference(ReadPreference.secondaryPreferred()).collection();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async.benchmarks;
+
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.giulius.mongodb.async.GiuliusMongoAsyncModule;
+import com.mastfrog.giulius.mongodb.async.InMemoryMongo;
+import com.mastfrog.giulius.mongodb.async.MongoFutureCollection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares reading a large collection with find(), which accumulates every
+ * document into one list, against findBatched(), which hands the consumer one
+ * cursor batch at a time. Run with <code>-prof gc</code> to compare allocation
+ * as well as time.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StreamingBenchmark {
+
+    @Param({"100000"})
+    public int documents;
+
+    @Param({"1000"})
+    public int batchSize;
+
+    private Dependencies deps;
+    private MongoFutureCollection<Document> collection;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        GiuliusMongoAsyncModule m = new GiuliusMongoAsyncModule();
+        m.bindCollection("big");
+        deps = Dependencies.builder().addDefaultSettings().add(m, new InMemoryMongo.Module()).build();
+        collection = deps.getInstance(Key.get(new TypeLiteral<MongoFutureCollection<Document>>() {
+        }, Names.named("big")));
+        List<Document> docs = new ArrayList<>(batchSize);
+        for (int i = 0; i < documents; i++) {
+            docs.add(new Document("ix", i).append("name", "item-" + i));
+            if (docs.size() == batchSize) {
+                collection.insertMany(docs).get(30, SECONDS);
+                docs = new ArrayList<>(batchSize);
+            }
+        }
+        if (!docs.isEmpty()) {
+            collection.insertMany(docs).get(30, SECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deps.shutdown();
+    }
+
+    @Benchmark
+    public List<Document> accumulate() throws Exception {
+        return collection.find().get(60, SECONDS);
+    }
+
+    @Benchmark
+    public long stream(Blackhole bh) throws Exception {
+        return collection.findBatched(new Document(), batchSize, batch -> {
+            for (Document d : batch) {
+                bh.consume(d);
+            }
+            // Demand the next batch asynchronously, as a consumer writing
+            // to a socket would
+            return CompletableFuture.runAsync(() -> {
+            });
+        }).get(60, SECONDS);
+    }
+}
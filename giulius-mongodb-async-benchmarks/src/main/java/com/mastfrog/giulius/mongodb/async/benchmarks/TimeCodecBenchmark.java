@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async.benchmarks;
+
+import com.mastfrog.giulius.mongodb.async.Java8DateTimeCodecProvider;
+import com.mastfrog.giulius.mongodb.async.Java8DateTimeCodecProvider.ZonedDateTimeStorage;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encodes and decodes single java.time values through the codecs in
+ * Java8DateTimeCodecProvider, in each of the ZonedDateTime storage forms.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimeCodecBenchmark {
+
+    private static final EncoderContext ENCODE = EncoderContext.builder().build();
+    private static final DecoderContext DECODE = DecoderContext.builder().build();
+
+    @Param({"DATE_TIME", "DOCUMENT", "STRING"})
+    public ZonedDateTimeStorage storage;
+
+    private final ZonedDateTime when = ZonedDateTime.of(2018, 3, 12, 2, 30, 15, 123000000, ZoneId.of("America/New_York"));
+    private final Instant instant = when.toInstant();
+    private final BasicOutputBuffer buffer = new BasicOutputBuffer();
+    private Codec<ZonedDateTime> zoned;
+    private Codec<Instant> instants;
+    private byte[] encodedZoned;
+    private byte[] encodedInstant;
+
+    @Setup
+    public void setup() {
+        zoned = Java8DateTimeCodecProvider.zonedDateTimeCodec(storage);
+        instants = new Java8DateTimeCodecProvider().get(Instant.class, null);
+        encodeZoned();
+        encodedZoned = buffer.toByteArray();
+        encodeInstant();
+        encodedInstant = buffer.toByteArray();
+    }
+
+    @Benchmark
+    public int encodeZoned() {
+        return encode(zoned, when);
+    }
+
+    @Benchmark
+    public ZonedDateTime decodeZoned() {
+        return decode(zoned, encodedZoned);
+    }
+
+    @Benchmark
+    public int encodeInstant() {
+        return encode(instants, instant);
+    }
+
+    @Benchmark
+    public Instant decodeInstant() {
+        return decode(instants, encodedInstant);
+    }
+
+    private <T> int encode(Codec<T> codec, T value) {
+        buffer.truncateToPosition(0);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            writer.writeStartDocument();
+            writer.writeName("t");
+            codec.encode(writer, value, ENCODE);
+            writer.writeEndDocument();
+        }
+        return buffer.getPosition();
+    }
+
+    private <T> T decode(Codec<T> codec, byte[] bytes) {
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bytes))) {
+            reader.readStartDocument();
+            reader.readBsonType();
+            reader.skipName();
+            T result = codec.decode(reader, DECODE);
+            reader.readEndDocument();
+            return result;
+        }
+    }
+}
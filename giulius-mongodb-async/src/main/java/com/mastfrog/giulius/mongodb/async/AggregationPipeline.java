@@ -0,0 +1,270 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.util.function.EnhCompletableFuture;
+import com.mastfrog.util.preconditions.Checks;
+import com.mongodb.async.client.AggregateIterable;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BsonField;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+
+/**
+ * Builds an aggregation pipeline against a {@link MongoFutureCollection},
+ * checking stage ordering as stages are added rather than when the server
+ * rejects the pipeline, and runs it either accumulating a List or streaming
+ * results to a {@link BatchHandler} one cursor batch at a time, so large
+ * aggregations need not be held in memory.
+ *
+ * @author agent
+ */
+public final class AggregationPipeline<T> {
+
+    // Stages the server only accepts at the start of a pipeline
+    private static final Set<String> FIRST_ONLY = new HashSet<>(Arrays.asList("$geoNear",
+            "$collStats", "$indexStats", "$changeStream", "$currentOp", "$listLocalSessions",
+            "$listSessions"));
+    private final MongoFutureCollection<T> collection;
+    private final List<Bson> stages = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private Boolean allowDiskUse;
+    private int batchSize;
+    private long maxTimeMillis;
+
+    AggregationPipeline(MongoFutureCollection<T> collection) {
+        this.collection = collection;
+    }
+
+    public AggregationPipeline<T> match(Bson filter) {
+        return add("$match", Aggregates.match(Checks.notNull("filter", filter)));
+    }
+
+    public AggregationPipeline<T> project(Bson projection) {
+        return add("$project", Aggregates.project(Checks.notNull("projection", projection)));
+    }
+
+    public AggregationPipeline<T> sort(Bson sort) {
+        return add("$sort", Aggregates.sort(Checks.notNull("sort", sort)));
+    }
+
+    public AggregationPipeline<T> skip(int skip) {
+        return add("$skip", Aggregates.skip(Checks.nonNegative("skip", skip)));
+    }
+
+    public AggregationPipeline<T> limit(int limit) {
+        return add("$limit", Aggregates.limit(Checks.nonNegative("limit", Checks.nonZero("limit", limit))));
+    }
+
+    public AggregationPipeline<T> sample(int size) {
+        return add("$sample", Aggregates.sample(Checks.nonNegative("size", Checks.nonZero("size", size))));
+    }
+
+    /**
+     * Add an $unwind stage.
+     *
+     * @param fieldName The array field, prefixed with $
+     * @return this
+     */
+    public AggregationPipeline<T> unwind(String fieldName) {
+        return add("$unwind", Aggregates.unwind(Checks.notNull("fieldName", fieldName)));
+    }
+
+    /**
+     * Add a $group stage.
+     *
+     * @param <TExpression> The type of the id expression
+     * @param id The expression to group by, or null to group everything
+     * @param accumulators The accumulated fields, e.g.
+     * <code>Accumulators.sum("total", "$amount")</code>
+     * @return this
+     */
+    public <TExpression> AggregationPipeline<T> group(TExpression id, BsonField... accumulators) {
+        return add("$group", Aggregates.group(id, Checks.notNull("accumulators", accumulators)));
+    }
+
+    public AggregationPipeline<T> lookup(String from, String localField, String foreignField, String as) {
+        return add("$lookup", Aggregates.lookup(Checks.notNull("from", from), Checks.notNull("localField", localField),
+                Checks.notNull("foreignField", foreignField), Checks.notNull("as", as)));
+    }
+
+    /**
+     * Add a $count stage, replacing the documents with one containing the
+     * number of documents under the passed field name.
+     *
+     * @param field The field name
+     * @return this
+     */
+    public AggregationPipeline<T> count(String field) {
+        return add("$count", Aggregates.count(Checks.notNull("field", field)));
+    }
+
+    /**
+     * Write the results to a collection, replacing its contents. This must
+     * be the last stage; running the pipeline returns the documents written.
+     *
+     * @param collectionName The collection name
+     * @return this
+     */
+    public AggregationPipeline<T> out(String collectionName) {
+        return add("$out", Aggregates.out(Checks.notNull("collectionName", collectionName)));
+    }
+
+    /**
+     * Add any other stage, such as $addFields, $bucket or $facet. The stage
+     * must be a document with a single key naming the stage.
+     *
+     * @param stage The stage
+     * @return this
+     * @throws IllegalArgumentException if the stage is not a single stage
+     * @throws IllegalStateException if the stage may not follow the stages
+     * already added
+     */
+    public AggregationPipeline<T> stage(Bson stage) {
+        Checks.notNull("stage", stage);
+        BsonDocument doc = stage.toBsonDocument(BsonDocument.class, collection.collection().getCodecRegistry());
+        if (doc.size() != 1 || !doc.getFirstKey().startsWith("$")) {
+            throw new IllegalArgumentException("Not a single pipeline stage: " + doc);
+        }
+        return add(doc.getFirstKey(), stage);
+    }
+
+    private AggregationPipeline<T> add(String name, Bson stage) {
+        if (!names.isEmpty() && "$out".equals(names.get(names.size() - 1))) {
+            throw new IllegalStateException("Cannot add " + name + " after $out, which must be the last stage");
+        }
+        if (!names.isEmpty() && FIRST_ONLY.contains(name)) {
+            throw new IllegalStateException(name + " must be the first stage, but follows " + names);
+        }
+        names.add(name);
+        stages.add(stage);
+        return this;
+    }
+
+    /**
+     * Allow stages which exceed the server's memory limit, such as large
+     * sorts and groups, to write temporary files.
+     *
+     * @param allowDiskUse Whether to allow disk use
+     * @return this
+     */
+    public AggregationPipeline<T> allowDiskUse(boolean allowDiskUse) {
+        this.allowDiskUse = allowDiskUse;
+        return this;
+    }
+
+    /**
+     * Set the cursor batch size, which is the number of results passed to a
+     * BatchHandler at a time when streaming.
+     *
+     * @param batchSize The batch size, or 0 for the server's default
+     * @return this
+     */
+    public AggregationPipeline<T> batchSize(int batchSize) {
+        this.batchSize = Checks.nonNegative("batchSize", batchSize);
+        return this;
+    }
+
+    public AggregationPipeline<T> maxTime(Duration maxTime) {
+        this.maxTimeMillis = Checks.notNull("maxTime", maxTime).toMillis();
+        return this;
+    }
+
+    /**
+     * The stages added so far.
+     *
+     * @return An unmodifiable list
+     */
+    public List<Bson> stages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Run the pipeline, accumulating every result. Without options, this
+     * shares identical concurrent aggregations if
+     * <code>shareConcurrentReads()</code> was configured for the collection.
+     *
+     * @return A future
+     */
+    public EnhCompletableFuture<List<T>> toList() {
+        return collection.withCollection(c -> toList(c.getDocumentClass()));
+    }
+
+    public <R> EnhCompletableFuture<List<R>> toList(Class<R> type) {
+        Checks.notNull("type", type);
+        List<Bson> pipeline = new ArrayList<>(stages);
+        if (allowDiskUse == null && batchSize == 0 && maxTimeMillis == 0) {
+            return collection.aggregate(pipeline, type);
+        }
+        return collection.withCollection(c -> collection.toList(iterable(c, pipeline, type)));
+    }
+
+    /**
+     * Run the pipeline, passing results to a handler one batch at a time,
+     * fetching the next batch only once the handler has finished with the
+     * previous one.
+     *
+     * @param handler The handler
+     * @return A future which completes with the number of results once the
+     * cursor is exhausted; cancelling it closes the cursor
+     */
+    public EnhCompletableFuture<Long> stream(BatchHandler<? super T> handler) {
+        return collection.withCollection(c -> stream(c.getDocumentClass(), handler));
+    }
+
+    public <R> EnhCompletableFuture<Long> stream(Class<R> type, BatchHandler<? super R> handler) {
+        Checks.notNull("type", type);
+        Checks.notNull("handler", handler);
+        List<Bson> pipeline = new ArrayList<>(stages);
+        return collection.stream(c -> iterable(c, pipeline, type), batchSize, handler);
+    }
+
+    private <R> AggregateIterable<R> iterable(MongoCollection<T> coll, List<Bson> pipeline, Class<R> type) {
+        AggregateIterable<R> result = coll.aggregate(pipeline, type);
+        if (allowDiskUse != null) {
+            result.allowDiskUse(allowDiskUse);
+        }
+        if (batchSize > 0) {
+            result.batchSize(batchSize);
+        }
+        if (maxTimeMillis > 0) {
+            result.maxTime(maxTimeMillis, MILLISECONDS);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return names.toString();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mongodb.async.client.MongoCollection;
+import java.util.concurrent.CompletableFuture;
+import javax.inject.Provider;
+
+/**
+ * A collection provider which can also supply its collection without
+ * blocking while the collection is being created.
+ *
+ * @author agent
+ */
+interface AsyncCollectionProvider<T> extends Provider<MongoCollection<T>> {
+
+    /**
+     * Get the collection, completing once it exists; already complete if it
+     * has been created.
+     *
+     * @return A future
+     */
+    CompletableFuture<MongoCollection<T>> getAsync();
+
+    /**
+     * Get the collection from any provider - asynchronously if it is an
+     * AsyncCollectionProvider, otherwise by calling its get() method.
+     *
+     * @param <T> The document type
+     * @param provider A provider
+     * @return A future, failed if the provider throws
+     */
+    @SuppressWarnings("unchecked")
+    static <T> CompletableFuture<MongoCollection<T>> collection(Provider<? extends MongoCollection<T>> provider) {
+        if (provider instanceof AsyncCollectionProvider<?>) {
+            return ((AsyncCollectionProvider<T>) provider).getAsync();
+        }
+        CompletableFuture<MongoCollection<T>> result = new CompletableFuture<>();
+        try {
+            result.complete(provider.get());
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+}
@@ -44,7 +44,10 @@ final class AsyncMongoClientProvider implements Provider<MongoClient>, Runnable
     @SuppressWarnings("LeakingThisInConstructor")
     AsyncMongoClientProvider(MongoClientSettings settings, MongoAsyncInitializer.Registry inits, ShutdownHookRegistry reg, ExistingCollections colls) {
         settings = inits.onBeforeCreateMongoClient(settings);
-        MongoClient client = MongoClients.create(settings);
+        MongoClient client = inits.createMongoClient(settings);
+        if (client == null) {
+            client = MongoClients.create(settings);
+        }
         this.client = client;
         colls.init(client, this);
         client = inits.onAfterCreateMongoClient(client);
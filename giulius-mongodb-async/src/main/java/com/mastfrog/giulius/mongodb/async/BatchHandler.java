@@ -0,0 +1,51 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Receives query results one cursor batch at a time from the streaming
+ * methods of {@link MongoFutureCollection}, controlling when the next batch
+ * is fetched, so large result sets can be processed without being held in
+ * memory all at once.
+ *
+ * @author agent
+ */
+@FunctionalInterface
+public interface BatchHandler<T> {
+
+    /**
+     * Process one batch of results. The next batch is not requested from the
+     * server until the returned stage completes; return null to request it
+     * immediately. If the returned stage completes exceptionally, or this
+     * method throws, the cursor is closed and the future returned by the
+     * streaming method completes with that failure.
+     *
+     * @param batch A batch of results, never empty
+     * @return A stage signalling demand for the next batch, or null
+     */
+    CompletionStage<?> onBatch(List<? extends T> batch);
+}
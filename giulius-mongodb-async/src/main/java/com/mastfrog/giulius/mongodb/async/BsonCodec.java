@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import static java.lang.annotation.ElementType.TYPE;
+import java.lang.annotation.Retention;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+import java.lang.annotation.Target;
+
+/**
+ * Generate a reflection-free BSON codec for the annotated class at compile
+ * time. The processor for this annotation lives in
+ * <code>giulius-annotation-processors</code>; with it on the annotation
+ * processor path, a class <code>FooBsonCodec</code> is generated next to
+ * <code>Foo</code>, and registered so that GiuliusMongoAsyncModule's codec
+ * registry uses it ahead of the driver defaults and any DynamicCodecs.
+ * <p>
+ * The annotated class needs a non-private no-argument constructor. Every
+ * non-static, non-transient field is stored under its own name, and is read
+ * and written either directly, if it is not private (or final, for writing),
+ * or through a non-private getter and setter. Primitives and their wrappers,
+ * strings, enums (by name), ObjectIds, Dates, byte arrays and lists or sets
+ * of those are written directly; fields of any other type are delegated to
+ * the registry. Null fields are omitted. Numbers stored as a different BSON
+ * type are converted, unless the field cannot hold the value exactly, in
+ * which case decoding fails.
+ *
+ * @author agent
+ */
+@Retention(CLASS)
+@Target(TYPE)
+public @interface BsonCodec {
+
+    /**
+     * The field which is stored as the document's <code>_id</code>. If the
+     * class has it, the generated codec is a CollectibleCodec, and an unset
+     * ObjectId id is generated when the document is inserted.
+     *
+     * @return A field name
+     */
+    String idField() default "id";
+}
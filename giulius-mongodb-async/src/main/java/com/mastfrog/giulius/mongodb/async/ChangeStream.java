@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.giulius.ShutdownHookRegistry;
+import com.mastfrog.util.preconditions.Checks;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.inject.Provider;
+
+/**
+ * Push-based notification of changes to a collection, bound under the
+ * collection's binding name when <code>watchChanges()</code> is called on
+ * the module. Each subscriber receives changes in batches, through a
+ * {@link BatchHandler}; the next batch is not fetched until the handler's
+ * returned stage completes and the position of the last change in the batch
+ * has been saved to the {@link ResumeTokenStore}, so delivery is
+ * at-least-once and a slow handler slows the stream rather than buffering
+ * changes in memory.
+ * <p>
+ * Change streams require a replica set. Updates are delivered with the
+ * current version of the full document.
+ *
+ * @author agent
+ */
+public final class ChangeStream<T> {
+
+    private final String bindingName;
+    private final Provider<? extends MongoCollection<T>> collection;
+    private final int batchSize;
+    private final Provider<? extends Executor> executor;
+    private final Provider<ResumeTokenStore> tokens;
+    private final Provider<CoalescingTimer> timer;
+    private final Provider<ShutdownHookRegistry> shutdown;
+    private final Set<ChangeSubscription<T>> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean hookAdded = new AtomicBoolean();
+
+    ChangeStream(String bindingName, Provider<? extends MongoCollection<T>> collection, int batchSize,
+            Provider<? extends Executor> executor, Provider<ResumeTokenStore> tokens,
+            Provider<CoalescingTimer> timer, Provider<ShutdownHookRegistry> shutdown) {
+        this.bindingName = bindingName;
+        this.collection = collection;
+        this.batchSize = batchSize;
+        this.executor = executor;
+        this.tokens = tokens;
+        this.timer = timer;
+        this.shutdown = shutdown;
+    }
+
+    /**
+     * Subscribe to changes, saving the position under the binding name.
+     *
+     * @param handler The handler
+     * @return A subscription
+     */
+    public ChangeSubscription<T> subscribe(BatchHandler<? super ChangeStreamDocument<T>> handler) {
+        return subscribe(bindingName, handler);
+    }
+
+    /**
+     * Subscribe to changes. The subscriber name identifies the subscriber's
+     * saved position: subscribing again with the same name after a restart
+     * resumes after the last change that subscriber processed, while a new
+     * name starts with changes made from now on. Only one subscription per
+     * name should be active at a time.
+     * <p>
+     * If the stream fails - for example because no server is reachable - it
+     * is restarted from the saved position, with backoff, until closed. If
+     * the handler throws or its stage fails, or the server reports that the
+     * stream cannot be resumed from the saved position - for example because
+     * it is no longer in the oplog - the subscription ends and
+     * {@link ChangeSubscription#done()} completes with that failure.
+     *
+     * @param subscriberName The name to save the position under
+     * @param handler The handler
+     * @return A subscription
+     */
+    public ChangeSubscription<T> subscribe(String subscriberName, BatchHandler<? super ChangeStreamDocument<T>> handler) {
+        Checks.notNull("subscriberName", subscriberName);
+        Checks.notNull("handler", handler);
+        if (hookAdded.compareAndSet(false, true)) {
+            shutdown.get().add((Runnable) this::closeAll);
+        }
+        ChangeSubscription<T> result = new ChangeSubscription<>(subscriberName, collection, batchSize,
+                executor == null ? null : executor.get(), tokens.get(), timer, handler);
+        subscriptions.add(result);
+        result.done().whenComplete((ignored, thrown) -> subscriptions.remove(result));
+        result.start();
+        return result;
+    }
+
+    private void closeAll() {
+        subscriptions.forEach(ChangeSubscription::close);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeStream(" + bindingName + ", " + subscriptions.size() + " subscribers)";
+    }
+}
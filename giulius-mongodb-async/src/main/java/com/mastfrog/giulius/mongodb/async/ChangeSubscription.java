@@ -0,0 +1,294 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoServerException;
+import com.mongodb.async.client.ChangeStreamIterable;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.inject.Provider;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+/**
+ * One subscriber to a {@link ChangeStream}.
+ *
+ * @author agent
+ */
+public final class ChangeSubscription<T> implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ChangeSubscription.class.getName());
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final String RESUMABLE_LABEL = "ResumableChangeStreamError";
+    // InvalidResumeToken, ChangeStreamFatalError, ChangeStreamHistoryLost and
+    // a resume token which is no longer in the oplog
+    private static final Set<Integer> UNRESUMABLE_CODES = new HashSet<>(Arrays.asList(260, 280, 286, 40585));
+    // Resumable on servers which do not send the label
+    private static final Set<Integer> RESUMABLE_CODES = new HashSet<>(Arrays.asList(6, 7, 43, 63, 89, 91,
+            133, 150, 189, 234, 262, 9001, 10107, 11600, 11602, 13388, 13435, 13436));
+    private final String name;
+    private final Provider<? extends MongoCollection<T>> collection;
+    private final int batchSize;
+    private final Executor executor;
+    private final ResumeTokenStore tokens;
+    private final Provider<CoalescingTimer> timer;
+    private final BatchHandler<? super ChangeStreamDocument<T>> handler;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger restarts = new AtomicInteger();
+    private volatile CompletableFuture<Long> current;
+    // Set when the handler or executor fails, which restarting cannot fix
+    private volatile boolean fatal;
+
+    ChangeSubscription(String name, Provider<? extends MongoCollection<T>> collection, int batchSize,
+            Executor executor, ResumeTokenStore tokens, Provider<CoalescingTimer> timer,
+            BatchHandler<? super ChangeStreamDocument<T>> handler) {
+        this.name = name;
+        this.collection = collection;
+        this.batchSize = batchSize;
+        this.executor = executor;
+        this.tokens = tokens;
+        this.timer = timer;
+        this.handler = handler;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * The number of changes the handler has processed.
+     *
+     * @return A count
+     */
+    public long delivered() {
+        return delivered.get();
+    }
+
+    /**
+     * The number of times the stream has been restarted after a failure.
+     *
+     * @return A count
+     */
+    public int restarts() {
+        return restarts.get();
+    }
+
+    public boolean isClosed() {
+        return done.isDone();
+    }
+
+    /**
+     * Completes when the subscription is closed, or the collection is
+     * dropped or renamed; completes exceptionally if the handler failed.
+     *
+     * @return A stage
+     */
+    public CompletionStage<Void> done() {
+        return done.thenApply(v -> v);
+    }
+
+    /**
+     * Stop receiving changes, closing the cursor. A batch being handled is
+     * allowed to finish and its position is saved, but no more are fetched.
+     */
+    @Override
+    public void close() {
+        if (done.complete(null)) {
+            CompletableFuture<Long> run = current;
+            if (run != null) {
+                run.cancel(false);
+            }
+        }
+    }
+
+    void start() {
+        if (done.isDone()) {
+            return;
+        }
+        CompletableFuture<MongoCollection<T>> coll = AsyncCollectionProvider.collection(collection);
+        tokens.load(name).thenCombine(coll, (token, c) -> {
+            watch(c, token);
+            return null;
+        }).whenComplete((ignored, thrown) -> {
+            // Failing to load the token or get the collection is retried
+            if (thrown != null) {
+                restart(thrown);
+            }
+        });
+    }
+
+    private void watch(MongoCollection<T> coll, BsonDocument token) {
+        ChangeStreamIterable<T> iter = coll.watch(coll.getDocumentClass())
+                .fullDocument(FullDocument.UPDATE_LOOKUP);
+        if (token != null) {
+            iter.resumeAfter(token);
+        }
+        CompletableFuture<Long> run = MongoFutureCollection.<ChangeStreamDocument<T>>stream(iter, batchSize, this::onBatch);
+        current = run;
+        if (done.isDone()) {
+            run.cancel(false);
+        }
+        run.whenComplete((count, err) -> {
+            if (err == null) {
+                // The cursor ends when the collection is dropped or renamed
+                done.complete(null);
+            } else if (fatal) {
+                done.completeExceptionally(unwrap(err));
+            } else if (!isResumable(err)) {
+                if (!done.isDone()) {
+                    LOG.log(Level.SEVERE, "Change stream subscriber " + name + " cannot resume after "
+                            + (token == null ? "its start" : token.toJson()), unwrap(err));
+                }
+                done.completeExceptionally(unwrap(err));
+            } else if (!done.isDone()) {
+                restart(err);
+            }
+        });
+    }
+
+    /**
+     * Determine if a stream which failed can be restarted from the saved
+     * token. Errors from the server are only resumable if it says so - with
+     * the ResumableChangeStreamError label, or for servers which predate it,
+     * one of the error codes the drivers treat as resumable; an expired or
+     * invalid token never is, since restarting would fail the same way
+     * forever. Anything else - network errors, timeouts, failing to create
+     * the collection - is worth retrying.
+     */
+    static boolean isResumable(Throwable thrown) {
+        thrown = unwrap(thrown);
+        if (thrown instanceof CancellationException) {
+            return false;
+        }
+        if (MongoTransactions.isTransient(thrown) || !(thrown instanceof MongoServerException)) {
+            return true;
+        }
+        int code = ((MongoServerException) thrown).getCode();
+        if (UNRESUMABLE_CODES.contains(code)) {
+            return false;
+        }
+        if (thrown instanceof MongoCommandException) {
+            BsonDocument response = ((MongoCommandException) thrown).getResponse();
+            BsonValue labels = response == null ? null : response.get("errorLabels");
+            if (labels != null && labels.isArray()) {
+                for (BsonValue label : labels.asArray()) {
+                    if (label.isString() && RESUMABLE_LABEL.equals(label.asString().getValue())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return RESUMABLE_CODES.contains(code);
+    }
+
+    private CompletionStage<?> onBatch(List<? extends ChangeStreamDocument<T>> batch) {
+        CompletableFuture<Void> handled = new CompletableFuture<>();
+        Runnable deliver = () -> {
+            try {
+                CompletionStage<?> demand = handler.onBatch(batch);
+                if (demand == null) {
+                    handled.complete(null);
+                } else {
+                    demand.whenComplete((ignored, thrown) -> {
+                        if (thrown != null) {
+                            fatal = true;
+                            handled.completeExceptionally(thrown);
+                        } else {
+                            handled.complete(null);
+                        }
+                    });
+                }
+            } catch (Throwable thrown) {
+                fatal = true;
+                handled.completeExceptionally(thrown);
+            }
+        };
+        if (executor == null) {
+            deliver.run();
+        } else {
+            try {
+                executor.execute(deliver);
+            } catch (RejectedExecutionException ex) {
+                fatal = true;
+                throw ex;
+            }
+        }
+        BsonDocument token = batch.get(batch.size() - 1).getResumeToken();
+        return handled.thenCompose(v -> {
+            delivered.addAndGet(batch.size());
+            failures.set(0);
+            return tokens.save(name, token);
+        });
+    }
+
+    private void restart(Throwable thrown) {
+        if (done.isDone()) {
+            return;
+        }
+        long delay = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(failures.getAndIncrement(), 16));
+        LOG.log(Level.WARNING, "Change stream subscriber " + name + " failed; restarting in " + delay + "ms", unwrap(thrown));
+        try {
+            timer.get().get().schedule(() -> {
+                restarts.incrementAndGet();
+                start();
+            }, delay, MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // Shutting down
+            done.completeExceptionally(unwrap(thrown));
+        }
+    }
+
+    private static Throwable unwrap(Throwable thrown) {
+        while (thrown instanceof CompletionException && thrown.getCause() != null) {
+            thrown = thrown.getCause();
+        }
+        return thrown;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + delivered + " delivered, " + restarts + " restarts"
+                + (isClosed() ? ", closed)" : ")");
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.settings.Settings;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.MongoWaitQueueFullException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.inject.Provider;
+
+/**
+ * Guards the operations of the <code>MongoFutureCollection</code>s for one
+ * binding, so that when MongoDB is degraded callers fail fast instead of
+ * queueing in the driver and taking their own latency down with it.
+ * <p>
+ * While <i>closed</i>, the breaker tracks the fraction of operations in the
+ * current window which failed with errors indicating a degraded server
+ * (network errors, timeouts, a full wait queue, a primary stepping down -
+ * not, for example, duplicate key errors), and the fraction slower than the
+ * slow call threshold. Once enough operations have been seen and either
+ * fraction crosses its threshold, the breaker <i>opens</i> and refuses
+ * every operation for the open interval; then it goes <i>half-open</i>,
+ * admitting a few probe operations. If they all succeed promptly it closes,
+ * otherwise it opens again. Independently of state, operations beyond the
+ * in-flight limit are refused (shed). Refused operations fail with a
+ * {@link CircuitBreakerException} without being sent.
+ * <p>
+ * Thresholds are read from settings, as
+ * <code>mongo.circuit.breaker.<i>bindingName</i>.<i>key</i></code>, falling
+ * back to <code>mongo.circuit.breaker.<i>key</i></code>, for the keys:
+ * <ul>
+ * <li><code>failure.rate</code> - fraction of failures which opens the
+ * circuit, default 0.5</li>
+ * <li><code>slow.call.millis</code> - operations slower than this count as
+ * slow, default 2000; 0 disables</li>
+ * <li><code>slow.rate</code> - fraction of slow operations which opens the
+ * circuit, default 0.8</li>
+ * <li><code>minimum.calls</code> - operations in a window before the rates
+ * are acted on, default 20</li>
+ * <li><code>window.millis</code> - length of the window rates are computed
+ * over, default 10000</li>
+ * <li><code>open.millis</code> - how long the circuit stays open before
+ * probing, default 5000</li>
+ * <li><code>half.open.probes</code> - probes which must succeed to close
+ * the circuit, default 3</li>
+ * <li><code>max.in.flight</code> - operations in flight beyond which load
+ * is shed, default 0 (no limit)</li>
+ * </ul>
+ *
+ * @author agent
+ */
+public final class CircuitBreaker {
+
+    private static final Logger LOG = Logger.getLogger(CircuitBreaker.class.getName());
+    static final String SETTINGS_KEY_PREFIX = "mongo.circuit.breaker.";
+    private final String bindingName;
+    private final Provider<Settings> settings;
+    private volatile Config config;
+    private final AtomicReference<Status> status = new AtomicReference<>(new Status(State.CLOSED, System.nanoTime()));
+    private final AtomicReference<Window> window = new AtomicReference<>(new Window(System.nanoTime()));
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger probesStarted = new AtomicInteger();
+    private final AtomicInteger probesSucceeded = new AtomicInteger();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+
+    CircuitBreaker(String bindingName, Provider<Settings> settings) {
+        this.bindingName = bindingName;
+        this.settings = settings;
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public String bindingName() {
+        return bindingName;
+    }
+
+    public State state() {
+        return status.get().state;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * The number of operations refused because the circuit was open or
+     * half-open with all probes in flight.
+     *
+     * @return A count
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * The number of operations refused because of the in-flight limit.
+     *
+     * @return A count
+     */
+    public long shed() {
+        return shed.sum();
+    }
+
+    /**
+     * The number of times the circuit has opened.
+     *
+     * @return A count
+     */
+    public long timesOpened() {
+        return opened.sum();
+    }
+
+    /**
+     * Latency of the operations which were admitted.
+     *
+     * @return A histogram
+     */
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    /**
+     * Admit an operation, or fail its result if it is refused. If admitted,
+     * the outcome of the operation is recorded when the result completes.
+     *
+     * @param result The future the operation will complete
+     * @return true if the operation may be started
+     */
+    boolean admit(CompletableFuture<?> result) {
+        Config c = config();
+        long now = System.nanoTime();
+        Status s = status.get();
+        if (c.maxInFlight > 0 && inFlight.get() >= c.maxInFlight) {
+            shed.increment();
+            result.completeExceptionally(new CircuitBreakerException(bindingName, s.state, true,
+                    c.maxInFlight + " operations already in flight on " + bindingName));
+            return false;
+        }
+        if (s.state == State.OPEN && now - s.since >= c.openNanos) {
+            // Counters are only used while half-open, so can be reset first
+            probesStarted.set(0);
+            probesSucceeded.set(0);
+            Status half = new Status(State.HALF_OPEN, now);
+            if (status.compareAndSet(s, half)) {
+                LOG.log(Level.INFO, "Circuit for {0} half-open", bindingName);
+            }
+            s = status.get();
+        }
+        boolean probe = false;
+        if (s.state == State.OPEN || (s.state == State.HALF_OPEN && probesStarted.incrementAndGet() > c.probes)) {
+            rejected.increment();
+            result.completeExceptionally(new CircuitBreakerException(bindingName, s.state, false,
+                    "Circuit for " + bindingName + " is " + s.state));
+            return false;
+        } else if (s.state == State.HALF_OPEN) {
+            probe = true;
+        }
+        inFlight.incrementAndGet();
+        boolean isProbe = probe;
+        result.whenComplete((ignored, thrown) -> completed(c, now, thrown, isProbe));
+        return true;
+    }
+
+    private void completed(Config c, long start, Throwable thrown, boolean probe) {
+        inFlight.decrementAndGet();
+        long now = System.nanoTime();
+        long elapsed = now - start;
+        latency.record(elapsed);
+        boolean failed = thrown != null && isDegraded(thrown);
+        boolean slow = c.slowNanos > 0 && elapsed >= c.slowNanos;
+        Status s = status.get();
+        if (probe) {
+            if (s.state != State.HALF_OPEN) {
+                return;
+            }
+            if (failed || slow) {
+                open(s, now, failed ? "probe failed" : "probe was slow");
+            } else if (probesSucceeded.incrementAndGet() >= c.probes
+                    && status.compareAndSet(s, new Status(State.CLOSED, now))) {
+                window.set(new Window(now));
+                LOG.log(Level.INFO, "Circuit for {0} closed", bindingName);
+            }
+            return;
+        }
+        Window w = window(c, now);
+        w.calls.increment();
+        if (failed) {
+            w.failures.increment();
+        }
+        if (slow) {
+            w.slow.increment();
+        }
+        if ((failed || slow) && s.state == State.CLOSED) {
+            long calls = w.calls.sum();
+            if (calls >= c.minimumCalls) {
+                if (w.failures.sum() >= c.failureRate * calls) {
+                    open(s, now, w.failures.sum() + " of " + calls + " operations failed");
+                } else if (slow && w.slow.sum() >= c.slowRate * calls) {
+                    open(s, now, w.slow.sum() + " of " + calls + " operations were slow");
+                }
+            }
+        }
+    }
+
+    private void open(Status from, long now, String why) {
+        if (status.compareAndSet(from, new Status(State.OPEN, now))) {
+            opened.increment();
+            LOG.log(Level.WARNING, "Circuit for {0} opened: {1}", new Object[]{bindingName, why});
+        }
+    }
+
+    private Window window(Config c, long now) {
+        Window w = window.get();
+        if (now - w.start >= c.windowNanos) {
+            Window fresh = new Window(now);
+            w = window.compareAndSet(w, fresh) ? fresh : window.get();
+        }
+        return w;
+    }
+
+    /**
+     * Determine if a failure indicates the server is degraded, rather than
+     * that the operation was wrong.
+     */
+    static boolean isDegraded(Throwable thrown) {
+        while (thrown instanceof CompletionException && thrown.getCause() != null) {
+            thrown = thrown.getCause();
+        }
+        return thrown instanceof MongoTimeoutException
+                || thrown instanceof MongoExecutionTimeoutException
+                || thrown instanceof MongoWaitQueueFullException
+                || MongoTransactions.isTransient(thrown);
+    }
+
+    private Config config() {
+        Config result = config;
+        if (result == null) {
+            config = result = new Config(bindingName, settings.get());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker(" + bindingName + " " + state() + ", " + inFlight() + " in flight, "
+                + rejected() + " rejected, " + shed() + " shed)";
+    }
+
+    private static final class Status {
+
+        private final State state;
+        private final long since;
+
+        Status(State state, long since) {
+            this.state = state;
+            this.since = since;
+        }
+    }
+
+    private static final class Window {
+
+        private final long start;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+
+        Window(long start) {
+            this.start = start;
+        }
+    }
+
+    private static final class Config {
+
+        private final double failureRate;
+        private final long slowNanos;
+        private final double slowRate;
+        private final int minimumCalls;
+        private final long windowNanos;
+        private final long openNanos;
+        private final int probes;
+        private final int maxInFlight;
+
+        Config(String bindingName, Settings settings) {
+            failureRate = setting(settings, bindingName, "failure.rate", 0.5D);
+            slowNanos = MILLISECONDS.toNanos(setting(settings, bindingName, "slow.call.millis", 2000L));
+            slowRate = setting(settings, bindingName, "slow.rate", 0.8D);
+            minimumCalls = Math.max(1, setting(settings, bindingName, "minimum.calls", 20));
+            windowNanos = MILLISECONDS.toNanos(Math.max(1, setting(settings, bindingName, "window.millis", 10_000L)));
+            openNanos = MILLISECONDS.toNanos(setting(settings, bindingName, "open.millis", 5_000L));
+            probes = Math.max(1, setting(settings, bindingName, "half.open.probes", 3));
+            maxInFlight = setting(settings, bindingName, "max.in.flight", 0);
+        }
+
+        private static int setting(Settings settings, String bindingName, String key, int def) {
+            return settings.getInt(SETTINGS_KEY_PREFIX + bindingName + "." + key,
+                    settings.getInt(SETTINGS_KEY_PREFIX + key, def));
+        }
+
+        private static long setting(Settings settings, String bindingName, String key, long def) {
+            return settings.getLong(SETTINGS_KEY_PREFIX + bindingName + "." + key,
+                    settings.getLong(SETTINGS_KEY_PREFIX + key, def));
+        }
+
+        private static double setting(Settings settings, String bindingName, String key, double def) {
+            return settings.getDouble(SETTINGS_KEY_PREFIX + bindingName + "." + key,
+                    settings.getDouble(SETTINGS_KEY_PREFIX + key, def));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mongodb.MongoClientException;
+
+/**
+ * Thrown, as the failure of the returned future, when a
+ * {@link CircuitBreaker} refuses an operation because the circuit is open or
+ * too many operations are already in flight. The operation was not sent to
+ * the server.
+ *
+ * @author agent
+ */
+public final class CircuitBreakerException extends MongoClientException {
+
+    private final String bindingName;
+    private final CircuitBreaker.State state;
+    private final boolean shed;
+
+    CircuitBreakerException(String bindingName, CircuitBreaker.State state, boolean shed, String message) {
+        super(message);
+        this.bindingName = bindingName;
+        this.state = state;
+        this.shed = shed;
+    }
+
+    public String bindingName() {
+        return bindingName;
+    }
+
+    /**
+     * The state of the breaker when the operation was refused.
+     *
+     * @return The state
+     */
+    public CircuitBreaker.State state() {
+        return state;
+    }
+
+    /**
+     * Whether the operation was refused because of the in-flight limit,
+     * rather than because the circuit was open.
+     *
+     * @return true if load was shed
+     */
+    public boolean isShed() {
+        return shed;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        // Refusals are expected in bulk when a server is degraded; the
+        // stack says nothing the binding name does not
+        return this;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonValue;
+
+/**
+ * The result of one update or replace issued through {@link CoalescingWrites}.
+ * The server reports matched and modified counts only for a bulk write as a
+ * whole; they are attributed to the individual write when the batch makes
+ * that unambiguous (none or all of its updates matched), and are otherwise
+ * -1. They are also -1 if the write concern was unacknowledged, in which
+ * case <code>batch().wasAcknowledged()</code> is false.
+ *
+ * @author agent
+ */
+public final class CoalescedWriteResult {
+
+    private final BulkWriteResult batch;
+    private final int batchSize;
+    private final BsonValue upsertedId;
+    private final int matched;
+    private final int modified;
+
+    CoalescedWriteResult(BulkWriteResult batch, int batchSize, BsonValue upsertedId, int matched, int modified) {
+        this.batch = batch;
+        this.batchSize = batchSize;
+        this.upsertedId = upsertedId;
+        this.matched = matched;
+        this.modified = modified;
+    }
+
+    /**
+     * Get the result of the bulk write this write was part of.
+     *
+     * @return The batch result
+     */
+    public BulkWriteResult batch() {
+        return batch;
+    }
+
+    /**
+     * Get the number of writes in the bulk write this write was part of.
+     *
+     * @return The batch size
+     */
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Determine if this write was an upsert which inserted a document.
+     *
+     * @return True if a document was inserted
+     */
+    public boolean isUpsert() {
+        return upsertedId != null;
+    }
+
+    /**
+     * Get the id of the document inserted by an upsert.
+     *
+     * @return The id, or null
+     */
+    public BsonValue upsertedId() {
+        return upsertedId;
+    }
+
+    /**
+     * Get the number of documents this write matched (0 or 1).
+     *
+     * @return The count, or -1 if it cannot be determined
+     */
+    public int matchedCount() {
+        return matched;
+    }
+
+    /**
+     * Get the number of documents this write modified (0 or 1).
+     *
+     * @return The count, or -1 if it cannot be determined
+     */
+    public int modifiedCount() {
+        return modified;
+    }
+
+    @Override
+    public String toString() {
+        return "CoalescedWriteResult{matched=" + matched + ", modified=" + modified
+                + ", upsertedId=" + upsertedId + ", batchSize=" + batchSize + "}";
+    }
+}
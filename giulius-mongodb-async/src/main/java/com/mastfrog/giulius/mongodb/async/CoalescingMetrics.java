@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for a {@link CoalescingWrites}.
+ *
+ * @author agent
+ */
+public final class CoalescingMetrics {
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    CoalescingMetrics() {
+    }
+
+    void onFlush(int size, long latency, boolean failed) {
+        batches.increment();
+        writes.add(size);
+        latencyNanos.add(latency);
+        maxBatchSize.accumulate(size);
+        maxLatencyNanos.accumulate(latency);
+        if (failed) {
+            failedBatches.increment();
+        }
+    }
+
+    /**
+     * The number of bulk writes issued.
+     *
+     * @return A count
+     */
+    public long batches() {
+        return batches.sum();
+    }
+
+    /**
+     * The number of individual writes sent in bulk writes.
+     *
+     * @return A count
+     */
+    public long writes() {
+        return writes.sum();
+    }
+
+    /**
+     * The number of bulk writes which failed, wholly or partially.
+     *
+     * @return A count
+     */
+    public long failedBatches() {
+        return failedBatches.sum();
+    }
+
+    /**
+     * The mean number of writes per bulk write.
+     *
+     * @return The mean batch size
+     */
+    public double meanBatchSize() {
+        long b = batches.sum();
+        return b == 0 ? 0 : (double) writes.sum() / b;
+    }
+
+    /**
+     * The largest bulk write issued.
+     *
+     * @return The maximum batch size
+     */
+    public long maxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    /**
+     * The mean time from the first write of a batch being queued to the
+     * server acknowledging the bulk write.
+     *
+     * @return Nanoseconds
+     */
+    public long meanFlushLatencyNanos() {
+        long b = batches.sum();
+        return b == 0 ? 0 : latencyNanos.sum() / b;
+    }
+
+    /**
+     * The longest time from the first write of a batch being queued to the
+     * server acknowledging the bulk write.
+     *
+     * @return Nanoseconds
+     */
+    public long maxFlushLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "batches=" + batches() + " writes=" + writes() + " failedBatches=" + failedBatches()
+                + " meanBatchSize=" + meanBatchSize() + " maxBatchSize=" + maxBatchSize()
+                + " meanFlushMicros=" + (meanFlushLatencyNanos() / 1000)
+                + " maxFlushMicros=" + (maxFlushLatencyNanos() / 1000);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.giulius.ShutdownHookRegistry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+/**
+ * Lazily creates the single daemon thread used to flush coalesced writes and
+ * to schedule collection discovery timeouts and retries, change stream
+ * restarts and transaction retries.
+ *
+ * @author agent
+ */
+@Singleton
+final class CoalescingTimer implements Provider<ScheduledExecutorService> {
+
+    private final Provider<ShutdownHookRegistry> reg;
+    private ScheduledExecutorService timer;
+
+    @Inject
+    CoalescingTimer(Provider<ShutdownHookRegistry> reg) {
+        this.reg = reg;
+    }
+
+    @Override
+    public synchronized ScheduledExecutorService get() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "mongo-write-coalescer");
+                t.setDaemon(true);
+                return t;
+            });
+            reg.get().add(timer);
+        }
+        return timer;
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.util.function.EnhCompletableFuture;
+import com.mastfrog.util.preconditions.Checks;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.async.client.MongoCollection;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import javax.inject.Provider;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+
+/**
+ * Gathers individual writes to a collection issued within a short window into
+ * a single bulkWrite, completing each caller's future with the outcome of its
+ * own write. Batches containing only inserts are sent unordered; batches
+ * containing updates or replacements are sent ordered. Only one bulkWrite is
+ * in flight at a time - a batch which fills or whose window expires while
+ * another is being written waits for it to complete - so writes issued by one
+ * thread are applied in the order they were issued.
+ * <p>
+ * Obtain one from {@link MongoFutureCollection#coalescedWrites()} for a
+ * collection configured with
+ * <code>GiuliusMongoAsyncModule.coalesceWrites()</code>, or create one
+ * directly with {@link #create}.
+ *
+ * @author agent
+ */
+public final class CoalescingWrites<T> {
+
+    private final Provider<? extends MongoCollection<T>> coll;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService timer;
+    private final CoalescingMetrics metrics = new CoalescingMetrics();
+    private final Runnable onWritten;
+    // guarded by this
+    private List<Pending> pending = new ArrayList<>();
+    private long firstQueuedAt;
+    private ScheduledFuture<?> flushTask;
+    private final ArrayDeque<Batch> ready = new ArrayDeque<>();
+    private boolean writing;
+
+    CoalescingWrites(Provider<? extends MongoCollection<T>> coll, Duration window, int maxBatchSize,
+            ScheduledExecutorService timer, Runnable onWritten) {
+        this.coll = coll;
+        this.onWritten = onWritten;
+        this.windowNanos = Math.max(1, Checks.notNull("window", window).toNanos());
+        this.maxBatchSize = Checks.nonNegative("maxBatchSize", Checks.nonZero("maxBatchSize", maxBatchSize));
+        this.timer = timer;
+    }
+
+    /**
+     * Create a write coalescer outside of Guice.
+     *
+     * @param <T> The document type
+     * @param collection The collection
+     * @param window The maximum time a write waits for others to join its
+     * batch
+     * @param maxBatchSize The number of writes which causes a batch to be sent
+     * immediately
+     * @param timer Used to send batches when the window expires
+     * @return A coalescer
+     */
+    public static <T> CoalescingWrites<T> create(MongoCollection<T> collection, Duration window,
+            int maxBatchSize, ScheduledExecutorService timer) {
+        Checks.notNull("collection", collection);
+        return new CoalescingWrites<>(() -> collection, window, maxBatchSize, Checks.notNull("timer", timer), null);
+    }
+
+    /**
+     * Get batch size and latency counters.
+     *
+     * @return The metrics
+     */
+    public CoalescingMetrics metrics() {
+        return metrics;
+    }
+
+    public EnhCompletableFuture<Void> insertOne(T doc) {
+        return enqueue(new InsertOneModel<>(Checks.notNull("doc", doc)), true).inserted;
+    }
+
+    public EnhCompletableFuture<CoalescedWriteResult> updateOne(Bson query, Bson update) {
+        return enqueue(new UpdateOneModel<>(query, update), false).updated;
+    }
+
+    public EnhCompletableFuture<CoalescedWriteResult> updateOne(Bson query, Bson update, UpdateOptions opts) {
+        return enqueue(new UpdateOneModel<>(query, update, opts), false).updated;
+    }
+
+    public EnhCompletableFuture<CoalescedWriteResult> replaceOne(Bson query, T doc) {
+        return enqueue(new ReplaceOneModel<>(query, doc), false).updated;
+    }
+
+    public EnhCompletableFuture<CoalescedWriteResult> replaceOne(Bson query, T doc, UpdateOptions opts) {
+        return enqueue(new ReplaceOneModel<>(query, doc, opts), false).updated;
+    }
+
+    /**
+     * Send any queued writes immediately, or as soon as the batch currently
+     * being written completes.
+     */
+    public void flush() {
+        Batch batch;
+        synchronized (this) {
+            batch = submit(take(), firstQueuedAt);
+        }
+        write(batch);
+    }
+
+    private Pending enqueue(WriteModel<T> model, boolean insert) {
+        Pending p = new Pending(model, insert);
+        Batch full = null;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                firstQueuedAt = System.nanoTime();
+                flushTask = timer.schedule(this::flush, windowNanos, NANOSECONDS);
+            }
+            pending.add(p);
+            if (pending.size() >= maxBatchSize) {
+                full = submit(take(), firstQueuedAt);
+            }
+        }
+        write(full);
+        return p;
+    }
+
+    private Batch submit(List<Pending> writes, long queuedAt) {
+        // Called under lock; returns the batch if the caller should send it
+        // now, or null if it is empty or must wait for the one in flight
+        if (writes.isEmpty()) {
+            return null;
+        }
+        Batch batch = new Batch(writes, queuedAt);
+        if (writing) {
+            ready.add(batch);
+            return null;
+        }
+        writing = true;
+        return batch;
+    }
+
+    private synchronized Batch next() {
+        Batch result = ready.poll();
+        if (result == null) {
+            writing = false;
+        }
+        return result;
+    }
+
+    private List<Pending> take() {
+        // Called under lock
+        List<Pending> result = pending;
+        if (!result.isEmpty()) {
+            pending = new ArrayList<>(Math.min(maxBatchSize, result.size() * 2));
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+        }
+        return result;
+    }
+
+    private void write(Batch next) {
+        // Loops only when a batch fails without calling back
+        while (next != null) {
+            CompletableFuture<MongoCollection<T>> collection = AsyncCollectionProvider.collection(coll);
+            if (!collection.isDone()) {
+                // Send once the collection has been created, rather than
+                // blocking the thread which filled the batch
+                Batch waiting = next;
+                collection.whenComplete((ignored, thrown) -> {
+                    if (!send(waiting, collection)) {
+                        write(next());
+                    }
+                });
+                return;
+            }
+            if (send(next, collection)) {
+                return;
+            }
+            next = next();
+        }
+    }
+
+    private boolean send(Batch toSend, CompletableFuture<MongoCollection<T>> collection) {
+        List<Pending> batch = toSend.writes;
+        long queuedAt = toSend.queuedAt;
+        boolean insertsOnly = true;
+        List<WriteModel<T>> models = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            models.add(p.model);
+            insertsOnly &= p.isInsert();
+        }
+        try {
+            collection.join().bulkWrite(models, new BulkWriteOptions().ordered(!insertsOnly), (result, thrown) -> {
+                metrics.onFlush(batch.size(), System.nanoTime() - queuedAt, thrown != null);
+                if (onWritten != null) {
+                    onWritten.run();
+                }
+                // This batch has been applied, so the next may be sent
+                write(next());
+                if (thrown instanceof MongoBulkWriteException) {
+                    onPartialFailure(batch, (MongoBulkWriteException) thrown);
+                } else if (thrown != null) {
+                    for (Pending p : batch) {
+                        p.fail(thrown);
+                    }
+                } else {
+                    onResult(batch, result, null, Integer.MAX_VALUE);
+                }
+            });
+            return true;
+        } catch (RuntimeException ex) {
+            metrics.onFlush(batch.size(), System.nanoTime() - queuedAt, true);
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            for (Pending p : batch) {
+                p.fail(cause);
+            }
+            return false;
+        }
+    }
+
+    private void onPartialFailure(List<Pending> batch, MongoBulkWriteException ex) {
+        BulkWriteError[] errors = new BulkWriteError[batch.size()];
+        int firstError = Integer.MAX_VALUE;
+        for (BulkWriteError err : ex.getWriteErrors()) {
+            errors[err.getIndex()] = err;
+            firstError = Math.min(firstError, err.getIndex());
+        }
+        // An ordered bulk write stops at its first error, so later writes
+        // were never attempted
+        boolean ordered = false;
+        for (Pending p : batch) {
+            ordered |= !p.isInsert();
+        }
+        int lastExecuted = ordered ? firstError : Integer.MAX_VALUE;
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] != null) {
+                batch.get(i).fail(new MongoWriteException(errors[i], ex.getServerAddress()));
+            } else if (i > lastExecuted || ex.getWriteConcernError() != null) {
+                batch.get(i).fail(ex);
+            }
+        }
+        onResult(batch, ex.getWriteResult(), errors, lastExecuted);
+    }
+
+    private void onResult(List<Pending> batch, BulkWriteResult result, BulkWriteError[] errors, int lastExecuted) {
+        int size = batch.size();
+        if (!result.wasAcknowledged()) {
+            // With an unacknowledged write concern the driver has no counts
+            // or upserts to report, and throws if asked for them
+            for (Pending p : batch) {
+                if (p.isInsert()) {
+                    p.inserted.complete(null);
+                } else {
+                    p.updated.complete(new CoalescedWriteResult(result, size, null, -1, -1));
+                }
+            }
+            return;
+        }
+        BsonValue[] upserted = new BsonValue[size];
+        for (BulkWriteUpsert up : result.getUpserts()) {
+            upserted[up.getIndex()] = up.getId();
+        }
+        // Matched and modified counts are only reported for the whole batch;
+        // each update matches at most one document, so they can be attributed
+        // when none or all of the updates which did not upsert matched
+        int updates = 0;
+        for (int i = 0; i < size && i <= lastExecuted; i++) {
+            if (!batch.get(i).isInsert() && upserted[i] == null && (errors == null || errors[i] == null)) {
+                updates++;
+            }
+        }
+        int matched = attribute(result.getMatchedCount(), updates);
+        int modified = attribute(result.getModifiedCount(), updates);
+        for (int i = 0; i < size; i++) {
+            Pending p = batch.get(i);
+            if (p.isInsert()) {
+                p.inserted.complete(null);
+            } else if (upserted[i] != null) {
+                p.updated.complete(new CoalescedWriteResult(result, size, upserted[i], 0, 0));
+            } else {
+                p.updated.complete(new CoalescedWriteResult(result, size, null, matched, modified));
+            }
+        }
+    }
+
+    private static int attribute(int total, int updates) {
+        if (total == 0) {
+            return 0;
+        } else if (total == updates) {
+            return 1;
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return "CoalescingWrites(" + metrics + ")";
+    }
+
+    private final class Batch {
+
+        final List<Pending> writes;
+        final long queuedAt;
+
+        Batch(List<Pending> writes, long queuedAt) {
+            this.writes = writes;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    private final class Pending {
+
+        final WriteModel<T> model;
+        // Exactly one of these is non-null
+        final EnhCompletableFuture<Void> inserted;
+        final EnhCompletableFuture<CoalescedWriteResult> updated;
+
+        Pending(WriteModel<T> model, boolean insert) {
+            this.model = model;
+            this.inserted = insert ? new EnhCompletableFuture<>() : null;
+            this.updated = insert ? null : new EnhCompletableFuture<>();
+        }
+
+        boolean isInsert() {
+            return inserted != null;
+        }
+
+        void fail(Throwable thrown) {
+            if (inserted != null) {
+                inserted.completeExceptionally(thrown);
+            } else {
+                updated.completeExceptionally(thrown);
+            }
+        }
+    }
+}
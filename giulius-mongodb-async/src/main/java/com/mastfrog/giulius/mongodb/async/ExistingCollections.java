@@ -23,150 +23,289 @@
  */
 package com.mastfrog.giulius.mongodb.async;
 
-import com.google.common.collect.Maps;
 import com.mastfrog.settings.Settings;
-import com.mastfrog.util.preconditions.Exceptions;
+import com.mastfrog.util.preconditions.Checks;
 import com.mongodb.MongoCommandException;
 import com.mongodb.async.client.MongoClient;
 import com.mongodb.async.client.MongoCollection;
 import com.mongodb.async.client.MongoDatabase;
 import com.mongodb.client.model.CreateCollectionOptions;
-import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
-import java.util.function.Supplier;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import org.bson.Document;
 
 /**
+ * Tracks which collections exist, creating bound collections with their
+ * options the first time they are requested. Creation is asynchronous, and
+ * all callers asking for a collection while it is being created share the
+ * same future; {@link #collection(String)} exposes it, so that callers -
+ * including MongoFutureCollection - can chain on creation rather than block
+ * a request thread until it completes.
  *
  * @author Tim Boudreau
  */
 public class ExistingCollections {
 
-    private final Map<String, Supplier<MongoCollection<Document>>> collections
-            = Maps.newConcurrentMap();
+    private final ConcurrentHashMap<String, Entry> collections = new ConcurrentHashMap<>();
     private final Provider<String> dbName;
     private final Provider<MongoAsyncInitializer.Registry> reg;
     private Provider<MongoDatabase> dbProvider;
+    /**
+     * The longest startup will wait to discover which collections exist,
+     * across all attempts. Default 60.
+     */
     public static final String SETTINGS_KEY_MAX_WAIT_SECONDS = "mongo.list.collections.max.wait.seconds";
+    /**
+     * How many times to retry listing collections after a failure. Default 4.
+     */
+    public static final String SETTINGS_KEY_LIST_RETRIES = "mongo.list.collections.retries";
+    /**
+     * Delay before the first retry of listing collections, doubled for each
+     * subsequent retry. Default 50.
+     */
+    public static final String SETTINGS_KEY_LIST_RETRY_BACKOFF_MILLIS = "mongo.list.collections.retry.backoff.millis";
+    private final CompletableFuture<Integer> discovery = new CompletableFuture<>();
     private final Provider<Settings> settings;
+    private final Provider<ScheduledExecutorService> timer;
 
     @Inject
-    ExistingCollections(@Named(GiuliusMongoAsyncModule.SETTINGS_KEY_DATABASE_NAME) Provider<String> dbName, Provider<MongoAsyncInitializer.Registry> reg, Provider<Settings> settings) {
+    ExistingCollections(@Named(GiuliusMongoAsyncModule.SETTINGS_KEY_DATABASE_NAME) Provider<String> dbName, Provider<MongoAsyncInitializer.Registry> reg,
+            Provider<Settings> settings, Provider<ScheduledExecutorService> timer) {
         this.dbName = dbName;
         this.reg = reg;
         this.settings = settings;
+        this.timer = timer;
     }
 
-    MongoCollection<Document> get(String name) {
-        Supplier<MongoCollection<Document>> result = collections.get(name);
-        if (result == null) {
-            synchronized (this) {
-                result = collections.get(name);
-                if (result == null) {
-                    addBound(name, new CreateCollectionOptions());
-                    result = collections.get(name);
-                }
-            }
+    /**
+     * Get a collection without blocking, creating it with its bound options
+     * if it does not exist yet. Concurrent callers share one creation; if it
+     * fails, the returned stage fails and the next call retries.
+     *
+     * @param name The collection name
+     * @return A stage which completes once the collection exists
+     */
+    public CompletionStage<MongoCollection<Document>> collection(String name) {
+        return getAsync(Checks.notNull("name", name)).thenApply(coll -> coll);
+    }
+
+    /**
+     * Get a collection without blocking, decoding documents as the passed
+     * type.
+     *
+     * @param <T> The document type
+     * @param name The collection name
+     * @param type The document type
+     * @return A stage which completes once the collection exists
+     */
+    public <T> CompletionStage<MongoCollection<T>> collection(String name, Class<T> type) {
+        Checks.notNull("type", type);
+        return getAsync(Checks.notNull("name", name)).thenApply(coll -> coll.withDocumentClass(type));
+    }
+
+    CompletableFuture<MongoCollection<Document>> getAsync(String name) {
+        Entry entry = collections.get(name);
+        if (entry == null) {
+            entry = collections.computeIfAbsent(name, nm -> new Entry(nm, new CreateCollectionOptions(), false));
         }
-        return result.get();
+        return entry.collection();
     }
 
+    /**
+     * A startup health signal: completes with the number of existing
+     * collections found once they have been listed, or exceptionally if
+     * listing them failed on every attempt or took longer than
+     * <code>mongo.list.collections.max.wait.seconds</code>. Startup does not
+     * wait for it; requests for collections made before it completes wait
+     * for it (without blocking), and if it failed, collections are created
+     * anyway, which is safe since creation tolerates collections which
+     * already exist. A listing which succeeds after discovery has timed out
+     * still records the collections it finds.
+     *
+     * @return A future
+     */
+    public CompletionStage<Integer> discovery() {
+        return discovery.thenApply(count -> count);
+    }
+
+    /**
+     * Start discovering which collections exist, without waiting for it.
+     * Failed listings are retried on the shared timer with exponential
+     * backoff; once discovery completes either way, creation of bound
+     * collections which do not exist yet begins.
+     */
     void init(MongoClient client, Provider<MongoClient> clientProvider) {
-        CountDownLatch latch = new CountDownLatch(1);
         dbProvider = new MongoDatabaseProvider(clientProvider, dbName.get());
-        MongoDatabase db = dbProvider.get();
-        Throwable[] th = new Throwable[1];
-        db.listCollectionNames().batchSize(1000).forEach((name) -> {
-            addExisting(name);
-        }, (v, thrown) -> {
-            if (thrown != null) {
-                th[0] = thrown;
+        Settings s = settings.get();
+        int maxWaitSeconds = s.getInt(SETTINGS_KEY_MAX_WAIT_SECONDS, 60);
+        long deadline = System.nanoTime() + SECONDS.toNanos(maxWaitSeconds);
+        int retries = s.getInt(SETTINGS_KEY_LIST_RETRIES, 4);
+        long backoff = s.getLong(SETTINGS_KEY_LIST_RETRY_BACKOFF_MILLIS, 50);
+        discovery.whenComplete((count, thrown) -> createMissing());
+        discover(0, retries, backoff, deadline);
+        if (!discovery.isDone()) {
+            // A listing which never calls back must not leave discovery
+            // pending forever
+            try {
+                ScheduledFuture<?> watchdog = timer.get().schedule(() -> {
+                    discovery.completeExceptionally(new TimeoutException("Could not list collections in "
+                            + maxWaitSeconds + " seconds"));
+                }, Math.max(0, deadline - System.nanoTime()), NANOSECONDS);
+                discovery.whenComplete((count, thrown) -> watchdog.cancel(false));
+            } catch (RejectedExecutionException ex) {
+                discovery.completeExceptionally(ex);
+            }
+        }
+    }
+
+    private void discover(int attempt, int retries, long backoff, long deadline) {
+        listCollections().whenComplete((count, thrown) -> {
+            if (thrown == null || discovery.isDone()) {
                 return;
             }
-            latch.countDown();
+            long delay = Math.min(backoff << Math.min(attempt, 20),
+                    MILLISECONDS.convert(deadline - System.nanoTime(), NANOSECONDS));
+            if (attempt >= retries || delay < 0) {
+                discovery.completeExceptionally(thrown);
+                return;
+            }
+            try {
+                timer.get().schedule(() -> discover(attempt + 1, retries, backoff, deadline), delay, MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                thrown.addSuppressed(ex);
+                discovery.completeExceptionally(thrown);
+            }
         });
+    }
+
+    private CompletableFuture<Integer> listCollections() {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        int[] count = new int[1];
         try {
-            latch.await(settings.get().getInt(SETTINGS_KEY_MAX_WAIT_SECONDS, 60), SECONDS);
-        } catch (InterruptedException ex) {
-            Exceptions.chuck(ex);
+            dbProvider.get().listCollectionNames().batchSize(1000).forEach((name) -> {
+                addExisting(name);
+                count[0]++;
+            }, (v, thrown) -> {
+                if (thrown != null) {
+                    result.completeExceptionally(thrown);
+                } else {
+                    discovery.complete(count[0]);
+                    result.complete(count[0]);
+                }
+            });
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    /**
+     * Start creating bound collections which do not exist yet, so that
+     * requests do not wait for them later.
+     */
+    void createMissing() {
+        for (Entry entry : collections.values()) {
+            if (!entry.exists) {
+                entry.collection();
+            }
         }
     }
 
     boolean addExisting(String s) {
-        boolean result = collections.get(s) == null || collections.get(s) instanceof CreatingCollectionSupplier;
-        collections.put(s, new CollectionSupplier(s));
-        return result;
+        boolean[] result = new boolean[1];
+        collections.compute(s, (name, old) -> {
+            if (old == null) {
+                result[0] = true;
+                return new Entry(name, null, true);
+            }
+            result[0] = !old.exists;
+            old.exists = true;
+            return old;
+        });
+        return result[0];
     }
 
     void addBound(String s, CreateCollectionOptions opts) {
-        collections.put(s, new CreatingCollectionSupplier(s, opts));
+        collections.compute(s, (name, old) -> new Entry(name, opts, old != null && old.exists));
     }
 
-    class CreatingCollectionSupplier implements Supplier<MongoCollection<Document>> {
+    final class Entry {
 
         private final String name;
         private final CreateCollectionOptions opts;
+        private final AtomicReference<CompletableFuture<MongoCollection<Document>>> future
+                = new AtomicReference<>();
+        volatile boolean exists;
 
-        public CreatingCollectionSupplier(String name, CreateCollectionOptions opts) {
+        Entry(String name, CreateCollectionOptions opts, boolean exists) {
             this.name = name;
             this.opts = opts;
+            this.exists = exists;
+        }
+
+        CompletableFuture<MongoCollection<Document>> collection() {
+            CompletableFuture<MongoCollection<Document>> result = future.get();
+            if (result != null) {
+                return result;
+            }
+            CompletableFuture<MongoCollection<Document>> created = new CompletableFuture<>();
+            if (!future.compareAndSet(null, created)) {
+                return future.get();
+            }
+            if (!discovery.isDone()) {
+                // Wait to learn whether it exists rather than sending a
+                // create which may be redundant
+                discovery.whenComplete((count, thrown) -> create(created));
+            } else {
+                create(created);
+            }
+            return created;
         }
 
-        @Override
-        public synchronized MongoCollection<Document> get() {
-            if (collections.get(name) instanceof CreatingCollectionSupplier) {
-                CountDownLatch latch = new CountDownLatch(1);
-                Throwable[] th = new Throwable[1];
+        private void create(CompletableFuture<MongoCollection<Document>> created) {
+            if (exists) {
+                try {
+                    created.complete(dbProvider.get().getCollection(name));
+                } catch (RuntimeException ex) {
+                    future.compareAndSet(created, null);
+                    created.completeExceptionally(ex);
+                }
+                return;
+            }
+            try {
                 dbProvider.get().createCollection(name, opts, (v, thrown) -> {
-                    boolean created = true;
+                    if (thrown != null && !isAlreadyExists(thrown)) {
+                        // Let the next caller try again
+                        future.compareAndSet(created, null);
+                        created.completeExceptionally(thrown);
+                        return;
+                    }
+                    MongoCollection<Document> coll = dbProvider.get().getCollection(name);
+                    exists = true;
                     try {
-                        if (thrown != null) {
-                            if (!isAlreadyExists(thrown)) {
-                                th[0] = thrown;
-                                return;
-                            } else {
-                                created = false;
-                            }
-                        }
-                        CollectionSupplier result = new CollectionSupplier(name);
-                        if (created) {
-                            reg.get().onCreateCollection(name, result.get());
+                        if (thrown == null) {
+                            reg.get().onCreateCollection(name, coll);
                         }
-                        collections.put(name, result);
                     } finally {
-                        latch.countDown();
+                        created.complete(coll);
                     }
                 });
-                try {
-                    latch.await();
-                } catch (InterruptedException ex) {
-                    return Exceptions.chuck(ex);
-                }
-                if (th[0] != null) {
-                    return Exceptions.chuck(th[0]);
-                }
+            } catch (RuntimeException ex) {
+                future.compareAndSet(created, null);
+                created.completeExceptionally(ex);
             }
-            CollectionSupplier result = new CollectionSupplier(name);
-            collections.put(name, result);
-            return result.get();
-        }
-    }
-
-    class CollectionSupplier implements Supplier<MongoCollection<Document>> {
-
-        private final String name;
-
-        CollectionSupplier(String name) {
-            this.name = name;
-        }
-
-        @Override
-        public MongoCollection<Document> get() {
-            return dbProvider.get().getCollection(name);
         }
     }
 
@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.util.function.EnhCompletableFuture;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+/**
+ * Read-through cache for findOne() results, shared by every
+ * MongoFutureCollection for one collection binding. Entries are keyed on the
+ * query, projection and result type; concurrent misses for the same key share
+ * a single query. Any write through a MongoFutureCollection sharing the cache
+ * discards its contents - we cannot tell which queries a write affects - and
+ * loads which were in flight when it completed are not cached. Writes made
+ * by other processes, and the effect of a transaction committing after its
+ * writes completed, are only seen once entries expire.
+ * <p>
+ * Null results (nothing matched) are not cached. Results are held as BSON
+ * and decoded afresh for each caller, so callers may modify what they get
+ * without affecting the cache or each other.
+ *
+ * @author agent
+ */
+final class FindOneCache {
+
+    private final TinyLfuCache<Key, BsonDocument> cache;
+    private final ConcurrentHashMap<Key, EnhCompletableFuture<BsonDocument>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    FindOneCache(int maximumSize, Duration ttl) {
+        cache = new TinyLfuCache<>(maximumSize, ttl.toNanos());
+    }
+
+    <R> EnhCompletableFuture<R> findOne(CodecRegistry registry, Bson query, Bson projection,
+            Class<R> type, Supplier<EnhCompletableFuture<R>> loader) {
+        Key key = new Key(registry, query, projection, type);
+        Codec<R> codec = registry.get(type);
+        EnhCompletableFuture<R> result = new EnhCompletableFuture<>();
+        BsonDocument cached = cache.get(key);
+        if (cached != null) {
+            try {
+                result.complete(decode(codec, cached));
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+            return result;
+        }
+        EnhCompletableFuture<BsonDocument> shared = loading.get(key);
+        if (shared == null) {
+            // Not computeIfAbsent(): the load may complete synchronously and
+            // remove itself, which must not happen inside a map update
+            EnhCompletableFuture<BsonDocument> created = new EnhCompletableFuture<>();
+            shared = loading.putIfAbsent(key, created);
+            if (shared == null) {
+                shared = created;
+                load(key, codec, created, loader);
+            }
+        }
+        // Each caller gets its own future, so one caller cancelling does not
+        // cancel the query for the others
+        shared.whenComplete((doc, thrown) -> {
+            if (thrown != null) {
+                result.completeExceptionally(thrown);
+            } else {
+                try {
+                    result.complete(doc == null ? null : decode(codec, doc));
+                } catch (RuntimeException ex) {
+                    result.completeExceptionally(ex);
+                }
+            }
+        });
+        return result;
+    }
+
+    private <R> void load(Key key, Codec<R> codec, EnhCompletableFuture<BsonDocument> shared,
+            Supplier<EnhCompletableFuture<R>> loader) {
+        long gen = generation.get();
+        EnhCompletableFuture<R> query;
+        try {
+            query = loader.get();
+        } catch (RuntimeException ex) {
+            loading.remove(key, shared);
+            shared.completeExceptionally(ex);
+            return;
+        }
+        query.whenComplete((obj, thrown) -> {
+            loading.remove(key, shared);
+            if (thrown != null) {
+                shared.completeExceptionally(thrown);
+                return;
+            }
+            BsonDocument doc;
+            try {
+                doc = obj == null ? null : encode(codec, obj);
+            } catch (RuntimeException ex) {
+                shared.completeExceptionally(ex);
+                return;
+            }
+            if (doc != null) {
+                // Tested under the cache's lock: invalidateAll() bumps the
+                // generation before clearing, so a write either stops the put
+                // or clears what it stored
+                cache.putIf(key, doc, () -> generation.get() == gen);
+            }
+            shared.complete(doc);
+        });
+    }
+
+    static <R> BsonDocument encode(Codec<R> codec, R obj) {
+        BsonDocument result = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(result), obj, EncoderContext.builder().build());
+        return result;
+    }
+
+    static <R> R decode(Codec<R> codec, BsonDocument doc) {
+        return codec.decode(new BsonDocumentReader(doc), DecoderContext.builder().build());
+    }
+
+    /**
+     * Discard cached results, and detach loads in flight so that queries
+     * issued after a write do not join a load which started before it.
+     */
+    void invalidateAll() {
+        // Must precede clear() - see load()
+        generation.incrementAndGet();
+        loading.clear();
+        cache.clear();
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    private static final class Key {
+
+        private final BsonDocument query;
+        private final BsonDocument projection;
+        private final Class<?> type;
+        private final int hashCode;
+
+        Key(CodecRegistry registry, Bson query, Bson projection, Class<?> type) {
+            // Bson implementations such as Filters.eq() do not implement
+            // equals(), so compare their rendered form
+            this.query = query.toBsonDocument(BsonDocument.class, registry);
+            this.projection = projection == null ? null : projection.toBsonDocument(BsonDocument.class, registry);
+            this.type = type;
+            this.hashCode = Objects.hash(this.query, this.projection, type);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            } else if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return k.hashCode == hashCode && k.type == type && k.query.equals(query)
+                    && Objects.equals(k.projection, projection);
+        }
+
+        @Override
+        public String toString() {
+            return type.getSimpleName() + ":" + query + (projection == null ? "" : " " + projection);
+        }
+    }
+}
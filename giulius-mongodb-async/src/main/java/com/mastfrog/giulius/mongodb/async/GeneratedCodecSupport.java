@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+
+/**
+ * Helpers called by codecs generated for classes annotated with
+ * {@link BsonCodec}; numeric fields are read leniently, since documents
+ * written by other code may store a number as a different BSON type, but a
+ * value which does not fit the field exactly - an out of range INT64 read
+ * into an int, a fractional DOUBLE read into a long - fails with a
+ * BsonInvalidOperationException rather than being silently truncated.
+ *
+ * @author agent
+ */
+public final class GeneratedCodecSupport {
+
+    // 2^63, the smallest double too large for a long
+    private static final double LONG_LIMIT = 0x1p63;
+
+    private GeneratedCodecSupport() {
+        throw new AssertionError();
+    }
+
+    public static int readInt32(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT64:
+                long l = reader.readInt64();
+                if (l < Integer.MIN_VALUE || l > Integer.MAX_VALUE) {
+                    throw lossy(l, "int");
+                }
+                return (int) l;
+            case DOUBLE:
+                double d = reader.readDouble();
+                if ((int) d != d) {
+                    throw lossy(d, "int");
+                }
+                return (int) d;
+            default:
+                return reader.readInt32();
+        }
+    }
+
+    public static short readInt16(BsonReader reader) {
+        int result = readInt32(reader);
+        if (result < Short.MIN_VALUE || result > Short.MAX_VALUE) {
+            throw lossy(result, "short");
+        }
+        return (short) result;
+    }
+
+    public static byte readInt8(BsonReader reader) {
+        int result = readInt32(reader);
+        if (result < Byte.MIN_VALUE || result > Byte.MAX_VALUE) {
+            throw lossy(result, "byte");
+        }
+        return (byte) result;
+    }
+
+    public static long readInt64(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case DOUBLE:
+                double d = reader.readDouble();
+                if (d < -LONG_LIMIT || d >= LONG_LIMIT || (long) d != d) {
+                    throw lossy(d, "long");
+                }
+                return (long) d;
+            case DATE_TIME:
+                return reader.readDateTime();
+            default:
+                return reader.readInt64();
+        }
+    }
+
+    public static double readDouble(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                long l = reader.readInt64();
+                double result = l;
+                // Longs beyond 2^53 may not have an exact double
+                if (result >= LONG_LIMIT || (long) result != l) {
+                    throw lossy(l, "double");
+                }
+                return result;
+            default:
+                return reader.readDouble();
+        }
+    }
+
+    public static float readFloat(BsonReader reader) {
+        double d = readDouble(reader);
+        float result = (float) d;
+        if (result != d && !Double.isNaN(d)) {
+            throw lossy(d, "float");
+        }
+        return result;
+    }
+
+    public static char readChar(BsonReader reader) {
+        String s = reader.readString();
+        if (s.length() != 1) {
+            throw new BsonInvalidOperationException("Cannot read '" + s + "' as a char");
+        }
+        return s.charAt(0);
+    }
+
+    private static BsonInvalidOperationException lossy(Object value, String type) {
+        return new BsonInvalidOperationException("Cannot read " + value + " as a " + type
+                + " without losing precision");
+    }
+}
@@ -31,6 +31,7 @@ import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
 import com.mastfrog.asyncpromises.mongo.CollectionPromises;
 import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.giulius.ShutdownHookRegistry;
 import com.mastfrog.settings.Settings;
 import com.mastfrog.util.preconditions.Checks;
 import com.mastfrog.util.preconditions.ConfigurationError;
@@ -42,10 +43,17 @@ import com.mongodb.async.client.MongoDatabase;
 import com.mongodb.client.model.CreateCollectionOptions;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -89,6 +97,12 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
     private final Set<Codec<?>> codecs = new HashSet<>();
     private final Set<Class<? extends Codec<?>>> codecTypes = new HashSet<>();
     private final Set<Class<? extends CodecProvider>> codecProviderTypes = new HashSet<>();
+    private final Map<String, WriteCoalescing> coalescing = new HashMap<>();
+    private final Map<String, FindOneCaching> findOneCaching = new HashMap<>();
+    private final Set<String> sharedReads = new HashSet<>();
+    private final Map<String, SlowOperations.Threshold> slowOperations = new HashMap<>();
+    private final Map<String, ChangeStreaming> changeStreams = new HashMap<>();
+    private final Set<String> circuitBreakers = new HashSet<>();
 
     @SuppressWarnings("LeakingThisInConstructor")
     public GiuliusMongoAsyncModule() {
@@ -181,12 +195,21 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
         }
     }
 
+    /**
+     * Resolves codecs through the configured codecs and providers, the
+     * driver defaults and then DynamicCodecs, caching the result - including
+     * failure - per class, so each type walks that chain only once. The cache
+     * is a plain map owned by the registry rather than a ClassValue, which
+     * would keep the registry, and through it the injector, reachable from
+     * every class it has seen for as long as the class is loaded.
+     */
     @Singleton
     private class CodecRegistryImpl implements CodecRegistry {
 
         private final Provider<Dependencies> deps;
-        private CodecRegistry registry;
+        private volatile CodecRegistry registry;
         private final Provider<DynamicCodecs> fallback;
+        private final Map<Class<?>, Object> codecForClass = new ConcurrentHashMap<>();
 
         CodecRegistryImpl(Provider<Dependencies> deps, Provider<DynamicCodecs> fallback) {
             this.deps = deps;
@@ -194,23 +217,40 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
         }
 
         private CodecRegistry get() {
-            if (registry != null) {
-                return registry;
+            CodecRegistry result = registry;
+            if (result == null) {
+                // build() instantiates codecs and providers through the
+                // injector, so it must run exactly once
+                synchronized (this) {
+                    result = registry;
+                    if (result == null) {
+                        registry = result = build();
+                    }
+                }
             }
+            return result;
+        }
+
+        private CodecRegistry build() {
             Dependencies deps = this.deps.get();
-            List<CodecProvider> providers = new LinkedList<>(GiuliusMongoAsyncModule.this.codecProviders);
-            List<Codec<?>> codecs = new LinkedList<>(GiuliusMongoAsyncModule.this.codecs);
+            List<CodecProvider> providers = new ArrayList<>(GiuliusMongoAsyncModule.this.codecProviders);
+            List<Codec<?>> codecs = new ArrayList<>(GiuliusMongoAsyncModule.this.codecs);
             for (Class<? extends CodecProvider> c : codecProviderTypes) {
                 providers.add(deps.getInstance(c));
             }
             for (Class<? extends Codec<?>> c : codecTypes) {
                 codecs.add(deps.getInstance(c));
             }
-            int total = providers.size() + codecs.size();
+            // Codecs generated for classes annotated with @BsonCodec
+            List<CodecProvider> generated = new ArrayList<>();
+            for (GeneratedCodecProvider gen : ServiceLoader.load(GeneratedCodecProvider.class)) {
+                generated.add(gen);
+            }
+            int total = providers.size() + codecs.size() + generated.size();
             if (total == 0) {
                 return DEFAULT_CODEC_REGISTRY;
             }
-            List<CodecRegistry> all = new LinkedList<>();
+            List<CodecRegistry> all = new ArrayList<>(5);
             if (!codecs.isEmpty()) {
                 CodecRegistry forProviders = CodecRegistries.fromCodecs(codecs);
                 all.add(forProviders);
@@ -219,9 +259,12 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
                 CodecRegistry forCodecs = CodecRegistries.fromProviders(providers);
                 all.add(forCodecs);
             }
+            if (!generated.isEmpty()) {
+                all.add(CodecRegistries.fromProviders(generated));
+            }
             all.add(DEFAULT_CODEC_REGISTRY);
             all.add(CodecRegistries.fromProviders(new Java8DateTimeCodecProvider()));
-            return registry = CodecRegistries.fromRegistries(all);
+            return CodecRegistries.fromRegistries(all);
         }
 
         public String toString() {
@@ -235,14 +278,48 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
             return sb.toString();
         }
 
-        @Override
-        public <T> Codec<T> get(Class<T> type) {
+        private <T> Codec<T> resolve(Class<T> type) {
             try {
                 return get().get(type);
             } catch (CodecConfigurationException ex) {
                 return fallback.get().createCodec(type, ex);
             }
         }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Codec<T> get(Class<T> type) {
+            Object result = codecForClass.get(type);
+            if (result == null) {
+                // A lock rather than computeIfAbsent, since creating a codec
+                // may look up the codecs for the types it contains - a
+                // recursive update of the map, but fine with a reentrant lock
+                synchronized (this) {
+                    result = codecForClass.get(type);
+                    if (result == null) {
+                        try {
+                            result = resolve(type);
+                        } catch (CodecConfigurationException ex) {
+                            result = new NoCodec(ex);
+                        }
+                        codecForClass.put(type, result);
+                    }
+                }
+            }
+            if (result instanceof NoCodec) {
+                throw ((NoCodec) result).ex;
+            }
+            return (Codec<T>) result;
+        }
+    }
+
+    private static final class NoCodec {
+
+        private final CodecConfigurationException ex;
+
+        NoCodec(CodecConfigurationException ex) {
+            this.ex = ex;
+        }
     }
 
     // XXX when 3.1.0 is stable, replace with MongoClients.getDefaultCodecRegistry()
@@ -349,12 +426,192 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
         return this;
     }
 
+    /**
+     * Gather individual inserts, updates and replacements issued through
+     * <code>MongoFutureCollection.coalescedWrites()</code> for the collection
+     * bound with the passed binding name into bulk writes. A batch is sent
+     * when it reaches the maximum size, or when the window has elapsed since
+     * its first write was queued, whichever comes first.
+     *
+     * @param bindingName The binding name of a collection bound by this module
+     * @param window The maximum time a write waits for others to join its
+     * batch
+     * @param maxBatchSize The batch size which causes a batch to be sent
+     * immediately
+     * @return this
+     */
+    public GiuliusMongoAsyncModule coalesceWrites(String bindingName, Duration window, int maxBatchSize) {
+        checkDone();
+        Checks.notNull("bindingName", bindingName);
+        Checks.notNull("window", window);
+        Checks.nonNegative("maxBatchSize", Checks.nonZero("maxBatchSize", maxBatchSize));
+        coalescing.put(bindingName, new WriteCoalescing(window, maxBatchSize));
+        return this;
+    }
+
+    /**
+     * Choose how ZonedDateTimes are stored. By default they are stored as
+     * BSON datetimes, which loses the zone; the alternatives preserve it.
+     * Values stored in any form can be read regardless of this setting.
+     *
+     * @param storage How to store ZonedDateTimes
+     * @return this
+     */
+    public GiuliusMongoAsyncModule storeZonedDateTimesAs(Java8DateTimeCodecProvider.ZonedDateTimeStorage storage) {
+        checkDone();
+        checkSettings();
+        Checks.notNull("storage", storage);
+        codecs.removeIf(codec -> codec.getEncoderClass() == ZonedDateTime.class);
+        codecs.add(Java8DateTimeCodecProvider.zonedDateTimeCodec(storage));
+        return this;
+    }
+
+    /**
+     * Cache the results of <code>MongoFutureCollection.findOne()</code> for
+     * the collection bound with the passed binding name. Entries are keyed on
+     * query, projection and result type, and evicted by a frequency-aware
+     * policy once the maximum size is reached, or once they are older than
+     * the time to live. Any write through a MongoFutureCollection (or write
+     * coalescer) for the same binding clears the cache; writes by other
+     * processes are only seen when entries expire, so only use this for
+     * collections this process owns or which tolerate that staleness.
+     * Results are stored as BSON and decoded for each caller, so callers may
+     * modify the objects they receive.
+     *
+     * @param bindingName The binding name of a collection bound by this module
+     * @param maximumSize The maximum number of cached results
+     * @param ttl How long a result may be served from the cache
+     * @return this
+     */
+    public GiuliusMongoAsyncModule cacheFindOne(String bindingName, int maximumSize, Duration ttl) {
+        checkDone();
+        Checks.notNull("bindingName", bindingName);
+        Checks.notNull("ttl", ttl);
+        Checks.nonNegative("maximumSize", Checks.nonZero("maximumSize", maximumSize));
+        findOneCaching.put(bindingName, new FindOneCaching(maximumSize, ttl));
+        return this;
+    }
+
+    /**
+     * Let identical find(), findOne(), count() and aggregate() calls on
+     * <code>MongoFutureCollection</code>s for the collection bound with the
+     * passed binding name, which are in flight at the same time, share a
+     * single operation. Calls match when their operation, query, projection
+     * or pipeline, result type, read preference and read concern are the
+     * same. Nothing is cached; this only collapses bursts of identical reads.
+     * Calls using a ClientSession or explicit options are never shared.
+     * <p>
+     * Each findOne() caller gets its own copy of the result, decoded from
+     * BSON. Each find() or aggregate() caller gets its own list, but the
+     * elements of the lists are the same instances, and should not be
+     * modified.
+     *
+     * @param bindingName The binding name of a collection bound by this module
+     * @return this
+     */
+    public GiuliusMongoAsyncModule shareConcurrentReads(String bindingName) {
+        checkDone();
+        sharedReads.add(Checks.notNull("bindingName", bindingName));
+        return this;
+    }
+
+    /**
+     * Log commands against the collection bound with the passed binding
+     * name which take longer than the threshold, with the shape of their
+     * filter (values redacted), duration and number of documents returned.
+     *
+     * @param bindingName The binding name of a collection bound by this module
+     * @param threshold How long a command may take before it is logged
+     * @return this
+     */
+    public GiuliusMongoAsyncModule detectSlowOperations(String bindingName, Duration threshold) {
+        return detectSlowOperations(bindingName, threshold, 0);
+    }
+
+    /**
+     * Log commands against the collection bound with the passed binding
+     * name which take longer than the threshold, with the shape of their
+     * filter (values redacted), duration and number of documents returned;
+     * and for the passed fraction of them, run <code>explain</code> in the
+     * background, once per distinct filter shape, and log those which scan
+     * the whole collection. See {@link SlowOperations}.
+     *
+     * @param bindingName The binding name of a collection bound by this module
+     * @param threshold How long a command may take before it is logged
+     * @param explainSampleRate The fraction of slow commands to explain,
+     * from 0 to 1
+     * @return this
+     */
+    public GiuliusMongoAsyncModule detectSlowOperations(String bindingName, Duration threshold, double explainSampleRate) {
+        checkDone();
+        Checks.notNull("bindingName", bindingName);
+        Checks.notNull("threshold", threshold);
+        if (explainSampleRate < 0 || explainSampleRate > 1) {
+            throw new IllegalArgumentException("Explain sample rate must be between 0 and 1: " + explainSampleRate);
+        }
+        slowOperations.put(bindingName, new SlowOperations.Threshold(threshold.toNanos(), explainSampleRate));
+        return this;
+    }
+
+    /**
+     * Bind a {@link ChangeStream} for the collection bound with the passed
+     * binding name, under the same name, delivering changes to subscribers
+     * on the MongoDB driver's threads.
+     *
+     * @param bindingName The binding name of a collection bound by this module
+     * @param maxBatchSize The maximum number of changes per batch
+     * @return this
+     */
+    public GiuliusMongoAsyncModule watchChanges(String bindingName, int maxBatchSize) {
+        return watchChanges(bindingName, maxBatchSize, null);
+    }
+
+    /**
+     * Bind a {@link ChangeStream} for the collection bound with the passed
+     * binding name, under the same name, delivering changes to subscribers
+     * on the Executor bound as <code>&#064;Named(executorBindingName)</code>
+     * - for example one bound by giulius-threadpool's ThreadModule. Subscriber
+     * positions are saved with the bound {@link ResumeTokenStore}.
+     *
+     * @param bindingName The binding name of a collection bound by this module
+     * @param maxBatchSize The maximum number of changes per batch
+     * @param executorBindingName The name of an Executor binding, or null to
+     * deliver changes on the driver's threads
+     * @return this
+     */
+    public GiuliusMongoAsyncModule watchChanges(String bindingName, int maxBatchSize, String executorBindingName) {
+        checkDone();
+        Checks.notNull("bindingName", bindingName);
+        Checks.nonNegative("maxBatchSize", Checks.nonZero("maxBatchSize", maxBatchSize));
+        changeStreams.put(bindingName, new ChangeStreaming(maxBatchSize, executorBindingName));
+        return this;
+    }
+
+    /**
+     * Guard operations on <code>MongoFutureCollection</code>s for the
+     * collection bound with the passed binding name with a
+     * {@link CircuitBreaker}, which fails them fast while MongoDB is
+     * degraded and sheds load above an in-flight limit. The breaker is also
+     * bound under the binding name, and its thresholds are read from
+     * settings.
+     *
+     * @param bindingName The binding name of a collection bound by this module
+     * @return this
+     */
+    public GiuliusMongoAsyncModule breakCircuits(String bindingName) {
+        checkDone();
+        circuitBreakers.add(Checks.notNull("bindingName", bindingName));
+        return this;
+    }
+
     @Override
     protected void configure() {
         Provider<String> dbNameProvider = binder().getProvider(Key.get(String.class, Names.named(SETTINGS_KEY_DATABASE_NAME)));
         Provider<MongoAsyncInitializer.Registry> registryProvider = binder().getProvider(MongoAsyncInitializer.Registry.class);
         Provider<Settings> settingsProvider = binder().getProvider(Settings.class);
-        ExistingCollections existing = new ExistingCollections(dbNameProvider, registryProvider, settingsProvider);
+        Provider<CoalescingTimer> timerProvider = binder().getProvider(CoalescingTimer.class);
+        ExistingCollections existing = new ExistingCollections(dbNameProvider, registryProvider, settingsProvider,
+                () -> timerProvider.get().get());
         bind(ExistingCollections.class).toInstance(existing);
         for (Class<? extends MongoAsyncInitializer> itype : this.initializers) {
             bind(itype).asEagerSingleton();
@@ -373,9 +630,102 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
         // during shutdown
         bind(MongoClient.class).toProvider(IndirectMongoClientProvider.class);
         bind(MongoDatabase.class).toProvider(MongoDatabaseProvider.class).in(Scopes.SINGLETON);
+        Set<String> unbound = new HashSet<>(coalescing.keySet());
+        unbound.addAll(findOneCaching.keySet());
+        unbound.addAll(sharedReads);
+        unbound.addAll(slowOperations.keySet());
+        unbound.addAll(changeStreams.keySet());
+        unbound.addAll(circuitBreakers);
+        Map<String, SlowOperations.Threshold> slowThresholds = new HashMap<>();
         for (CollectionBinding<?> binding : bindings) {
             existing.addBound(binding.collection, binding.opts);
-            binding.bind(binder());
+            unbound.remove(binding.bindingName);
+            SlowOperations.Threshold threshold = slowOperations.get(binding.bindingName);
+            if (threshold != null) {
+                slowThresholds.put(binding.collection, threshold);
+            }
+            FindOneCaching caching = findOneCaching.get(binding.bindingName);
+            CircuitBreaker breaker = null;
+            if (circuitBreakers.contains(binding.bindingName)) {
+                breaker = new CircuitBreaker(binding.bindingName, settingsProvider);
+                bind(CircuitBreaker.class).annotatedWith(Names.named(binding.bindingName)).toInstance(breaker);
+            }
+            binding.bind(binder(), coalescing.get(binding.bindingName),
+                    caching == null ? null : caching.create(),
+                    sharedReads.contains(binding.bindingName) ? new SharedReads() : null,
+                    changeStreams.get(binding.bindingName), breaker);
+        }
+        if (!unbound.isEmpty()) {
+            throw new ConfigurationError("Write coalescing, caching, read sharing, slow operation "
+                    + "detection, change streams or circuit breakers configured for unbound collections " + unbound);
+        }
+        bind(SlowOperations.class).toInstance(new SlowOperations(slowThresholds, binder().getProvider(MongoClient.class)));
+    }
+
+    private static final class WriteCoalescing {
+
+        private final Duration window;
+        private final int maxBatchSize;
+
+        WriteCoalescing(Duration window, int maxBatchSize) {
+            this.window = window;
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        <T> Provider<CoalescingWrites<T>> provider(Provider<? extends MongoCollection<T>> coll,
+                Provider<CoalescingTimer> timer, FindOneCache cache, SharedReads reads) {
+            Runnable onWritten = cache == null && reads == null ? null : () -> {
+                if (cache != null) {
+                    cache.invalidateAll();
+                }
+                if (reads != null) {
+                    reads.forgetInFlight();
+                }
+            };
+            return new Provider<CoalescingWrites<T>>() {
+                private CoalescingWrites<T> writes;
+
+                @Override
+                public synchronized CoalescingWrites<T> get() {
+                    if (writes == null) {
+                        writes = new CoalescingWrites<>(coll, window, maxBatchSize, timer.get().get(), onWritten);
+                    }
+                    return writes;
+                }
+            };
+        }
+    }
+
+    private static final class FindOneCaching {
+
+        private final int maximumSize;
+        private final Duration ttl;
+
+        FindOneCaching(int maximumSize, Duration ttl) {
+            this.maximumSize = maximumSize;
+            this.ttl = ttl;
+        }
+
+        FindOneCache create() {
+            return new FindOneCache(maximumSize, ttl);
+        }
+    }
+
+    private static final class ChangeStreaming {
+
+        private final int batchSize;
+        private final String executorBindingName;
+
+        ChangeStreaming(int batchSize, String executorBindingName) {
+            this.batchSize = batchSize;
+            this.executorBindingName = executorBindingName;
+        }
+
+        <T> ChangeStream<T> create(Binder binder, String bindingName, Provider<? extends MongoCollection<T>> coll) {
+            return new ChangeStream<>(bindingName, coll, batchSize,
+                    executorBindingName == null ? null : binder.getProvider(Key.get(Executor.class, Names.named(executorBindingName))),
+                    binder.getProvider(ResumeTokenStore.class), binder.getProvider(CoalescingTimer.class),
+                    binder.getProvider(ShutdownHookRegistry.class));
         }
     }
 
@@ -434,15 +784,22 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
         }
 
         @SuppressWarnings("unchecked")
-        void bind(Binder binder) {
+        void bind(Binder binder, WriteCoalescing coalescing, FindOneCache cache, SharedReads reads,
+                ChangeStreaming changes, CircuitBreaker breaker) {
             Provider<MongoClient> clientProvider = binder.getProvider(MongoClient.class);
             Provider<ExistingCollections> existingProvider = binder.getProvider(ExistingCollections.class);
+            Provider<CoalescingTimer> timer = coalescing == null ? null : binder.getProvider(CoalescingTimer.class);
             MongoTypedCollectionProvider<Document> docProvider = new MongoTypedCollectionProvider<>(collection, Document.class, existingProvider, clientProvider);
-            Provider<MongoFutureCollection<Document>> futProvider = new FutureCollectionProvider(docProvider);
+            Provider<MongoFutureCollection<Document>> futProvider = new FutureCollectionProvider<>(docProvider,
+                    coalescing == null ? null : coalescing.provider(docProvider, timer, cache, reads), cache, reads, breaker);
             CollectionPromisesProvider<Document> cpProvider = new CollectionPromisesProvider<>(docProvider);
             binder.bind(COLLECTION_PROMISES).annotatedWith(Names.named(bindingName)).toProvider(cpProvider);
             binder.bind(MONGO_DOCUMENT_COLLECTION).annotatedWith(Names.named(bindingName)).toProvider(docProvider);
             binder.bind(FUTURE_COLLECTION).annotatedWith(Names.named(bindingName)).toProvider(futProvider);
+            if (changes != null) {
+                binder.bind(CHANGE_STREAM).annotatedWith(Names.named(bindingName))
+                        .toInstance(changes.create(binder, bindingName, docProvider));
+            }
             if (type != Document.class) {
                 MongoTypedCollectionProvider<T> typedProvider = docProvider.withType(type);
                 Type t = new FakeType<>(type);
@@ -454,38 +811,31 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
                 binder.bind(promiseKey).toProvider(promises);
                 Type ft = new FakeType3(type);
                 Key<MongoFutureCollection<T>> futureKey = (Key<MongoFutureCollection<T>>) Key.get(ft, Names.named(bindingName));
-                binder.bind(futureKey).toProvider(new TypedFutureCollectionProvider<>(futProvider, type));
+                binder.bind(futureKey).toProvider(new FutureCollectionProvider<>(typedProvider,
+                        coalescing == null ? null : coalescing.provider(typedProvider, timer, cache, reads), cache, reads, breaker));
+                if (changes != null) {
+                    Type st = new FakeType4<>(type);
+                    Key<ChangeStream<T>> streamKey = (Key<ChangeStream<T>>) Key.get(st, Names.named(bindingName));
+                    binder.bind(streamKey).toInstance(changes.create(binder, bindingName, typedProvider));
+                }
             }
         }
     }
 
-    static final class TypedFutureCollectionProvider<T> implements Provider<MongoFutureCollection<T>> {
+    static final class FutureCollectionProvider<T> implements Provider<MongoFutureCollection<T>> {
 
-        private final Provider<MongoFutureCollection<Document>> delegate;
-        private final Class<T> type;
+        // MongoFutureCollection is immutable and looks up its collection
+        // lazily, so one instance can serve every injection
+        private final MongoFutureCollection<T> collection;
 
-        public TypedFutureCollectionProvider(Provider<MongoFutureCollection<Document>> delegate, Class<T> type) {
-            this.delegate = delegate;
-            this.type = type;
+        FutureCollectionProvider(Provider<MongoCollection<T>> provider,
+                Provider<CoalescingWrites<T>> coalescer, FindOneCache cache, SharedReads reads, CircuitBreaker breaker) {
+            this.collection = new MongoFutureCollection<>(provider, coalescer, cache, reads, breaker);
         }
 
         @Override
         public MongoFutureCollection<T> get() {
-            return delegate.get().withDocumentClass(type);
-        }
-    }
-
-    static final class FutureCollectionProvider implements Provider<MongoFutureCollection<Document>> {
-
-        private final Provider<MongoCollection<Document>> provider;
-
-        public FutureCollectionProvider(Provider<MongoCollection<Document>> provider) {
-            this.provider = provider;
-        }
-
-        @Override
-        public MongoFutureCollection<Document> get() {
-            return new MongoFutureCollection<>(provider);
+            return collection;
         }
     }
 
@@ -495,6 +845,7 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
     public static final TypeLiteral<MongoCollection<Document>> MONGO_DOCUMENT_COLLECTION = new TL();
     public static final TypeLiteral<CollectionPromises<Document>> COLLECTION_PROMISES = new CPL();
     public static final TypeLiteral<MongoFutureCollection<Document>> FUTURE_COLLECTION = new MFCD();
+    public static final TypeLiteral<ChangeStream<Document>> CHANGE_STREAM = new CSD();
 
     static class TL extends TypeLiteral<MongoCollection<Document>> {
 
@@ -508,6 +859,10 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
 
     }
 
+    static class CSD extends TypeLiteral<ChangeStream<Document>> {
+
+    }
+
     static class FakeType<T> implements ParameterizedType {
 
         private final Class<T> genericType;
@@ -583,9 +938,35 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
         }
     }
 
+    static class FakeType4<T> implements ParameterizedType {
+
+        private final Class<T> genericType;
+
+        public FakeType4(Class<T> genericType) {
+            this.genericType = genericType;
+        }
+
+        public String getTypeName() {
+            return ChangeStream.class.getName();
+        }
+
+        public Type[] getActualTypeArguments() {
+            return new Type[]{genericType};
+        }
+
+        public Type getRawType() {
+            return ChangeStream.class;
+        }
+
+        public Type getOwnerType() {
+            return null;
+        }
+    }
+
     static class CollectionPromisesProvider<T> implements Provider<CollectionPromises<T>> {
 
         private final MongoTypedCollectionProvider<T> prov;
+        private volatile CollectionPromises<T> promises;
 
         public CollectionPromisesProvider(MongoTypedCollectionProvider<T> prov) {
             this.prov = prov;
@@ -593,7 +974,11 @@ public class GiuliusMongoAsyncModule extends AbstractModule implements MongoAsyn
 
         @Override
         public CollectionPromises<T> get() {
-            return new CollectionPromises<>(prov.get());
+            CollectionPromises<T> result = promises;
+            if (result == null) {
+                promises = result = new CollectionPromises<>(prov.get());
+            }
+            return result;
         }
     }
 }
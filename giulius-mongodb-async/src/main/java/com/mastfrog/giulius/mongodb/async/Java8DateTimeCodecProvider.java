@@ -23,19 +23,20 @@
  */
 package com.mastfrog.giulius.mongodb.async;
 
-import com.mastfrog.util.collections.CollectionUtils;
-import com.mastfrog.util.collections.IntMap;
 import com.mastfrog.util.time.TimeUtil;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.inject.Singleton;
 import org.bson.BsonReader;
-import org.bson.BsonTimestamp;
+import org.bson.BsonType;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
@@ -45,35 +46,56 @@ import org.bson.codecs.configuration.CodecProvider;
 import org.bson.codecs.configuration.CodecRegistry;
 
 /**
+ * Codecs for java.time types. Values are stored as BSON datetimes (durations
+ * as int64 milliseconds), and converted without going through intermediate
+ * Instants; zones are looked up once and cached.
  *
  * @author Tim Boudreau
  */
 @Singleton
 public class Java8DateTimeCodecProvider implements CodecProvider {
 
-    private static final ZonedDateTimeCodec ZONED_DATE_TIME = new ZonedDateTimeCodec();
+    /**
+     * How ZonedDateTimes are stored.
+     */
+    public enum ZonedDateTimeStorage {
+        /**
+         * As a BSON datetime; the zone is not stored, and values are decoded
+         * in the zone TimeUtil uses. The default.
+         */
+        DATE_TIME,
+        /**
+         * As a subdocument of a BSON datetime named <code>time</code> and a
+         * zone id named <code>zone</code>. This preserves the zone, and
+         * unlike a string, can still be queried and indexed by instant on
+         * <code>time</code>.
+         */
+        DOCUMENT,
+        /**
+         * As an ISO 8601 string with the zone id appended, such as
+         * <code>2018-03-01T10:15:30+01:00[Europe/Paris]</code>.
+         */
+        STRING
+    }
+
+    private static final ZonedDateTimeCodec ZONED_DATE_TIME = new ZonedDateTimeCodec(ZonedDateTimeStorage.DATE_TIME);
     private static final OffsetDateTimeCodec OFFSET_DATE_TIME = new OffsetDateTimeCodec();
     private static final LocalDateTimeCodec LOCAL_DATE_TIME = new LocalDateTimeCodec();
     private static final InstantCodec INSTANT = new InstantCodec();
     private static final DurationCodec DURATION = new DurationCodec();
 
-    private final List<CodecKey<?>> l = new ArrayList<>(5);
-    private final IntMap<CodecKey<?>> imp = CollectionUtils.intMap(6);
+    private final ZonedDateTimeCodec zonedDateTime;
 
     public Java8DateTimeCodecProvider() {
-        l.add(new CodecKey<>(ZonedDateTime.class, ZONED_DATE_TIME));
-        l.add(new CodecKey<>(LocalDateTime.class, LOCAL_DATE_TIME));
-        l.add(new CodecKey<>(OffsetDateTime.class, OFFSET_DATE_TIME));
-        l.add(new CodecKey<>(Instant.class, INSTANT));
-        l.add(new CodecKey<>(Duration.class, DURATION));
-        for (CodecKey<?> k : l) {
-            imp.put(k.type.hashCode(), k);
-        }
+        this(ZonedDateTimeStorage.DATE_TIME);
+    }
+
+    public Java8DateTimeCodecProvider(ZonedDateTimeStorage storage) {
+        this.zonedDateTime = zonedDateTimeCodec(storage);
     }
 
     public <T> Codec<T> createCodec(Class<T> type, CodecConfigurationException ex) {
-        CodecKey<T> result = match(type);
-        return result == null ? null : result.codec;
+        return get(type, null);
     }
 
     public static void installCodecs(MongoAsyncConfig<?> config) {
@@ -84,56 +106,154 @@ public class Java8DateTimeCodecProvider implements CodecProvider {
         config.withCodec(DURATION);
     }
 
-    private <J> CodecKey<J> match(Class<?> type) {
-        CodecKey<?> kk = imp.get(type.hashCode());
-        CodecKey<J> kk1 = kk == null ? null : kk.match(type);
-        if (kk1 != null) {
-            return kk1;
+    /**
+     * Get a codec for ZonedDateTimes which stores them in the passed form.
+     * All of them can decode values stored in any of the forms.
+     *
+     * @param storage How to store values
+     * @return A codec
+     */
+    public static ZonedDateTimeCodec zonedDateTimeCodec(ZonedDateTimeStorage storage) {
+        switch (storage) {
+            case DATE_TIME:
+                return ZONED_DATE_TIME;
+            default:
+                return new ZonedDateTimeCodec(storage);
         }
-        for (CodecKey<?> k : l) {
-            CodecKey<J> matched = k.match(type);
-            if (matched != null) {
-                return matched;
-            }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> get(Class<T> type, CodecRegistry cr) {
+        // All of these types are final, so an identity check is enough
+        Codec<?> result;
+        if (type == ZonedDateTime.class) {
+            result = zonedDateTime;
+        } else if (type == Instant.class) {
+            result = INSTANT;
+        } else if (type == LocalDateTime.class) {
+            result = LOCAL_DATE_TIME;
+        } else if (type == OffsetDateTime.class) {
+            result = OFFSET_DATE_TIME;
+        } else if (type == Duration.class) {
+            result = DURATION;
+        } else {
+            result = null;
         }
-        return null;
+        return (Codec<T>) result;
     }
 
-    static final class CodecKey<T> {
+    /**
+     * A zone with its rules, and its offset if that never changes, so
+     * conversions need no lookups.
+     */
+    static final class CachedZone {
+
+        private static final ConcurrentHashMap<String, CachedZone> BY_ID = new ConcurrentHashMap<>();
+        // The only ids we will see are region ids and offsets; this just
+        // keeps garbage in the database from growing the cache forever
+        private static final int MAX_CACHED = 2048;
+        static final CachedZone SYSTEM_DEFAULT = new CachedZone(ZoneId.systemDefault());
+        static final CachedZone TIME_UTIL = new CachedZone(TimeUtil.fromUnixTimestamp(0).getZone());
+
+        final ZoneId zone;
+        private final ZoneRules rules;
+        private final ZoneOffset fixedOffset;
+
+        CachedZone(ZoneId zone) {
+            this.zone = zone;
+            this.rules = zone.getRules();
+            this.fixedOffset = rules.isFixedOffset() ? rules.getOffset(Instant.EPOCH) : null;
+        }
 
-        private final Class<T> type;
-        private final Codec<T> codec;
+        static CachedZone forId(String id) {
+            CachedZone result = BY_ID.get(id);
+            if (result == null) {
+                result = new CachedZone(ZoneId.of(id));
+                if (BY_ID.size() < MAX_CACHED) {
+                    BY_ID.putIfAbsent(id, result);
+                }
+            }
+            return result;
+        }
 
-        public CodecKey(Class<T> type, Codec<T> codec) {
-            this.type = type;
-            this.codec = codec;
+        ZoneOffset offsetAt(long epochSecond) {
+            return fixedOffset != null ? fixedOffset : rules.getOffset(Instant.ofEpochSecond(epochSecond));
         }
 
-        @SuppressWarnings("unchecked")
-        public <J> CodecKey<J> match(Class<?> clazz) {
-            if (clazz == type || clazz.isAssignableFrom(type)) {
-                return (CodecKey<J>) this;
-            }
-            return null;
+        ZoneOffset offsetOf(LocalDateTime local) {
+            return fixedOffset != null ? fixedOffset : rules.getOffset(local);
         }
 
-        public String toString() {
-            return type.getSimpleName();
+        LocalDateTime local(long epochMillis, ZoneOffset offset) {
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000L),
+                    (int) Math.floorMod(epochMillis, 1000L) * 1000000, offset);
+        }
+
+        LocalDateTime local(long epochMillis) {
+            return local(epochMillis, offsetAt(Math.floorDiv(epochMillis, 1000L)));
+        }
+
+        ZonedDateTime zoned(long epochMillis) {
+            ZoneOffset offset = offsetAt(Math.floorDiv(epochMillis, 1000L));
+            return ZonedDateTime.ofInstant(local(epochMillis, offset), offset, zone);
+        }
+
+        OffsetDateTime offset(long epochMillis) {
+            ZoneOffset offset = offsetAt(Math.floorDiv(epochMillis, 1000L));
+            return OffsetDateTime.of(local(epochMillis, offset), offset);
         }
     }
 
-    @Override
-    @SuppressWarnings("unchecked")
-    public <T> Codec<T> get(Class<T> type, CodecRegistry cr) {
-        CodecKey<T> key = match(type);
-        return key == null ? null : key.codec;
+    static long epochMillis(long epochSecond, int nanos) {
+        return Math.addExact(Math.multiplyExact(epochSecond, 1000L), nanos / 1000000);
+    }
+
+    static long readEpochMillis(BsonReader reader, BsonType type) {
+        switch (type) {
+            case TIMESTAMP:
+                return reader.readTimestamp().getTime() * 1000L;
+            case DATE_TIME:
+                return reader.readDateTime();
+            case INT64:
+                return reader.readInt64();
+            default:
+                throw cannotRead(reader, "a time");
+        }
+    }
+
+    static IllegalArgumentException cannotRead(BsonReader reader, String what) {
+        return new IllegalArgumentException("Can't read " + what + " from " + reader.getCurrentBsonType()
+                + " for " + reader.getCurrentName());
     }
 
-    static final class ZonedDateTimeCodec implements Codec<ZonedDateTime> {
+    public static final class ZonedDateTimeCodec implements Codec<ZonedDateTime> {
+
+        private static final String TIME = "time";
+        private static final String ZONE = "zone";
+        private final ZonedDateTimeStorage storage;
+
+        ZonedDateTimeCodec(ZonedDateTimeStorage storage) {
+            this.storage = storage;
+        }
 
         @Override
         public void encode(BsonWriter writer, ZonedDateTime t, EncoderContext ec) {
-            writer.writeDateTime(TimeUtil.toUnixTimestamp(t));
+            switch (storage) {
+                case DOCUMENT:
+                    writer.writeStartDocument();
+                    writer.writeName(TIME);
+                    writer.writeDateTime(epochMillis(t.toEpochSecond(), t.getNano()));
+                    writer.writeName(ZONE);
+                    writer.writeString(t.getZone().getId());
+                    writer.writeEndDocument();
+                    break;
+                case STRING:
+                    writer.writeString(DateTimeFormatter.ISO_ZONED_DATE_TIME.format(t));
+                    break;
+                default:
+                    writer.writeDateTime(epochMillis(t.toEpochSecond(), t.getNano()));
+            }
         }
 
         @Override
@@ -143,27 +263,62 @@ public class Java8DateTimeCodecProvider implements CodecProvider {
 
         @Override
         public ZonedDateTime decode(BsonReader reader, DecoderContext dc) {
-            checkNull(reader);
-            switch (reader.getCurrentBsonType()) {
-                case TIMESTAMP:
-                    BsonTimestamp ts = reader.readTimestamp();
-                    return TimeUtil.fromUnixTimestamp(ts.getValue() * 1000);
-                case DATE_TIME:
-                case INT64:
-                    return TimeUtil.fromUnixTimestamp(reader.readDateTime());
+            BsonType type = reader.getCurrentBsonType();
+            switch (type) {
+                case NULL:
+                    reader.readNull();
+                    return null;
                 case STRING:
                     String s = reader.readString();
-                    return TimeUtil.fromIsoFormat(s);
+                    // A zone id suffix means it was written with STRING storage
+                    return s.endsWith("]")
+                            ? ZonedDateTime.parse(s, DateTimeFormatter.ISO_ZONED_DATE_TIME)
+                            : TimeUtil.fromIsoFormat(s);
+                case DOCUMENT:
+                    return readDocument(reader);
+                default:
+                    return CachedZone.TIME_UTIL.zoned(readEpochMillis(reader, type));
+            }
+        }
+
+        private ZonedDateTime readDocument(BsonReader reader) {
+            long millis = 0;
+            boolean hasTime = false;
+            CachedZone zone = CachedZone.TIME_UTIL;
+            reader.readStartDocument();
+            for (BsonType type = reader.readBsonType(); type != BsonType.END_OF_DOCUMENT; type = reader.readBsonType()) {
+                switch (reader.readName()) {
+                    case TIME:
+                        millis = readEpochMillis(reader, type);
+                        hasTime = true;
+                        break;
+                    case ZONE:
+                        zone = CachedZone.forId(reader.readString());
+                        break;
+                    default:
+                        reader.skipValue();
+                }
             }
-            return null;
+            reader.readEndDocument();
+            if (!hasTime) {
+                throw new IllegalArgumentException("No " + TIME + " in ZonedDateTime for " + reader.getCurrentName());
+            }
+            return zone.zoned(millis);
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "{" + storage + "}";
         }
     }
 
     static final class LocalDateTimeCodec implements Codec<LocalDateTime> {
 
+        private final CachedZone zone = CachedZone.SYSTEM_DEFAULT;
+
         @Override
         public void encode(BsonWriter writer, LocalDateTime t, EncoderContext ec) {
-            writer.writeDateTime(TimeUtil.toUnixTimestampSystemDefault(t));
+            writer.writeDateTime(epochMillis(t.toEpochSecond(zone.offsetOf(t)), t.getNano()));
         }
 
         @Override
@@ -173,18 +328,16 @@ public class Java8DateTimeCodecProvider implements CodecProvider {
 
         @Override
         public LocalDateTime decode(BsonReader reader, DecoderContext dc) {
-            checkNull(reader);
-            switch (reader.getCurrentBsonType()) {
-                case TIMESTAMP:
-                    BsonTimestamp ts = reader.readTimestamp();
-                    return TimeUtil.localFromUnixTimestamp(ts.getValue() * 1000);
-                case DATE_TIME:
-                case INT64:
-                    return TimeUtil.localFromUnixTimestamp(reader.readDateTime());
+            BsonType type = reader.getCurrentBsonType();
+            switch (type) {
+                case NULL:
+                    reader.readNull();
+                    return null;
                 case STRING:
                     return TimeUtil.localFromIsoFormat(reader.readString());
+                default:
+                    return zone.local(readEpochMillis(reader, type));
             }
-            return null;
         }
     }
 
@@ -192,7 +345,7 @@ public class Java8DateTimeCodecProvider implements CodecProvider {
 
         @Override
         public void encode(BsonWriter writer, OffsetDateTime t, EncoderContext ec) {
-            writer.writeDateTime(TimeUtil.toUnixTimestamp(t));
+            writer.writeDateTime(epochMillis(t.toEpochSecond(), t.getNano()));
         }
 
         @Override
@@ -202,18 +355,16 @@ public class Java8DateTimeCodecProvider implements CodecProvider {
 
         @Override
         public OffsetDateTime decode(BsonReader reader, DecoderContext dc) {
-            checkNull(reader);
-            switch (reader.getCurrentBsonType()) {
-                case TIMESTAMP:
-                    BsonTimestamp ts = reader.readTimestamp();
-                    return TimeUtil.offsetFromUnixTimestamp(ts.getValue() * 1000);
-                case DATE_TIME:
-                case INT64:
-                    return TimeUtil.offsetFromUnixTimestamp(reader.readDateTime());
+            BsonType type = reader.getCurrentBsonType();
+            switch (type) {
+                case NULL:
+                    reader.readNull();
+                    return null;
                 case STRING:
                     return TimeUtil.offsetFromIsoFormat(reader.readString());
+                default:
+                    return CachedZone.TIME_UTIL.offset(readEpochMillis(reader, type));
             }
-            return null;
         }
     }
 
@@ -231,25 +382,16 @@ public class Java8DateTimeCodecProvider implements CodecProvider {
 
         @Override
         public Instant decode(BsonReader reader, DecoderContext dc) {
-            checkNull(reader);
-            switch (reader.getCurrentBsonType()) {
-                case TIMESTAMP:
-                    BsonTimestamp ts = reader.readTimestamp();
-                    return Instant.ofEpochMilli(ts.getValue() * 1000);
-                case DATE_TIME:
-                case INT64:
-                    return Instant.ofEpochMilli(reader.readInt64());
+            BsonType type = reader.getCurrentBsonType();
+            switch (type) {
+                case NULL:
+                    reader.readNull();
+                    return null;
                 case STRING:
                     return TimeUtil.instantFromIsoFormat(reader.readString());
+                default:
+                    return Instant.ofEpochMilli(readEpochMillis(reader, type));
             }
-            return Instant.ofEpochMilli(reader.readDateTime());
-        }
-    }
-
-    static void checkNull(BsonReader reader) {
-        if (null == reader.getCurrentBsonType()) {
-            throw new IllegalArgumentException("Can't read a duration from " + reader.getCurrentBsonType()
-                    + " for " + reader.getCurrentName());
         }
     }
 
@@ -267,8 +409,10 @@ public class Java8DateTimeCodecProvider implements CodecProvider {
 
         @Override
         public Duration decode(BsonReader reader, DecoderContext dc) {
-            checkNull(reader);
             switch (reader.getCurrentBsonType()) {
+                case NULL:
+                    reader.readNull();
+                    return null;
                 case INT32:
                     return TimeUtil.millis(reader.readInt32());
                 case INT64:
@@ -276,8 +420,7 @@ public class Java8DateTimeCodecProvider implements CodecProvider {
                 case STRING:
                     return TimeUtil.parse(reader.readString());
                 default:
-                    throw new IllegalArgumentException("Can't read a duration from " + reader.getCurrentBsonType()
-                            + " for " + reader.getCurrentName());
+                    throw cannotRead(reader, "a duration");
             }
         }
     }
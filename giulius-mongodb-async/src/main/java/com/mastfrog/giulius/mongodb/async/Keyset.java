@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWrapper;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.ByteBuf;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+/**
+ * Keyset paging: documents are sorted on a field, with _id breaking ties,
+ * and each page starts after the sort key of the last document of the
+ * previous one, which the resume token carries.
+ *
+ * @author agent
+ */
+final class Keyset {
+
+    private static final String ID = "_id";
+    private final String field;
+    private final boolean ascending;
+
+    Keyset(String field, boolean ascending) {
+        this.field = field;
+        this.ascending = ascending;
+    }
+
+    Bson sort() {
+        BsonInt32 direction = new BsonInt32(ascending ? 1 : -1);
+        BsonDocument sort = new BsonDocument(field, direction);
+        if (!ID.equals(field)) {
+            sort.append(ID, direction);
+        }
+        return sort;
+    }
+
+    Bson after(String resumeToken) {
+        String tokenField;
+        boolean tokenAscending;
+        BsonValue value;
+        BsonValue id;
+        try {
+            BsonDocument token = new RawBsonDocument(Base64.getUrlDecoder().decode(resumeToken));
+            tokenField = token.getString("f").getValue();
+            tokenAscending = token.getBoolean("d").getValue();
+            value = token.get("v");
+            id = token.get("id");
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Invalid resume token '" + resumeToken + "'", ex);
+        }
+        if (!field.equals(tokenField) || ascending != tokenAscending) {
+            throw new IllegalArgumentException("Resume token is for paging on " + tokenField
+                    + (tokenAscending ? " ascending" : " descending") + ", not " + this);
+        }
+        String op = ascending ? "$gt" : "$lt";
+        if (ID.equals(field)) {
+            return new BsonDocument(ID, new BsonDocument(op, id));
+        }
+        return new BsonDocument("$or", new BsonArray(Arrays.asList(
+                new BsonDocument(field, new BsonDocument(op, value)),
+                new BsonDocument(field, value).append(ID, new BsonDocument(op, id)))));
+    }
+
+    /**
+     * Make a page from a query for one more document than the page size,
+     * which tells us whether there is another page without a second query.
+     */
+    <T> Page<T> page(List<T> results, int pageSize, CodecRegistry registry) {
+        if (results.size() <= pageSize) {
+            return new Page<>(results, null);
+        }
+        List<T> items = new ArrayList<>(results.subList(0, pageSize));
+        BsonDocument last = BsonDocumentWrapper.asBsonDocument(items.get(pageSize - 1), registry);
+        BsonValue id = last.get(ID);
+        if (id == null) {
+            throw new IllegalStateException("Paged documents need an " + ID
+                    + " - is it excluded by a projection or codec?");
+        }
+        BsonDocument token = new BsonDocument("f", new BsonString(field)).append("d", BsonBoolean.valueOf(ascending));
+        if (!ID.equals(field)) {
+            BsonValue value = valueOf(last, field);
+            if (value == null) {
+                throw new IllegalStateException("Document " + id + " has no value for " + field
+                        + " - every document paged on a field must have one");
+            }
+            token.append("v", value);
+        }
+        token.append("id", id);
+        ByteBuf bytes = new RawBsonDocument(token, new BsonDocumentCodec()).getByteBuffer();
+        byte[] encoded = new byte[bytes.remaining()];
+        bytes.get(encoded);
+        return new Page<>(items, Base64.getUrlEncoder().withoutPadding().encodeToString(encoded));
+    }
+
+    private static BsonValue valueOf(BsonDocument doc, String path) {
+        BsonValue result = doc;
+        for (String part : path.split("\\.")) {
+            if (result == null || !result.isDocument()) {
+                return null;
+            }
+            result = result.asDocument().get(part);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return field + (ascending ? " ascending" : " descending");
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies. Buckets are log-linear - four per
+ * power of two - so percentiles are accurate to within 25% across any range
+ * of values, at a fixed size of a couple of kilobytes.
+ *
+ * @author agent
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 62 * SUB_BUCKETS;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+    }
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucket(nanos));
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - 2)) & (SUB_BUCKETS - 1);
+        return (exp - 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exp = bucket / SUB_BUCKETS + 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exp - 2);
+    }
+
+    /**
+     * The number of latencies recorded.
+     *
+     * @return A count
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * The mean latency.
+     *
+     * @return Nanoseconds
+     */
+    public long meanNanos() {
+        long c = count.sum();
+        return c == 0 ? 0 : total.sum() / c;
+    }
+
+    /**
+     * The highest latency recorded.
+     *
+     * @return Nanoseconds
+     */
+    public long maxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Get the latency which the passed percentage of recorded latencies
+     * were at or below - the upper bound of the bucket it falls in, so this
+     * overestimates rather than underestimates.
+     *
+     * @param percentile A percentile greater than 0 and at most 100
+     * @return Nanoseconds
+     */
+    public long percentileNanos(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be > 0 and <= 100: " + percentile);
+        }
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += snapshot[i] = buckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * (percentile / 100D));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                long upper = i == BUCKETS - 1 ? Long.MAX_VALUE : lowerBound(i + 1) - 1;
+                return Math.min(upper, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count() + " meanMicros=" + (meanNanos() / 1000)
+                + " p50Micros=" + (percentileNanos(50) / 1000)
+                + " p99Micros=" + (percentileNanos(99) / 1000)
+                + " maxMicros=" + (maxNanos() / 1000);
+    }
+}
@@ -48,9 +48,24 @@ public interface MongoAsyncConfig<SpecificType extends MongoAsyncConfig> {
     String SETTINGS_KEY_MONGO_CONNECTION_POOL_MIN_SIZE = "mongo.connection.pool.size.min";
     String SETTINGS_KEY_MONGO_DEFAULT_WRITE_CONCERN = "mongo.write.concern";
     String SETTINGS_KEY_MONGO_HOST = "mongoHost";
+    /**
+     * Comma-separated host:port list of members of a replica set or sharded
+     * cluster, used instead of mongoHost and mongoPort if set; the port may
+     * be omitted if it is mongoPort, and IPv6 addresses must be in brackets.
+     */
+    String SETTINGS_KEY_MONGO_HOSTS = "mongo.hosts";
+    String SETTINGS_KEY_MONGO_LOCAL_THRESHOLD_MILLIS = "mongo.local.threshold.millis";
     String SETTINGS_KEY_MONGO_PASSWORD = "mongo.password";
     String SETTINGS_KEY_MONGO_PORT = "mongoPort";
     String SETTINGS_KEY_MONGO_READ_PREFERENCE = "mongo.readPreference";
+    /**
+     * Tag sets for the read preference, in order of preference, e.g.
+     * <code>dc:east,use:reporting;dc:east;</code> - semicolons separate
+     * tag sets and a trailing semicolon allows any member if none match.
+     */
+    String SETTINGS_KEY_MONGO_READ_PREFERENCE_TAGS = "mongo.readPreference.tags";
+    String SETTINGS_KEY_MONGO_REPLICA_SET_NAME = "mongo.replica.set.name";
+    String SETTINGS_KEY_MONGO_SERVER_SELECTION_TIMEOUT_MILLIS = "mongo.server.selection.timeout.millis";
     String SETTINGS_KEY_MONGO_SSL = "mongo.ssl";
     String SETTINGS_KEY_MONGO_SSL_INVALID_HOSTNAMES_ALLOWED = "mongo.ssl.allow.invalid.hostnames";
     String SETTINGS_KEY_MONGO_USER = "mongo.user";
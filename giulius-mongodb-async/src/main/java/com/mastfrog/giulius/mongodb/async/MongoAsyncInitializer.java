@@ -79,6 +79,19 @@ public abstract class MongoAsyncInitializer {
         return settings;
     }
 
+    /**
+     * Called after onBeforeCreateMongoClient() to allow an initializer to
+     * supply the client itself, such as an in-memory stand-in for tests; if
+     * every initializer returns null, a client connecting to the configured
+     * servers is created.
+     *
+     * @param settings Client settings
+     * @return A client, or null
+     */
+    public MongoClient createMongoClient(MongoClientSettings settings) {
+        return null;
+    }
+
     /**
      * Called once the MongoClient has been created.
      *
@@ -140,6 +153,16 @@ public abstract class MongoAsyncInitializer {
             return settings;
         }
 
+        MongoClient createMongoClient(MongoClientSettings settings) {
+            for (MongoAsyncInitializer init : initializers) {
+                MongoClient client = init.createMongoClient(settings);
+                if (client != null) {
+                    return client;
+                }
+            }
+            return null;
+        }
+
         MongoClient onAfterCreateMongoClient(MongoClient client) {
             for (MongoAsyncInitializer init : initializers) {
                 client = init.onAfterCreateMongoClient(client);
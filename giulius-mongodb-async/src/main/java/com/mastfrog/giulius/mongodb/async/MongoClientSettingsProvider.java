@@ -35,7 +35,9 @@ import com.mongodb.connection.ClusterConnectionMode;
 import com.mongodb.connection.ClusterSettings;
 import com.mongodb.connection.ConnectionPoolSettings;
 import com.mongodb.connection.SslSettings;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -54,8 +56,15 @@ final class MongoClientSettingsProvider implements Provider<MongoClientSettings>
 
     @Inject
     @SuppressWarnings("deprecation")
-    MongoClientSettingsProvider(Settings settings, CodecRegistry registry, @Named(SETTINGS_KEY_DATABASE_NAME) String db, @Named(SETTINGS_KEY_MONGO_PORT) int mongoPort) {
-        ReadPreference pref = ReadPreferences.find(settings.getString(SETTINGS_KEY_MONGO_READ_PREFERENCE)).get();
+    MongoClientSettingsProvider(Settings settings, CodecRegistry registry, @Named(SETTINGS_KEY_DATABASE_NAME) String db, @Named(SETTINGS_KEY_MONGO_PORT) int mongoPort, MongoMetrics metrics, SlowOperations slowOperations) {
+        String prefName = settings.getString(SETTINGS_KEY_MONGO_READ_PREFERENCE);
+        ReadPreferences prefs = ReadPreferences.find(prefName);
+        if (prefs == null) {
+            throw new ConfigurationError("Unknown read preference '" + prefName + "' for "
+                    + SETTINGS_KEY_MONGO_READ_PREFERENCE);
+        }
+        ReadPreference pref = prefs.get(ReadPreferences.parseTagSets(
+                settings.getString(SETTINGS_KEY_MONGO_READ_PREFERENCE_TAGS)));
 
         ConnectionPoolSettings.Builder cp = ConnectionPoolSettings.builder();
         Integer maxSize = settings.getInt(SETTINGS_KEY_MONGO_CONNECTION_POOL_MAX_SIZE);
@@ -90,16 +99,34 @@ final class MongoClientSettingsProvider implements Provider<MongoClientSettings>
         if (maintenanceInitialDelayMS != null) {
             cp.maintenanceInitialDelay(maintenanceInitialDelayMS, TimeUnit.MILLISECONDS);
         }
+        cp.addConnectionPoolListener(metrics.connectionPoolListener());
         WriteConcern wc = findWriteConcern(settings.getString(SETTINGS_KEY_MONGO_DEFAULT_WRITE_CONCERN));
 
         boolean sslEnabled = settings.getBoolean(SETTINGS_KEY_MONGO_SSL, false);
         SslSettings ssl = SslSettings.builder().enabled(sslEnabled).invalidHostNameAllowed(settings.getBoolean(SETTINGS_KEY_MONGO_SSL_INVALID_HOSTNAMES_ALLOWED, true)).build();
 
-        String mongoHost = settings.getString(SETTINGS_KEY_MONGO_HOST, "localhost");
-
-        ServerAddress addr = new ServerAddress(mongoHost, mongoPort);
-
-        ClusterSettings cluster = ClusterSettings.builder().hosts(Arrays.asList(addr)).mode(ClusterConnectionMode.SINGLE).build();
+        List<ServerAddress> hosts = parseHosts(settings.getString(SETTINGS_KEY_MONGO_HOSTS), mongoPort);
+        if (hosts.isEmpty()) {
+            hosts.add(new ServerAddress(settings.getString(SETTINGS_KEY_MONGO_HOST, "localhost"), mongoPort));
+        }
+        String replicaSet = settings.getString(SETTINGS_KEY_MONGO_REPLICA_SET_NAME);
+        // A single host in SINGLE mode is a direct connection; anything else
+        // needs the driver to discover the other members and track which is
+        // primary, so that secondary reads are spread across them
+        ClusterSettings.Builder cluster = ClusterSettings.builder().hosts(hosts)
+                .mode(hosts.size() == 1 && replicaSet == null
+                        ? ClusterConnectionMode.SINGLE : ClusterConnectionMode.MULTIPLE);
+        if (replicaSet != null) {
+            cluster.requiredReplicaSetName(replicaSet);
+        }
+        Long localThresholdMS = settings.getLong(SETTINGS_KEY_MONGO_LOCAL_THRESHOLD_MILLIS);
+        if (localThresholdMS != null) {
+            cluster.localThreshold(localThresholdMS, TimeUnit.MILLISECONDS);
+        }
+        Long serverSelectionTimeoutMS = settings.getLong(SETTINGS_KEY_MONGO_SERVER_SELECTION_TIMEOUT_MILLIS);
+        if (serverSelectionTimeoutMS != null) {
+            cluster.serverSelectionTimeout(serverSelectionTimeoutMS, TimeUnit.MILLISECONDS);
+        }
 
         String mongoUser = settings.getString(SETTINGS_KEY_MONGO_USER);
         String mongoPassword = settings.getString(SETTINGS_KEY_MONGO_PASSWORD);
@@ -117,14 +144,44 @@ final class MongoClientSettingsProvider implements Provider<MongoClientSettings>
                 .codecRegistry(registry)
                 .connectionPoolSettings(cp.build())
                 .sslSettings(ssl)
-                .writeConcern(wc).clusterSettings(cluster);
+                .writeConcern(wc).clusterSettings(cluster.build())
+                .addCommandListener(metrics.commandListener());
 
+        if (slowOperations.isEnabled()) {
+            sb.addCommandListener(slowOperations.commandListener());
+        }
         if (credential != null) {
             sb.credentialList(Arrays.asList(credential));
         }
         clientSettings = sb.build();
     }
 
+    static List<ServerAddress> parseHosts(String spec, int defaultPort) {
+        List<ServerAddress> result = new ArrayList<>();
+        if (spec == null) {
+            return result;
+        }
+        for (String host : spec.split(",")) {
+            host = host.trim();
+            if (host.isEmpty()) {
+                continue;
+            }
+            int portStart = host.lastIndexOf(':');
+            if (portStart < 0 || host.lastIndexOf(']') > portStart) {
+                result.add(new ServerAddress(host, defaultPort));
+                continue;
+            }
+            try {
+                result.add(new ServerAddress(host.substring(0, portStart),
+                        Integer.parseInt(host.substring(portStart + 1))));
+            } catch (NumberFormatException ex) {
+                throw new ConfigurationError("Bad port in '" + host + "' in "
+                        + SETTINGS_KEY_MONGO_HOSTS + ": " + spec);
+            }
+        }
+        return result;
+    }
+
     private WriteConcern findWriteConcern(String setting) {
         if (setting == null) {
             return WriteConcern.ACKNOWLEDGED;
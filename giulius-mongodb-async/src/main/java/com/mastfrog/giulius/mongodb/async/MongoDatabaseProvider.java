@@ -37,6 +37,7 @@ import javax.inject.Provider;
 class MongoDatabaseProvider implements Provider<MongoDatabase> {
     private final Provider<MongoClient> clientProvider;
     private final String dbName;
+    private volatile MongoDatabase db;
 
     @Inject
     public MongoDatabaseProvider(Provider<MongoClient> clientProvider, @Named(GiuliusMongoAsyncModule.SETTINGS_KEY_DATABASE_NAME) String dbName) {
@@ -46,6 +47,12 @@ class MongoDatabaseProvider implements Provider<MongoDatabase> {
 
     @Override
     public MongoDatabase get() {
-        return clientProvider.get().getDatabase(dbName);
+        // The client is a singleton and databases are immutable, so this
+        // need not be looked up again
+        MongoDatabase result = db;
+        if (result == null) {
+            db = result = clientProvider.get().getDatabase(dbName);
+        }
+        return result;
     }
 }
@@ -24,18 +24,22 @@
 package com.mastfrog.giulius.mongodb.async;
 
 import com.google.inject.util.Providers;
+import com.mastfrog.util.preconditions.Checks;
 import com.mastfrog.util.function.EnhCompletableFuture;
 import com.mongodb.Function;
 import com.mongodb.ReadConcern;
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteConcern;
+import com.mongodb.async.AsyncBatchCursor;
 import com.mongodb.async.SingleResultCallback;
+import com.mongodb.async.client.FindIterable;
 import com.mongodb.async.client.MongoCollection;
 import com.mongodb.async.client.MongoIterable;
 import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.CountOptions;
 import com.mongodb.client.model.DeleteOptions;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.InsertManyOptions;
 import com.mongodb.client.model.InsertOneOptions;
@@ -44,26 +48,49 @@ import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import com.mongodb.session.ClientSession;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import javax.inject.Provider;
+import org.bson.BsonDocument;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
 /**
  * Wraps a MongoCollection's methods that take SingleResultCallback to instead
- * return a CompletableFuture.
+ * return a CompletableFuture. Methods returning a List accumulate every
+ * result before completing; for large result sets, use the streaming methods
+ * which take a {@link BatchHandler} instead.
  *
  * @author Tim Boudreau
  */
 public final class MongoFutureCollection<T> {
 
     private final Provider<MongoCollection<T>> coll;
+    private final Provider<CoalescingWrites<T>> coalescer;
+    private final FindOneCache cache;
+    private final SharedReads reads;
+    private final CircuitBreaker breaker;
 
     MongoFutureCollection(Provider<MongoCollection<T>> coll) {
+        this(coll, null, null, null, null);
+    }
+
+    MongoFutureCollection(Provider<MongoCollection<T>> coll, Provider<CoalescingWrites<T>> coalescer,
+            FindOneCache cache, SharedReads reads, CircuitBreaker breaker) {
         this.coll = coll;
+        this.coalescer = coalescer;
+        this.cache = cache;
+        this.reads = reads;
+        this.breaker = breaker;
     }
 
     public static <T> MongoFutureCollection<T> forProvider(Provider<MongoCollection<T>> prov) {
@@ -74,178 +101,335 @@ public final class MongoFutureCollection<T> {
         return new MongoFutureCollection<>(Providers.of(prov));
     }
 
+    /**
+     * Get the underlying collection, blocking if it is still being created.
+     * Operations on this class never block on creation - they chain on
+     * {@link #collectionAsync()} - so prefer that on request threads.
+     *
+     * @return The collection
+     */
     public MongoCollection<T> collection() {
         return coll.get();
     }
 
+    /**
+     * Get the underlying collection without blocking.
+     *
+     * @return A stage which completes once the collection exists
+     */
+    public CompletionStage<MongoCollection<T>> collectionAsync() {
+        return AsyncCollectionProvider.collection(coll).thenApply(c -> c);
+    }
+
+    /**
+     * Run an operation once the collection exists - immediately if it already
+     * does - so that no caller blocks while it is being created. Cancelling
+     * the returned future cancels the operation's.
+     */
+    <R> EnhCompletableFuture<R> withCollection(Function<MongoCollection<T>, EnhCompletableFuture<R>> op) {
+        CompletableFuture<MongoCollection<T>> collection = AsyncCollectionProvider.collection(coll);
+        if (collection.isDone() && !collection.isCompletedExceptionally()) {
+            return apply(op, collection.join());
+        }
+        EnhCompletableFuture<R> result = new EnhCompletableFuture<>();
+        collection.whenComplete((c, thrown) -> {
+            if (thrown != null) {
+                result.completeExceptionally(unwrap(thrown));
+                return;
+            }
+            if (result.isDone()) {
+                // Cancelled while the collection was being created
+                return;
+            }
+            EnhCompletableFuture<R> started = apply(op, c);
+            started.whenComplete((r, err) -> {
+                if (err != null) {
+                    result.completeExceptionally(unwrap(err));
+                } else {
+                    result.complete(r);
+                }
+            });
+            result.whenComplete((r, err) -> {
+                if (result.isCancelled()) {
+                    started.cancel(false);
+                }
+            });
+        });
+        return result;
+    }
+
+    private static <T, R> EnhCompletableFuture<R> apply(Function<MongoCollection<T>, EnhCompletableFuture<R>> op, MongoCollection<T> collection) {
+        try {
+            return op.apply(collection);
+        } catch (RuntimeException | Error ex) {
+            EnhCompletableFuture<R> result = new EnhCompletableFuture<>();
+            result.completeExceptionally(ex);
+            return result;
+        }
+    }
+
+    private static Throwable unwrap(Throwable thrown) {
+        return thrown instanceof CompletionException && thrown.getCause() != null ? thrown.getCause() : thrown;
+    }
+
+    /**
+     * Get the circuit breaker guarding operations on this collection, if one
+     * was configured with <code>GiuliusMongoAsyncModule.breakCircuits()</code>.
+     * Every operation passes through it except coalesced writes. For streaming
+     * operations and each partition of a parallel scan, the breaker sees
+     * opening the cursor - the round trip a degraded server slows down - not
+     * the time the handler spends on batches.
+     *
+     * @return The breaker, or null
+     */
+    public CircuitBreaker circuitBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Get the write coalescer shared by all instances of this collection,
+     * which batches individual inserts, updates and replacements into bulk
+     * writes.
+     *
+     * @return The coalescer
+     * @throws IllegalStateException if write coalescing was not configured
+     * for this collection with
+     * <code>GiuliusMongoAsyncModule.coalesceWrites()</code>
+     */
+    public CoalescingWrites<T> coalescedWrites() {
+        if (coalescer == null) {
+            throw new IllegalStateException("Write coalescing not configured for " + this);
+        }
+        return coalescer.get();
+    }
+
+    /**
+     * Start building an aggregation pipeline against this collection, which
+     * can be run to a List or streamed one batch at a time.
+     *
+     * @return A pipeline builder
+     */
+    public AggregationPipeline<T> pipeline() {
+        return new AggregationPipeline<>(this);
+    }
+
     public EnhCompletableFuture<List<T>> aggregate(List<? extends Bson> list) {
-        return iterFuture(collection().aggregate(list), null);
+        return withCollection(c -> aggregate(list, c.getDocumentClass()));
     }
 
     public EnhCompletableFuture<List<T>> aggregate(ClientSession cs, List<? extends Bson> list) {
-        return iterFuture(collection().aggregate(cs, list), null);
+        return list(c -> c.aggregate(cs, list));
     }
 
     public <TResult> EnhCompletableFuture<List<TResult>> aggregate(List<? extends Bson> list, Class<TResult> type) {
-        return iterFuture(collection().aggregate(list, type), null);
+        return withCollection(collection -> {
+            if (reads != null) {
+                return reads.share(SharedReads.key(collection, "aggregate", type, list), ArrayList::new,
+                        () -> iterFuture(collection.aggregate(list, type), null));
+            }
+            return iterFuture(collection.aggregate(list, type), null);
+        });
     }
 
     public <TResult> EnhCompletableFuture<List<TResult>> aggregate(ClientSession sess, List<? extends Bson> list, Class<TResult> type) {
-        return iterFuture(collection().aggregate(sess, list, type), null);
+        return list(c -> c.aggregate(sess, list, type));
     }
 
     public EnhCompletableFuture<BulkWriteResult> bulkWrite(List<? extends WriteModel<? extends T>> list) {
         EnhCompletableFuture<BulkWriteResult> result = new EnhCompletableFuture<>();
-        collection().bulkWrite(list, new SRC<>(result));
-        return result;
+        return start(result, c -> c.bulkWrite(list, written(result)));
     }
 
     public EnhCompletableFuture<BulkWriteResult> bulkWrite(List<? extends WriteModel<? extends T>> list, BulkWriteOptions bwo) {
         EnhCompletableFuture<BulkWriteResult> result = new EnhCompletableFuture<>();
-        collection().bulkWrite(list, bwo, new SRC<>(result));
-        return result;
+        return start(result, c -> c.bulkWrite(list, bwo, written(result)));
     }
 
     public EnhCompletableFuture<UpdateResult> replaceOne(Bson bson, T td) {
         EnhCompletableFuture<UpdateResult> result = new EnhCompletableFuture<>();
-        collection().replaceOne(bson, td, new SRC<>(result));
-        return result;
+        return start(result, c -> c.replaceOne(bson, td, written(result)));
     }
 
     public EnhCompletableFuture<UpdateResult> replaceOne(Bson bson, T td, UpdateOptions uo) {
         EnhCompletableFuture<UpdateResult> result = new EnhCompletableFuture<>();
-        collection().replaceOne(bson, td, uo, new SRC<>(result));
-        return result;
+        return start(result, c -> c.replaceOne(bson, td, uo, written(result)));
     }
 
     public EnhCompletableFuture<List<Document>> listIndexes() {
-        return iterFuture(collection().listIndexes(), null);
+        return list(c -> c.listIndexes());
     }
 
     public EnhCompletableFuture<Long> count() {
-        EnhCompletableFuture<Long> result = new EnhCompletableFuture<>();
-        collection().count(new SRC<>(result));
-        return result;
+        return count(new Document());
     }
 
     public EnhCompletableFuture<Long> count(Bson bson) {
+        return withCollection(collection -> {
+            if (reads != null) {
+                return reads.share(SharedReads.key(collection, "count", Long.class, bson), UnaryOperator.identity(),
+                        () -> countUnshared(collection, bson));
+            }
+            return countUnshared(collection, bson);
+        });
+    }
+
+    private EnhCompletableFuture<Long> countUnshared(MongoCollection<T> collection, Bson bson) {
         EnhCompletableFuture<Long> result = new EnhCompletableFuture<>();
-        collection().count(bson, new SRC<>(result));
-        return result;
+        return start(result, () -> collection.count(bson, new SRC<>(result)));
     }
 
     public EnhCompletableFuture<Long> count(Bson bson, CountOptions co) {
         EnhCompletableFuture<Long> result = new EnhCompletableFuture<>();
-        collection().count(bson, co, new SRC<>(result));
-        return result;
+        return start(result, c -> c.count(bson, co, new SRC<>(result)));
     }
 
     public EnhCompletableFuture<Void> insertOne(T td) {
         EnhCompletableFuture<Void> result = new EnhCompletableFuture<>();
-        collection().insertOne(td, new SRC<>(result));
-        return result;
+        return start(result, c -> c.insertOne(td, written(result)));
     }
 
     public EnhCompletableFuture<Void> insertOne(T td, InsertOneOptions ioo) {
         EnhCompletableFuture<Void> result = new EnhCompletableFuture<>();
-        collection().insertOne(td, ioo, new SRC<>(result));
-        return result;
+        return start(result, c -> c.insertOne(td, ioo, written(result)));
     }
 
     public EnhCompletableFuture<Void> insertMany(List<? extends T> list) {
         EnhCompletableFuture<Void> result = new EnhCompletableFuture<>();
-        collection().insertMany(list, new SRC<>(result));
-        return result;
+        return start(result, c -> c.insertMany(list, written(result)));
     }
 
     public EnhCompletableFuture<Void> insertMany(List<? extends T> list, InsertManyOptions imo) {
         EnhCompletableFuture<Void> result = new EnhCompletableFuture<>();
-        collection().insertMany(list, imo, new SRC<>(result));
-        return result;
+        return start(result, c -> c.insertMany(list, imo, written(result)));
     }
 
     public EnhCompletableFuture<DeleteResult> deleteOne(Bson bson) {
         EnhCompletableFuture<DeleteResult> result = new EnhCompletableFuture<>();
-        collection().deleteOne(bson, new SRC<>(result));
-        return result;
+        return start(result, c -> c.deleteOne(bson, written(result)));
     }
 
     public EnhCompletableFuture<DeleteResult> deleteOne(Bson bson, DeleteOptions d) {
         EnhCompletableFuture<DeleteResult> result = new EnhCompletableFuture<>();
-        collection().deleteOne(bson, d, new SRC<>(result));
-        return result;
+        return start(result, c -> c.deleteOne(bson, d, written(result)));
     }
 
     public EnhCompletableFuture<DeleteResult> deleteOne(ClientSession cs, Bson bson) {
         EnhCompletableFuture<DeleteResult> result = new EnhCompletableFuture<>();
-        collection().deleteOne(cs, bson, new SRC<>(result));
-        return result;
+        return start(result, c -> c.deleteOne(cs, bson, written(result)));
     }
 
     public EnhCompletableFuture<DeleteResult> deleteOne(ClientSession cs, Bson bson, DeleteOptions d) {
         EnhCompletableFuture<DeleteResult> result = new EnhCompletableFuture<>();
-        collection().deleteOne(cs, bson, d, new SRC<>(result));
-        return result;
+        return start(result, c -> c.deleteOne(cs, bson, d, written(result)));
     }
 
     public EnhCompletableFuture<DeleteResult> deleteMany(Bson bson) {
         EnhCompletableFuture<DeleteResult> result = new EnhCompletableFuture<>();
-        collection().deleteMany(bson, new SRC<>(result));
-        return result;
+        return start(result, c -> c.deleteMany(bson, written(result)));
     }
 
     public EnhCompletableFuture<DeleteResult> deleteMany(Bson bson, DeleteOptions d) {
         EnhCompletableFuture<DeleteResult> result = new EnhCompletableFuture<>();
-        collection().deleteMany(bson, d, new SRC<>(result));
-        return result;
+        return start(result, c -> c.deleteMany(bson, d, written(result)));
     }
 
     public EnhCompletableFuture<DeleteResult> deleteMany(ClientSession cs, Bson bson) {
         EnhCompletableFuture<DeleteResult> result = new EnhCompletableFuture<>();
-        collection().deleteMany(cs, bson, new SRC<>(result));
-        return result;
+        return start(result, c -> c.deleteMany(cs, bson, written(result)));
     }
 
     public EnhCompletableFuture<DeleteResult> deleteMany(ClientSession cs, Bson bson, DeleteOptions d) {
         EnhCompletableFuture<DeleteResult> result = new EnhCompletableFuture<>();
-        collection().deleteMany(cs, bson, d, new SRC<>(result));
-        return result;
+        return start(result, c -> c.deleteMany(cs, bson, d, written(result)));
     }
 
     public EnhCompletableFuture<UpdateResult> updateOne(Bson query, Bson update) {
         EnhCompletableFuture<UpdateResult> result = new EnhCompletableFuture<>();
-        collection().updateOne(query, update, new SRC<>(result));
-        return result;
+        return start(result, c -> c.updateOne(query, update, written(result)));
     }
 
     public EnhCompletableFuture<UpdateResult> updateOne(Bson query, Bson update, UpdateOptions uo) {
         EnhCompletableFuture<UpdateResult> result = new EnhCompletableFuture<>();
-        collection().updateOne(query, update, uo, new SRC<>(result));
-        return result;
+        return start(result, c -> c.updateOne(query, update, uo, written(result)));
     }
 
     public EnhCompletableFuture<UpdateResult> updateMany(Bson query, Bson update) {
         EnhCompletableFuture<UpdateResult> result = new EnhCompletableFuture<>();
-        collection().updateMany(query, update, new SRC<>(result));
-        return result;
+        return start(result, c -> c.updateMany(query, update, written(result)));
     }
 
     public EnhCompletableFuture<UpdateResult> updateMany(Bson bson, Bson bson1, UpdateOptions uo) {
         EnhCompletableFuture<UpdateResult> result = new EnhCompletableFuture<>();
-        collection().updateMany(bson, bson1, uo, new SRC<>(result));
+        return start(result, c -> c.updateMany(bson, bson1, uo, written(result)));
+    }
+
+    /**
+     * Pass an operation through the circuit breaker, if one was configured;
+     * if it is refused, fails the result, and the operation must not be
+     * started.
+     */
+    private boolean admit(CompletableFuture<?> result) {
+        return breaker == null || breaker.admit(result);
+    }
+
+    /**
+     * Start an operation on the collection once it exists, if the circuit
+     * breaker admits it.
+     */
+    private <R> EnhCompletableFuture<R> start(EnhCompletableFuture<R> result, Consumer<MongoCollection<T>> operation) {
+        return withCollection(c -> start(result, () -> operation.accept(c)));
+    }
+
+    /**
+     * Start an operation if the circuit breaker admits it. If the driver
+     * throws instead of starting it - a null filter, a codec error - the
+     * result is failed, so the breaker does not count it in flight forever.
+     */
+    private <R> EnhCompletableFuture<R> start(EnhCompletableFuture<R> result, Runnable operation) {
+        if (admit(result)) {
+            try {
+                operation.run();
+            } catch (RuntimeException | Error ex) {
+                result.completeExceptionally(ex);
+            }
+        }
         return result;
     }
 
+    private <R> SingleResultCallback<R> written(EnhCompletableFuture<R> result) {
+        return cache == null && reads == null ? new SRC<>(result) : new SRC<>(result, this::onWritten);
+    }
+
+    private void onWritten() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        if (reads != null) {
+            reads.forgetInFlight();
+        }
+    }
+
     static class SRC<T> implements SingleResultCallback<T> {
 
         private final EnhCompletableFuture<T> fut;
+        private final Runnable beforeCompletion;
 
         public SRC(EnhCompletableFuture<T> fut) {
+            this(fut, null);
+        }
+
+        SRC(EnhCompletableFuture<T> fut, Runnable beforeCompletion) {
             this.fut = fut;
+            this.beforeCompletion = beforeCompletion;
         }
 
         @Override
         public void onResult(T t, Throwable thrwbl) {
+            // Run before completing, so nothing chained on the future can
+            // observe state from before a write
+            if (beforeCompletion != null) {
+                beforeCompletion.run();
+            }
             if (thrwbl != null) {
                 fut.completeExceptionally(thrwbl);
             } else {
@@ -258,37 +442,367 @@ public final class MongoFutureCollection<T> {
     }
 
     public EnhCompletableFuture<List<T>> find() {
-        return iterFuture(collection().find(), null);
+        return withCollection(c -> find(new Document(), null, c.getDocumentClass()));
+    }
+
+    <R> EnhCompletableFuture<List<R>> toList(MongoIterable<R> iter) {
+        return iterFuture(iter, null);
+    }
+
+    private <R> EnhCompletableFuture<List<R>> list(Function<MongoCollection<T>, ? extends MongoIterable<R>> query) {
+        return withCollection(c -> iterFuture(query.apply(c), null));
     }
 
     private <T, R extends MongoIterable<T>> EnhCompletableFuture<List<T>> iterFuture(R ft, Consumer<R> cons) {
         EnhCompletableFuture<List<T>> result = new EnhCompletableFuture<>();
-        List<T> l = new CopyOnWriteArrayList<>();
-        if (cons != null) {
-            cons.accept(ft);
-        }
-        ft.forEach(t -> {
-            if (result.isCancelled()) {
-                return;
+        return start(result, () -> {
+            if (cons != null) {
+                cons.accept(ft);
             }
-            l.add(t);
-        }, (v, thrown) -> {
+            // Each batch is only requested after the previous one has been
+            // added, so a plain ArrayList is safe here
+            List<T> l = new ArrayList<>();
+            pump(ft, 0, batch -> {
+                l.addAll(batch);
+                return null;
+            }, result, (count, thrown) -> {
+                if (thrown != null) {
+                    result.completeExceptionally(thrown);
+                } else if (!result.isCancelled()) {
+                    result.complete(l);
+                }
+            }, null);
+        });
+    }
+
+    /**
+     * Stream the results of a query to a handler one batch at a time, fetching
+     * each batch only once the handler has finished with the previous one.
+     * Cancelling the returned future closes the cursor.
+     *
+     * @param query The query
+     * @param batchSize The cursor batch size, or 0 for the server's default
+     * @param handler The handler
+     * @return A future which completes with the number of results once the
+     * cursor is exhausted
+     */
+    public EnhCompletableFuture<Long> findBatched(Bson query, int batchSize, BatchHandler<? super T> handler) {
+        return stream(c -> c.find(query), batchSize, handler);
+    }
+
+    /**
+     * Stream the results of a query, decoded as the passed type, to a handler
+     * one batch at a time.
+     *
+     * @param <R> The result type
+     * @param query The query
+     * @param type The result type
+     * @param batchSize The cursor batch size, or 0 for the server's default
+     * @param handler The handler
+     * @return A future which completes with the number of results once the
+     * cursor is exhausted
+     */
+    public <R> EnhCompletableFuture<Long> findBatched(Bson query, Class<R> type, int batchSize, BatchHandler<? super R> handler) {
+        return stream(c -> c.find(query, type), batchSize, handler);
+    }
+
+    /**
+     * Stream the results of an aggregation pipeline to a handler one batch at
+     * a time.
+     *
+     * @param pipeline The pipeline
+     * @param batchSize The cursor batch size, or 0 for the server's default
+     * @param handler The handler
+     * @return A future which completes with the number of results once the
+     * cursor is exhausted
+     */
+    public EnhCompletableFuture<Long> aggregateBatched(List<? extends Bson> pipeline, int batchSize, BatchHandler<? super T> handler) {
+        return stream(c -> c.aggregate(pipeline), batchSize, handler);
+    }
+
+    /**
+     * Stream the results of any query against the collection - e.g. one
+     * with a sort, projection, session or distinct - to a handler one batch at
+     * a time.
+     *
+     * @param <R> The result type
+     * @param query Creates the iterable from the collection
+     * @param batchSize The cursor batch size, or 0 for the server's default
+     * @param handler The handler
+     * @return A future which completes with the number of results once the
+     * cursor is exhausted
+     */
+    public <R> EnhCompletableFuture<Long> stream(Function<MongoCollection<T>, ? extends MongoIterable<R>> query,
+            int batchSize, BatchHandler<? super R> handler) {
+        Checks.notNull("query", query);
+        Checks.notNull("handler", handler);
+        return withCollection(c -> stream(c, query, batchSize, handler));
+    }
+
+    /**
+     * Stream results once the circuit breaker admits opening the cursor.
+     */
+    private <R> EnhCompletableFuture<Long> stream(MongoCollection<T> collection,
+            Function<MongoCollection<T>, ? extends MongoIterable<R>> query, int batchSize, BatchHandler<? super R> handler) {
+        EnhCompletableFuture<Long> result = new EnhCompletableFuture<>();
+        EnhCompletableFuture<Void> opened = new EnhCompletableFuture<>();
+        opened.whenComplete((ignored, thrown) -> {
+            // Refused, or the driver threw
             if (thrown != null) {
                 result.completeExceptionally(thrown);
-            } else {
-                if (result.isCancelled()) {
+            }
+        });
+        // Cancelled before the cursor was opened
+        result.whenComplete((count, thrown) -> opened.complete(null));
+        start(opened, () -> pump(query.apply(collection), batchSize, handler, result, new SRC<>(result), opened));
+        return result;
+    }
+
+    /**
+     * Scan a whole collection in parallel, fork/join style: the _id range is
+     * split into partitions using a random sample of ids as split points,
+     * each partition is streamed with its own cursor, and batches are handed
+     * to the handler on the passed executor - typically a pool bound with
+     * giulius-threadpool's ThreadModule and injected as
+     * <code>&#064;Named("scan") Executor</code>. Each partition fetches its
+     * next batch only once the handler has finished with the previous one, so
+     * at most one batch per partition is in memory at a time. The handler
+     * must be thread-safe.
+     *
+     * @param partitions The number of partitions; fewer may be used if the
+     * collection is small or its ids are of mixed types
+     * @param batchSize The cursor batch size, or 0 for the server's default
+     * @param executor Runs the handler
+     * @param handler The handler
+     * @return A future which completes with per-partition counts and
+     * throughput once every partition is exhausted; cancelling it closes all
+     * cursors
+     */
+    public EnhCompletableFuture<ScanResult> parallelScan(int partitions, int batchSize, Executor executor, BatchHandler<? super T> handler) {
+        return parallelScan(new Document(), partitions, batchSize, executor, handler);
+    }
+
+    /**
+     * Scan the documents matching a filter in parallel, partitioned by _id.
+     *
+     * @param filter The filter
+     * @param partitions The number of partitions
+     * @param batchSize The cursor batch size, or 0 for the server's default
+     * @param executor Runs the handler
+     * @param handler The handler
+     * @return A future
+     * @see #parallelScan(int, int, java.util.concurrent.Executor, com.mastfrog.giulius.mongodb.async.BatchHandler)
+     */
+    public EnhCompletableFuture<ScanResult> parallelScan(Bson filter, int partitions, int batchSize, Executor executor, BatchHandler<? super T> handler) {
+        Checks.notNull("filter", filter);
+        Checks.notNull("executor", executor);
+        Checks.notNull("handler", handler);
+        Checks.nonNegative("partitions", Checks.nonZero("partitions", partitions));
+        long start = System.nanoTime();
+        return withCollection(collection -> {
+            EnhCompletableFuture<ScanResult> result = new EnhCompletableFuture<>();
+            if (partitions == 1) {
+                scan(collection, Collections.singletonList(filter), batchSize, executor, handler, start, result);
+                return result;
+            }
+            iterFuture(collection.aggregate(ScanPartitions.samplePipeline(partitions), BsonDocument.class), null)
+                    .whenComplete((sample, thrown) -> {
+                        if (thrown != null) {
+                            result.completeExceptionally(thrown);
+                            return;
+                        }
+                        if (result.isDone()) {
+                            return;
+                        }
+                        List<Bson> filters;
+                        try {
+                            filters = ScanPartitions.filters(filter, ScanPartitions.splitPoints(sample, partitions));
+                        } catch (RuntimeException ex) {
+                            result.completeExceptionally(ex);
+                            return;
+                        }
+                        scan(collection, filters, batchSize, executor, handler, start, result);
+                    });
+            return result;
+        });
+    }
+
+    private void scan(MongoCollection<T> collection, List<Bson> filters, int batchSize,
+            Executor executor, BatchHandler<? super T> handler, long start, EnhCompletableFuture<ScanResult> result) {
+        long[] counts = new long[filters.size()];
+        AtomicInteger remaining = new AtomicInteger(filters.size());
+        BatchHandler<T> onExecutor = batch -> {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            executor.execute(() -> {
+                try {
+                    CompletionStage<?> demand = handler.onBatch(batch);
+                    if (demand == null) {
+                        done.complete(null);
+                    } else {
+                        demand.whenComplete((ignored, err) -> {
+                            if (err != null) {
+                                done.completeExceptionally(err);
+                            } else {
+                                done.complete(null);
+                            }
+                        });
+                    }
+                } catch (Throwable t) {
+                    done.completeExceptionally(t);
+                }
+            });
+            return done;
+        };
+        List<CompletableFuture<Long>> scans = new ArrayList<>(filters.size());
+        for (int i = 0; i < filters.size(); i++) {
+            int partition = i;
+            Bson partitionFilter = filters.get(i);
+            EnhCompletableFuture<Long> scan = stream(collection, c -> c.find(partitionFilter), batchSize, onExecutor);
+            scans.add(scan);
+            scan.whenComplete((count, thrown) -> {
+                if (thrown != null) {
+                    result.completeExceptionally(thrown);
                     return;
                 }
-                result.complete(l);
+                counts[partition] = count;
+                // The decrement publishes every partition's count
+                if (remaining.decrementAndGet() == 0) {
+                    result.complete(new ScanResult(counts, System.nanoTime() - start));
+                }
+            });
+        }
+        // One partition failing, or the caller cancelling, stops the rest
+        result.whenComplete((ignored, thrown) -> {
+            if (thrown != null) {
+                scans.forEach(scan -> scan.cancel(false));
             }
         });
+    }
+
+    /**
+     * Stream the results of a MongoIterable to a handler one batch at a time,
+     * fetching each batch only once the handler has finished with the
+     * previous one. Cancelling the returned future closes the cursor.
+     *
+     * @param <R> The result type
+     * @param iter The iterable
+     * @param batchSize The cursor batch size, or 0 for the server's default
+     * @param handler The handler
+     * @return A future which completes with the number of results once the
+     * cursor is exhausted
+     */
+    public static <R> EnhCompletableFuture<Long> stream(MongoIterable<R> iter, int batchSize, BatchHandler<? super R> handler) {
+        EnhCompletableFuture<Long> result = new EnhCompletableFuture<>();
+        pump(iter, batchSize, handler, result, new SRC<>(result), null);
         return result;
     }
 
+    private static <R> void pump(MongoIterable<R> iter, int batchSize, BatchHandler<? super R> handler,
+            CompletableFuture<?> watch, SingleResultCallback<Long> onDone, CompletableFuture<Void> opened) {
+        if (batchSize > 0) {
+            iter.batchSize(batchSize);
+        }
+        iter.batchCursor((cursor, thrown) -> {
+            if (opened != null) {
+                if (thrown != null) {
+                    opened.completeExceptionally(thrown);
+                } else {
+                    opened.complete(null);
+                }
+            }
+            if (thrown != null) {
+                onDone.onResult(null, thrown);
+            } else if (cursor == null) {
+                onDone.onResult(0L, null);
+            } else {
+                new BatchPump<>(cursor, handler, watch, onDone).next();
+            }
+        });
+    }
+
+    private static final class BatchPump<R> implements SingleResultCallback<List<R>> {
+
+        private final AsyncBatchCursor<R> cursor;
+        private final BatchHandler<? super R> handler;
+        private final CompletableFuture<?> watch;
+        private final SingleResultCallback<Long> onDone;
+        private long count;
+
+        BatchPump(AsyncBatchCursor<R> cursor, BatchHandler<? super R> handler,
+                CompletableFuture<?> watch, SingleResultCallback<Long> onDone) {
+            this.cursor = cursor;
+            this.handler = handler;
+            this.watch = watch;
+            this.onDone = onDone;
+            // Close the cursor as soon as the caller cancels, rather than when
+            // the next batch arrives, which on a quiet tailable cursor - a
+            // change stream - may be never
+            watch.whenComplete((ignored, thrown) -> {
+                if (thrown != null) {
+                    cursor.close();
+                }
+            });
+        }
+
+        void next() {
+            if (watch.isDone()) {
+                // Cancelled by the caller
+                cursor.close();
+                return;
+            }
+            cursor.next(this);
+        }
+
+        private void fail(Throwable thrown) {
+            cursor.close();
+            onDone.onResult(null, thrown);
+        }
+
+        @Override
+        public void onResult(List<R> batch, Throwable thrown) {
+            if (thrown != null) {
+                fail(thrown);
+                return;
+            }
+            if (batch == null) {
+                cursor.close();
+                onDone.onResult(count, null);
+                return;
+            }
+            if (watch.isDone()) {
+                // Cancelled while the batch was being fetched
+                cursor.close();
+                return;
+            }
+            if (batch.isEmpty()) {
+                next();
+                return;
+            }
+            count += batch.size();
+            CompletionStage<?> demand;
+            try {
+                demand = handler.onBatch(batch);
+            } catch (Throwable t) {
+                fail(t);
+                return;
+            }
+            if (demand == null) {
+                next();
+            } else {
+                demand.whenComplete((ignored, err) -> {
+                    if (err != null) {
+                        fail(err);
+                    } else {
+                        next();
+                    }
+                });
+            }
+        }
+    }
+
     public EnhCompletableFuture<T> findOneAndUpdate(Bson query, Bson update, FindOneAndUpdateOptions foauo) {
         EnhCompletableFuture<T> result = new EnhCompletableFuture<>();
-        collection().findOneAndUpdate(query, update, foauo, new SRC<>(result));
-        return result;
+        return start(result, c -> c.findOneAndUpdate(query, update, foauo, written(result)));
     }
 
     public EnhCompletableFuture<T> findOneAndUpdate(Bson query, Bson update) {
@@ -301,8 +815,7 @@ public final class MongoFutureCollection<T> {
 
     public EnhCompletableFuture<T> findOne() {
         EnhCompletableFuture<T> result = new EnhCompletableFuture<>();
-        collection().find().first(new SRC<>(result));
-        return result;
+        return start(result, c -> c.find().first(new SRC<>(result)));
     }
 
     public EnhCompletableFuture<T> findOne(ObjectId id) {
@@ -310,143 +823,287 @@ public final class MongoFutureCollection<T> {
     }
 
     public EnhCompletableFuture<T> findOne(Bson query) {
-        EnhCompletableFuture<T> result = new EnhCompletableFuture<>();
-        collection().find(query).first(new SRC<>(result));
-        return result;
+        return withCollection(c -> findOne(query, null, c.getDocumentClass()));
     }
 
     public EnhCompletableFuture<T> findOne(Bson query, Bson projection) {
-        EnhCompletableFuture<T> result = new EnhCompletableFuture<>();
-        collection().find(query).projection(projection).first(new SRC<>(result));
-        return result;
+        return withCollection(c -> findOne(query, projection, c.getDocumentClass()));
     }
 
     public <R> EnhCompletableFuture<R> findOne(Bson query, Class<R> type) {
-        EnhCompletableFuture<R> result = new EnhCompletableFuture<>();
-        collection().find(query, type).first(new SRC<>(result));
-        return result;
+        return findOne(query, null, type);
+    }
+
+    /**
+     * Find the first document matching a query. If a findOne cache was
+     * configured for this collection with
+     * <code>GiuliusMongoAsyncModule.cacheFindOne()</code>, results may come
+     * from the cache; the overloads which take a ClientSession never use it.
+     * Otherwise, if read sharing was configured with
+     * <code>GiuliusMongoAsyncModule.shareConcurrentReads()</code>, identical
+     * concurrent calls share one query; the result is held as BSON and
+     * decoded separately for each caller, so callers may modify what they get
+     * without affecting each other.
+     *
+     * @param <R> The result type
+     * @param query The query
+     * @param projection The projection, or null
+     * @param type The result type
+     * @return A future
+     */
+    public <R> EnhCompletableFuture<R> findOne(Bson query, Bson projection, Class<R> type) {
+        return withCollection(collection -> {
+            if (cache != null) {
+                return cache.findOne(collection.getCodecRegistry(), query, projection, type,
+                        () -> findOneUncached(collection, query, projection, type));
+            } else if (reads != null) {
+                return reads.shareDecoded(SharedReads.key(collection, "findOne", type, query, projection),
+                        collection.getCodecRegistry().get(type), () -> findOneUncached(collection, query, projection, type));
+            }
+            return findOneUncached(collection, query, projection, type);
+        });
     }
 
-    public <R> EnhCompletableFuture<R> findOne(Bson query, Bson projection, Class<R> type) {
+    private <R> EnhCompletableFuture<R> findOneUncached(MongoCollection<T> collection, Bson query, Bson projection, Class<R> type) {
         EnhCompletableFuture<R> result = new EnhCompletableFuture<>();
-        collection().find(query, type).projection(projection).first(new SRC<>(result));
-        return result;
+        return start(result, () -> {
+            FindIterable<R> find = collection.find(query, type);
+            if (projection != null) {
+                find = find.projection(projection);
+            }
+            find.first(new SRC<>(result));
+        });
+    }
+
+    /**
+     * Get one page of the documents matching a filter, in ascending order of
+     * _id. Each page is found with a range query starting after the last
+     * document of the previous page, rather than with skip(), so fetching
+     * page N costs the same as fetching the first, and only one page is in
+     * memory at a time.
+     *
+     * @param filter The filter
+     * @param pageSize The maximum number of documents per page
+     * @param resumeToken The resume token of the previous page, or null for
+     * the first page
+     * @return A future
+     */
+    public EnhCompletableFuture<Page<T>> page(Bson filter, int pageSize, String resumeToken) {
+        return withCollection(c -> page(filter, "_id", true, pageSize, resumeToken, c.getDocumentClass()));
+    }
+
+    /**
+     * Get one page of the documents matching a filter, sorted on a field
+     * (ties broken by _id). Every matching document must have a value for
+     * the field, and it should be indexed together with _id for paging to
+     * be efficient. Changes to the field between pages may cause documents
+     * to be skipped or seen twice.
+     *
+     * @param filter The filter
+     * @param field The field to sort on, which may be a dotted path
+     * @param ascending The sort direction
+     * @param pageSize The maximum number of documents per page
+     * @param resumeToken The resume token of the previous page, or null for
+     * the first page
+     * @return A future
+     */
+    public EnhCompletableFuture<Page<T>> page(Bson filter, String field, boolean ascending, int pageSize, String resumeToken) {
+        return withCollection(c -> page(filter, field, ascending, pageSize, resumeToken, c.getDocumentClass()));
+    }
+
+    public <TResult> EnhCompletableFuture<Page<TResult>> page(Bson filter, String field, boolean ascending,
+            int pageSize, String resumeToken, Class<TResult> type) {
+        Checks.notNull("filter", filter);
+        Checks.notNull("field", field);
+        Checks.nonNegative("pageSize", Checks.nonZero("pageSize", pageSize));
+        Keyset keyset = new Keyset(field, ascending);
+        Bson query = resumeToken == null ? filter : Filters.and(filter, keyset.after(resumeToken));
+        return withCollection(collection -> {
+            // One extra document tells us if there is another page
+            FindIterable<TResult> find = collection.find(query, type).sort(keyset.sort())
+                    .limit(pageSize + 1).batchSize(pageSize + 1);
+            EnhCompletableFuture<Page<TResult>> result = new EnhCompletableFuture<>();
+            iterFuture(find, null).whenComplete((results, thrown) -> {
+                if (thrown != null) {
+                    result.completeExceptionally(thrown);
+                    return;
+                }
+                try {
+                    result.complete(keyset.page(results, pageSize, collection.getCodecRegistry()));
+                } catch (RuntimeException ex) {
+                    result.completeExceptionally(ex);
+                }
+            });
+            return result;
+        });
     }
 
     public EnhCompletableFuture<T> findOne(ClientSession cs, Bson query) {
         EnhCompletableFuture<T> result = new EnhCompletableFuture<>();
-        collection().find(cs, query).first(new SRC<>(result));
-        return result;
+        return start(result, c -> c.find(cs, query).first(new SRC<>(result)));
     }
 
     public EnhCompletableFuture<T> findOne(ClientSession cs, Bson query, Bson projection) {
         EnhCompletableFuture<T> result = new EnhCompletableFuture<>();
-        collection().find(cs, query).projection(projection).first(new SRC<>(result));
-        return result;
+        return start(result, c -> c.find(cs, query).projection(projection).first(new SRC<>(result)));
     }
 
     public <R> EnhCompletableFuture<R> findOne(ClientSession cs, Bson query, Class<R> type) {
         EnhCompletableFuture<R> result = new EnhCompletableFuture<>();
-        collection().find(cs, query, type).first(new SRC<>(result));
-        return result;
+        return start(result, c -> c.find(cs, query, type).first(new SRC<>(result)));
     }
 
     public <R> EnhCompletableFuture<R> findOne(ClientSession cs, Bson query, Bson projection, Class<R> type) {
         EnhCompletableFuture<R> result = new EnhCompletableFuture<>();
-        collection().find(cs, query, type).projection(projection).first(new SRC<>(result));
-        return result;
+        return start(result, c -> c.find(cs, query, type).projection(projection).first(new SRC<>(result)));
     }
 
     public <TResult> EnhCompletableFuture<List<TResult>> find(Class<TResult> type) {
-        return iterFuture(collection().find(type), null);
+        return find(new Document(), null, type);
     }
 
     public EnhCompletableFuture<List<T>> find(Bson bson) {
-        return iterFuture(collection().find(bson), null);
+        return withCollection(c -> find(bson, null, c.getDocumentClass()));
     }
 
     public EnhCompletableFuture<List<T>> find(Bson bson, Bson projection) {
-        return iterFuture(collection().find(bson).projection(projection), null);
+        return withCollection(c -> find(bson, projection, c.getDocumentClass()));
     }
 
     public <TResult> EnhCompletableFuture<List<TResult>> find(Bson bson, Class<TResult> type) {
-        return iterFuture(collection().find(bson, type), null);
+        return find(bson, null, type);
+    }
+
+    /**
+     * Find all documents matching a query. If read sharing was configured
+     * for this collection with
+     * <code>GiuliusMongoAsyncModule.shareConcurrentReads()</code>, identical
+     * concurrent calls share one query; each caller gets its own list, but
+     * the documents in it are the same instances, and should not be modified.
+     *
+     * @param <TResult> The result type
+     * @param bson The query
+     * @param projection The projection, or null
+     * @param type The result type
+     * @return A future
+     */
+    public <TResult> EnhCompletableFuture<List<TResult>> find(Bson bson, Bson projection, Class<TResult> type) {
+        return withCollection(collection -> {
+            if (reads != null) {
+                return reads.share(SharedReads.key(collection, "find", type, bson, projection), ArrayList::new,
+                        () -> findUnshared(collection, bson, projection, type));
+            }
+            return findUnshared(collection, bson, projection, type);
+        });
     }
 
-    public <TResult> EnhCompletableFuture<List<TResult>> find(Bson bson, Bson projection, Class<TResult> type) {
-        return iterFuture(collection().find(bson, type).projection(projection), null);
+    private <R> EnhCompletableFuture<List<R>> findUnshared(MongoCollection<T> collection, Bson bson, Bson projection, Class<R> type) {
+        FindIterable<R> find = collection.find(bson, type);
+        return iterFuture(projection == null ? find : find.projection(projection), null);
     }
 
     public EnhCompletableFuture<List<T>> find(ClientSession cs) {
-        return iterFuture(collection().find(cs), null);
+        return list(c -> c.find(cs));
     }
 
     public <TResult> EnhCompletableFuture<List<TResult>> find(ClientSession cs, Class<TResult> type) {
-        return iterFuture(collection().find(cs, type), null);
+        return list(c -> c.find(cs, type));
     }
 
     public EnhCompletableFuture<List<T>> find(ClientSession cs, Bson bson) {
-        return iterFuture(collection().find(cs, bson), null);
+        return list(c -> c.find(cs, bson));
     }
 
     public EnhCompletableFuture<List<T>> find(ClientSession cs, Bson bson, Bson projection) {
-        return iterFuture(collection().find(cs, bson).projection(projection), null);
+        return list(c -> c.find(cs, bson).projection(projection));
     }
 
     public <R> EnhCompletableFuture<List<R>> find(ClientSession cs, Bson bson, Bson projection, Class<R> type) {
-        return iterFuture(collection().find(cs, bson, type).projection(projection), null);
+        return list(c -> c.find(cs, bson, type).projection(projection));
     }
 
     public <TResult> EnhCompletableFuture<List<TResult>> distinct(String string, Class<TResult> type) {
-        return iterFuture(collection().distinct(string, type), null);
+        return list(c -> c.distinct(string, type));
     }
 
     public <TResult> EnhCompletableFuture<List<TResult>> distinct(String string, Bson bson, Class<TResult> type) {
-        return iterFuture(collection().distinct(string, bson, type), null);
+        return list(c -> c.distinct(string, bson, type));
     }
 
     public <TResult> EnhCompletableFuture<List<TResult>> distinct(ClientSession cs, String string, Class<TResult> type) {
-        return iterFuture(collection().distinct(cs, string, type), null);
+        return list(c -> c.distinct(cs, string, type));
     }
 
     public <TResult> EnhCompletableFuture<List<TResult>> distinct(ClientSession cs, String string, Bson bson, Class<TResult> type) {
-        return iterFuture(collection().distinct(cs, string, bson, type), null);
+        return list(c -> c.distinct(cs, string, bson, type));
     }
 
     public <NewTDocument> MongoFutureCollection<NewTDocument> withDocumentClass(Class<NewTDocument> type) {
-        return new MongoFutureCollection<>(xform(cl -> cl.withDocumentClass(type)));
+        return new MongoFutureCollection<>(xform(cl -> cl.withDocumentClass(type)), null, cache, reads, breaker);
     }
 
     public MongoFutureCollection<T> withReadPreference(ReadPreference rp) {
-        return new MongoFutureCollection<>(xform(cl -> cl.withReadPreference(rp)));
+        return new MongoFutureCollection<>(xform(cl -> cl.withReadPreference(rp)), coalescer, cache, reads, breaker);
     }
 
     public MongoFutureCollection<T> withWriteConcern(WriteConcern wc) {
-        return new MongoFutureCollection<>(xform(cl -> cl.withWriteConcern(wc)));
+        return new MongoFutureCollection<>(xform(cl -> cl.withWriteConcern(wc)), null, cache, reads, breaker);
     }
 
     public MongoFutureCollection<T> withReadConcern(ReadConcern rc) {
-        return new MongoFutureCollection<>(xform(cl -> cl.withReadConcern(rc)));
+        return new MongoFutureCollection<>(xform(cl -> cl.withReadConcern(rc)), coalescer, cache, reads, breaker);
     }
 
     private <R> Provider<MongoCollection<R>> xform(Function<MongoCollection<T>, MongoCollection<R>> xform) {
         return new TransformProvider<>(coll, xform);
     }
 
-    private static final class TransformProvider<T, R> implements Provider<MongoCollection<R>> {
+    private static final class TransformProvider<T, R> implements AsyncCollectionProvider<R> {
 
         private final Provider<? extends MongoCollection<T>> orig;
         private final Function<MongoCollection<T>, MongoCollection<R>> xform;
+        private volatile Transformed<T, R> last;
 
         public TransformProvider(Provider<? extends MongoCollection<T>> orig, Function<MongoCollection<T>, MongoCollection<R>> xform) {
             this.orig = orig;
             this.xform = xform;
         }
 
+        @Override
+        public CompletableFuture<MongoCollection<R>> getAsync() {
+            CompletableFuture<MongoCollection<T>> o = AsyncCollectionProvider.collection(orig);
+            if (o.isDone() && !o.isCompletedExceptionally()) {
+                return CompletableFuture.completedFuture(transform(o.join()));
+            }
+            return o.thenApply(this::transform);
+        }
+
         @Override
         public MongoCollection<R> get() {
-            MongoCollection<T> o = orig.get();
-            return xform.apply(o);
+            return transform(orig.get());
+        }
+
+        private MongoCollection<R> transform(MongoCollection<T> o) {
+            // Collections are immutable, so reuse the transformed collection
+            // for as long as the original is the same instance
+            Transformed<T, R> l = last;
+            if (l != null && l.orig == o) {
+                return l.result;
+            }
+            MongoCollection<R> result = xform.apply(o);
+            last = new Transformed<>(o, result);
+            return result;
+        }
+    }
+
+    private static final class Transformed<T, R> {
+
+        final MongoCollection<T> orig;
+        final MongoCollection<R> result;
+
+        Transformed(MongoCollection<T> orig, MongoCollection<R> result) {
+            this.orig = orig;
+            this.result = result;
         }
     }
 }
@@ -0,0 +1,366 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import java.util.concurrent.atomic.LongAdder;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+/**
+ * Latency and error counts for every command the driver sends, per
+ * database, collection and command name, and connection pool statistics.
+ * Collected by listeners which MongoClientSettingsProvider registers on the
+ * client settings it builds; if you supply your own MongoClientSettings, add
+ * {@link #commandListener()} and {@link #connectionPoolListener()} to them
+ * yourself.
+ *
+ * @author agent
+ */
+@Singleton
+public final class MongoMetrics {
+
+    private final ConcurrentHashMap<OperationKey, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, OperationMetrics> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ServerId, Queue<Long>> waiting = new ConcurrentHashMap<>();
+    private final LatencyHistogram poolWaits = new LatencyHistogram();
+    private final LongAdder checkedOut = new LongAdder();
+    private final LongAdder open = new LongAdder();
+    private final LongAdder waitQueueSize = new LongAdder();
+    private final CommandListener commandListener = new Commands();
+    private final ConnectionPoolListener poolListener = new Pool();
+
+    @Inject
+    MongoMetrics() {
+    }
+
+    /**
+     * The listener which records command latencies and failures.
+     *
+     * @return A listener
+     */
+    public CommandListener commandListener() {
+        return commandListener;
+    }
+
+    /**
+     * The listener which records connection pool statistics.
+     *
+     * @return A listener
+     */
+    public ConnectionPoolListener connectionPoolListener() {
+        return poolListener;
+    }
+
+    /**
+     * Get metrics for every combination of database, collection and
+     * command seen so far.
+     *
+     * @return A new list
+     */
+    public List<OperationMetrics> operations() {
+        return new ArrayList<>(operations.values());
+    }
+
+    /**
+     * Get metrics for one command on one collection, e.g. "find".
+     *
+     * @param database The database name
+     * @param collection The collection name, or the empty string for
+     * commands which do not target a collection
+     * @param command The command name
+     * @return The metrics, or null if no such command has been run
+     */
+    public OperationMetrics operation(String database, String collection, String command) {
+        return operations.get(new OperationKey(database, collection, command));
+    }
+
+    /**
+     * How long requests waited in the connection pool's wait queue for a
+     * connection. The driver does not identify waiters, so waits are
+     * matched to requests in first-in, first-out order - exact when the
+     * pool serves waiters in order, approximate when some time out.
+     *
+     * @return A histogram
+     */
+    public LatencyHistogram poolWaitTimes() {
+        return poolWaits;
+    }
+
+    /**
+     * The number of connections currently checked out of all pools.
+     *
+     * @return A count
+     */
+    public long checkedOutConnections() {
+        return checkedOut.sum();
+    }
+
+    /**
+     * The number of connections currently open, in use or not.
+     *
+     * @return A count
+     */
+    public long openConnections() {
+        return open.sum();
+    }
+
+    /**
+     * The number of requests currently waiting for a connection.
+     *
+     * @return A count
+     */
+    public long waitQueueSize() {
+        return waitQueueSize.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("checkedOut=").append(checkedOutConnections())
+                .append(" open=").append(openConnections())
+                .append(" waiting=").append(waitQueueSize())
+                .append(" poolWaits={").append(poolWaits).append('}');
+        for (OperationMetrics m : operations.values()) {
+            sb.append('\n').append(m);
+        }
+        return sb.toString();
+    }
+
+    static String collectionOf(String commandName, BsonDocument command) {
+        // Most commands name their collection as the value of the command
+        // name; getMore names it separately.  Commands containing
+        // credentials arrive as empty documents.
+        BsonValue value = command.get(commandName);
+        if (value == null || !value.isString()) {
+            value = command.get("collection");
+        }
+        return value != null && value.isString() ? value.asString().getValue() : "";
+    }
+
+    private final class Commands implements CommandListener {
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+            String name = event.getCommandName();
+            OperationKey key = new OperationKey(event.getDatabaseName(),
+                    collectionOf(name, event.getCommand()), name);
+            OperationMetrics metrics = operations.get(key);
+            if (metrics == null) {
+                metrics = new OperationMetrics(key);
+                OperationMetrics old = operations.putIfAbsent(key, metrics);
+                if (old != null) {
+                    metrics = old;
+                }
+            }
+            inFlight.put(event.getRequestId(), metrics);
+        }
+
+        @Override
+        public void commandSucceeded(CommandSucceededEvent event) {
+            OperationMetrics metrics = inFlight.remove(event.getRequestId());
+            if (metrics != null) {
+                metrics.latency.record(event.getElapsedTime(NANOSECONDS));
+            }
+        }
+
+        @Override
+        public void commandFailed(CommandFailedEvent event) {
+            OperationMetrics metrics = inFlight.remove(event.getRequestId());
+            if (metrics != null) {
+                metrics.failures.increment();
+                metrics.latency.record(event.getElapsedTime(NANOSECONDS));
+            }
+        }
+    }
+
+    private final class Pool extends ConnectionPoolListenerAdapter {
+
+        @Override
+        public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+            checkedOut.increment();
+        }
+
+        @Override
+        public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+            checkedOut.decrement();
+        }
+
+        @Override
+        public void connectionAdded(ConnectionAddedEvent event) {
+            open.increment();
+        }
+
+        @Override
+        public void connectionRemoved(ConnectionRemovedEvent event) {
+            open.decrement();
+        }
+
+        @Override
+        public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+            waitQueueSize.increment();
+            Queue<Long> queue = waiting.get(event.getServerId());
+            if (queue == null) {
+                queue = new ConcurrentLinkedQueue<>();
+                Queue<Long> old = waiting.putIfAbsent(event.getServerId(), queue);
+                if (old != null) {
+                    queue = old;
+                }
+            }
+            queue.add(System.nanoTime());
+        }
+
+        @Override
+        public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+            waitQueueSize.decrement();
+            Queue<Long> queue = waiting.get(event.getServerId());
+            Long entered = queue == null ? null : queue.poll();
+            if (entered != null) {
+                poolWaits.record(System.nanoTime() - entered);
+            }
+        }
+    }
+
+    /**
+     * Latencies and failures of one command against one collection.
+     */
+    public static final class OperationMetrics {
+
+        private final OperationKey key;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+
+        OperationMetrics(OperationKey key) {
+            this.key = key;
+        }
+
+        public String database() {
+            return key.database;
+        }
+
+        /**
+         * The collection, or the empty string for commands which do not
+         * target one.
+         *
+         * @return A collection name
+         */
+        public String collection() {
+            return key.collection;
+        }
+
+        public String command() {
+            return key.command;
+        }
+
+        /**
+         * Round-trip times as measured by the driver, of successful and
+         * failed commands alike.
+         *
+         * @return A histogram
+         */
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        /**
+         * The number of commands which failed.
+         *
+         * @return A count
+         */
+        public long failures() {
+            return failures.sum();
+        }
+
+        /**
+         * The proportion of commands which failed.
+         *
+         * @return A number between 0 and 1
+         */
+        public double errorRate() {
+            long count = latency.count();
+            return count == 0 ? 0 : (double) failures.sum() / count;
+        }
+
+        @Override
+        public String toString() {
+            return key + " failures=" + failures() + " " + latency;
+        }
+    }
+
+    static final class OperationKey {
+
+        private final String database;
+        private final String collection;
+        private final String command;
+
+        OperationKey(String database, String collection, String command) {
+            this.database = database;
+            this.collection = collection;
+            this.command = command;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            } else if (!(o instanceof OperationKey)) {
+                return false;
+            }
+            OperationKey other = (OperationKey) o;
+            return command.equals(other.command) && collection.equals(other.collection)
+                    && Objects.equals(database, other.database);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(database, collection, command);
+        }
+
+        @Override
+        public String toString() {
+            return collection.isEmpty() ? database + " " + command
+                    : database + "." + collection + " " + command;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.settings.Settings;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.async.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+/**
+ * Stores change stream resume tokens as one document per subscriber, in the
+ * collection named by <code>mongo.change.stream.token.collection</code>.
+ *
+ * @author agent
+ */
+@Singleton
+final class MongoResumeTokenStore implements ResumeTokenStore {
+
+    /**
+     * The collection resume tokens are stored in. Default
+     * changeStreamResumeTokens.
+     */
+    static final String SETTINGS_KEY_TOKEN_COLLECTION = "mongo.change.stream.token.collection";
+    private final Provider<MongoDatabase> db;
+    private final String collectionName;
+
+    @Inject
+    MongoResumeTokenStore(Provider<MongoDatabase> db, Settings settings) {
+        this.db = db;
+        this.collectionName = settings.getString(SETTINGS_KEY_TOKEN_COLLECTION, "changeStreamResumeTokens");
+    }
+
+    private MongoCollection<BsonDocument> collection() {
+        return db.get().getCollection(collectionName, BsonDocument.class);
+    }
+
+    @Override
+    public CompletionStage<BsonDocument> load(String subscriberName) {
+        CompletableFuture<BsonDocument> result = new CompletableFuture<>();
+        collection().find(Filters.eq("_id", subscriberName)).first((doc, thrown) -> {
+            if (thrown != null) {
+                result.completeExceptionally(thrown);
+                return;
+            }
+            BsonValue token = doc == null ? null : doc.get("token");
+            result.complete(token == null || !token.isDocument() ? null : token.asDocument());
+        });
+        return result;
+    }
+
+    @Override
+    public CompletionStage<?> save(String subscriberName, BsonDocument resumeToken) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        BsonDocument doc = new BsonDocument("_id", new BsonString(subscriberName))
+                .append("token", resumeToken)
+                .append("updated", new BsonDateTime(System.currentTimeMillis()));
+        collection().replaceOne(Filters.eq("_id", subscriberName), doc, new UpdateOptions().upsert(true), (res, thrown) -> {
+            if (thrown != null) {
+                result.completeExceptionally(thrown);
+            } else {
+                result.complete(null);
+            }
+        });
+        return result;
+    }
+}
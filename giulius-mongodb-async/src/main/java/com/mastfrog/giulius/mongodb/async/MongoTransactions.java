@@ -0,0 +1,286 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.function.EnhCompletableFuture;
+import com.mastfrog.util.preconditions.Checks;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.async.client.MongoClient;
+import com.mongodb.session.ClientSession;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+/**
+ * Runs units of work in a client session, retrying the whole unit with
+ * exponential backoff when it fails with an error which is expected to
+ * resolve by itself - a network error, a primary stepping down, a write
+ * conflict, or a server error labelled <code>TransientTransactionError</code>
+ * or <code>UnknownTransactionCommitResult</code> - so callers do not each
+ * write their own retry loop.
+ * <p>
+ * Each attempt gets a new session, which is closed when the stage returned
+ * by the unit of work completes. The driver version this library is built
+ * against does not expose multi-document transactions, so sessions are
+ * causally consistent, not transactional: writes made by a failed attempt
+ * are not rolled back, and units of work must be safe to run more than once
+ * - for example by using upserts or conditional updates.
+ *
+ * @author agent
+ */
+@Singleton
+public final class MongoTransactions {
+
+    /**
+     * The maximum number of times a unit of work is attempted. Default 5.
+     */
+    public static final String SETTINGS_KEY_MAX_ATTEMPTS = "mongo.transactions.max.attempts";
+    /**
+     * The delay before the first retry, doubled for each subsequent retry up
+     * to one second. Default 10.
+     */
+    public static final String SETTINGS_KEY_BACKOFF_MILLIS = "mongo.transactions.backoff.millis";
+    /**
+     * No retry is started once this long has passed since the first attempt.
+     * Default 120000.
+     */
+    public static final String SETTINGS_KEY_MAX_TIME_MILLIS = "mongo.transactions.max.time.millis";
+    static final String TRANSIENT_TRANSACTION_ERROR = "TransientTransactionError";
+    static final String UNKNOWN_TRANSACTION_COMMIT_RESULT = "UnknownTransactionCommitResult";
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+    // HostUnreachable, HostNotFound, NetworkTimeout, ShutdownInProgress,
+    // WriteConflict, PrimarySteppedDown, SocketException, NotMaster,
+    // InterruptedAtShutdown, InterruptedDueToReplStateChange,
+    // NotMasterNoSlaveOk, NotMasterOrSecondary
+    private static final Set<Integer> TRANSIENT_CODES = new HashSet<>(Arrays.asList(
+            6, 7, 89, 91, 112, 189, 9001, 10107, 11600, 11602, 13435, 13436));
+    private final Provider<MongoClient> client;
+    private final Provider<CoalescingTimer> timer;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxTimeNanos;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @Inject
+    MongoTransactions(Provider<MongoClient> client, Provider<CoalescingTimer> timer, Settings settings) {
+        this.client = client;
+        this.timer = timer;
+        this.maxAttempts = Math.max(1, settings.getInt(SETTINGS_KEY_MAX_ATTEMPTS, 5));
+        this.backoffMillis = Math.max(1, settings.getLong(SETTINGS_KEY_BACKOFF_MILLIS, 10));
+        this.maxTimeNanos = MILLISECONDS.toNanos(settings.getLong(SETTINGS_KEY_MAX_TIME_MILLIS, 120_000));
+    }
+
+    /**
+     * Run a unit of work in a causally consistent session, retrying it on
+     * transient errors.
+     *
+     * @param <T> The result type
+     * @param work Performs operations using the session, returning a stage
+     * which completes when they are done
+     * @return A future which completes with the result of the first
+     * successful attempt, or the failure of the last one
+     */
+    public <T> EnhCompletableFuture<T> run(Function<? super ClientSession, ? extends CompletionStage<T>> work) {
+        return run(ClientSessionOptions.builder().causallyConsistent(true).build(), work);
+    }
+
+    /**
+     * Run a unit of work in a session with the passed options, retrying it
+     * on transient errors.
+     *
+     * @param <T> The result type
+     * @param options The session options
+     * @param work Performs operations using the session, returning a stage
+     * which completes when they are done
+     * @return A future which completes with the result of the first
+     * successful attempt, or the failure of the last one; cancelling it
+     * prevents further retries
+     */
+    public <T> EnhCompletableFuture<T> run(ClientSessionOptions options, Function<? super ClientSession, ? extends CompletionStage<T>> work) {
+        Checks.notNull("options", options);
+        Checks.notNull("work", work);
+        EnhCompletableFuture<T> result = new EnhCompletableFuture<>();
+        attempt(options, work, 1, System.nanoTime(), result);
+        return result;
+    }
+
+    private <T> void attempt(ClientSessionOptions options, Function<? super ClientSession, ? extends CompletionStage<T>> work,
+            int attempt, long start, EnhCompletableFuture<T> result) {
+        attempts.increment();
+        try {
+            client.get().startSession(options, (session, thrown) -> {
+                if (thrown != null) {
+                    onFailure(thrown, options, work, attempt, start, result);
+                    return;
+                }
+                CompletionStage<T> stage;
+                try {
+                    stage = Checks.notNull("stage", work.apply(session));
+                } catch (Throwable t) {
+                    session.close();
+                    onFailure(t, options, work, attempt, start, result);
+                    return;
+                }
+                stage.whenComplete((value, err) -> {
+                    session.close();
+                    if (err != null) {
+                        onFailure(err, options, work, attempt, start, result);
+                    } else {
+                        latency.record(System.nanoTime() - start);
+                        result.complete(value);
+                    }
+                });
+            });
+        } catch (RuntimeException ex) {
+            onFailure(ex, options, work, attempt, start, result);
+        }
+    }
+
+    private <T> void onFailure(Throwable thrown, ClientSessionOptions options, Function<? super ClientSession, ? extends CompletionStage<T>> work,
+            int attempt, long start, EnhCompletableFuture<T> result) {
+        Throwable cause = unwrap(thrown);
+        if (result.isDone()) {
+            // Cancelled by the caller
+            return;
+        }
+        long delay = backoff(attempt);
+        if (attempt >= maxAttempts || !isTransient(cause)
+                || System.nanoTime() - start + MILLISECONDS.toNanos(delay) > maxTimeNanos) {
+            failures.increment();
+            result.completeExceptionally(cause);
+            return;
+        }
+        retries.increment();
+        try {
+            timer.get().get().schedule(() -> {
+                if (!result.isDone()) {
+                    attempt(options, work, attempt + 1, start, result);
+                }
+            }, delay, MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // Shutting down
+            failures.increment();
+            result.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter, so that units of work which failed
+     * on the same conflict do not retry in lockstep.
+     */
+    long backoff(int attempt) {
+        long max = Math.min(MAX_BACKOFF_MILLIS, backoffMillis << Math.min(attempt - 1, 20));
+        return max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+    }
+
+    /**
+     * Determine if a failure is worth retrying.
+     *
+     * @param thrown A failure
+     * @return true if the failure is expected to resolve by itself
+     */
+    static boolean isTransient(Throwable thrown) {
+        thrown = unwrap(thrown);
+        if (thrown instanceof MongoSocketException || thrown instanceof MongoNotPrimaryException
+                || thrown instanceof MongoNodeIsRecoveringException) {
+            return true;
+        }
+        if (thrown instanceof MongoCommandException) {
+            BsonDocument response = ((MongoCommandException) thrown).getResponse();
+            BsonValue labels = response == null ? null : response.get("errorLabels");
+            if (labels != null && labels.isArray()) {
+                for (BsonValue label : labels.asArray()) {
+                    if (label.isString() && (TRANSIENT_TRANSACTION_ERROR.equals(label.asString().getValue())
+                            || UNKNOWN_TRANSACTION_COMMIT_RESULT.equals(label.asString().getValue()))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return thrown instanceof MongoException && TRANSIENT_CODES.contains(((MongoException) thrown).getCode());
+    }
+
+    private static Throwable unwrap(Throwable thrown) {
+        while ((thrown instanceof CompletionException || thrown instanceof ExecutionException)
+                && thrown.getCause() != null) {
+            thrown = thrown.getCause();
+        }
+        return thrown;
+    }
+
+    /**
+     * Time from the first attempt to success, for units of work which
+     * succeeded.
+     *
+     * @return A histogram
+     */
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    public long attempts() {
+        return attempts.sum();
+    }
+
+    public long retries() {
+        return retries.sum();
+    }
+
+    /**
+     * The number of units of work which failed after any retries.
+     *
+     * @return A count
+     */
+    public long failures() {
+        return failures.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "MongoTransactions(" + latency.count() + " succeeded, " + failures() + " failed, "
+                + retries() + " retries)";
+    }
+}
@@ -23,8 +23,11 @@
  */
 package com.mastfrog.giulius.mongodb.async;
 
+import com.mastfrog.util.preconditions.Exceptions;
 import com.mongodb.async.client.MongoClient;
 import com.mongodb.async.client.MongoCollection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.inject.Provider;
 
@@ -32,13 +35,14 @@ import javax.inject.Provider;
  *
  * @author Tim Boudreau
  */
-class MongoTypedCollectionProvider<T> implements Provider<MongoCollection<T>> {
+class MongoTypedCollectionProvider<T> implements AsyncCollectionProvider<T> {
 
     private final String collectionName;
     private final Class<T> collectionType;
     private final Provider<ExistingCollections> knownProvider;
     private final Provider<MongoClient> client;
     private final AtomicBoolean initialized;
+    private volatile MongoCollection<T> collection;
 
     MongoTypedCollectionProvider(String collectionName, Class<T> collectionType, Provider<ExistingCollections> knownProvider, Provider<MongoClient> client) {
         this.collectionName = collectionName;
@@ -60,14 +64,42 @@ class MongoTypedCollectionProvider<T> implements Provider<MongoCollection<T>> {
         return new MongoTypedCollectionProvider<>(collectionName, type, knownProvider, client, initialized);
     }
 
+    /**
+     * Get the collection, blocking only if it is being created. Prefer
+     * {@link #getAsync()} on request threads.
+     */
     @Override
     public MongoCollection<T> get() {
+        MongoCollection<T> result = collection;
+        if (result != null) {
+            return result;
+        }
+        try {
+            return getAsync().get();
+        } catch (InterruptedException ex) {
+            return Exceptions.chuck(ex);
+        } catch (ExecutionException ex) {
+            return Exceptions.chuck(ex.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<MongoCollection<T>> getAsync() {
+        MongoCollection<T> result = collection;
+        if (result != null) {
+            return CompletableFuture.completedFuture(result);
+        }
         // Ensure we initialize the client outside of a call to
-        // KnownCollections, or we risk deadlock
+        // ExistingCollections, or we risk deadlock
         if (initialized.compareAndSet(false, true)) {
             client.get();
         }
-        MongoCollection<T> result = knownProvider.get().get(collectionName).withDocumentClass(collectionType);
-        return result;
+        return knownProvider.get().getAsync(collectionName).thenApply(coll -> {
+            // Only reached once the collection exists, and collections are
+            // immutable, so the result can be reused for every injection
+            MongoCollection<T> typed = coll.withDocumentClass(collectionType);
+            collection = typed;
+            return typed;
+        });
     }
 }
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * One page of results from <code>MongoFutureCollection.page()</code>, with
+ * a token to fetch the page after it.
+ *
+ * @author agent
+ */
+public final class Page<T> implements Iterable<T> {
+
+    private final List<T> items;
+    private final String resumeToken;
+
+    Page(List<T> items, String resumeToken) {
+        this.items = Collections.unmodifiableList(items);
+        this.resumeToken = resumeToken;
+    }
+
+    /**
+     * The documents on this page.
+     *
+     * @return An unmodifiable list
+     */
+    public List<T> items() {
+        return items;
+    }
+
+    /**
+     * An opaque token to pass to <code>page()</code>, with the same filter,
+     * sort field and direction, to get the next page.
+     *
+     * @return A token, or null if this is the last page
+     */
+    public String resumeToken() {
+        return resumeToken;
+    }
+
+    public boolean hasMore() {
+        return resumeToken != null;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return items.iterator();
+    }
+
+    @Override
+    public String toString() {
+        return items.size() + " items" + (hasMore() ? ", more" : ", last page");
+    }
+}
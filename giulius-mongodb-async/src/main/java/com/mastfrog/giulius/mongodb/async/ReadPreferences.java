@@ -23,7 +23,12 @@
  */
 package com.mastfrog.giulius.mongodb.async;
 
+import com.mastfrog.util.preconditions.ConfigurationError;
 import com.mongodb.ReadPreference;
+import com.mongodb.Tag;
+import com.mongodb.TagSet;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -65,4 +70,65 @@ enum ReadPreferences {
                 throw new AssertionError(this);
         }
     }
+
+    public ReadPreference get(List<TagSet> tagSets) {
+        if (tagSets.isEmpty()) {
+            return get();
+        }
+        switch (this) {
+            case NEAREST:
+                return ReadPreference.nearest(tagSets);
+            case PRIMARY:
+                throw new ConfigurationError("Tag sets cannot be used with "
+                        + "the primary read preference: " + tagSets);
+            case PRIMARY_PREFERRED:
+                return ReadPreference.primaryPreferred(tagSets);
+            case SECONDARY:
+                return ReadPreference.secondary(tagSets);
+            case SECONDARY_PREFERRED:
+                return ReadPreference.secondaryPreferred(tagSets);
+            default:
+                throw new AssertionError(this);
+        }
+    }
+
+    /**
+     * Parse tag sets in order of preference, separated by semicolons, each
+     * a comma-separated list of name:value pairs, e.g.
+     * <code>dc:east,use:reporting;dc:east;</code>. An empty tag set (here,
+     * after the final semicolon) matches any member.
+     *
+     * @param spec The tag sets, or null
+     * @return A list of tag sets
+     */
+    public static List<TagSet> parseTagSets(String spec) {
+        List<TagSet> result = new ArrayList<>();
+        if (spec == null || spec.trim().isEmpty()) {
+            return result;
+        }
+        // -1 so a trailing semicolon yields a trailing empty tag set
+        for (String set : spec.split(";", -1)) {
+            List<Tag> tags = new ArrayList<>();
+            for (String pair : set.split(",")) {
+                pair = pair.trim();
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int ix = pair.indexOf(':');
+                if (ix <= 0 || ix == pair.length() - 1) {
+                    throw new ConfigurationError("Read preference tags must be "
+                            + "name:value pairs, but found '" + pair + "' in '" + spec + "'");
+                }
+                tags.add(new Tag(pair.substring(0, ix).trim(), pair.substring(ix + 1).trim()));
+            }
+            try {
+                result.add(new TagSet(tags));
+            } catch (IllegalArgumentException ex) {
+                // duplicate tag names within one set
+                throw new ConfigurationError("Bad read preference tag set '" + set
+                        + "' in '" + spec + "': " + ex.getMessage());
+            }
+        }
+        return result;
+    }
 }
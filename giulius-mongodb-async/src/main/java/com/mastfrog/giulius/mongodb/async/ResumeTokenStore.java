@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.ImplementedBy;
+import java.util.concurrent.CompletionStage;
+import org.bson.BsonDocument;
+
+/**
+ * Persists the position of change stream subscribers, so that a subscriber
+ * restarted after a failure or a redeploy resumes where it left off. The
+ * default implementation stores tokens in a MongoDB collection; bind your
+ * own to store them elsewhere.
+ *
+ * @author agent
+ */
+@ImplementedBy(MongoResumeTokenStore.class)
+public interface ResumeTokenStore {
+
+    /**
+     * Load the last saved token for a subscriber.
+     *
+     * @param subscriberName The subscriber name
+     * @return A stage which completes with the token, or null if none has
+     * been saved
+     */
+    CompletionStage<BsonDocument> load(String subscriberName);
+
+    /**
+     * Save the token of the last change a subscriber has processed. The next
+     * batch is not delivered until the returned stage completes.
+     *
+     * @param subscriberName The subscriber name
+     * @param resumeToken The token
+     * @return A stage which completes once the token is saved
+     */
+    CompletionStage<?> save(String subscriberName, BsonDocument resumeToken);
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+
+/**
+ * Splits a collection into ranges of _id for a parallel scan, using a random
+ * sample of _id values as split points so that ranges hold roughly equal
+ * numbers of documents whatever the distribution of ids.
+ *
+ * @author agent
+ */
+final class ScanPartitions {
+
+    /**
+     * How many sampled ids to take per partition; more gives more even
+     * partitions at the cost of a larger sample.
+     */
+    static final int SAMPLES_PER_PARTITION = 16;
+    private static final int MAX_SAMPLE = 10_000;
+
+    private ScanPartitions() {
+        throw new AssertionError();
+    }
+
+    /**
+     * A pipeline returning a sorted random sample of ids. For samples under
+     * 5% of the collection the server picks documents with a random cursor
+     * rather than reading the whole collection.
+     */
+    static List<Bson> samplePipeline(int partitions) {
+        int size = (int) Math.min(MAX_SAMPLE, (long) partitions * SAMPLES_PER_PARTITION);
+        return Arrays.asList(Aggregates.sample(size),
+                Aggregates.project(Projections.include("_id")),
+                Aggregates.sort(Sorts.ascending("_id")));
+    }
+
+    /**
+     * Pick up to partitions - 1 distinct, evenly spaced split points from a
+     * sorted sample of documents. Range queries only compare values of the
+     * same BSON type, so if the sampled ids are of mixed types, no split
+     * points are returned and the scan runs as a single partition.
+     */
+    static List<BsonValue> splitPoints(List<BsonDocument> sortedSample, int partitions) {
+        List<BsonValue> ids = new ArrayList<>(sortedSample.size());
+        for (BsonDocument doc : sortedSample) {
+            BsonValue id = doc.get("_id");
+            if (id == null || (!ids.isEmpty() && id.getBsonType() != ids.get(0).getBsonType())) {
+                return Collections.emptyList();
+            }
+            ids.add(id);
+        }
+        List<BsonValue> result = new ArrayList<>(partitions);
+        for (int i = 1; i < partitions && !ids.isEmpty(); i++) {
+            BsonValue point = ids.get((int) ((long) i * ids.size() / partitions));
+            if (result.isEmpty() || !point.equals(result.get(result.size() - 1))) {
+                result.add(point);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convert split points into one filter per partition. The first
+     * partition is everything not greater than or equal to the first split
+     * point, so documents whose _id is of a type that was not sampled are
+     * still scanned exactly once.
+     */
+    static List<Bson> filters(Bson filter, List<BsonValue> splitPoints) {
+        List<Bson> result = new ArrayList<>(splitPoints.size() + 1);
+        if (splitPoints.isEmpty()) {
+            result.add(filter);
+            return result;
+        }
+        result.add(Filters.and(filter, Filters.not(Filters.gte("_id", splitPoints.get(0)))));
+        for (int i = 1; i < splitPoints.size(); i++) {
+            result.add(Filters.and(filter, Filters.gte("_id", splitPoints.get(i - 1)),
+                    Filters.lt("_id", splitPoints.get(i))));
+        }
+        result.add(Filters.and(filter, Filters.gte("_id", splitPoints.get(splitPoints.size() - 1))));
+        return result;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import java.time.Duration;
+
+/**
+ * The outcome of <code>MongoFutureCollection.parallelScan()</code> - how
+ * many documents each partition processed and how fast.
+ *
+ * @author agent
+ */
+public final class ScanResult {
+
+    private final long[] counts;
+    private final long elapsedNanos;
+
+    ScanResult(long[] counts, long elapsedNanos) {
+        this.counts = counts;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * The number of partitions actually scanned, which may be fewer than
+     * requested for small collections or ids of mixed types.
+     *
+     * @return The partition count
+     */
+    public int partitions() {
+        return counts.length;
+    }
+
+    public long documents() {
+        long result = 0;
+        for (long c : counts) {
+            result += c;
+        }
+        return result;
+    }
+
+    public long documents(int partition) {
+        return counts[partition];
+    }
+
+    /**
+     * Time from starting to sample split points until the last partition
+     * finished.
+     *
+     * @return The elapsed time
+     */
+    public Duration elapsed() {
+        return Duration.ofNanos(elapsedNanos);
+    }
+
+    public double documentsPerSecond() {
+        return elapsedNanos == 0 ? 0 : documents() * 1_000_000_000D / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return documents() + " documents in " + counts.length + " partitions in "
+                + elapsed().toMillis() + "ms (" + (long) documentsPerSecond() + "/s)";
+    }
+}
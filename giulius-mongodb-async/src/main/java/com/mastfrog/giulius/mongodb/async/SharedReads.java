@@ -0,0 +1,209 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.util.function.EnhCompletableFuture;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.async.client.MongoCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import org.bson.BsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+/**
+ * Lets identical reads which are in flight at the same time share one
+ * operation, fanning its result out to every caller. There is no caching:
+ * once an operation completes, the next identical call goes to the server.
+ * A write through a MongoFutureCollection sharing this object forgets all
+ * in-flight reads, so a read issued after a write completes never joins one
+ * issued before it.
+ *
+ * @author agent
+ */
+final class SharedReads {
+
+    private final ConcurrentHashMap<Key, EnhCompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    static Key key(MongoCollection<?> coll, String operation, Class<?> type, Bson... parts) {
+        List<Bson> all = new ArrayList<>(parts.length);
+        Collections.addAll(all, parts);
+        return key(coll, operation, type, all);
+    }
+
+    static Key key(MongoCollection<?> coll, String operation, Class<?> type, List<? extends Bson> parts) {
+        CodecRegistry registry = coll.getCodecRegistry();
+        List<BsonDocument> rendered = new ArrayList<>(parts.size());
+        for (Bson part : parts) {
+            rendered.add(part == null ? null : part.toBsonDocument(BsonDocument.class, registry));
+        }
+        return new Key(operation, type, coll.getReadPreference(), coll.getReadConcern(), rendered);
+    }
+
+    /**
+     * Join an in-flight operation with the same key, or start one.
+     *
+     * @param <R> The result type
+     * @param key The key
+     * @param copy Applied to the result for each caller, so that callers
+     * which modify a result (such as a list) do not affect each other
+     * @param operation Starts the operation
+     * @return A future unique to this caller
+     */
+    @SuppressWarnings("unchecked")
+    <R> EnhCompletableFuture<R> share(Key key, UnaryOperator<R> copy, Supplier<EnhCompletableFuture<R>> operation) {
+        EnhCompletableFuture<R> result = new EnhCompletableFuture<>();
+        EnhCompletableFuture<Object> shared = inFlight.get(key);
+        if (shared == null) {
+            // Not computeIfAbsent(): the operation may complete synchronously
+            // and remove itself, which must not happen inside a map update
+            EnhCompletableFuture<Object> created = new EnhCompletableFuture<>();
+            shared = inFlight.putIfAbsent(key, created);
+            if (shared == null) {
+                shared = created;
+                start(key, created, (Supplier<EnhCompletableFuture<Object>>) (Supplier<?>) operation);
+            }
+        }
+        shared.whenComplete((obj, thrown) -> {
+            if (thrown != null) {
+                result.completeExceptionally(thrown);
+            } else {
+                result.complete(obj == null ? null : copy.apply((R) obj));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Join an in-flight operation with the same key, or start one, sharing
+     * its result as BSON and decoding a separate copy for each caller, so
+     * callers which modify a result do not affect each other.
+     *
+     * @param <R> The result type
+     * @param key The key
+     * @param codec Used to encode the result once and decode it per caller
+     * @param operation Starts the operation
+     * @return A future unique to this caller
+     */
+    <R> EnhCompletableFuture<R> shareDecoded(Key key, Codec<R> codec, Supplier<EnhCompletableFuture<R>> operation) {
+        EnhCompletableFuture<BsonDocument> shared = share(key, UnaryOperator.identity(), () -> {
+            EnhCompletableFuture<BsonDocument> encoded = new EnhCompletableFuture<>();
+            operation.get().whenComplete((obj, thrown) -> {
+                if (thrown != null) {
+                    encoded.completeExceptionally(thrown);
+                    return;
+                }
+                try {
+                    encoded.complete(obj == null ? null : FindOneCache.encode(codec, obj));
+                } catch (RuntimeException ex) {
+                    encoded.completeExceptionally(ex);
+                }
+            });
+            return encoded;
+        });
+        EnhCompletableFuture<R> result = new EnhCompletableFuture<>();
+        shared.whenComplete((doc, thrown) -> {
+            if (thrown != null) {
+                result.completeExceptionally(thrown);
+                return;
+            }
+            try {
+                result.complete(doc == null ? null : FindOneCache.decode(codec, doc));
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    private void start(Key key, EnhCompletableFuture<Object> shared, Supplier<EnhCompletableFuture<Object>> operation) {
+        try {
+            operation.get().whenComplete((obj, thrown) -> {
+                inFlight.remove(key, shared);
+                if (thrown != null) {
+                    shared.completeExceptionally(thrown);
+                } else {
+                    shared.complete(obj);
+                }
+            });
+        } catch (RuntimeException ex) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(ex);
+        }
+    }
+
+    void forgetInFlight() {
+        inFlight.clear();
+    }
+
+    static final class Key {
+
+        private final String operation;
+        private final Class<?> type;
+        private final ReadPreference readPreference;
+        private final ReadConcern readConcern;
+        private final List<BsonDocument> parts;
+        private final int hashCode;
+
+        Key(String operation, Class<?> type, ReadPreference readPreference, ReadConcern readConcern, List<BsonDocument> parts) {
+            this.operation = operation;
+            this.type = type;
+            this.readPreference = readPreference;
+            this.readConcern = readConcern;
+            this.parts = parts;
+            this.hashCode = Objects.hash(operation, type, readPreference, readConcern, parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            } else if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return k.hashCode == hashCode && k.type == type && k.operation.equals(operation)
+                    && Objects.equals(k.readPreference, readPreference)
+                    && Objects.equals(k.readConcern, readConcern)
+                    && k.parts.equals(parts);
+        }
+
+        @Override
+        public String toString() {
+            return operation + "<" + type.getSimpleName() + ">" + parts + " " + readPreference;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mongodb.async.client.MongoClient;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.inject.Provider;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+/**
+ * Logs commands against selected collections which take longer than a
+ * threshold, with the shape of their filter - field names and operators,
+ * with values redacted - how long they took and how many documents they
+ * returned. Optionally runs <code>explain</code> in the background for a
+ * sample of each distinct slow filter shape, and logs those which scan the
+ * whole collection, which usually means an index is missing.
+ * <p>
+ * Configured with <code>GiuliusMongoAsyncModule.detectSlowOperations()</code>.
+ * Timing is per command as measured by the driver, so a find which fetches
+ * further batches is timed separately for each.
+ * </p>
+ *
+ * @author agent
+ */
+public final class SlowOperations {
+
+    private static final Logger LOG = Logger.getLogger(SlowOperations.class.getName());
+    private static final int MAX_EXPLAINED_SHAPES = 1024;
+    private static final Set<String> EXPLAINABLE = new HashSet<>(Arrays.asList(
+            "find", "aggregate", "count", "distinct", "findAndModify", "update", "delete"));
+    // Fields the driver adds which explain rejects or which are meaningless
+    // outside the original operation
+    private static final Set<String> NOT_EXPLAINED = new HashSet<>(Arrays.asList(
+            "lsid", "txnNumber", "autocommit", "startTransaction", "writeConcern", "readConcern"));
+    private final Map<String, Threshold> thresholds;
+    private final Provider<MongoClient> client;
+    private final ConcurrentHashMap<Integer, Started> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> explained = ConcurrentHashMap.newKeySet();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder collectionScans = new LongAdder();
+    private final CommandListener listener = new Listener();
+
+    SlowOperations(Map<String, Threshold> thresholds, Provider<MongoClient> client) {
+        this.thresholds = Collections.unmodifiableMap(thresholds);
+        this.client = client;
+    }
+
+    boolean isEnabled() {
+        return !thresholds.isEmpty();
+    }
+
+    /**
+     * The listener which detects slow commands. It is registered
+     * automatically unless you supply your own MongoClientSettings.
+     *
+     * @return A listener
+     */
+    public CommandListener commandListener() {
+        return listener;
+    }
+
+    /**
+     * The number of slow commands logged.
+     *
+     * @return A count
+     */
+    public long slowOperations() {
+        return slow.sum();
+    }
+
+    /**
+     * The number of explained commands found to scan a whole collection.
+     *
+     * @return A count
+     */
+    public long collectionScans() {
+        return collectionScans.sum();
+    }
+
+    static final class Threshold {
+
+        private final long nanos;
+        private final double explainSampleRate;
+
+        Threshold(long nanos, double explainSampleRate) {
+            this.nanos = nanos;
+            this.explainSampleRate = explainSampleRate;
+        }
+    }
+
+    private static final class Started {
+
+        private final Threshold threshold;
+        private final String database;
+        private final String collection;
+        private final BsonDocument command;
+
+        Started(Threshold threshold, String database, String collection, BsonDocument command) {
+            this.threshold = threshold;
+            this.database = database;
+            this.collection = collection;
+            this.command = command;
+        }
+    }
+
+    private final class Listener implements CommandListener {
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+            if (thresholds.isEmpty()) {
+                return;
+            }
+            String name = event.getCommandName();
+            String collection = MongoMetrics.collectionOf(name, event.getCommand());
+            Threshold threshold = thresholds.get(collection);
+            if (threshold != null) {
+                // The event's document is only valid during this call, so
+                // copy what we need - which is nothing for inserts and getMores
+                BsonDocument command = EXPLAINABLE.contains(name) ? explainable(event.getCommand()) : null;
+                inFlight.put(event.getRequestId(), new Started(threshold, event.getDatabaseName(), collection, command));
+            }
+        }
+
+        @Override
+        public void commandSucceeded(CommandSucceededEvent event) {
+            Started started = inFlight.remove(event.getRequestId());
+            if (started != null) {
+                long elapsed = event.getElapsedTime(NANOSECONDS);
+                if (elapsed >= started.threshold.nanos) {
+                    onSlow(started, event.getCommandName(), elapsed, documentsReturned(event.getResponse()));
+                }
+            }
+        }
+
+        @Override
+        public void commandFailed(CommandFailedEvent event) {
+            inFlight.remove(event.getRequestId());
+        }
+    }
+
+    private void onSlow(Started started, String name, long elapsed, int documents) {
+        slow.increment();
+        String shape = started.command == null ? "" : shapeOf(name, started.command);
+        if (LOG.isLoggable(Level.WARNING)) {
+            LOG.log(Level.WARNING, "Slow {0} on {1}.{2}: {3}ms{4} {5}", new Object[]{name,
+                started.database, started.collection, NANOSECONDS.toMillis(elapsed),
+                documents < 0 ? "" : ", " + documents + " documents", shape});
+        }
+        if (started.command != null && started.threshold.explainSampleRate > 0
+                && ThreadLocalRandom.current().nextDouble() < started.threshold.explainSampleRate
+                && explained.size() < MAX_EXPLAINED_SHAPES
+                && explained.add(started.collection + ' ' + name + ' ' + shape)) {
+            explain(started, name, shape);
+        }
+    }
+
+    private void explain(Started started, String name, String shape) {
+        BsonDocument explain = new BsonDocument("explain", started.command)
+                .append("verbosity", new BsonString("queryPlanner"));
+        try {
+            client.get().getDatabase(started.database).runCommand(explain, BsonDocument.class, (result, thrown) -> {
+                if (thrown != null) {
+                    LOG.log(Level.FINE, "Could not explain " + name + " on " + started.collection, thrown);
+                } else if (containsStage(result, "COLLSCAN")) {
+                    collectionScans.increment();
+                    LOG.log(Level.WARNING, "{0} on {1}.{2} scans the whole collection - "
+                            + "it may need an index for {3}", new Object[]{name, started.database,
+                                started.collection, shape});
+                }
+            });
+        } catch (RuntimeException ex) {
+            LOG.log(Level.FINE, "Could not explain " + name + " on " + started.collection, ex);
+        }
+    }
+
+    static BsonDocument explainable(BsonDocument command) {
+        BsonDocument result = command.clone();
+        for (Iterator<String> it = result.keySet().iterator(); it.hasNext();) {
+            String key = it.next();
+            if (key.startsWith("$") || NOT_EXPLAINED.contains(key)) {
+                it.remove();
+            }
+        }
+        // Only single-statement writes can be explained
+        for (String statements : new String[]{"updates", "deletes"}) {
+            BsonValue value = result.get(statements);
+            if (value != null && value.isArray() && value.asArray().size() > 1) {
+                result.put(statements, new BsonArray(Collections.singletonList(value.asArray().get(0))));
+            }
+        }
+        return result;
+    }
+
+    static int documentsReturned(BsonDocument response) {
+        BsonValue cursor = response.get("cursor");
+        if (cursor != null && cursor.isDocument()) {
+            BsonValue batch = cursor.asDocument().get("firstBatch");
+            if (batch == null) {
+                batch = cursor.asDocument().get("nextBatch");
+            }
+            return batch != null && batch.isArray() ? batch.asArray().size() : -1;
+        }
+        BsonValue n = response.get("n");
+        return n != null && n.isNumber() ? n.asNumber().intValue() : -1;
+    }
+
+    /**
+     * Render the filter of a command with its values redacted, so that
+     * queries differing only in their values have the same shape.
+     */
+    static String shapeOf(String name, BsonDocument command) {
+        StringBuilder sb = new StringBuilder();
+        switch (name) {
+            case "find":
+                appendShape(command.get("filter"), false, sb);
+                BsonValue sort = command.get("sort");
+                if (sort != null) {
+                    appendShape(sort, true, sb.append(" sort "));
+                }
+                break;
+            case "aggregate":
+                appendShape(command.get("pipeline"), false, sb);
+                break;
+            case "update":
+            case "delete":
+                BsonValue statements = command.get(name + "s");
+                if (statements != null && statements.isArray() && !statements.asArray().isEmpty()
+                        && statements.asArray().get(0).isDocument()) {
+                    appendShape(statements.asArray().get(0).asDocument().get("q"), false, sb);
+                }
+                break;
+            default:
+                appendShape(command.get("query"), false, sb);
+        }
+        return sb.toString();
+    }
+
+    private static void appendShape(BsonValue value, boolean keepValues, StringBuilder sb) {
+        if (value == null) {
+            sb.append("{}");
+        } else if (value.isDocument()) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<String, BsonValue> e : value.asDocument().entrySet()) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                first = false;
+                sb.append(e.getKey()).append(": ");
+                appendShape(e.getValue(), keepValues || "$sort".equals(e.getKey()), sb);
+            }
+            sb.append('}');
+        } else if (value.isArray()) {
+            BsonArray array = value.asArray();
+            // Lists of values, e.g. for $in, collapse to one placeholder;
+            // lists of clauses, e.g. for $or or a pipeline, do not
+            if (!array.isEmpty() && !array.get(0).isDocument() && !array.get(0).isArray()) {
+                sb.append(keepValues ? array.toString() : "[?]");
+                return;
+            }
+            sb.append('[');
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                appendShape(array.get(i), keepValues, sb);
+            }
+            sb.append(']');
+        } else if (keepValues && value.isNumber()) {
+            sb.append(value.asNumber().longValue());
+        } else if (value.isString() && value.asString().getValue().startsWith("$")) {
+            // A field reference in a pipeline, not a value
+            sb.append(value.asString().getValue());
+        } else {
+            sb.append('?');
+        }
+    }
+
+    static boolean containsStage(BsonValue value, String stage) {
+        if (value.isDocument()) {
+            for (Map.Entry<String, BsonValue> e : value.asDocument().entrySet()) {
+                if ("stage".equals(e.getKey()) && e.getValue().isString()
+                        && stage.equals(e.getValue().asString().getValue())) {
+                    return true;
+                }
+                if (containsStage(e.getValue(), stage)) {
+                    return true;
+                }
+            }
+        } else if (value.isArray()) {
+            for (BsonValue v : value.asArray()) {
+                if (containsStage(v, stage)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
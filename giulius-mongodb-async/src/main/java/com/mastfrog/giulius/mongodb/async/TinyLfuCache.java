@@ -0,0 +1,361 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A size and time bounded cache using W-TinyLFU eviction: new entries enter
+ * a small LRU window; entries leaving the window are admitted to the main
+ * segmented LRU only if they have been requested more often than the entry
+ * they would displace, according to a count-min sketch of recent request
+ * frequencies. This keeps one-off lookups from flushing hot entries.
+ * <p>
+ * Lookups read a concurrent map; the eviction policy is updated under a lock
+ * which hits only try to take, skipping bookkeeping under contention rather
+ * than blocking.
+ *
+ * @author agent
+ */
+final class TinyLfuCache<K, V> {
+
+    private static final byte NONE = 0;
+    private static final byte WINDOW = 1;
+    private static final byte PROBATION = 2;
+    private static final byte PROTECTED = 3;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final Queue<K, V> window = new Queue<>();
+    private final Queue<K, V> probation = new Queue<>();
+    private final Queue<K, V> protectedQueue = new Queue<>();
+    private final int maximumSize;
+    private final int windowMax;
+    private final int protectedMax;
+    private final long ttlNanos;
+    private int size;
+
+    TinyLfuCache(int maximumSize, long ttlNanos) {
+        this.maximumSize = maximumSize;
+        this.ttlNanos = ttlNanos;
+        this.windowMax = Math.max(1, maximumSize / 100);
+        this.protectedMax = Math.max(1, (maximumSize - windowMax) * 4 / 5);
+        this.data = new ConcurrentHashMap<>(Math.min(maximumSize, 1024));
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            if (lock.tryLock()) {
+                try {
+                    sketch.increment(key.hashCode());
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return null;
+        }
+        if (System.nanoTime() - node.expiresAt > 0) {
+            lock.lock();
+            try {
+                if (node.queue != NONE) {
+                    remove(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        }
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(node.hash);
+                onAccess(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    void put(K key, V value) {
+        putIf(key, value, null);
+    }
+
+    /**
+     * Put a value if a condition holds, testing the condition under the same
+     * lock clear() takes, so a clear() cannot slip in between the test and
+     * the put.
+     *
+     * @param key The key
+     * @param value The value
+     * @param condition The condition, or null
+     * @return true if the value was stored
+     */
+    boolean putIf(K key, V value, BooleanSupplier condition) {
+        long expiresAt = System.nanoTime() + ttlNanos;
+        lock.lock();
+        try {
+            if (condition != null && !condition.getAsBoolean()) {
+                return false;
+            }
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                node.value = value;
+                node.expiresAt = expiresAt;
+                onAccess(node);
+                return true;
+            }
+            node = new Node<>(key, value, expiresAt);
+            sketch.increment(node.hash);
+            node.queue = WINDOW;
+            window.addLast(node);
+            data.put(key, node);
+            size++;
+            evict();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    private void onAccess(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToEnd(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedQueue.addLast(node);
+                while (protectedQueue.size > protectedMax) {
+                    Node<K, V> demoted = protectedQueue.removeFirst();
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedQueue.moveToEnd(node);
+                break;
+            default:
+                // Evicted concurrently with a lock-free read
+                break;
+        }
+    }
+
+    private void evict() {
+        Node<K, V> candidate = null;
+        while (window.size > windowMax) {
+            candidate = window.removeFirst();
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+        }
+        while (size > maximumSize) {
+            Node<K, V> victim = probation.head;
+            if (victim == null) {
+                remove(protectedQueue.head != null ? protectedQueue.head : window.head);
+            } else if (candidate == null || victim == candidate || candidate.queue != PROBATION) {
+                remove(victim);
+            } else if (System.nanoTime() - victim.expiresAt > 0
+                    || sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                remove(victim);
+            } else {
+                remove(candidate);
+                candidate = null;
+            }
+        }
+    }
+
+    private void remove(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedQueue.remove(node);
+                break;
+            default:
+                return;
+        }
+        node.queue = NONE;
+        data.remove(node.key, node);
+        size--;
+    }
+
+    private static final class Node<K, V> {
+
+        final K key;
+        final int hash;
+        volatile V value;
+        volatile long expiresAt;
+        byte queue;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, long expiresAt) {
+            this.key = key;
+            this.hash = key.hashCode();
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Queue<K, V> {
+
+        Node<K, V> head;
+        Node<K, V> tail;
+        int size;
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        Node<K, V> removeFirst() {
+            Node<K, V> result = head;
+            remove(result);
+            return result;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = node.next = null;
+            size--;
+        }
+
+        void moveToEnd(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            // Detach every node, so a reader still holding one sees it as
+            // evicted rather than relinking it into an emptied queue
+            for (Node<K, V> node = head; node != null;) {
+                Node<K, V> next = node.next;
+                node.queue = NONE;
+                node.prev = node.next = null;
+                node = next;
+            }
+            head = tail = null;
+            size = 0;
+        }
+    }
+
+    /**
+     * Count-min sketch of four-bit counters, four rows, halved periodically so
+     * that it reflects recent rather than all-time popularity.
+     */
+    static final class FrequencySketch {
+
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int len = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 1;
+            table = new long[len];
+            mask = len - 1;
+            sampleSize = 10 * Math.max(16, maximumSize);
+        }
+
+        private static int rehash(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return (int) (h ^ (h >>> 32));
+        }
+
+        int frequency(int hash) {
+            int min = 15;
+            for (int row = 0; row < 4; row++) {
+                int h = rehash(hash, row);
+                int shift = ((h >>> 26) & 15) << 2;
+                min = Math.min(min, (int) ((table[h & mask] >>> shift) & 15));
+            }
+            return min;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                int h = rehash(hash, row);
+                int index = h & mask;
+                int shift = ((h >>> 26) & 15) << 2;
+                if (((table[index] >>> shift) & 15) != 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+                }
+                additions /= 2;
+            }
+        }
+    }
+}
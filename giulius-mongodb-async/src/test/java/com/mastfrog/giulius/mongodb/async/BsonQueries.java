@@ -0,0 +1,900 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.bson.BsonArray;
+import org.bson.BsonDateTime;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonTimestamp;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.types.Decimal128;
+
+/**
+ * Query matching, sorting, projection and update operators over BsonDocuments,
+ * for InMemoryMongo. Covers the commonly used operators with MongoDB's
+ * semantics for dotted paths, arrays and cross-type comparison; anything else
+ * throws an UnsupportedOperationException naming the operator, so a test
+ * fails loudly rather than passing against semantics mongod does not have.
+ *
+ * @author agent
+ */
+final class BsonQueries {
+
+    private BsonQueries() {
+        throw new AssertionError();
+    }
+
+    static boolean matches(BsonDocument doc, BsonDocument filter) {
+        if (filter == null) {
+            return true;
+        }
+        for (Map.Entry<String, BsonValue> e : filter.entrySet()) {
+            String key = e.getKey();
+            BsonValue value = e.getValue();
+            switch (key) {
+                case "$and":
+                    for (BsonValue clause : value.asArray()) {
+                        if (!matches(doc, clause.asDocument())) {
+                            return false;
+                        }
+                    }
+                    break;
+                case "$or":
+                    if (!anyMatches(doc, value.asArray())) {
+                        return false;
+                    }
+                    break;
+                case "$nor":
+                    if (anyMatches(doc, value.asArray())) {
+                        return false;
+                    }
+                    break;
+                case "$comment":
+                    break;
+                default:
+                    if (key.startsWith("$")) {
+                        throw new UnsupportedOperationException("Query operator " + key);
+                    }
+                    if (!matches(values(doc, key), value)) {
+                        return false;
+                    }
+            }
+        }
+        return true;
+    }
+
+    private static boolean anyMatches(BsonDocument doc, BsonArray clauses) {
+        for (BsonValue clause : clauses) {
+            if (matches(doc, clause.asDocument())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(List<BsonValue> values, BsonValue condition) {
+        if (isOperators(condition)) {
+            BsonDocument ops = condition.asDocument();
+            for (Map.Entry<String, BsonValue> e : ops.entrySet()) {
+                if (!matchesOperator(values, e.getKey(), e.getValue(), ops)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return anyEquals(values, condition);
+    }
+
+    private static boolean matchesOperator(List<BsonValue> values, String op, BsonValue arg, BsonDocument ops) {
+        switch (op) {
+            case "$eq":
+                return anyEquals(values, arg);
+            case "$ne":
+                return !anyEquals(values, arg);
+            case "$gt":
+                return anyCompares(values, arg, 1, 1);
+            case "$gte":
+                return anyCompares(values, arg, 0, 1);
+            case "$lt":
+                return anyCompares(values, arg, -1, -1);
+            case "$lte":
+                return anyCompares(values, arg, -1, 0);
+            case "$in":
+                return anyIn(values, arg.asArray());
+            case "$nin":
+                return !anyIn(values, arg.asArray());
+            case "$exists":
+                return values.isEmpty() != isTruthy(arg);
+            case "$not":
+                if (arg instanceof BsonRegularExpression) {
+                    return !anyRegex(values, pattern(arg.asRegularExpression()));
+                }
+                return !matches(values, arg);
+            case "$regex":
+                BsonValue options = ops.get("$options");
+                String pattern = arg instanceof BsonRegularExpression
+                        ? arg.asRegularExpression().getPattern() : arg.asString().getValue();
+                return anyRegex(values, pattern(new BsonRegularExpression(pattern,
+                        options == null ? null : options.asString().getValue())));
+            case "$options":
+                return true;
+            case "$size":
+                for (BsonValue v : values) {
+                    if (v.isArray() && v.asArray().size() == arg.asNumber().intValue()) {
+                        return true;
+                    }
+                }
+                return false;
+            case "$all":
+                for (BsonValue required : arg.asArray()) {
+                    if (!anyEquals(values, required)) {
+                        return false;
+                    }
+                }
+                return !arg.asArray().isEmpty();
+            case "$elemMatch":
+                for (BsonValue v : values) {
+                    if (v.isArray()) {
+                        for (BsonValue el : v.asArray()) {
+                            if (isOperators(arg) ? matches(Collections.singletonList(el), arg)
+                                    : el.isDocument() && matches(el.asDocument(), arg.asDocument())) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+                return false;
+            case "$mod":
+                long divisor = arg.asArray().get(0).asNumber().longValue();
+                long remainder = arg.asArray().get(1).asNumber().longValue();
+                for (BsonValue v : candidates(values)) {
+                    if (v.isNumber() && v.asNumber().longValue() % divisor == remainder) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                throw new UnsupportedOperationException("Query operator " + op);
+        }
+    }
+
+    private static boolean anyEquals(List<BsonValue> values, BsonValue target) {
+        if (target instanceof BsonRegularExpression) {
+            return anyRegex(values, pattern(target.asRegularExpression()));
+        }
+        if (target.isNull() && values.isEmpty()) {
+            return true;
+        }
+        for (BsonValue v : candidates(values)) {
+            if (equal(v, target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean anyIn(List<BsonValue> values, BsonArray targets) {
+        for (BsonValue target : targets) {
+            if (anyEquals(values, target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean anyCompares(List<BsonValue> values, BsonValue target, int min, int max) {
+        for (BsonValue v : candidates(values)) {
+            // Range operators only compare values of the same type bracket
+            if (typeRank(v) == typeRank(target)) {
+                int cmp = Integer.signum(compare(v, target));
+                if (cmp >= min && cmp <= max) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean anyRegex(List<BsonValue> values, Pattern pattern) {
+        for (BsonValue v : candidates(values)) {
+            if (v.isString() && pattern.matcher(v.asString().getValue()).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Pattern pattern(BsonRegularExpression regex) {
+        int flags = 0;
+        String options = regex.getOptions() == null ? "" : regex.getOptions();
+        for (char c : options.toCharArray()) {
+            switch (c) {
+                case 'i':
+                    flags |= Pattern.CASE_INSENSITIVE;
+                    break;
+                case 'm':
+                    flags |= Pattern.MULTILINE;
+                    break;
+                case 's':
+                    flags |= Pattern.DOTALL;
+                    break;
+                case 'x':
+                    flags |= Pattern.COMMENTS;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return Pattern.compile(regex.getPattern(), flags);
+    }
+
+    /**
+     * The values a query compares against: each value at the path, plus the
+     * elements of any which are arrays.
+     */
+    private static List<BsonValue> candidates(List<BsonValue> values) {
+        List<BsonValue> result = new ArrayList<>(values);
+        for (BsonValue v : values) {
+            if (v.isArray()) {
+                result.addAll(v.asArray());
+            }
+        }
+        return result;
+    }
+
+    private static boolean isOperators(BsonValue value) {
+        return value.isDocument() && !value.asDocument().isEmpty()
+                && value.asDocument().keySet().iterator().next().startsWith("$");
+    }
+
+    static boolean isTruthy(BsonValue value) {
+        if (value.isBoolean()) {
+            return value.asBoolean().getValue();
+        } else if (value.isNumber()) {
+            return value.asNumber().doubleValue() != 0;
+        }
+        return !value.isNull();
+    }
+
+    /**
+     * Get the values at a dotted path, descending into arrays of documents
+     * the way queries do, and indexing into arrays for numeric path elements.
+     */
+    static List<BsonValue> values(BsonValue root, String path) {
+        List<BsonValue> result = new ArrayList<>(1);
+        collect(root, path.split("\\."), 0, result);
+        return result;
+    }
+
+    private static void collect(BsonValue current, String[] parts, int ix, List<BsonValue> into) {
+        if (ix == parts.length) {
+            into.add(current);
+        } else if (current.isDocument()) {
+            BsonValue next = current.asDocument().get(parts[ix]);
+            if (next != null) {
+                collect(next, parts, ix + 1, into);
+            }
+        } else if (current.isArray()) {
+            BsonArray array = current.asArray();
+            int index = index(parts[ix]);
+            if (index >= 0) {
+                if (index < array.size()) {
+                    collect(array.get(index), parts, ix + 1, into);
+                }
+            } else {
+                for (BsonValue el : array) {
+                    if (el.isDocument()) {
+                        collect(el, parts, ix, into);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int index(String part) {
+        if (part.isEmpty() || part.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < part.length(); i++) {
+            if (!Character.isDigit(part.charAt(i))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(part);
+    }
+
+    static boolean equal(BsonValue a, BsonValue b) {
+        return typeRank(a) == typeRank(b) && compare(a, b) == 0;
+    }
+
+    /**
+     * The position of a value's type in MongoDB's cross-type sort order;
+     * numeric types share one rank, as do strings and symbols.
+     */
+    private static int typeRank(BsonValue value) {
+        switch (value.getBsonType()) {
+            case MIN_KEY:
+                return 1;
+            case NULL:
+            case UNDEFINED:
+                return 2;
+            case INT32:
+            case INT64:
+            case DOUBLE:
+            case DECIMAL128:
+                return 3;
+            case SYMBOL:
+            case STRING:
+                return 4;
+            case DOCUMENT:
+                return 5;
+            case ARRAY:
+                return 6;
+            case BINARY:
+                return 7;
+            case OBJECT_ID:
+                return 8;
+            case BOOLEAN:
+                return 9;
+            case DATE_TIME:
+                return 10;
+            case TIMESTAMP:
+                return 11;
+            case REGULAR_EXPRESSION:
+                return 12;
+            case MAX_KEY:
+                return 14;
+            default:
+                return 13;
+        }
+    }
+
+    static int compare(BsonValue a, BsonValue b) {
+        int ra = typeRank(a);
+        int rb = typeRank(b);
+        if (ra != rb) {
+            return Integer.compare(ra, rb);
+        }
+        switch (ra) {
+            case 3:
+                return compareNumbers(a, b);
+            case 4:
+                return string(a).compareTo(string(b));
+            case 5:
+                return compareDocuments(a.asDocument(), b.asDocument());
+            case 6:
+                return compareArrays(a.asArray(), b.asArray());
+            case 7:
+                return compareBinary(a.asBinary().getData(), b.asBinary().getData());
+            case 8:
+                return a.asObjectId().getValue().compareTo(b.asObjectId().getValue());
+            case 9:
+                return Boolean.compare(a.asBoolean().getValue(), b.asBoolean().getValue());
+            case 10:
+                return Long.compare(a.asDateTime().getValue(), b.asDateTime().getValue());
+            case 11:
+                return a.asTimestamp().compareTo(b.asTimestamp());
+            case 12:
+                return a.asRegularExpression().getPattern().compareTo(b.asRegularExpression().getPattern());
+            case 13:
+                return a.equals(b) ? 0 : Integer.compare(a.hashCode(), b.hashCode());
+            default:
+                return 0;
+        }
+    }
+
+    private static String string(BsonValue value) {
+        return value.isString() ? value.asString().getValue() : value.asSymbol().getSymbol();
+    }
+
+    private static int compareNumbers(BsonValue a, BsonValue b) {
+        if (a.getBsonType() == BsonType.DECIMAL128 || b.getBsonType() == BsonType.DECIMAL128) {
+            return decimal(a).compareTo(decimal(b));
+        } else if (a.isDouble() || b.isDouble()) {
+            return Double.compare(a.asNumber().doubleValue(), b.asNumber().doubleValue());
+        }
+        return Long.compare(a.asNumber().longValue(), b.asNumber().longValue());
+    }
+
+    private static BigDecimal decimal(BsonValue value) {
+        if (value.getBsonType() == BsonType.DECIMAL128) {
+            return value.asDecimal128().getValue().bigDecimalValue();
+        } else if (value.isDouble()) {
+            return BigDecimal.valueOf(value.asDouble().getValue());
+        }
+        return BigDecimal.valueOf(value.asNumber().longValue());
+    }
+
+    private static int compareDocuments(BsonDocument a, BsonDocument b) {
+        Iterator<Map.Entry<String, BsonValue>> ai = a.entrySet().iterator();
+        Iterator<Map.Entry<String, BsonValue>> bi = b.entrySet().iterator();
+        while (ai.hasNext() && bi.hasNext()) {
+            Map.Entry<String, BsonValue> ae = ai.next();
+            Map.Entry<String, BsonValue> be = bi.next();
+            int result = Integer.compare(typeRank(ae.getValue()), typeRank(be.getValue()));
+            if (result == 0) {
+                result = ae.getKey().compareTo(be.getKey());
+            }
+            if (result == 0) {
+                result = compare(ae.getValue(), be.getValue());
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Boolean.compare(ai.hasNext(), bi.hasNext());
+    }
+
+    private static int compareArrays(BsonArray a, BsonArray b) {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            int result = compare(a.get(i), b.get(i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+
+    private static int compareBinary(byte[] a, byte[] b) {
+        if (a.length != b.length) {
+            return Integer.compare(a.length, b.length);
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * A comparator for a sort specification. Documents missing a field sort
+     * as null; arrays sort by their least element ascending and greatest
+     * descending.
+     */
+    static Comparator<BsonDocument> comparator(BsonDocument sort) {
+        return (a, b) -> {
+            for (Map.Entry<String, BsonValue> e : sort.entrySet()) {
+                if (!e.getValue().isNumber()) {
+                    throw new UnsupportedOperationException("Sort " + e);
+                }
+                int direction = e.getValue().asNumber().intValue() < 0 ? -1 : 1;
+                int result = compare(sortKey(a, e.getKey(), direction), sortKey(b, e.getKey(), direction));
+                if (result != 0) {
+                    return result * direction;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private static BsonValue sortKey(BsonDocument doc, String path, int direction) {
+        BsonValue result = null;
+        for (BsonValue v : values(doc, path)) {
+            List<BsonValue> items = v.isArray() && !v.asArray().isEmpty() ? v.asArray() : Collections.singletonList(v);
+            for (BsonValue item : items) {
+                if (result == null || compare(item, result) * direction < 0) {
+                    result = item;
+                }
+            }
+        }
+        return result == null ? BsonNull.VALUE : result;
+    }
+
+    /**
+     * Apply an inclusive or exclusive projection; _id is included unless
+     * explicitly excluded.
+     */
+    static BsonDocument project(BsonDocument doc, BsonDocument projection) {
+        if (projection == null || projection.isEmpty()) {
+            return doc;
+        }
+        Set<String> included = new HashSet<>();
+        Set<String> excluded = new HashSet<>();
+        for (Map.Entry<String, BsonValue> e : projection.entrySet()) {
+            if (!e.getValue().isNumber() && !e.getValue().isBoolean()) {
+                throw new UnsupportedOperationException("Projection " + e);
+            }
+            (isTruthy(e.getValue()) ? included : excluded).add(e.getKey());
+        }
+        boolean includeId = !excluded.remove("_id");
+        // {_id: 1} alone is an inclusive projection of just the id
+        boolean idOnly = included.remove("_id") && included.isEmpty() && excluded.isEmpty();
+        BsonDocument result;
+        if (included.isEmpty() && !idOnly) {
+            result = exclude(doc, excluded);
+        } else {
+            if (!excluded.isEmpty()) {
+                throw new UnsupportedOperationException("Cannot mix inclusion and exclusion in " + projection);
+            }
+            if (includeId) {
+                included.add("_id");
+            }
+            result = include(doc, included);
+        }
+        if (!includeId) {
+            result.remove("_id");
+        }
+        return result;
+    }
+
+    private static BsonDocument include(BsonDocument doc, Set<String> paths) {
+        BsonDocument result = new BsonDocument();
+        for (Map.Entry<String, BsonValue> e : doc.entrySet()) {
+            if (paths.contains(e.getKey())) {
+                result.put(e.getKey(), e.getValue());
+                continue;
+            }
+            Set<String> sub = subPaths(e.getKey(), paths);
+            if (!sub.isEmpty()) {
+                BsonValue v = e.getValue();
+                if (v.isDocument()) {
+                    result.put(e.getKey(), include(v.asDocument(), sub));
+                } else if (v.isArray()) {
+                    BsonArray projected = new BsonArray();
+                    for (BsonValue el : v.asArray()) {
+                        if (el.isDocument()) {
+                            projected.add(include(el.asDocument(), sub));
+                        }
+                    }
+                    result.put(e.getKey(), projected);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static BsonDocument exclude(BsonDocument doc, Set<String> paths) {
+        BsonDocument result = new BsonDocument();
+        for (Map.Entry<String, BsonValue> e : doc.entrySet()) {
+            if (paths.contains(e.getKey())) {
+                continue;
+            }
+            Set<String> sub = subPaths(e.getKey(), paths);
+            BsonValue v = e.getValue();
+            if (!sub.isEmpty() && v.isDocument()) {
+                v = exclude(v.asDocument(), sub);
+            } else if (!sub.isEmpty() && v.isArray()) {
+                BsonArray projected = new BsonArray();
+                for (BsonValue el : v.asArray()) {
+                    projected.add(el.isDocument() ? exclude(el.asDocument(), sub) : el);
+                }
+                v = projected;
+            }
+            result.put(e.getKey(), v);
+        }
+        return result;
+    }
+
+    private static Set<String> subPaths(String key, Set<String> paths) {
+        Set<String> result = new HashSet<>();
+        String prefix = key + '.';
+        for (String path : paths) {
+            if (path.startsWith(prefix)) {
+                result.add(path.substring(prefix.length()));
+            }
+        }
+        return result;
+    }
+
+    static boolean isReplacement(BsonDocument update) {
+        for (String key : update.keySet()) {
+            if (key.startsWith("$")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The document an upsert starts from: the equality conditions of the
+     * filter.
+     */
+    static BsonDocument upsertSeed(BsonDocument filter) {
+        BsonDocument result = new BsonDocument();
+        if (filter != null) {
+            seed(filter, result);
+        }
+        return result;
+    }
+
+    private static void seed(BsonDocument filter, BsonDocument into) {
+        for (Map.Entry<String, BsonValue> e : filter.entrySet()) {
+            BsonValue v = e.getValue();
+            if ("$and".equals(e.getKey())) {
+                for (BsonValue clause : v.asArray()) {
+                    seed(clause.asDocument(), into);
+                }
+            } else if (!e.getKey().startsWith("$")) {
+                if (!isOperators(v)) {
+                    set(into, e.getKey(), copy(v));
+                } else if (v.asDocument().containsKey("$eq")) {
+                    set(into, e.getKey(), copy(v.asDocument().get("$eq")));
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply update operators to a document in place.
+     *
+     * @param target The document, which should be a copy of the stored one
+     * @param update The update
+     * @param inserting Whether this is an upsert creating the document, so
+     * $setOnInsert applies
+     */
+    static void update(BsonDocument target, BsonDocument update, boolean inserting) {
+        for (Map.Entry<String, BsonValue> op : update.entrySet()) {
+            if (!op.getValue().isDocument()) {
+                throw new IllegalArgumentException("Modifier " + op.getKey() + " expects a document");
+            }
+            for (Map.Entry<String, BsonValue> field : op.getValue().asDocument().entrySet()) {
+                update(target, op.getKey(), field.getKey(), field.getValue(), inserting);
+            }
+        }
+    }
+
+    private static void update(BsonDocument target, String op, String path, BsonValue arg, boolean inserting) {
+        BsonValue current = get(target, path);
+        switch (op) {
+            case "$set":
+                set(target, path, copy(arg));
+                break;
+            case "$setOnInsert":
+                if (inserting) {
+                    set(target, path, copy(arg));
+                }
+                break;
+            case "$unset":
+                remove(target, path);
+                break;
+            case "$inc":
+                set(target, path, current == null ? arg : arithmetic(current, arg, path, false));
+                break;
+            case "$mul":
+                set(target, path, arithmetic(current == null ? new BsonInt32(0) : current, arg, path, true));
+                break;
+            case "$min":
+                if (current == null || compare(arg, current) < 0) {
+                    set(target, path, copy(arg));
+                }
+                break;
+            case "$max":
+                if (current == null || compare(arg, current) > 0) {
+                    set(target, path, copy(arg));
+                }
+                break;
+            case "$rename":
+                if (current != null) {
+                    remove(target, path);
+                    set(target, arg.asString().getValue(), current);
+                }
+                break;
+            case "$currentDate":
+                long now = System.currentTimeMillis();
+                BsonValue type = arg.isDocument() ? arg.asDocument().get("$type") : null;
+                boolean timestamp = type != null && "timestamp".equals(type.asString().getValue());
+                set(target, path, timestamp ? new BsonTimestamp((int) (now / 1000), 1) : new BsonDateTime(now));
+                break;
+            case "$push":
+                array(target, path, current).addAll(each(arg));
+                break;
+            case "$addToSet":
+                BsonArray set = array(target, path, current);
+                for (BsonValue item : each(arg)) {
+                    if (!contains(set, item)) {
+                        set.add(item);
+                    }
+                }
+                break;
+            case "$pull":
+            case "$pullAll":
+                if (current != null) {
+                    BsonArray remaining = new BsonArray();
+                    for (BsonValue el : array(target, path, current)) {
+                        if (!pulls(op, arg, el)) {
+                            remaining.add(el);
+                        }
+                    }
+                    set(target, path, remaining);
+                }
+                break;
+            case "$pop":
+                if (current != null) {
+                    BsonArray popped = array(target, path, current);
+                    if (!popped.isEmpty()) {
+                        popped.remove(arg.asNumber().intValue() < 0 ? 0 : popped.size() - 1);
+                    }
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException("Update operator " + op);
+        }
+    }
+
+    private static boolean pulls(String op, BsonValue arg, BsonValue el) {
+        if ("$pullAll".equals(op)) {
+            return contains(arg.asArray(), el);
+        } else if (isOperators(arg)) {
+            return matches(Collections.singletonList(el), arg);
+        } else if (arg.isDocument() && el.isDocument()) {
+            return matches(el.asDocument(), arg.asDocument());
+        }
+        return equal(el, arg);
+    }
+
+    private static boolean contains(List<BsonValue> values, BsonValue value) {
+        for (BsonValue v : values) {
+            if (equal(v, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<BsonValue> each(BsonValue arg) {
+        if (isOperators(arg)) {
+            BsonDocument modifiers = arg.asDocument();
+            if (modifiers.size() != 1 || !modifiers.containsKey("$each")) {
+                throw new UnsupportedOperationException("Array update modifiers " + modifiers.keySet());
+            }
+            List<BsonValue> result = new ArrayList<>();
+            for (BsonValue v : modifiers.getArray("$each")) {
+                result.add(copy(v));
+            }
+            return result;
+        }
+        return Collections.singletonList(copy(arg));
+    }
+
+    private static BsonArray array(BsonDocument target, String path, BsonValue current) {
+        if (current == null) {
+            BsonArray result = new BsonArray();
+            set(target, path, result);
+            return result;
+        } else if (!current.isArray()) {
+            throw new IllegalArgumentException("Field " + path + " is not an array: " + current);
+        }
+        return current.asArray();
+    }
+
+    private static BsonValue arithmetic(BsonValue current, BsonValue arg, String path, boolean multiply) {
+        if (!isNumeric(current)) {
+            throw new IllegalArgumentException("Cannot apply arithmetic to non-numeric field " + path);
+        } else if (!isNumeric(arg)) {
+            throw new IllegalArgumentException("Cannot apply arithmetic with non-numeric argument " + arg);
+        }
+        if (current.getBsonType() == BsonType.DECIMAL128 || arg.getBsonType() == BsonType.DECIMAL128) {
+            BigDecimal result = multiply ? decimal(current).multiply(decimal(arg)) : decimal(current).add(decimal(arg));
+            return new BsonDecimal128(new Decimal128(result));
+        } else if (current.isDouble() || arg.isDouble()) {
+            double a = current.asNumber().doubleValue();
+            double b = arg.asNumber().doubleValue();
+            return new BsonDouble(multiply ? a * b : a + b);
+        }
+        long a = current.asNumber().longValue();
+        long b = arg.asNumber().longValue();
+        long result = multiply ? a * b : a + b;
+        if (current.isInt32() && arg.isInt32() && result == (int) result) {
+            return new BsonInt32((int) result);
+        }
+        return new BsonInt64(result);
+    }
+
+    private static boolean isNumeric(BsonValue value) {
+        return value.isNumber() || value.getBsonType() == BsonType.DECIMAL128;
+    }
+
+    static BsonValue get(BsonDocument doc, String path) {
+        BsonValue current = doc;
+        for (String part : path.split("\\.")) {
+            if (current.isDocument()) {
+                current = current.asDocument().get(part);
+            } else if (current.isArray() && index(part) >= 0 && index(part) < current.asArray().size()) {
+                current = current.asArray().get(index(part));
+            } else {
+                return null;
+            }
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    static void set(BsonDocument doc, String path, BsonValue value) {
+        String[] parts = path.split("\\.");
+        BsonValue current = doc;
+        for (int i = 0; i < parts.length; i++) {
+            boolean last = i == parts.length - 1;
+            if (current.isDocument()) {
+                BsonDocument d = current.asDocument();
+                if (last) {
+                    d.put(parts[i], value);
+                    return;
+                }
+                BsonValue next = d.get(parts[i]);
+                if (next == null || next.isNull()) {
+                    next = new BsonDocument();
+                    d.put(parts[i], next);
+                }
+                current = next;
+            } else if (current.isArray() && index(parts[i]) >= 0) {
+                BsonArray array = current.asArray();
+                int index = index(parts[i]);
+                while (array.size() <= index) {
+                    array.add(BsonNull.VALUE);
+                }
+                if (last) {
+                    array.set(index, value);
+                    return;
+                }
+                if (array.get(index).isNull()) {
+                    array.set(index, new BsonDocument());
+                }
+                current = array.get(index);
+            } else {
+                throw new IllegalArgumentException("Cannot create field '" + parts[i] + "' in " + current);
+            }
+        }
+    }
+
+    static void remove(BsonDocument doc, String path) {
+        int ix = path.lastIndexOf('.');
+        BsonValue parent = ix < 0 ? doc : get(doc, path.substring(0, ix));
+        String last = path.substring(ix + 1);
+        if (parent != null && parent.isDocument()) {
+            parent.asDocument().remove(last);
+        } else if (parent != null && parent.isArray() && index(last) >= 0 && index(last) < parent.asArray().size()) {
+            // $unset of an array element leaves a null in its place
+            parent.asArray().set(index(last), BsonNull.VALUE);
+        }
+    }
+
+    static BsonValue copy(BsonValue value) {
+        if (value.isDocument()) {
+            return value.asDocument().clone();
+        } else if (value.isArray()) {
+            return value.asArray().clone();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.util.Providers;
+import com.mastfrog.giulius.ShutdownHookRegistry;
+import com.mastfrog.settings.SettingsBuilder;
+import com.mastfrog.util.function.EnhCompletableFuture;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.ServerAddress;
+import com.mongodb.async.AsyncBatchCursor;
+import com.mongodb.async.SingleResultCallback;
+import com.mongodb.async.client.ChangeStreamIterable;
+import com.mongodb.async.client.MongoClients;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.async.client.MongoDatabase;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests change stream subscriptions against a collection whose change stream
+ * cursors the test feeds by hand, and the resume token store against the
+ * in-memory stand-in.
+ *
+ * @author agent
+ */
+public class ChangeSubscriptionTest {
+
+    private static final ServerAddress ADDR = new ServerAddress("localhost", 27017);
+    private static final Codec<ChangeStreamDocument<Document>> CHANGES
+            = ChangeStreamDocument.createCodec(Document.class, MongoClients.getDefaultCodecRegistry());
+    private final BlockingQueue<Cursor> cursors = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Throwable> openFailures = new LinkedBlockingQueue<>();
+    private final List<BsonDocument> resumedAfter = new CopyOnWriteArrayList<>();
+    private final List<Long> opened = new CopyOnWriteArrayList<>();
+    private final Tokens tokens = new Tokens();
+
+    @Test(timeout = 20000)
+    public void testTokensAreSavedBeforeTheNextBatchAndUsedToResume() throws Throwable {
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        ChangeSubscription<Document> sub = stream().subscribe("sub", batch -> {
+            batch.forEach(change -> seen.add(change.getFullDocument().getInteger("_id")));
+            return null;
+        });
+        tokens.holdSaves = true;
+        Cursor first = cursors.poll(10, SECONDS);
+        assertNull("Nothing saved yet, so the stream should start now", resumedAfter.get(0));
+        first.awaitNext().onResult(Arrays.asList(change(1), change(2)), null);
+
+        CompletableFuture<Void> save = tokens.held.poll(10, SECONDS);
+        assertEquals(token(2), tokens.saved.get(0));
+        Thread.sleep(100);
+        assertFalse("The next batch must wait for the token to be saved", first.hasPendingNext());
+        tokens.holdSaves = false;
+        save.complete(null);
+
+        first.awaitNext().onResult(Collections.singletonList(change(3)), null);
+        SingleResultCallback<List<ChangeStreamDocument<Document>>> next = first.awaitNext();
+        assertEquals(Arrays.asList(token(2), token(3)), tokens.saved);
+        assertEquals(Arrays.asList(1, 2, 3), seen);
+
+        next.onResult(null, new MongoSocketException("Connection reset", ADDR));
+        Cursor second = cursors.poll(10, SECONDS);
+        assertNotNull(second);
+        assertTrue(first.closed);
+        assertEquals(token(3), resumedAfter.get(1));
+        assertEquals(1, sub.restarts());
+        assertEquals(3, sub.delivered());
+        sub.close();
+    }
+
+    @Test(timeout = 20000)
+    public void testRestartsWithBackoff() throws Throwable {
+        openFailures.add(new MongoSocketException("Connection refused", ADDR));
+        openFailures.add(new MongoSocketException("Connection refused", ADDR));
+        ChangeSubscription<Document> sub = stream().subscribe("sub", batch -> null);
+        Cursor cursor = cursors.poll(10, SECONDS);
+        assertNotNull(cursor);
+        assertEquals(3, opened.size());
+        assertTrue("First retry too soon", NANOSECONDS.toMillis(opened.get(1) - opened.get(0)) >= 90);
+        assertTrue("Second retry did not back off", NANOSECONDS.toMillis(opened.get(2) - opened.get(1)) >= 190);
+        assertEquals(2, sub.restarts());
+        assertFalse(sub.isClosed());
+        sub.close();
+    }
+
+    @Test(timeout = 20000)
+    public void testCloseClosesAQuietCursor() throws Throwable {
+        ChangeSubscription<Document> sub = stream().subscribe("sub", batch -> null);
+        Cursor cursor = cursors.poll(10, SECONDS);
+        cursor.awaitNext();
+        sub.close();
+        assertTrue("Cursor should be closed without waiting for a batch", cursor.closed);
+        sub.done().toCompletableFuture().get(10, SECONDS);
+        Thread.sleep(300);
+        assertTrue(cursors.isEmpty());
+        assertEquals(0, sub.restarts());
+    }
+
+    @Test(timeout = 20000)
+    public void testLostHistoryEndsTheSubscription() throws Throwable {
+        ChangeSubscription<Document> sub = stream().subscribe("sub", batch -> null);
+        Cursor cursor = cursors.poll(10, SECONDS);
+        MongoCommandException lost = commandException(286, null);
+        cursor.awaitNext().onResult(null, lost);
+        try {
+            sub.done().toCompletableFuture().get(10, SECONDS);
+            fail("Subscription should have failed");
+        } catch (ExecutionException ex) {
+            assertSame(lost, ex.getCause());
+        }
+        Thread.sleep(300);
+        assertTrue("Should not have restarted", cursors.isEmpty());
+        assertEquals(0, sub.restarts());
+    }
+
+    @Test(timeout = 20000)
+    public void testHandlerFailureEndsTheSubscription() throws Throwable {
+        ChangeSubscription<Document> sub = stream().subscribe("sub", batch -> {
+            throw new IllegalStateException("Handler failed");
+        });
+        Cursor cursor = cursors.poll(10, SECONDS);
+        cursor.awaitNext().onResult(Collections.singletonList(change(1)), null);
+        try {
+            sub.done().toCompletableFuture().get(10, SECONDS);
+            fail("Subscription should have failed");
+        } catch (ExecutionException ex) {
+            assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof IllegalStateException);
+        }
+        assertTrue(tokens.saved.isEmpty());
+        assertTrue(cursor.closed);
+        assertTrue(cursors.isEmpty());
+    }
+
+    @Test
+    public void testResumability() {
+        assertTrue(ChangeSubscription.isResumable(new MongoSocketException("Connection reset", ADDR)));
+        assertTrue(ChangeSubscription.isResumable(new IllegalStateException("Collection not created")));
+        assertTrue("Labelled", ChangeSubscription.isResumable(commandException(12345, "ResumableChangeStreamError")));
+        assertTrue("Cursor not found", ChangeSubscription.isResumable(commandException(43, null)));
+        assertFalse("Unlabelled", ChangeSubscription.isResumable(commandException(12345, null)));
+        assertFalse(ChangeSubscription.isResumable(commandException(280, "ResumableChangeStreamError")));
+        assertFalse(ChangeSubscription.isResumable(commandException(286, null)));
+        assertFalse(ChangeSubscription.isResumable(commandException(40585, null)));
+        assertFalse(ChangeSubscription.isResumable(new CancellationException()));
+    }
+
+    @Test(timeout = 20000)
+    public void testMongoResumeTokenStore() throws Throwable {
+        InMemoryMongo mongo = new InMemoryMongo(new MongoAsyncInitializer.Registry(null));
+        MongoDatabase db = mongo.client(MongoClients.getDefaultCodecRegistry()).getDatabase("tokens");
+        MongoResumeTokenStore store = new MongoResumeTokenStore(Providers.of(db), new SettingsBuilder().build());
+        assertNull(store.load("a").toCompletableFuture().get(10, SECONDS));
+        store.save("a", token(1)).toCompletableFuture().get(10, SECONDS);
+        store.save("a", token(2)).toCompletableFuture().get(10, SECONDS);
+        store.save("b", token(3)).toCompletableFuture().get(10, SECONDS);
+        assertEquals(token(2), store.load("a").toCompletableFuture().get(10, SECONDS));
+        assertEquals(token(3), store.load("b").toCompletableFuture().get(10, SECONDS));
+        EnhCompletableFuture<Long> count = new EnhCompletableFuture<>();
+        db.getCollection("changeStreamResumeTokens").count(new MongoFutureCollection.SRC<>(count));
+        assertEquals(Long.valueOf(2), count.get(10, SECONDS));
+    }
+
+    private ChangeStream<Document> stream() {
+        return new ChangeStream<>("things", Providers.of(collection()), 10, null, Providers.of(tokens),
+                Providers.of(new CoalescingTimer(ShutdownHookRegistry::get)), ShutdownHookRegistry::get);
+    }
+
+    private static BsonDocument token(int i) {
+        return new BsonDocument("_data", new BsonInt32(i));
+    }
+
+    private static ChangeStreamDocument<Document> change(int i) {
+        BsonDocument doc = new BsonDocument("_id", token(i))
+                .append("operationType", new BsonString("insert"))
+                .append("ns", new BsonDocument("db", new BsonString("db")).append("coll", new BsonString("things")))
+                .append("documentKey", new BsonDocument("_id", new BsonInt32(i)))
+                .append("fullDocument", new BsonDocument("_id", new BsonInt32(i)));
+        return CHANGES.decode(new BsonDocumentReader(doc), DecoderContext.builder().build());
+    }
+
+    private static MongoCommandException commandException(int code, String label) {
+        BsonDocument response = new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(code))
+                .append("errmsg", new BsonString("Error " + code));
+        if (label != null) {
+            response.append("errorLabels", new BsonArray(Collections.singletonList(new BsonString(label))));
+        }
+        return new MongoCommandException(response, ADDR);
+    }
+
+    @SuppressWarnings("unchecked")
+    private MongoCollection<Document> collection() {
+        return (MongoCollection<Document>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MongoCollection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getDocumentClass":
+                            return Document.class;
+                        case "watch":
+                            return changes();
+                        case "toString":
+                            return "things";
+                        default:
+                            throw new UnsupportedOperationException(method.toString());
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private ChangeStreamIterable<Document> changes() {
+        BsonDocument[] resumeAfter = new BsonDocument[1];
+        return (ChangeStreamIterable<Document>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ChangeStreamIterable.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "resumeAfter":
+                            resumeAfter[0] = (BsonDocument) args[0];
+                            return proxy;
+                        case "fullDocument":
+                        case "batchSize":
+                            return proxy;
+                        case "batchCursor":
+                            opened.add(System.nanoTime());
+                            resumedAfter.add(resumeAfter[0]);
+                            SingleResultCallback<AsyncBatchCursor<ChangeStreamDocument<Document>>> callback
+                                    = (SingleResultCallback<AsyncBatchCursor<ChangeStreamDocument<Document>>>) args[0];
+                            Throwable failure = openFailures.poll();
+                            if (failure != null) {
+                                callback.onResult(null, failure);
+                            } else {
+                                Cursor cursor = new Cursor();
+                                callback.onResult(cursor.proxy(), null);
+                                cursors.add(cursor);
+                            }
+                            return null;
+                        case "toString":
+                            return "changes";
+                        default:
+                            throw new UnsupportedOperationException(method.toString());
+                    }
+                });
+    }
+
+    /**
+     * A change stream cursor which returns batches when the test passes them
+     * to the callback of its pending next() call.
+     */
+    private static final class Cursor {
+
+        private final BlockingQueue<SingleResultCallback<List<ChangeStreamDocument<Document>>>> next
+                = new LinkedBlockingQueue<>();
+        volatile boolean closed;
+
+        @SuppressWarnings("unchecked")
+        AsyncBatchCursor<ChangeStreamDocument<Document>> proxy() {
+            return (AsyncBatchCursor<ChangeStreamDocument<Document>>) Proxy.newProxyInstance(
+                    ChangeSubscriptionTest.class.getClassLoader(), new Class<?>[]{AsyncBatchCursor.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "next":
+                            case "tryNext":
+                                if (closed) {
+                                    throw new IllegalStateException("Cursor closed");
+                                }
+                                next.add((SingleResultCallback<List<ChangeStreamDocument<Document>>>) args[0]);
+                                return null;
+                            case "close":
+                                closed = true;
+                                return null;
+                            case "isClosed":
+                                return closed;
+                            case "setBatchSize":
+                                return null;
+                            case "getBatchSize":
+                                return 10;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                return "cursor";
+                        }
+                    });
+        }
+
+        SingleResultCallback<List<ChangeStreamDocument<Document>>> awaitNext() throws InterruptedException {
+            SingleResultCallback<List<ChangeStreamDocument<Document>>> result = next.poll(10, SECONDS);
+            assertNotNull("next() was not called", result);
+            return result;
+        }
+
+        boolean hasPendingNext() {
+            return !next.isEmpty();
+        }
+    }
+
+    /**
+     * Records saved tokens in order, optionally holding each save until the
+     * test completes it.
+     */
+    private static final class Tokens implements ResumeTokenStore {
+
+        final List<BsonDocument> saved = new CopyOnWriteArrayList<>();
+        final BlockingQueue<CompletableFuture<Void>> held = new LinkedBlockingQueue<>();
+        volatile boolean holdSaves;
+
+        @Override
+        public CompletionStage<BsonDocument> load(String subscriberName) {
+            return CompletableFuture.completedFuture(saved.isEmpty() ? null : saved.get(saved.size() - 1));
+        }
+
+        @Override
+        public CompletionStage<?> save(String subscriberName, BsonDocument resumeToken) {
+            saved.add(resumeToken);
+            if (!holdSaves) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            held.add(result);
+            return result;
+        }
+    }
+}
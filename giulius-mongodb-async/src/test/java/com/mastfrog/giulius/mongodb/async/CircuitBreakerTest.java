@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.util.Providers;
+import com.mastfrog.settings.SettingsBuilder;
+import com.mongodb.MongoException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.ServerAddress;
+import com.mongodb.async.client.MongoCollection;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import org.bson.Document;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class CircuitBreakerTest {
+
+    private static final ServerAddress ADDR = new ServerAddress("localhost", 27017);
+
+    @Test
+    public void testOpensProbesAndCloses() throws Throwable {
+        CircuitBreaker breaker = new CircuitBreaker("things", Providers.of(new SettingsBuilder()
+                .add("mongo.circuit.breaker.minimum.calls", 10)
+                .add("mongo.circuit.breaker.things.open.millis", 100)
+                .add("mongo.circuit.breaker.half.open.probes", 2)
+                .build()));
+        // Errors caused by the operation itself do not count
+        for (int i = 0; i < 20; i++) {
+            complete(breaker, new MongoException(11000, "E11000 duplicate key"));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        int failures = 0;
+        while (breaker.state() == CircuitBreaker.State.CLOSED && failures < 100) {
+            complete(breaker, new MongoSocketException("Connection reset", ADDR));
+            failures++;
+        }
+        // Half of the 40 operations in the window have failed
+        assertEquals(20, failures);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        CompletableFuture<Object> refused = new CompletableFuture<>();
+        assertFalse(breaker.admit(refused));
+        try {
+            refused.get();
+            fail("Should have been refused");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof CircuitBreakerException);
+            assertFalse(((CircuitBreakerException) ex.getCause()).isShed());
+        }
+
+        Thread.sleep(150);
+        List<CompletableFuture<Object>> probes = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<Object> probe = new CompletableFuture<>();
+            assertTrue(breaker.admit(probe));
+            probes.add(probe);
+        }
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertFalse("Only two probes should be admitted", breaker.admit(new CompletableFuture<>()));
+        probes.forEach(probe -> probe.complete("ok"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(1, breaker.timesOpened());
+    }
+
+    @Test
+    public void testShedsLoadAboveInFlightLimit() throws Throwable {
+        CircuitBreaker breaker = new CircuitBreaker("things", Providers.of(new SettingsBuilder()
+                .add("mongo.circuit.breaker.max.in.flight", 3)
+                .build()));
+        List<CompletableFuture<Object>> inFlight = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<Object> f = new CompletableFuture<>();
+            assertTrue(breaker.admit(f));
+            inFlight.add(f);
+        }
+        CompletableFuture<Object> shed = new CompletableFuture<>();
+        assertFalse(breaker.admit(shed));
+        assertTrue(shed.isCompletedExceptionally());
+        assertEquals(1, breaker.shed());
+        inFlight.get(0).complete("ok");
+        assertTrue(breaker.admit(new CompletableFuture<>()));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void testSynchronousDriverFailureReleasesProbe() throws Throwable {
+        CircuitBreaker breaker = new CircuitBreaker("things", Providers.of(new SettingsBuilder()
+                .add("mongo.circuit.breaker.minimum.calls", 10)
+                .add("mongo.circuit.breaker.things.open.millis", 50)
+                .add("mongo.circuit.breaker.half.open.probes", 1)
+                .build()));
+        @SuppressWarnings("unchecked")
+        MongoCollection<Object> throwing = (MongoCollection<Object>) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{MongoCollection.class}, (proxy, method, args) -> {
+                    throw new IllegalArgumentException("Bad " + method.getName());
+                });
+        MongoFutureCollection<Object> coll = new MongoFutureCollection<>(Providers.of(throwing),
+                null, null, null, breaker);
+        while (breaker.state() == CircuitBreaker.State.CLOSED) {
+            complete(breaker, new MongoSocketException("Connection reset", ADDR));
+        }
+        Thread.sleep(100);
+        try {
+            coll.insertOne("x").get();
+            fail("Should have failed");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalArgumentException);
+        }
+        assertEquals(0, breaker.inFlight());
+        assertEquals("The probe should have completed", CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void testStreamingOperationsPassThroughBreaker() throws Throwable {
+        CircuitBreaker breaker = new CircuitBreaker("things", Providers.of(new SettingsBuilder()
+                .add("mongo.circuit.breaker.minimum.calls", 10)
+                .add("mongo.circuit.breaker.things.open.millis", 60000)
+                .build()));
+        @SuppressWarnings("unchecked")
+        MongoCollection<Document> throwing = (MongoCollection<Document>) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{MongoCollection.class}, (proxy, method, args) -> {
+                    throw new IllegalArgumentException("Bad " + method.getName());
+                });
+        MongoFutureCollection<Document> coll = new MongoFutureCollection<>(Providers.of(throwing),
+                null, null, null, breaker);
+        BatchHandler<Document> handler = batch -> null;
+
+        // Admitted, but the driver throws opening the cursor
+        assertFailsWith(IllegalArgumentException.class, coll.findBatched(new Document(), 10, handler));
+        assertEquals("Opening the cursor should have completed", 0, breaker.inFlight());
+
+        while (breaker.state() == CircuitBreaker.State.CLOSED) {
+            complete(breaker, new MongoSocketException("Connection reset", ADDR));
+        }
+        long rejected = breaker.rejected();
+        assertFailsWith(CircuitBreakerException.class, coll.findBatched(new Document(), 10, handler));
+        assertFailsWith(CircuitBreakerException.class, coll.aggregateBatched(Collections.emptyList(), 10, handler));
+        assertFailsWith(CircuitBreakerException.class, coll.stream(c -> c.find(), 10, handler));
+        assertFailsWith(CircuitBreakerException.class, coll.pipeline().match(new Document()).stream(Document.class, handler));
+        assertFailsWith(CircuitBreakerException.class, coll.parallelScan(1, 10, Runnable::run, handler));
+        assertEquals(5, breaker.rejected() - rejected);
+    }
+
+    private static void assertFailsWith(Class<? extends Throwable> type, CompletableFuture<?> future) throws Throwable {
+        try {
+            future.get(10, SECONDS);
+            fail("Should have failed with " + type.getSimpleName());
+        } catch (ExecutionException ex) {
+            assertTrue(String.valueOf(ex.getCause()), type.isInstance(ex.getCause()));
+        }
+    }
+
+    private static void complete(CircuitBreaker breaker, Throwable failure) {
+        CompletableFuture<Object> f = new CompletableFuture<>();
+        assertTrue(breaker.admit(f));
+        f.completeExceptionally(failure);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Named;
+import com.mastfrog.giulius.mongodb.async.CoalescingWritesTest.TestModule;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import com.mastfrog.util.function.EnhCompletableFuture;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.WriteConcern;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import org.bson.BsonString;
+import org.bson.Document;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ *
+ * @author agent
+ */
+@RunWith(GuiceRunner.class)
+@TestWith({TestModule.class, MongoHarness.Module.class})
+public class CoalescingWritesTest {
+
+    @Test(timeout = 30000)
+    public void testFullBatchesAreSentImmediately(@Named("bySize") MongoFutureCollection<Document> coll) throws Throwable {
+        CoalescingWrites<Document> writes = coll.coalescedWrites();
+        List<EnhCompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(writes.insertOne(new Document("ix", i)));
+        }
+        // The window is a minute, so only reaching the batch size sends them
+        for (EnhCompletableFuture<Void> f : futures) {
+            f.get(10, SECONDS);
+        }
+        assertEquals(2, writes.metrics().batches());
+        assertEquals(4, writes.metrics().maxBatchSize());
+        assertEquals(Long.valueOf(8), coll.count().get(10, SECONDS));
+    }
+
+    @Test(timeout = 30000)
+    public void testPartialBatchesAreSentWhenTheWindowExpires(@Named("byTime") MongoFutureCollection<Document> coll) throws Throwable {
+        CoalescingWrites<Document> writes = coll.coalescedWrites();
+        long start = System.nanoTime();
+        EnhCompletableFuture<Void> a = writes.insertOne(new Document("ix", 1));
+        EnhCompletableFuture<Void> b = writes.insertOne(new Document("ix", 2));
+        assertFalse(a.isDone());
+        a.get(10, SECONDS);
+        b.get(10, SECONDS);
+        assertTrue(NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+        assertEquals(1, writes.metrics().batches());
+        assertEquals(2, writes.metrics().writes());
+    }
+
+    @Test(timeout = 30000)
+    public void testErrorsAreMappedToTheirWrites(@Named("manual") MongoFutureCollection<Document> coll) throws Throwable {
+        CoalescingWrites<Document> writes = coll.coalescedWrites();
+        EnhCompletableFuture<Void> first = writes.insertOne(new Document("_id", 1));
+        EnhCompletableFuture<Void> dup = writes.insertOne(new Document("_id", 1));
+        EnhCompletableFuture<Void> third = writes.insertOne(new Document("_id", 2));
+        writes.flush();
+        first.get(10, SECONDS);
+        assertDuplicateKey(dup);
+        // Inserts-only batches are unordered, so writes after an error happen
+        third.get(10, SECONDS);
+        assertEquals(Long.valueOf(2), coll.count().get(10, SECONDS));
+        assertEquals(1, writes.metrics().failedBatches());
+    }
+
+    @Test(timeout = 30000)
+    public void testOrderedBatchesStopAtTheFirstError(@Named("manual") MongoFutureCollection<Document> coll) throws Throwable {
+        coll.insertOne(new Document("_id", "x")).get(10, SECONDS);
+        CoalescingWrites<Document> writes = coll.coalescedWrites();
+        EnhCompletableFuture<CoalescedWriteResult> before = writes.updateOne(Filters.eq("_id", "x"), Updates.set("v", 1));
+        EnhCompletableFuture<Void> dup = writes.insertOne(new Document("_id", "x"));
+        EnhCompletableFuture<CoalescedWriteResult> after = writes.updateOne(Filters.eq("_id", "y"),
+                Updates.set("v", 2), new UpdateOptions().upsert(true));
+        writes.flush();
+        assertEquals(1, before.get(10, SECONDS).matchedCount());
+        assertDuplicateKey(dup);
+        try {
+            after.get(10, SECONDS);
+            fail("Write after the failure should not have run");
+        } catch (ExecutionException ex) {
+            assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof MongoBulkWriteException);
+        }
+        assertNull(coll.findOne(Filters.eq("_id", "y")).get(10, SECONDS));
+    }
+
+    @Test(timeout = 30000)
+    public void testUpsertedIdsAreAttributed(@Named("manual") MongoFutureCollection<Document> coll) throws Throwable {
+        coll.insertOne(new Document("_id", "e")).get(10, SECONDS);
+        CoalescingWrites<Document> writes = coll.coalescedWrites();
+        UpdateOptions upsert = new UpdateOptions().upsert(true);
+        EnhCompletableFuture<CoalescedWriteResult> u1 = writes.updateOne(Filters.eq("_id", "u1"), Updates.set("v", 1), upsert);
+        EnhCompletableFuture<CoalescedWriteResult> existing = writes.updateOne(Filters.eq("_id", "e"), Updates.set("v", 2), upsert);
+        EnhCompletableFuture<CoalescedWriteResult> u2 = writes.replaceOne(Filters.eq("_id", "u2"), new Document("v", 3), upsert);
+        writes.flush();
+        CoalescedWriteResult r1 = u1.get(10, SECONDS);
+        CoalescedWriteResult r2 = existing.get(10, SECONDS);
+        CoalescedWriteResult r3 = u2.get(10, SECONDS);
+        assertTrue(r1.isUpsert());
+        assertEquals(new BsonString("u1"), r1.upsertedId());
+        assertFalse(r2.isUpsert());
+        assertEquals(1, r2.matchedCount());
+        assertEquals(1, r2.modifiedCount());
+        assertEquals(new BsonString("u2"), r3.upsertedId());
+        assertEquals(3, r3.batchSize());
+    }
+
+    @Test(timeout = 30000)
+    public void testBatchesAreAppliedInOrder(@Named("manual") MongoFutureCollection<Document> coll) throws Throwable {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            // Every write is its own batch, so each would be a separate
+            // bulkWrite racing the others if more than one were in flight
+            CoalescingWrites<Document> writes = CoalescingWrites.create(coll.collection(), Duration.ofMinutes(1), 1, timer);
+            EnhCompletableFuture<Void> inserted = writes.insertOne(new Document("_id", "ordered").append("v", 0));
+            List<EnhCompletableFuture<CoalescedWriteResult>> updates = new ArrayList<>();
+            for (int i = 1; i <= 50; i++) {
+                updates.add(writes.updateOne(Filters.eq("_id", "ordered"), Updates.set("v", i)));
+            }
+            inserted.get(10, SECONDS);
+            for (EnhCompletableFuture<CoalescedWriteResult> f : updates) {
+                assertEquals(1, f.get(10, SECONDS).matchedCount());
+            }
+            assertEquals(51, writes.metrics().batches());
+            assertEquals(Integer.valueOf(50), coll.findOne(Filters.eq("_id", "ordered")).get(10, SECONDS).getInteger("v"));
+        } finally {
+            timer.shutdownNow();
+            timer.awaitTermination(5, SECONDS);
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testUnacknowledgedWritesComplete(@Named("manual") MongoCollection<Document> coll) throws Throwable {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CoalescingWrites<Document> writes = CoalescingWrites.create(
+                    coll.withWriteConcern(WriteConcern.UNACKNOWLEDGED), Duration.ofMillis(10), 10, timer);
+            EnhCompletableFuture<Void> inserted = writes.insertOne(new Document("_id", "a"));
+            EnhCompletableFuture<CoalescedWriteResult> updated = writes.updateOne(Filters.eq("_id", "a"), Updates.set("v", 1));
+            inserted.get(10, SECONDS);
+            CoalescedWriteResult result = updated.get(10, SECONDS);
+            assertFalse(result.batch().wasAcknowledged());
+            assertEquals(-1, result.matchedCount());
+            assertEquals(-1, result.modifiedCount());
+            assertNull(result.upsertedId());
+        } finally {
+            timer.shutdownNow();
+            timer.awaitTermination(5, SECONDS);
+        }
+    }
+
+    private static void assertDuplicateKey(EnhCompletableFuture<?> f) throws Throwable {
+        try {
+            f.get(10, SECONDS);
+            fail("Duplicate key accepted");
+        } catch (ExecutionException ex) {
+            assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof MongoWriteException);
+            assertEquals(11000, ((MongoWriteException) ex.getCause()).getError().getCode());
+        }
+    }
+
+    static class TestModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            GiuliusMongoAsyncModule m = new GiuliusMongoAsyncModule();
+            m.bindCollection("bySize");
+            m.bindCollection("byTime");
+            m.bindCollection("manual");
+            m.coalesceWrites("bySize", Duration.ofMinutes(1), 4);
+            m.coalesceWrites("byTime", Duration.ofMillis(100), 1000);
+            m.coalesceWrites("manual", Duration.ofMinutes(1), 1000);
+            install(m);
+        }
+    }
+}
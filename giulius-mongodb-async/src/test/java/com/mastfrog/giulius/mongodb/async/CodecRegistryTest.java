@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.AbstractModule;
+import com.mastfrog.giulius.mongodb.async.CodecRegistryTest.TestModule;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Singleton;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.codecs.configuration.CodecRegistry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests that the module's codec registry falls back to DynamicCodecs once
+ * per type, and remembers types it has no codec for.
+ *
+ * @author agent
+ */
+@RunWith(GuiceRunner.class)
+@TestWith({TestModule.class, InMemoryMongo.Module.class})
+public class CodecRegistryTest {
+
+    @Test
+    public void testFallbackIsConsultedOncePerType(CodecRegistry registry, CountingCodecs fallback) {
+        assertNotNull(registry.get(Document.class));
+        assertEquals("Document has a codec", 0, fallback.created.get() + fallback.missed.get());
+
+        Codec<Widget> codec = registry.get(Widget.class);
+        assertSame(codec, registry.get(Widget.class));
+        assertEquals(1, fallback.created.get());
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                registry.get(Gadget.class);
+                fail("No codec should be found for Gadget");
+            } catch (CodecConfigurationException ex) {
+                // expected
+            }
+        }
+        assertEquals("The miss should be cached", 1, fallback.missed.get());
+        assertEquals(1, fallback.created.get());
+    }
+
+    static final class Widget {
+    }
+
+    static final class Gadget {
+    }
+
+    @Singleton
+    static final class CountingCodecs implements DynamicCodecs {
+
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger missed = new AtomicInteger();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Codec<T> createCodec(Class<T> type, CodecConfigurationException ex) {
+            if (type != Widget.class) {
+                missed.incrementAndGet();
+                throw ex;
+            }
+            created.incrementAndGet();
+            return (Codec<T>) new WidgetCodec();
+        }
+    }
+
+    static final class WidgetCodec implements Codec<Widget> {
+
+        @Override
+        public Widget decode(BsonReader reader, DecoderContext decoderContext) {
+            reader.readNull();
+            return new Widget();
+        }
+
+        @Override
+        public void encode(BsonWriter writer, Widget value, EncoderContext encoderContext) {
+            writer.writeNull();
+        }
+
+        @Override
+        public Class<Widget> getEncoderClass() {
+            return Widget.class;
+        }
+    }
+
+    static class TestModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            install(new GiuliusMongoAsyncModule().withDynamicCodecs(CountingCodecs.class));
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.util.Providers;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.settings.SettingsBuilder;
+import com.mastfrog.util.function.EnhCompletableFuture;
+import com.mongodb.MongoException;
+import com.mongodb.async.SingleResultCallback;
+import com.mongodb.async.client.MongoClient;
+import com.mongodb.async.client.MongoClients;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.async.client.MongoDatabase;
+import com.mongodb.async.client.MongoIterable;
+import com.mongodb.client.model.CreateCollectionOptions;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bson.Document;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests collection discovery and creation against an in-memory client whose
+ * listing and creation calls can be made to fail or wait.
+ *
+ * @author agent
+ */
+public class ExistingCollectionsTest {
+
+    private static final String DB = "existingCollectionsTest";
+    private final AtomicInteger listings = new AtomicInteger();
+    private final AtomicInteger listingFailures = new AtomicInteger();
+    private final AtomicInteger creations = new AtomicInteger();
+    private final List<HeldCreation> heldCreations = new CopyOnWriteArrayList<>();
+    private volatile boolean holdCreations;
+    private volatile boolean hangListings;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private MongoClient client;
+
+    @Test(timeout = 20000)
+    public void testDiscoveryDoesNotBlockAndRetries() throws Throwable {
+        listingFailures.set(2);
+        ExistingCollections existing = existing(new SettingsBuilder()
+                .add(ExistingCollections.SETTINGS_KEY_LIST_RETRIES, 4)
+                .add(ExistingCollections.SETTINGS_KEY_LIST_RETRY_BACKOFF_MILLIS, 200).build());
+        // Create a collection directly, so there is something to discover
+        client.getDatabase(DB).createCollection("preexisting", (v, thrown) -> {
+        });
+        creations.set(0);
+        existing.addBound("preexisting", new CreateCollectionOptions());
+        existing.addBound("missing", new CreateCollectionOptions());
+        long start = System.nanoTime();
+        existing.init(client, () -> client);
+        assertTrue("init() waited for a retry", NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+        CompletableFuture<Integer> discovery = existing.discovery().toCompletableFuture();
+        assertFalse(discovery.isDone());
+        // Two failures, then a success: 200ms + 400ms of backoff
+        assertEquals(Integer.valueOf(1), discovery.get(10, SECONDS));
+        assertEquals(3, listings.get());
+        assertTrue(NANOSECONDS.toMillis(System.nanoTime() - start) >= 600);
+        existing.collection("missing").toCompletableFuture().get(10, SECONDS);
+        existing.collection("preexisting").toCompletableFuture().get(10, SECONDS);
+        assertEquals("Only the missing collection should be created", 1, creations.get());
+    }
+
+    @Test(timeout = 20000)
+    public void testDiscoveryFailsFastWhenRetriesAreExhausted() throws Throwable {
+        listingFailures.set(Integer.MAX_VALUE);
+        ExistingCollections existing = existing(new SettingsBuilder()
+                .add(ExistingCollections.SETTINGS_KEY_LIST_RETRIES, 2)
+                .add(ExistingCollections.SETTINGS_KEY_LIST_RETRY_BACKOFF_MILLIS, 10).build());
+        existing.addBound("things", new CreateCollectionOptions());
+        long start = System.nanoTime();
+        existing.init(client, () -> client);
+        try {
+            existing.discovery().toCompletableFuture().get(10, SECONDS);
+            fail("Discovery should have failed");
+        } catch (ExecutionException ex) {
+            assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof MongoException);
+        }
+        // Well short of the default 60 second maximum wait
+        assertTrue(NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertEquals(3, listings.get());
+        // Bound collections are still created
+        existing.collection("things").toCompletableFuture().get(10, SECONDS);
+        assertEquals(1, creations.get());
+    }
+
+    @Test(timeout = 20000)
+    public void testDiscoveryTimesOutWhenListingNeverCompletes() throws Throwable {
+        hangListings = true;
+        ExistingCollections existing = existing(new SettingsBuilder()
+                .add(ExistingCollections.SETTINGS_KEY_MAX_WAIT_SECONDS, 1).build());
+        existing.init(client, () -> client);
+        CompletableFuture<MongoCollection<Document>> things = existing.collection("things").toCompletableFuture();
+        assertFalse(things.isDone());
+        try {
+            existing.discovery().toCompletableFuture().get(10, SECONDS);
+            fail("Discovery should have timed out");
+        } catch (ExecutionException ex) {
+            assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof TimeoutException);
+        }
+        things.get(10, SECONDS);
+        assertEquals(1, listings.get());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        timer.shutdownNow();
+        timer.awaitTermination(5, SECONDS);
+    }
+
+    @Test(timeout = 20000)
+    public void testCreationDoesNotBlockCallers() throws Throwable {
+        holdCreations = true;
+        ExistingCollections existing = existing(new SettingsBuilder().build());
+        existing.addBound("things", new CreateCollectionOptions());
+        existing.init(client, () -> client);
+        MongoTypedCollectionProvider<Document> provider = new MongoTypedCollectionProvider<>("things",
+                Document.class, Providers.of(existing), () -> client);
+        MongoFutureCollection<Document> things = new MongoFutureCollection<>(provider);
+
+        // None of these may wait for the held creation
+        CompletableFuture<MongoCollection<Document>> first = existing.collection("things").toCompletableFuture();
+        CompletableFuture<MongoCollection<Document>> second = existing.collection("things").toCompletableFuture();
+        EnhCompletableFuture<Void> inserted = things.insertOne(new Document("_id", "a"));
+        EnhCompletableFuture<Long> count = things.count();
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        assertFalse(inserted.isDone());
+        assertFalse(count.isDone());
+        assertEquals("Concurrent callers should share one creation", 1, heldCreations.size());
+
+        release();
+        inserted.get(10, SECONDS);
+        assertEquals(Long.valueOf(1), things.count().get(10, SECONDS));
+        assertSame(first.get(10, SECONDS), second.get(10, SECONDS));
+        assertEquals(1, creations.get());
+    }
+
+    @Test(timeout = 20000)
+    public void testFailedCreationIsRetried() throws Throwable {
+        holdCreations = true;
+        ExistingCollections existing = existing(new SettingsBuilder().build());
+        existing.init(client, () -> client);
+        CompletableFuture<MongoCollection<Document>> first = existing.collection("stuff").toCompletableFuture();
+        assertEquals(1, heldCreations.size());
+        holdCreations = false;
+        heldCreations.remove(0).fail(new MongoException("Creation failed"));
+        assertTrue(first.isCompletedExceptionally());
+        assertEquals(DB + ".stuff", existing.collection("stuff").toCompletableFuture()
+                .get(10, SECONDS).getNamespace().getFullName());
+        assertEquals(1, creations.get());
+    }
+
+    private ExistingCollections existing(Settings settings) {
+        MongoAsyncInitializer.Registry[] reg = new MongoAsyncInitializer.Registry[1];
+        ExistingCollections result = new ExistingCollections(Providers.of(DB), () -> reg[0], Providers.of(settings),
+                Providers.of(timer));
+        reg[0] = new MongoAsyncInitializer.Registry(result);
+        InMemoryMongo mongo = new InMemoryMongo(reg[0]);
+        client = intercept(MongoClient.class, mongo.client(MongoClients.getDefaultCodecRegistry()));
+        return result;
+    }
+
+    private void release() {
+        holdCreations = false;
+        for (HeldCreation held : heldCreations) {
+            held.run();
+        }
+        heldCreations.clear();
+    }
+
+    private <T> T intercept(Class<T> type, Object delegate) {
+        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, new Interceptor(delegate)));
+    }
+
+    /**
+     * Passes calls through to the in-memory client, except for listing and
+     * creating collections, which the test controls.
+     */
+    private final class Interceptor implements InvocationHandler {
+
+        private final Object delegate;
+
+        Interceptor(Object delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getDatabase":
+                    return intercept(MongoDatabase.class, call(method, args));
+                case "listCollectionNames":
+                    listings.incrementAndGet();
+                    if (hangListings) {
+                        return listing(null);
+                    } else if (listingFailures.getAndDecrement() > 0) {
+                        return listing(new MongoException("Listing failed"));
+                    }
+                    break;
+                case "createCollection":
+                    if (holdCreations) {
+                        heldCreations.add(new HeldCreation(this, method, args));
+                        return null;
+                    }
+                    creations.incrementAndGet();
+                    break;
+                default:
+                    break;
+            }
+            return call(method, args);
+        }
+
+        Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(delegate, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+    /**
+     * A createCollection call which has not been passed on yet.
+     */
+    private final class HeldCreation {
+
+        private final Interceptor interceptor;
+        private final Method method;
+        private final Object[] args;
+
+        HeldCreation(Interceptor interceptor, Method method, Object[] args) {
+            this.interceptor = interceptor;
+            this.method = method;
+            this.args = args;
+        }
+
+        void run() {
+            creations.incrementAndGet();
+            try {
+                interceptor.call(method, args);
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void fail(Throwable t) {
+            ((SingleResultCallback<Void>) args[args.length - 1]).onResult(null, t);
+        }
+    }
+
+    /**
+     * A listing which fails with the passed exception, or never calls back if
+     * it is null.
+     */
+    @SuppressWarnings("unchecked")
+    private static MongoIterable<String> listing(MongoException failure) {
+        return (MongoIterable<String>) Proxy.newProxyInstance(ExistingCollectionsTest.class.getClassLoader(),
+                new Class<?>[]{MongoIterable.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "batchSize":
+                            return proxy;
+                        case "forEach":
+                            if (failure != null) {
+                                ((SingleResultCallback<Void>) args[1]).onResult(null, failure);
+                            }
+                            return null;
+                        case "toString":
+                            return "listing failing with " + failure;
+                        default:
+                            throw new UnsupportedOperationException(method.toString());
+                    }
+                });
+    }
+}
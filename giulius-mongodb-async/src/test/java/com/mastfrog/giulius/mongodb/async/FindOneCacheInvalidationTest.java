@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.util.function.EnhCompletableFuture;
+import com.mongodb.async.client.MongoClients;
+import com.mongodb.client.model.Filters;
+import java.time.Duration;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Tests that a write invalidating the findOne() cache while a load is
+ * completing keeps that load's result out of the cache.
+ *
+ * @author agent
+ */
+public class FindOneCacheInvalidationTest {
+
+    private static final Bson QUERY = Filters.eq("_id", "a");
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void testInvalidationAfterLoadCompletesIsNotOverwritten() throws Throwable {
+        FindOneCache cache = new FindOneCache(100, Duration.ofMinutes(5));
+        Runnable[] onEncode = new Runnable[1];
+        CodecRegistry registry = registry(() -> {
+            if (onEncode[0] != null) {
+                onEncode[0].run();
+            }
+        });
+        assertEquals("a", find(cache, registry).get(10, SECONDS).getString("_id"));
+        assertEquals(1, cache.size());
+        assertEquals("a", find(cache, registry).get(10, SECONDS).getString("_id"));
+        assertEquals("Second lookup should have been cached", 1, loads.get());
+
+        // The load's query has completed and its result is being stored
+        // when the write lands
+        cache.invalidateAll();
+        onEncode[0] = cache::invalidateAll;
+        assertEquals("a", find(cache, registry).get(10, SECONDS).getString("_id"));
+        assertEquals(2, loads.get());
+        assertEquals("Result loaded before a write was cached", 0, cache.size());
+
+        onEncode[0] = null;
+        find(cache, registry).get(10, SECONDS);
+        assertEquals(3, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentInvalidationNeverLeavesStaleResult() throws Throwable {
+        CodecRegistry registry = registry(() -> {
+        });
+        ExecutorService completer = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                FindOneCache cache = new FindOneCache(100, Duration.ofMinutes(5));
+                EnhCompletableFuture<Document> pending = new EnhCompletableFuture<>();
+                EnhCompletableFuture<Document> result = cache.findOne(registry, QUERY, null, Document.class, () -> pending);
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                Future<?> completed = completer.submit(() -> {
+                    barrier.await();
+                    return pending.complete(new Document("_id", "a"));
+                });
+                barrier.await();
+                cache.invalidateAll();
+                completed.get(10, SECONDS);
+                result.get(10, SECONDS);
+                // The load started before the write, so whichever finished
+                // first, its result must not survive it
+                assertEquals("Stale result cached on iteration " + i, 0, cache.size());
+            }
+        } finally {
+            completer.shutdownNow();
+        }
+    }
+
+    private EnhCompletableFuture<Document> find(FindOneCache cache, CodecRegistry registry) {
+        return cache.findOne(registry, QUERY, null, Document.class, () -> {
+            loads.incrementAndGet();
+            EnhCompletableFuture<Document> result = new EnhCompletableFuture<>();
+            result.complete(new Document("_id", "a"));
+            return result;
+        });
+    }
+
+    private static CodecRegistry registry(Runnable onEncode) {
+        Codec<Document> documents = MongoClients.getDefaultCodecRegistry().get(Document.class);
+        Codec<Document> hooked = new Codec<Document>() {
+            @Override
+            public Document decode(BsonReader reader, DecoderContext decoderContext) {
+                return documents.decode(reader, decoderContext);
+            }
+
+            @Override
+            public void encode(BsonWriter writer, Document value, EncoderContext encoderContext) {
+                onEncode.run();
+                documents.encode(writer, value, encoderContext);
+            }
+
+            @Override
+            public Class<Document> getEncoderClass() {
+                return Document.class;
+            }
+        };
+        return CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(hooked),
+                MongoClients.getDefaultCodecRegistry());
+    }
+}
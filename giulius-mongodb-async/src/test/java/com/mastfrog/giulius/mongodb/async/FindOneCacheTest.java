@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Named;
+import com.mastfrog.giulius.mongodb.async.FindOneCacheTest.TestModule;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import java.time.Duration;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ *
+ * @author agent
+ */
+@RunWith(GuiceRunner.class)
+@TestWith({TestModule.class, MongoHarness.Module.class})
+public class FindOneCacheTest {
+
+    @Test(timeout = 30000)
+    public void testWritesInvalidateCachedResults(@Named("cached") MongoFutureCollection<Document> cached,
+            @Named("uncached") MongoFutureCollection<Document> uncached) throws Throwable {
+        Bson query = Filters.eq("_id", "a");
+        cached.insertOne(new Document("_id", "a").append("v", 1)).get(10, SECONDS);
+        Document first = cached.findOne(query).get(10, SECONDS);
+        assertEquals(Integer.valueOf(1), first.getInteger("v"));
+
+        // Callers get their own copies, so modifying one does not change
+        // what the next caller sees
+        first.put("v", 99);
+        Document second = cached.findOne(query).get(10, SECONDS);
+        assertNotSame(first, second);
+        assertEquals(Integer.valueOf(1), second.getInteger("v"));
+
+        // A write through a binding without the cache is not seen...
+        uncached.updateOne(query, Updates.set("v", 2)).get(10, SECONDS);
+        assertEquals(Integer.valueOf(1), cached.findOne(query).get(10, SECONDS).getInteger("v"));
+
+        // ...until a write through the cached binding clears it
+        cached.updateOne(query, Updates.set("w", 3)).get(10, SECONDS);
+        Document third = cached.findOne(query).get(10, SECONDS);
+        assertEquals(Integer.valueOf(2), third.getInteger("v"));
+        assertEquals(Integer.valueOf(3), third.getInteger("w"));
+
+        cached.deleteOne(query).get(10, SECONDS);
+        assertEquals(null, cached.findOne(query).get(10, SECONDS));
+    }
+
+    static class TestModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            GiuliusMongoAsyncModule m = new GiuliusMongoAsyncModule();
+            m.bindCollection("cached", "things");
+            m.bindCollection("uncached", "things");
+            m.cacheFindOne("cached", 100, Duration.ofMinutes(5));
+            install(m);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.AbstractModule;
+import com.mastfrog.giulius.mongodb.async.GeneratedCodecTest.TestModule;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.ObjectId;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests the codecs BsonCodecAnnotationProcessor generates for the fixture
+ * classes below, through the module's codec registry.
+ *
+ * @author agent
+ */
+@RunWith(GuiceRunner.class)
+@TestWith({TestModule.class, InMemoryMongo.Module.class})
+public class GeneratedCodecTest {
+
+    @Test
+    public void testIdFieldIsStoredAsId(CodecRegistry registry) {
+        Keyed keyed = new Keyed();
+        keyed.key = "k";
+        keyed.count = 3;
+        BsonDocument doc = encode(registry.get(Keyed.class), keyed);
+        assertEquals(new BsonString("k"), doc.get("_id"));
+        assertFalse(doc.containsKey("key"));
+        assertEquals("_id should be written first", "_id", doc.getFirstKey());
+        Keyed read = decode(registry.get(Keyed.class), doc);
+        assertEquals("k", read.key);
+        assertEquals(3, read.count);
+    }
+
+    @Test
+    public void testGettersAndSetters(CodecRegistry registry) {
+        Bean bean = new Bean();
+        bean.setId(new ObjectId());
+        bean.setName("Joe");
+        bean.setAge(42);
+        bean.setActive(true);
+        BsonDocument doc = encode(registry.get(Bean.class), bean);
+        assertEquals(new BsonObjectId(bean.getId()), doc.get("_id"));
+        assertEquals(new BsonInt32(42), doc.get("age"));
+        Bean read = decode(registry.get(Bean.class), doc);
+        assertEquals(bean.getId(), read.getId());
+        assertEquals("Joe", read.getName());
+        assertEquals(42, read.getAge());
+        assertTrue(read.isActive());
+    }
+
+    @Test
+    public void testFieldAccessAndValueTypes(CodecRegistry registry) {
+        Codec<Everything> codec = registry.get(Everything.class);
+        Everything all = new Everything();
+        all.id = "all";
+        all.matrix = Arrays.asList(Arrays.asList("a", "b"), null, Arrays.asList("c", null));
+        all.color = Color.GREEN;
+        all.colors = new LinkedHashSet<>(Arrays.asList(Color.GREEN, Color.RED));
+        all.bytes = new byte[]{1, 2, 3};
+        all.boxedInt = 1;
+        all.boxedLong = 2L;
+        all.boxedDouble = 3.5D;
+        all.boxedBoolean = true;
+        all.boxedShort = 4;
+        all.boxedByte = 5;
+        all.boxedFloat = 6.25F;
+        all.boxedChar = 'x';
+        all.s = -7;
+        all.b = 8;
+        all.f = 0.1F;
+        all.c = 'y';
+        all.l = Long.MAX_VALUE;
+        all.d = 1.1D;
+        all.when = Instant.ofEpochMilli(1_500_000_000_123L);
+        all.extra = new Document("nested", true);
+
+        BsonDocument doc = encode(codec, all);
+        assertTrue("Instant should be delegated to the registry", doc.get("when").isDateTime());
+        assertTrue(doc.get("bytes").isBinary());
+        Everything read = decode(codec, doc);
+        assertEquals("all", read.id);
+        assertEquals(all.matrix, read.matrix);
+        assertEquals(Color.GREEN, read.color);
+        assertEquals(all.colors, read.colors);
+        assertArrayEquals(all.bytes, read.bytes);
+        assertEquals(Integer.valueOf(1), read.boxedInt);
+        assertEquals(Long.valueOf(2), read.boxedLong);
+        assertEquals(Double.valueOf(3.5), read.boxedDouble);
+        assertEquals(Boolean.TRUE, read.boxedBoolean);
+        assertEquals(Short.valueOf((short) 4), read.boxedShort);
+        assertEquals(Byte.valueOf((byte) 5), read.boxedByte);
+        assertEquals(Float.valueOf(6.25F), read.boxedFloat);
+        assertEquals(Character.valueOf('x'), read.boxedChar);
+        assertEquals(-7, read.s);
+        assertEquals(8, read.b);
+        assertEquals(0.1F, read.f, 0);
+        assertEquals('y', read.c);
+        assertEquals(Long.MAX_VALUE, read.l);
+        assertEquals(1.1D, read.d, 0);
+        assertEquals(all.when, read.when);
+        assertEquals(all.extra, read.extra);
+    }
+
+    @Test
+    public void testNulls(CodecRegistry registry) {
+        Codec<Everything> codec = registry.get(Everything.class);
+        BsonDocument doc = encode(codec, new Everything());
+        // Only the six primitives
+        assertEquals("Null fields should be omitted: " + doc, 6, doc.size());
+        Everything read = decode(codec, doc);
+        assertNull(read.id);
+        assertNull(read.matrix);
+        assertNull(read.color);
+        assertNull(read.bytes);
+        assertNull(read.boxedInt);
+        assertNull(read.boxedChar);
+        assertNull(read.when);
+        assertNull(read.extra);
+
+        // Explicit nulls in the document
+        BsonDocument nulls = new BsonDocument("boxedInt", BsonNull.VALUE)
+                .append("matrix", BsonNull.VALUE)
+                .append("s", BsonNull.VALUE)
+                .append("when", BsonNull.VALUE);
+        read = decode(codec, nulls);
+        assertNull(read.boxedInt);
+        assertNull(read.matrix);
+        assertEquals(0, read.s);
+        assertNull(read.when);
+    }
+
+    @Test
+    public void testSelfReferentialClass(CodecRegistry registry) {
+        Node root = new Node();
+        root.name = "root";
+        root.next = new Node();
+        root.next.name = "next";
+        Node child = new Node();
+        child.name = "child";
+        root.children = Arrays.asList(child, null);
+        Codec<Node> codec = registry.get(Node.class);
+        assertFalse("Node has no id field", codec instanceof CollectibleCodec<?>);
+        Node read = decode(codec, encode(codec, root));
+        assertEquals("root", read.name);
+        assertEquals("next", read.next.name);
+        assertNull(read.next.next);
+        assertEquals(2, read.children.size());
+        assertEquals("child", read.children.get(0).name);
+        assertNull(read.children.get(1));
+    }
+
+    @Test
+    public void testNumbersAreConvertedOnlyWithoutLoss(CodecRegistry registry) {
+        Codec<Everything> codec = registry.get(Everything.class);
+        Everything read = decode(codec, new BsonDocument("s", new BsonDouble(12))
+                .append("l", new BsonInt32(3))
+                .append("boxedInt", new BsonInt64(Integer.MAX_VALUE))
+                .append("d", new BsonInt64(1L << 53))
+                .append("f", new BsonDouble(0.5)));
+        assertEquals(12, read.s);
+        assertEquals(3, read.l);
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), read.boxedInt);
+        assertEquals(1L << 53, read.d, 0);
+        assertEquals(0.5F, read.f, 0);
+
+        assertLossy(codec, "boxedInt", new BsonInt64(1L << 40));
+        assertLossy(codec, "boxedInt", new BsonDouble(1.5));
+        assertLossy(codec, "s", new BsonInt32(100_000));
+        assertLossy(codec, "b", new BsonInt32(200));
+        assertLossy(codec, "boxedByte", new BsonDouble(-129));
+        assertLossy(codec, "l", new BsonDouble(1.5));
+        assertLossy(codec, "l", new BsonDouble(1e19));
+        assertLossy(codec, "l", new BsonDouble(Double.NaN));
+        assertLossy(codec, "d", new BsonInt64(Long.MAX_VALUE));
+        assertLossy(codec, "f", new BsonDouble(0.1));
+        assertLossy(codec, "boxedFloat", new BsonDouble(1e300));
+        assertLossy(codec, "c", new BsonString("yz"));
+    }
+
+    @Test
+    public void testCollectibleCodecs(CodecRegistry registry) {
+        Codec<Bean> beanCodec = registry.get(Bean.class);
+        assertTrue(beanCodec instanceof CollectibleCodec<?>);
+        CollectibleCodec<Bean> beans = (CollectibleCodec<Bean>) beanCodec;
+        Bean bean = new Bean();
+        assertFalse(beans.documentHasId(bean));
+        try {
+            beans.getDocumentId(bean);
+            fail("No id to get");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        assertSame(bean, beans.generateIdIfAbsentFromDocument(bean));
+        ObjectId id = bean.getId();
+        assertNotNull("An ObjectId should have been generated", id);
+        assertTrue(beans.documentHasId(bean));
+        assertEquals(new BsonObjectId(id), beans.getDocumentId(bean));
+        beans.generateIdIfAbsentFromDocument(bean);
+        assertSame("An existing id should be kept", id, bean.getId());
+
+        CollectibleCodec<Keyed> keyeds = (CollectibleCodec<Keyed>) registry.get(Keyed.class);
+        Keyed keyed = new Keyed();
+        keyeds.generateIdIfAbsentFromDocument(keyed);
+        assertNull("Only ObjectIds can be generated", keyed.key);
+        keyed.key = "k";
+        assertEquals(new BsonString("k"), keyeds.getDocumentId(keyed));
+    }
+
+    @Test
+    public void testCodecsAreRegisteredAsServices() {
+        Set<Class<?>> found = new LinkedHashSet<>();
+        for (GeneratedCodecProvider provider : ServiceLoader.load(GeneratedCodecProvider.class)) {
+            for (Class<?> type : Arrays.asList(Keyed.class, Bean.class, Everything.class, Node.class)) {
+                Codec<?> codec = provider.get(type, null);
+                if (codec != null) {
+                    assertTrue(found.add(type));
+                    assertSame(type, codec.getEncoderClass());
+                    assertEquals("GeneratedCodecTest_" + type.getSimpleName() + "BsonCodec",
+                            codec.getClass().getSimpleName());
+                }
+            }
+            assertNull(provider.get(Document.class, null));
+        }
+        assertEquals(4, found.size());
+    }
+
+    private static void assertLossy(Codec<Everything> codec, String field, BsonValue value) {
+        try {
+            decode(codec, new BsonDocument(field, value));
+            fail("Reading " + value + " into " + field + " should fail");
+        } catch (BsonInvalidOperationException ex) {
+            // expected
+        }
+    }
+
+    private static <T> BsonDocument encode(Codec<T> codec, T value) {
+        BsonDocument doc = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(doc), value, EncoderContext.builder().build());
+        return doc;
+    }
+
+    private static <T> T decode(Codec<T> codec, BsonDocument doc) {
+        return codec.decode(new BsonDocumentReader(doc), DecoderContext.builder().build());
+    }
+
+    public enum Color {
+        RED, GREEN
+    }
+
+    @BsonCodec(idField = "key")
+    public static class Keyed {
+
+        String key;
+        int count;
+    }
+
+    @BsonCodec
+    public static class Bean {
+
+        private ObjectId id;
+        private String name;
+        private int age;
+        private boolean active;
+
+        public ObjectId getId() {
+            return id;
+        }
+
+        public void setId(ObjectId id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+    }
+
+    @BsonCodec
+    public static class Everything {
+
+        String id;
+        List<List<String>> matrix;
+        Color color;
+        Set<Color> colors;
+        byte[] bytes;
+        Integer boxedInt;
+        Long boxedLong;
+        Double boxedDouble;
+        Boolean boxedBoolean;
+        Short boxedShort;
+        Byte boxedByte;
+        Float boxedFloat;
+        Character boxedChar;
+        short s;
+        byte b;
+        float f;
+        char c;
+        long l;
+        double d;
+        // Neither has a codec generated inline, so both go to the registry
+        Instant when;
+        Document extra;
+    }
+
+    @BsonCodec
+    public static class Node {
+
+        String name;
+        Node next;
+        List<Node> children;
+    }
+
+    static class TestModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            install(new GiuliusMongoAsyncModule());
+        }
+    }
+}
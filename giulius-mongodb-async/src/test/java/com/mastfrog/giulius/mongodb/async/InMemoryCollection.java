@@ -0,0 +1,540 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+/**
+ * The documents and indexes of one InMemoryMongo collection. Each operation
+ * runs under the collection's monitor, so it is atomic with respect to the
+ * others; stored documents are replaced rather than modified, so documents
+ * already handed to a reader never change underneath it.
+ *
+ * @author agent
+ */
+final class InMemoryCollection {
+
+    private static final ServerAddress ADDRESS = new ServerAddress();
+    private static final String ID_INDEX = "_id_";
+    private final MongoNamespace namespace;
+    private final Map<Object, BsonDocument> documents = new LinkedHashMap<>();
+    private final Map<String, Index> indexes = new LinkedHashMap<>();
+
+    InMemoryCollection(MongoNamespace namespace) {
+        this.namespace = namespace;
+        // Uniqueness of _id is enforced by the document map itself
+        indexes.put(ID_INDEX, new Index(new BsonDocument("v", new BsonInt32(2))
+                .append("key", new BsonDocument("_id", new BsonInt32(1)))
+                .append("name", new BsonString(ID_INDEX))
+                .append("ns", new BsonString(namespace.getFullName()))));
+    }
+
+    MongoNamespace namespace() {
+        return namespace;
+    }
+
+    synchronized List<BsonDocument> find(BsonDocument filter, BsonDocument sort, int skip, int limit) {
+        boolean sorted = sort != null && !sort.isEmpty();
+        List<BsonDocument> result = new ArrayList<>();
+        for (BsonDocument doc : documents.values()) {
+            if (BsonQueries.matches(doc, filter)) {
+                result.add(doc);
+                if (!sorted && limit > 0 && result.size() >= skip + limit) {
+                    break;
+                }
+            }
+        }
+        if (sorted) {
+            result.sort(BsonQueries.comparator(sort));
+        }
+        int from = Math.min(skip, result.size());
+        int to = limit > 0 ? Math.min(result.size(), from + limit) : result.size();
+        return from == 0 && to == result.size() ? result : new ArrayList<>(result.subList(from, to));
+    }
+
+    synchronized long count(BsonDocument filter, int skip, int limit) {
+        return find(filter, null, skip, limit).size();
+    }
+
+    synchronized List<BsonValue> distinct(String field, BsonDocument filter) {
+        List<BsonValue> result = new ArrayList<>();
+        for (BsonDocument doc : find(filter, null, 0, 0)) {
+            for (BsonValue v : BsonQueries.values(doc, field)) {
+                for (BsonValue item : v.isArray() ? v.asArray() : Collections.singletonList(v)) {
+                    if (!contains(result, item)) {
+                        result.add(item);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean contains(List<BsonValue> values, BsonValue value) {
+        for (BsonValue v : values) {
+            if (BsonQueries.equal(v, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized void insert(BsonDocument doc) {
+        doc = withId(doc);
+        Object key = key(doc.get("_id"));
+        if (documents.containsKey(key)) {
+            throw duplicateKey(indexes.get(ID_INDEX), Collections.singletonList(key));
+        }
+        store(key, null, doc);
+    }
+
+    synchronized UpdateResult update(BsonDocument filter, BsonDocument update, boolean multi, boolean upsert) {
+        if (update.isEmpty() || BsonQueries.isReplacement(update)) {
+            throw writeError(9, "Update document must contain only update operators: " + update);
+        }
+        long matched = 0;
+        long modified = 0;
+        for (Map.Entry<Object, BsonDocument> e : new ArrayList<>(documents.entrySet())) {
+            BsonDocument old = e.getValue();
+            if (!BsonQueries.matches(old, filter)) {
+                continue;
+            }
+            matched++;
+            BsonDocument updated = apply(old, update);
+            if (!updated.equals(old)) {
+                store(e.getKey(), old, updated);
+                modified++;
+            }
+            if (!multi) {
+                break;
+            }
+        }
+        if (matched == 0 && upsert) {
+            BsonDocument doc = BsonQueries.upsertSeed(filter);
+            try {
+                BsonQueries.update(doc, update, true);
+            } catch (IllegalArgumentException ex) {
+                throw writeError(2, ex.getMessage());
+            }
+            doc = withId(doc);
+            insert(doc);
+            return UpdateResult.acknowledged(0, 0L, doc.get("_id"));
+        }
+        return UpdateResult.acknowledged(matched, modified, null);
+    }
+
+    synchronized UpdateResult replace(BsonDocument filter, BsonDocument replacement, boolean upsert) {
+        if (!BsonQueries.isReplacement(replacement)) {
+            throw writeError(9, "Replacement document must not contain update operators: " + replacement);
+        }
+        for (Map.Entry<Object, BsonDocument> e : new ArrayList<>(documents.entrySet())) {
+            BsonDocument old = e.getValue();
+            if (BsonQueries.matches(old, filter)) {
+                BsonDocument updated = replacement(old, replacement);
+                boolean changed = !updated.equals(old);
+                if (changed) {
+                    store(e.getKey(), old, updated);
+                }
+                return UpdateResult.acknowledged(1, changed ? 1L : 0L, null);
+            }
+        }
+        if (upsert) {
+            BsonDocument doc = BsonQueries.upsertSeed(filter);
+            BsonValue id = replacement.containsKey("_id") ? replacement.get("_id") : doc.get("_id");
+            doc = replacement.clone();
+            if (id != null) {
+                doc.put("_id", id);
+            }
+            doc = withId(doc);
+            insert(doc);
+            return UpdateResult.acknowledged(0, 0L, doc.get("_id"));
+        }
+        return UpdateResult.acknowledged(0, 0L, null);
+    }
+
+    synchronized DeleteResult delete(BsonDocument filter, boolean multi) {
+        long deleted = 0;
+        for (Iterator<Map.Entry<Object, BsonDocument>> it = documents.entrySet().iterator(); it.hasNext();) {
+            BsonDocument doc = it.next().getValue();
+            if (BsonQueries.matches(doc, filter)) {
+                it.remove();
+                for (Index index : indexes.values()) {
+                    index.remove(doc);
+                }
+                deleted++;
+                if (!multi) {
+                    break;
+                }
+            }
+        }
+        return DeleteResult.acknowledged(deleted);
+    }
+
+    /**
+     * Find a document and delete, replace or update it.
+     *
+     * @param filter The filter
+     * @param sort Which of several matching documents to pick
+     * @param change The update or replacement, or null to delete
+     * @param upsert Whether to insert if nothing matches
+     * @param returnAfter Whether to return the new rather than old document
+     * @return A document or null
+     */
+    synchronized BsonDocument findAndModify(BsonDocument filter, BsonDocument sort, BsonDocument change, boolean upsert, boolean returnAfter) {
+        List<BsonDocument> found = find(filter, sort, 0, 1);
+        if (found.isEmpty()) {
+            if (change == null || !upsert) {
+                return null;
+            }
+            UpdateResult result = BsonQueries.isReplacement(change)
+                    ? replace(filter, change, true) : update(filter, change, false, true);
+            return returnAfter ? documents.get(key(result.getUpsertedId())) : null;
+        }
+        BsonDocument old = found.get(0);
+        Object key = key(old.get("_id"));
+        if (change == null) {
+            documents.remove(key);
+            for (Index index : indexes.values()) {
+                index.remove(old);
+            }
+            return old;
+        }
+        BsonDocument updated = BsonQueries.isReplacement(change) ? replacement(old, change) : apply(old, change);
+        store(key, old, updated);
+        return returnAfter ? updated : old;
+    }
+
+    synchronized BulkWriteResult bulk(List<Write> writes, boolean ordered) {
+        int inserted = 0;
+        int matched = 0;
+        int removed = 0;
+        int modified = 0;
+        List<BulkWriteUpsert> upserts = new ArrayList<>();
+        List<BulkWriteError> errors = new ArrayList<>();
+        for (int i = 0; i < writes.size(); i++) {
+            Write write = writes.get(i);
+            try {
+                switch (write.kind) {
+                    case INSERT:
+                        insert(write.document);
+                        inserted++;
+                        break;
+                    case DELETE:
+                        removed += delete(write.filter, write.multi).getDeletedCount();
+                        break;
+                    default:
+                        UpdateResult result = write.kind == Write.Kind.REPLACE
+                                ? replace(write.filter, write.document, write.upsert)
+                                : update(write.filter, write.document, write.multi, write.upsert);
+                        matched += result.getMatchedCount();
+                        modified += result.getModifiedCount();
+                        if (result.getUpsertedId() != null) {
+                            upserts.add(new BulkWriteUpsert(i, result.getUpsertedId()));
+                        }
+                }
+            } catch (MongoWriteException ex) {
+                errors.add(new BulkWriteError(ex.getError().getCode(), ex.getError().getMessage(),
+                        ex.getError().getDetails(), i));
+                if (ordered) {
+                    break;
+                }
+            }
+        }
+        BulkWriteResult result = BulkWriteResult.acknowledged(inserted, matched, removed, modified, upserts);
+        if (!errors.isEmpty()) {
+            throw new MongoBulkWriteException(result, errors, null, ADDRESS);
+        }
+        return result;
+    }
+
+    synchronized String createIndex(BsonDocument keys, String name, boolean unique, boolean sparse, Long expireAfterSeconds) {
+        if (name == null) {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, BsonValue> e : keys.entrySet()) {
+                if (sb.length() > 0) {
+                    sb.append('_');
+                }
+                sb.append(e.getKey()).append('_').append(e.getValue().isNumber()
+                        ? Integer.toString(e.getValue().asNumber().intValue()) : e.getValue().asString().getValue());
+            }
+            name = sb.toString();
+        }
+        Index existing = indexes.get(name);
+        if (existing != null) {
+            if (existing.key.equals(keys)) {
+                return name;
+            }
+            throw commandError(86, "Index with name: " + name + " already exists with a different key");
+        }
+        BsonDocument spec = new BsonDocument("v", new BsonInt32(2))
+                .append("key", keys.clone())
+                .append("name", new BsonString(name))
+                .append("ns", new BsonString(namespace.getFullName()));
+        if (unique) {
+            spec.append("unique", BsonBoolean.TRUE);
+        }
+        if (sparse) {
+            spec.append("sparse", BsonBoolean.TRUE);
+        }
+        if (expireAfterSeconds != null) {
+            spec.append("expireAfterSeconds", new BsonInt64(expireAfterSeconds));
+        }
+        Index index = new Index(spec);
+        for (Map.Entry<Object, BsonDocument> e : documents.entrySet()) {
+            try {
+                index.check(e.getKey(), e.getValue());
+            } catch (MongoWriteException ex) {
+                throw commandError(11000, ex.getError().getMessage());
+            }
+            index.add(e.getKey(), e.getValue());
+        }
+        indexes.put(name, index);
+        return name;
+    }
+
+    synchronized void dropIndex(String name) {
+        if (ID_INDEX.equals(name)) {
+            throw commandError(72, "cannot drop _id index");
+        }
+        if (indexes.remove(name) == null) {
+            throw commandError(27, "index not found with name [" + name + "]");
+        }
+    }
+
+    synchronized void dropIndex(BsonDocument keys) {
+        for (Index index : indexes.values()) {
+            if (index.key.equals(keys)) {
+                dropIndex(index.name);
+                return;
+            }
+        }
+        throw commandError(27, "can't find index with key: " + keys);
+    }
+
+    synchronized void dropIndexes() {
+        indexes.keySet().retainAll(Collections.singleton(ID_INDEX));
+    }
+
+    synchronized List<BsonDocument> indexes() {
+        List<BsonDocument> result = new ArrayList<>(indexes.size());
+        for (Index index : indexes.values()) {
+            result.add(index.spec.clone());
+        }
+        return result;
+    }
+
+    synchronized void clear() {
+        documents.clear();
+        dropIndexes();
+    }
+
+    private BsonDocument apply(BsonDocument old, BsonDocument update) {
+        BsonDocument updated = old.clone();
+        try {
+            BsonQueries.update(updated, update, false);
+        } catch (IllegalArgumentException ex) {
+            throw writeError(2, ex.getMessage());
+        }
+        if (!BsonQueries.equal(old.get("_id"), updated.get("_id") == null ? BsonNull.VALUE : updated.get("_id"))) {
+            throw writeError(66, "Performing an update on the path '_id' would modify the immutable field '_id'");
+        }
+        return updated;
+    }
+
+    private BsonDocument replacement(BsonDocument old, BsonDocument replacement) {
+        BsonValue id = replacement.get("_id");
+        if (id != null && !BsonQueries.equal(id, old.get("_id"))) {
+            throw writeError(66, "After applying the update, the (immutable) field '_id' was found to have been altered");
+        }
+        BsonDocument result = new BsonDocument("_id", old.get("_id"));
+        for (Map.Entry<String, BsonValue> e : replacement.entrySet()) {
+            if (!"_id".equals(e.getKey())) {
+                result.put(e.getKey(), BsonQueries.copy(e.getValue()));
+            }
+        }
+        return result;
+    }
+
+    private void store(Object key, BsonDocument old, BsonDocument doc) {
+        for (Index index : indexes.values()) {
+            index.check(key, doc);
+        }
+        for (Index index : indexes.values()) {
+            if (old != null) {
+                index.remove(old);
+            }
+            index.add(key, doc);
+        }
+        documents.put(key, doc);
+    }
+
+    /**
+     * Get a copy of a document with an _id as its first field, generating an
+     * ObjectId if it has none.
+     */
+    static BsonDocument withId(BsonDocument doc) {
+        BsonValue id = doc.get("_id");
+        BsonDocument result = new BsonDocument("_id", id == null ? new BsonObjectId() : id);
+        for (Map.Entry<String, BsonValue> e : doc.entrySet()) {
+            if (!"_id".equals(e.getKey())) {
+                result.put(e.getKey(), e.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A hash key for a value which treats numerically equal values of
+     * different numeric types as equal, as MongoDB's indexes do.
+     */
+    static Object key(BsonValue value) {
+        if (value.isInt32() || value.isInt64()) {
+            return value.asNumber().longValue();
+        } else if (value.isDouble()) {
+            double d = value.asDouble().getValue();
+            return d == Math.rint(d) && Math.abs(d) < Long.MAX_VALUE ? (Object) (long) d : (Object) d;
+        }
+        return value;
+    }
+
+    private MongoWriteException duplicateKey(Index index, List<Object> key) {
+        return writeError(11000, "E11000 duplicate key error collection: " + namespace.getFullName()
+                + " index: " + index.name + " dup key: " + key);
+    }
+
+    static MongoWriteException writeError(int code, String message) {
+        return new MongoWriteException(new WriteError(code, message, new BsonDocument()), ADDRESS);
+    }
+
+    static MongoCommandException commandError(int code, String message) {
+        return new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("errmsg", new BsonString(message))
+                .append("code", new BsonInt32(code)), ADDRESS);
+    }
+
+    private final class Index {
+
+        private final BsonDocument spec;
+        private final BsonDocument key;
+        private final String name;
+        private final boolean unique;
+        private final boolean sparse;
+        private final Map<List<Object>, Object> entries = new HashMap<>();
+
+        Index(BsonDocument spec) {
+            this.spec = spec;
+            this.key = spec.getDocument("key");
+            this.name = spec.getString("name").getValue();
+            this.unique = spec.containsKey("unique") && spec.getBoolean("unique").getValue();
+            this.sparse = spec.containsKey("sparse") && spec.getBoolean("sparse").getValue();
+        }
+
+        private List<Object> keyOf(BsonDocument doc) {
+            List<Object> result = new ArrayList<>(key.size());
+            boolean any = false;
+            for (String field : key.keySet()) {
+                List<BsonValue> values = BsonQueries.values(doc, field);
+                any |= !values.isEmpty();
+                result.add(key(values.isEmpty() ? BsonNull.VALUE : values.get(0)));
+            }
+            return any || !sparse ? result : null;
+        }
+
+        void check(Object id, BsonDocument doc) {
+            if (unique) {
+                List<Object> k = keyOf(doc);
+                Object existing = k == null ? null : entries.get(k);
+                if (existing != null && !existing.equals(id)) {
+                    throw duplicateKey(this, k);
+                }
+            }
+        }
+
+        void add(Object id, BsonDocument doc) {
+            if (unique) {
+                List<Object> k = keyOf(doc);
+                if (k != null) {
+                    entries.put(k, id);
+                }
+            }
+        }
+
+        void remove(BsonDocument doc) {
+            if (unique) {
+                List<Object> k = keyOf(doc);
+                if (k != null) {
+                    entries.remove(k);
+                }
+            }
+        }
+    }
+
+    /**
+     * One operation of a bulk write, with its documents already encoded.
+     */
+    static final class Write {
+
+        enum Kind {
+            INSERT, UPDATE, REPLACE, DELETE
+        }
+        final Kind kind;
+        final BsonDocument filter;
+        final BsonDocument document;
+        final boolean multi;
+        final boolean upsert;
+
+        Write(Kind kind, BsonDocument filter, BsonDocument document, boolean multi, boolean upsert) {
+            this.kind = kind;
+            this.filter = filter;
+            this.document = document;
+            this.multi = multi;
+            this.upsert = upsert;
+        }
+    }
+}
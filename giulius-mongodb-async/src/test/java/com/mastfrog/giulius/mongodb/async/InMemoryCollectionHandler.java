@@ -0,0 +1,349 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.giulius.mongodb.async.InMemoryCollection.Write;
+import com.mongodb.MongoNamespace;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.async.client.AggregateIterable;
+import com.mongodb.async.client.DistinctIterable;
+import com.mongodb.async.client.FindIterable;
+import com.mongodb.async.client.ListIndexesIterable;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+/**
+ * Stands in for a MongoCollection over an InMemoryMongo collection. The
+ * collection is looked up on each call, so a handler remains usable after
+ * its collection is dropped, and reads of a collection which does not exist
+ * see an empty one without creating it.
+ *
+ * @author agent
+ */
+final class InMemoryCollectionHandler<T> extends InMemoryMongo.Handler {
+
+    private final InMemoryMongo mongo;
+    private final String db;
+    private final String name;
+    private final Class<T> type;
+    private final CodecRegistry registry;
+
+    InMemoryCollectionHandler(InMemoryMongo mongo, String db, String name, Class<T> type, CodecRegistry registry) {
+        this.mongo = mongo;
+        this.db = db;
+        this.name = name;
+        this.type = type;
+        this.registry = registry;
+    }
+
+    Object proxy() {
+        return proxy(MongoCollection.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Object handle(Method method, InMemoryMongo.Call call) throws Throwable {
+        switch (method.getName()) {
+            case "getNamespace":
+                return new MongoNamespace(db, name);
+            case "getDocumentClass":
+                return type;
+            case "getCodecRegistry":
+                return registry;
+            case "getReadPreference":
+                return ReadPreference.primary();
+            case "getWriteConcern":
+                return WriteConcern.ACKNOWLEDGED;
+            case "getReadConcern":
+                return ReadConcern.DEFAULT;
+            case "withDocumentClass":
+                return new InMemoryCollectionHandler<>(mongo, db, name, (Class<?>) call.get(0), registry).proxy();
+            case "withCodecRegistry":
+                return new InMemoryCollectionHandler<>(mongo, db, name, type, (CodecRegistry) call.get(0)).proxy();
+            case "withReadPreference":
+            case "withWriteConcern":
+            case "withReadConcern":
+                return self();
+            case "count":
+            case "countDocuments":
+            case "estimatedDocumentCount":
+                Object countOptions = call.get(1);
+                return mongo.respond(call.callback, () -> data(false).count(bson(call.get(0, Bson.class)),
+                        InMemoryMongo.option(countOptions, "getSkip", 0), InMemoryMongo.option(countOptions, "getLimit", 0)));
+            case "find":
+                return find(call.find(Bson.class), resultType(call.find(Class.class)));
+            case "distinct":
+                return distinct((String) call.get(0), call.find(Bson.class), call.find(Class.class));
+            case "aggregate":
+                List<? extends Bson> pipeline = (List<? extends Bson>) call.get(0);
+                Class<?> aggregateType = resultType(call.find(Class.class));
+                return new InMemoryIterable(mongo, AggregateIterable.class, registry,
+                        iter -> decode(aggregate(pipeline), null, aggregateType)).proxy();
+            case "insertOne":
+                return mongo.respond(call.callback, () -> {
+                    data(true).insert(InMemoryMongo.encode(call.get(0), registry));
+                    return null;
+                });
+            case "insertMany":
+                return mongo.respond(call.callback, () -> {
+                    List<Write> writes = new ArrayList<>();
+                    for (Object doc : (List<?>) call.get(0)) {
+                        writes.add(new Write(Write.Kind.INSERT, null, InMemoryMongo.encode(doc, registry), false, false));
+                    }
+                    data(true).bulk(writes, InMemoryMongo.option(call.get(1), "isOrdered", true));
+                    return null;
+                });
+            case "bulkWrite":
+                return mongo.respond(call.callback, () -> data(true).bulk(writes((List<? extends WriteModel<?>>) call.get(0)),
+                        InMemoryMongo.option(call.get(1), "isOrdered", true)));
+            case "updateOne":
+            case "updateMany":
+                boolean multi = "updateMany".equals(method.getName());
+                return mongo.respond(call.callback, () -> data(true).update(bson(call.get(0, Bson.class)),
+                        bson(call.get(1, Bson.class)), multi, InMemoryMongo.option(call.get(2), "isUpsert", false)));
+            case "replaceOne":
+                return mongo.respond(call.callback, () -> data(true).replace(bson(call.get(0, Bson.class)),
+                        InMemoryMongo.encode(call.get(1), registry), InMemoryMongo.option(call.get(2), "isUpsert", false)));
+            case "deleteOne":
+            case "deleteMany":
+                boolean all = "deleteMany".equals(method.getName());
+                return mongo.respond(call.callback, () -> data(false).delete(bson(call.get(0, Bson.class)), all));
+            case "findOneAndDelete":
+                return mongo.respond(call.callback, () -> findAndModify(call, null, call.get(1)));
+            case "findOneAndReplace":
+                return mongo.respond(call.callback, () -> findAndModify(call,
+                        InMemoryMongo.encode(call.get(1), registry), call.get(2)));
+            case "findOneAndUpdate":
+                return mongo.respond(call.callback, () -> findAndModify(call, bson(call.get(1, Bson.class)), call.get(2)));
+            case "createIndex":
+                return mongo.respond(call.callback, () -> createIndex(bson(call.get(0, Bson.class)), call.get(1, IndexOptions.class)));
+            case "createIndexes":
+                return mongo.respond(call.callback, () -> {
+                    List<String> names = new ArrayList<>();
+                    for (IndexModel model : (List<IndexModel>) call.get(0)) {
+                        names.add(createIndex(bson(model.getKeys()), model.getOptions()));
+                    }
+                    return names;
+                });
+            case "listIndexes":
+                Class<?> indexType = call.get(0, Class.class);
+                return new InMemoryIterable(mongo, ListIndexesIterable.class, registry,
+                        iter -> decode(data(false).indexes(), null, indexType == null ? Document.class : indexType)).proxy();
+            case "dropIndex":
+                return mongo.respond(call.callback, () -> {
+                    if (call.get(0) instanceof String) {
+                        data(false).dropIndex((String) call.get(0));
+                    } else {
+                        data(false).dropIndex(bson(call.get(0, Bson.class)));
+                    }
+                    return null;
+                });
+            case "dropIndexes":
+                return mongo.respond(call.callback, () -> {
+                    data(false).dropIndexes();
+                    return null;
+                });
+            case "drop":
+                return mongo.respond(call.callback, () -> {
+                    mongo.drop(db, name);
+                    return null;
+                });
+            default:
+                throw unsupported(method);
+        }
+    }
+
+    private InMemoryCollection data(boolean create) {
+        return mongo.collection(db, name, create);
+    }
+
+    private BsonDocument bson(Bson bson) {
+        return InMemoryMongo.toBson(bson, registry);
+    }
+
+    private Class<?> resultType(Class<?> requested) {
+        return requested == null ? type : requested;
+    }
+
+    private Object find(Bson filter, Class<?> resultType) {
+        InMemoryIterable result = new InMemoryIterable(mongo, FindIterable.class, registry,
+                iter -> decode(data(false).find(iter.filter, iter.sort, iter.skip, iter.limit), iter.projection, resultType));
+        result.filter = bson(filter);
+        return result.proxy();
+    }
+
+    private Object distinct(String field, Bson filter, Class<?> resultType) {
+        InMemoryIterable result = new InMemoryIterable(mongo, DistinctIterable.class, registry, iter -> {
+            List<Object> values = new ArrayList<>();
+            for (BsonValue value : data(false).distinct(field, iter.filter)) {
+                values.add(InMemoryMongo.decodeValue(value, resultType, registry));
+            }
+            return values;
+        });
+        result.filter = bson(filter);
+        return result.proxy();
+    }
+
+    private List<Object> decode(List<BsonDocument> docs, BsonDocument projection, Class<?> resultType) {
+        List<Object> result = new ArrayList<>(docs.size());
+        for (BsonDocument doc : docs) {
+            result.add(InMemoryMongo.decode(BsonQueries.project(doc, projection), resultType, registry));
+        }
+        return result;
+    }
+
+    /**
+     * Find, then delete, replace or update a document.
+     *
+     * @param call The call, whose first argument is the filter
+     * @param change The replacement or update, or null to delete
+     * @param options The options, or null
+     * @return The decoded document, or null
+     */
+    private Object findAndModify(InMemoryMongo.Call call, BsonDocument change, Object options) {
+        boolean returnAfter = InMemoryMongo.option(options, "getReturnDocument", ReturnDocument.BEFORE) == ReturnDocument.AFTER;
+        BsonDocument found = data(change != null).findAndModify(bson(call.get(0, Bson.class)),
+                bson(InMemoryMongo.option(options, "getSort", null)), change,
+                InMemoryMongo.option(options, "isUpsert", false), returnAfter);
+        return found == null ? null : InMemoryMongo.decode(
+                BsonQueries.project(found, bson(InMemoryMongo.option(options, "getProjection", null))), type, registry);
+    }
+
+    private String createIndex(BsonDocument keys, IndexOptions options) {
+        if (options == null) {
+            options = new IndexOptions();
+        }
+        return data(true).createIndex(keys, options.getName(), options.isUnique(), options.isSparse(),
+                options.getExpireAfter(SECONDS));
+    }
+
+    private List<Write> writes(List<? extends WriteModel<?>> models) {
+        List<Write> result = new ArrayList<>(models.size());
+        for (WriteModel<?> model : models) {
+            if (model instanceof InsertOneModel<?>) {
+                result.add(new Write(Write.Kind.INSERT, null,
+                        InMemoryMongo.encode(((InsertOneModel<?>) model).getDocument(), registry), false, false));
+            } else if (model instanceof UpdateOneModel<?>) {
+                UpdateOneModel<?> update = (UpdateOneModel<?>) model;
+                result.add(new Write(Write.Kind.UPDATE, bson(update.getFilter()), bson(update.getUpdate()),
+                        false, update.getOptions().isUpsert()));
+            } else if (model instanceof UpdateManyModel<?>) {
+                UpdateManyModel<?> update = (UpdateManyModel<?>) model;
+                result.add(new Write(Write.Kind.UPDATE, bson(update.getFilter()), bson(update.getUpdate()),
+                        true, update.getOptions().isUpsert()));
+            } else if (model instanceof ReplaceOneModel<?>) {
+                ReplaceOneModel<?> replace = (ReplaceOneModel<?>) model;
+                // Newer drivers have ReplaceOptions; older ones UpdateOptions
+                Object options = InMemoryMongo.option(replace, "getReplaceOptions", null);
+                result.add(new Write(Write.Kind.REPLACE, bson(replace.getFilter()),
+                        InMemoryMongo.encode(replace.getReplacement(), registry), false,
+                        InMemoryMongo.option(options == null ? InMemoryMongo.option(replace, "getOptions", null) : options,
+                                "isUpsert", false)));
+            } else if (model instanceof DeleteOneModel<?>) {
+                result.add(new Write(Write.Kind.DELETE, bson(((DeleteOneModel<?>) model).getFilter()), null, false, false));
+            } else if (model instanceof DeleteManyModel<?>) {
+                result.add(new Write(Write.Kind.DELETE, bson(((DeleteManyModel<?>) model).getFilter()), null, true, false));
+            } else {
+                throw new UnsupportedOperationException("Write model " + model);
+            }
+        }
+        return result;
+    }
+
+    private List<BsonDocument> aggregate(List<? extends Bson> pipeline) {
+        List<BsonDocument> docs = data(false).find(null, null, 0, 0);
+        for (Bson stageBson : pipeline) {
+            BsonDocument stage = bson(stageBson);
+            String op = stage.getFirstKey();
+            BsonValue arg = stage.get(op);
+            switch (op) {
+                case "$match":
+                    List<BsonDocument> matched = new ArrayList<>();
+                    for (BsonDocument doc : docs) {
+                        if (BsonQueries.matches(doc, arg.asDocument())) {
+                            matched.add(doc);
+                        }
+                    }
+                    docs = matched;
+                    break;
+                case "$sort":
+                    docs = new ArrayList<>(docs);
+                    docs.sort(BsonQueries.comparator(arg.asDocument()));
+                    break;
+                case "$skip":
+                    docs = docs.subList(Math.min(docs.size(), arg.asNumber().intValue()), docs.size());
+                    break;
+                case "$limit":
+                    docs = docs.subList(0, Math.min(docs.size(), arg.asNumber().intValue()));
+                    break;
+                case "$project":
+                    List<BsonDocument> projected = new ArrayList<>(docs.size());
+                    for (BsonDocument doc : docs) {
+                        projected.add(BsonQueries.project(doc, arg.asDocument()));
+                    }
+                    docs = projected;
+                    break;
+                case "$sample":
+                    docs = new ArrayList<>(docs);
+                    Collections.shuffle(docs, ThreadLocalRandom.current());
+                    docs = docs.subList(0, Math.min(docs.size(), arg.asDocument().getNumber("size").intValue()));
+                    break;
+                case "$count":
+                    docs = Collections.singletonList(new BsonDocument(arg.asString().getValue(), new BsonInt32(docs.size())));
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Aggregation stage " + op);
+            }
+        }
+        return new ArrayList<>(docs);
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryMongo collection " + db + "." + name + " of " + type.getSimpleName();
+    }
+}
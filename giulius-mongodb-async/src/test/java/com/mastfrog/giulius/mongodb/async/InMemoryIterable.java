@@ -0,0 +1,211 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mongodb.Block;
+import com.mongodb.async.AsyncBatchCursor;
+import com.mongodb.async.client.MongoIterable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import org.bson.BsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+/**
+ * Stands in for the driver's iterables - MongoIterable, FindIterable,
+ * DistinctIterable, AggregateIterable and ListIndexesIterable. Options which
+ * affect results are recorded and passed to the source when a terminal
+ * operation is called; those which only tune the server, such as maxTime or
+ * hints, are accepted and ignored.
+ *
+ * @author agent
+ */
+final class InMemoryIterable extends InMemoryMongo.Handler {
+
+    /**
+     * The driver's default size for the first batch.
+     */
+    private static final int DEFAULT_BATCH_SIZE = 101;
+    private final InMemoryMongo mongo;
+    private final Class<?> type;
+    private final CodecRegistry registry;
+    private final Function<InMemoryIterable, List<?>> source;
+    BsonDocument filter;
+    BsonDocument sort;
+    BsonDocument projection;
+    int skip;
+    int limit;
+    private int batchSize;
+
+    InMemoryIterable(InMemoryMongo mongo, Class<?> type, CodecRegistry registry, Function<InMemoryIterable, List<?>> source) {
+        this.mongo = mongo;
+        this.type = type;
+        this.registry = registry;
+        this.source = source;
+    }
+
+    Object proxy() {
+        return proxy(type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Object handle(Method method, InMemoryMongo.Call call) throws Throwable {
+        switch (method.getName()) {
+            case "first":
+                return mongo.respond(call.callback, () -> {
+                    List<?> results = results();
+                    return results.isEmpty() ? null : results.get(0);
+                });
+            case "forEach":
+                Block<Object> block = (Block<Object>) call.get(0);
+                return mongo.respond(call.callback, () -> {
+                    for (Object o : results()) {
+                        block.apply(o);
+                    }
+                    return null;
+                });
+            case "into":
+                Collection<Object> target = (Collection<Object>) call.get(0);
+                return mongo.respond(call.callback, () -> {
+                    target.addAll(results());
+                    return target;
+                });
+            case "map":
+                com.mongodb.Function<Object, Object> mapper = (com.mongodb.Function<Object, Object>) call.get(0);
+                return new InMemoryIterable(mongo, MongoIterable.class, registry, iter -> {
+                    List<Object> mapped = new ArrayList<>();
+                    for (Object o : results()) {
+                        mapped.add(mapper.apply(o));
+                    }
+                    return mapped;
+                }).proxy();
+            case "batchCursor":
+                return mongo.respond(call.callback, () -> new Cursor(results(), batchSize).proxy(AsyncBatchCursor.class));
+            case "batchSize":
+                batchSize = (Integer) call.get(0);
+                return proxy();
+            case "getBatchSize":
+                return batchSize == 0 ? null : batchSize;
+            case "filter":
+                filter = InMemoryMongo.toBson(call.get(0, Bson.class), registry);
+                return proxy();
+            case "sort":
+                sort = InMemoryMongo.toBson(call.get(0, Bson.class), registry);
+                return proxy();
+            case "projection":
+                projection = InMemoryMongo.toBson(call.get(0, Bson.class), registry);
+                return proxy();
+            case "skip":
+                skip = (Integer) call.get(0);
+                return proxy();
+            case "limit":
+                // A negative limit means a single batch of that many
+                limit = Math.abs((Integer) call.get(0));
+                return proxy();
+            default:
+                if (method.getReturnType().isInstance(self())) {
+                    return proxy();
+                }
+                throw unsupported(method);
+        }
+    }
+
+    private List<?> results() {
+        return source.apply(this);
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryMongo " + type.getSimpleName();
+    }
+
+    /**
+     * A cursor over results gathered when it was opened.
+     */
+    private final class Cursor extends InMemoryMongo.Handler {
+
+        private final List<?> results;
+        private int position;
+        private int batchSize;
+        private boolean closed;
+
+        Cursor(List<?> results, int batchSize) {
+            this.results = results;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        Object handle(Method method, InMemoryMongo.Call call) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                case "tryNext":
+                    return mongo.respond(call.callback, this::nextBatch);
+                case "setBatchSize":
+                    synchronized (this) {
+                        batchSize = (Integer) call.get(0);
+                    }
+                    return null;
+                case "getBatchSize":
+                    synchronized (this) {
+                        return batchSize;
+                    }
+                case "isClosed":
+                    synchronized (this) {
+                        return closed;
+                    }
+                case "close":
+                    synchronized (this) {
+                        closed = true;
+                    }
+                    return null;
+                default:
+                    throw unsupported(method);
+            }
+        }
+
+        private synchronized List<?> nextBatch() {
+            if (closed) {
+                throw new IllegalStateException("Cursor closed");
+            }
+            if (position >= results.size()) {
+                // A null batch signals the end of the results
+                closed = true;
+                return null;
+            }
+            int end = Math.min(results.size(), position + (batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE));
+            List<?> batch = new ArrayList<>(results.subList(position, end));
+            position = end;
+            return batch;
+        }
+
+        @Override
+        public String toString() {
+            return "InMemoryMongo cursor at " + position + " of " + results.size();
+        }
+    }
+}
@@ -0,0 +1,519 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.AbstractModule;
+import com.mongodb.MongoNamespace;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.async.SingleResultCallback;
+import com.mongodb.async.client.MongoClient;
+import com.mongodb.async.client.MongoClientSettings;
+import com.mongodb.async.client.MongoDatabase;
+import com.mongodb.async.client.MongoIterable;
+import com.mongodb.session.ClientSession;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+/**
+ * An in-process stand-in for MongoDB, for tests and benchmarks of the
+ * caching, batching and streaming layers on machines with no mongod. Use
+ * InMemoryMongo.Module in place of MongoHarness.Module, and the MongoClient
+ * the module binds is replaced by one which keeps collections in memory.
+ * <p/>
+ * It supports the operations MongoFutureCollection uses - find, count,
+ * distinct, inserts, updates, replaces, deletes, find-and-modify, bulk writes
+ * and index management - with the common query and update operators, and
+ * aggregation pipelines of $match, $sort, $skip, $limit, $project, $sample and
+ * $count stages. Unique indexes are enforced; other indexes are recorded but
+ * do not speed up queries, and TTL indexes do not expire anything. Sessions
+ * are accepted and ignored, so there is no isolation between them. Anything
+ * else throws UnsupportedOperationException, rather than quietly behaving
+ * differently from mongod.
+ * <p/>
+ * Each operation runs synchronously against the data when it is called, and
+ * its callback is invoked on a separate thread, as the driver's are.
+ *
+ * @author agent
+ */
+@Singleton
+public class InMemoryMongo extends MongoAsyncInitializer {
+
+    private final Map<String, Map<String, InMemoryCollection>> databases = new ConcurrentHashMap<>();
+    private final Executor callbacks;
+
+    @Inject
+    InMemoryMongo(Registry reg) {
+        this(reg, Executors.newCachedThreadPool(new CallbackThreads()));
+    }
+
+    InMemoryMongo(Registry reg, Executor callbacks) {
+        super(reg);
+        this.callbacks = callbacks;
+    }
+
+    @Override
+    public MongoClient createMongoClient(MongoClientSettings settings) {
+        return client(settings.getCodecRegistry(), settings);
+    }
+
+    /**
+     * Get a client over this instance's data which encodes and decodes
+     * documents with the passed registry.
+     *
+     * @param registry A codec registry
+     * @return A client
+     */
+    public MongoClient client(CodecRegistry registry) {
+        return client(registry, null);
+    }
+
+    private MongoClient client(CodecRegistry registry, MongoClientSettings settings) {
+        return new ClientHandler(registry, settings).proxy(MongoClient.class);
+    }
+
+    /**
+     * Discard all databases, collections and indexes, for example between
+     * benchmark iterations.
+     */
+    public void clear() {
+        databases.clear();
+    }
+
+    /**
+     * Get the stored data for a collection.
+     *
+     * @param db The database name
+     * @param collection The collection name
+     * @param create Whether to create it if it does not exist; if false and it
+     * does not, an empty collection not attached to the database is returned
+     * @return A collection
+     */
+    InMemoryCollection collection(String db, String collection, boolean create) {
+        Map<String, InMemoryCollection> colls = databases.get(db);
+        InMemoryCollection result = colls == null ? null : colls.get(collection);
+        if (result == null) {
+            if (!create) {
+                return new InMemoryCollection(new MongoNamespace(db, collection));
+            }
+            result = databases.computeIfAbsent(db, nm -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(collection, nm -> new InMemoryCollection(new MongoNamespace(db, nm)));
+        }
+        return result;
+    }
+
+    void drop(String db, String collection) {
+        Map<String, InMemoryCollection> colls = databases.get(db);
+        if (colls != null) {
+            colls.remove(collection);
+        }
+    }
+
+    /**
+     * Run an operation now and pass its result or failure to the callback on
+     * another thread.
+     */
+    <T> Object respond(SingleResultCallback<? super T> callback, Callable<T> work) {
+        T result = null;
+        Throwable thrown = null;
+        try {
+            result = work.call();
+        } catch (Throwable t) {
+            thrown = t;
+        }
+        T r = result;
+        Throwable th = thrown;
+        callbacks.execute(() -> callback.onResult(r, th));
+        return null;
+    }
+
+    static BsonDocument toBson(Bson bson, CodecRegistry registry) {
+        return bson == null ? null : bson.toBsonDocument(BsonDocument.class, registry);
+    }
+
+    /**
+     * Encode a document, giving it an _id first if its codec can, as the
+     * driver does on insert.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> BsonDocument encode(T value, CodecRegistry registry) {
+        if (value instanceof BsonDocument) {
+            return ((BsonDocument) value).clone();
+        }
+        Codec<T> codec = (Codec<T>) registry.get(value.getClass());
+        if (codec instanceof CollectibleCodec<?>) {
+            value = ((CollectibleCodec<T>) codec).generateIdIfAbsentFromDocument(value);
+        }
+        BsonDocument result = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(result), value,
+                EncoderContext.builder().isEncodingCollectibleDocument(true).build());
+        return result;
+    }
+
+    static <T> T decode(BsonDocument doc, Class<T> type, CodecRegistry registry) {
+        if (type == BsonDocument.class) {
+            return type.cast(doc.clone());
+        }
+        return registry.get(type).decode(new BsonDocumentReader(doc), DecoderContext.builder().build());
+    }
+
+    static <T> T decodeValue(BsonValue value, Class<T> type, CodecRegistry registry) {
+        if (type.isInstance(value)) {
+            return type.cast(BsonQueries.copy(value));
+        }
+        BsonDocumentReader reader = new BsonDocumentReader(new BsonDocument("v", value));
+        reader.readStartDocument();
+        reader.readName();
+        return registry.get(type).decode(reader, DecoderContext.builder().build());
+    }
+
+    /**
+     * Base class for the proxies which stand in for driver interfaces. Calls
+     * are dispatched by method name, with any leading ClientSession and
+     * trailing callback separated from the other arguments, so one handler
+     * serves every overload of a method.
+     */
+    abstract static class Handler implements InvocationHandler {
+
+        private Object proxy;
+
+        @Override
+        public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return toString();
+                }
+            }
+            return handle(method, new Call(args));
+        }
+
+        abstract Object handle(Method method, Call call) throws Throwable;
+
+        final <T> T proxy(Class<T> type, Class<?>... additional) {
+            if (proxy == null) {
+                Class<?>[] types = Arrays.copyOf(additional, additional.length + 1);
+                types[additional.length] = type;
+                proxy = Proxy.newProxyInstance(InMemoryMongo.class.getClassLoader(), types, this);
+            }
+            return type.cast(proxy);
+        }
+
+        final Object self() {
+            return proxy;
+        }
+
+        final UnsupportedOperationException unsupported(Method method) {
+            return new UnsupportedOperationException(InMemoryMongo.class.getSimpleName()
+                    + " does not support " + method.getDeclaringClass().getSimpleName() + "." + method.getName());
+        }
+    }
+
+    /**
+     * The arguments to a proxied call.
+     */
+    static final class Call {
+
+        private final Object[] args;
+        final SingleResultCallback<Object> callback;
+
+        @SuppressWarnings("unchecked")
+        Call(Object[] args) {
+            int start = 0;
+            int end = args == null ? 0 : args.length;
+            if (end > 0 && args[0] instanceof ClientSession) {
+                start++;
+            }
+            if (end > start && args[end - 1] instanceof SingleResultCallback<?>) {
+                callback = (SingleResultCallback<Object>) args[--end];
+            } else {
+                callback = null;
+            }
+            this.args = end == 0 ? new Object[0] : Arrays.copyOfRange(args, start, end);
+        }
+
+        int size() {
+            return args.length;
+        }
+
+        Object get(int ix) {
+            return ix < args.length ? args[ix] : null;
+        }
+
+        <T> T get(int ix, Class<T> type) {
+            Object result = get(ix);
+            return type.isInstance(result) ? type.cast(result) : null;
+        }
+
+        /**
+         * Find the first argument of a type.
+         */
+        <T> T find(Class<T> type) {
+            for (Object o : args) {
+                if (type.isInstance(o)) {
+                    return type.cast(o);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Read a property of a driver options object reflectively, since the
+     * options classes differ between driver versions.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T option(Object options, String getter, T defaultValue) {
+        if (options != null) {
+            try {
+                Object result = options.getClass().getMethod(getter).invoke(options);
+                if (result != null) {
+                    return (T) result;
+                }
+            } catch (ReflectiveOperationException ex) {
+                // not an option of this type
+            }
+        }
+        return defaultValue;
+    }
+
+    private final class ClientHandler extends Handler {
+
+        private final CodecRegistry registry;
+        private final MongoClientSettings settings;
+
+        ClientHandler(CodecRegistry registry, MongoClientSettings settings) {
+            this.registry = registry;
+            this.settings = settings;
+        }
+
+        @Override
+        Object handle(Method method, Call call) throws Throwable {
+            switch (method.getName()) {
+                case "getDatabase":
+                    return new DatabaseHandler((String) call.get(0), registry).proxy(MongoDatabase.class);
+                case "listDatabaseNames":
+                    return new InMemoryIterable(InMemoryMongo.this, MongoIterable.class, registry,
+                            iter -> new ArrayList<>(databases.keySet())).proxy();
+                case "getSettings":
+                    return settings;
+                case "startSession":
+                    return respond(call.callback, () -> new SessionHandler(call.get(0)).session());
+                case "close":
+                    return null;
+                default:
+                    throw unsupported(method);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "InMemoryMongo client";
+        }
+    }
+
+    private final class DatabaseHandler extends Handler {
+
+        private final String name;
+        private final CodecRegistry registry;
+
+        DatabaseHandler(String name, CodecRegistry registry) {
+            this.name = name;
+            this.registry = registry;
+        }
+
+        @Override
+        Object handle(Method method, Call call) throws Throwable {
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "getCodecRegistry":
+                    return registry;
+                case "getReadPreference":
+                    return ReadPreference.primary();
+                case "getWriteConcern":
+                    return WriteConcern.ACKNOWLEDGED;
+                case "getReadConcern":
+                    return ReadConcern.DEFAULT;
+                case "withCodecRegistry":
+                    return new DatabaseHandler(name, (CodecRegistry) call.get(0)).proxy(MongoDatabase.class);
+                case "withReadPreference":
+                case "withWriteConcern":
+                case "withReadConcern":
+                    return self();
+                case "getCollection":
+                    Class<?> type = call.get(1, Class.class);
+                    if (type == null) {
+                        type = Document.class;
+                    }
+                    return new InMemoryCollectionHandler<>(InMemoryMongo.this, name, (String) call.get(0),
+                            type, registry).proxy();
+                case "listCollectionNames":
+                    return new InMemoryIterable(InMemoryMongo.this, MongoIterable.class, registry, iter -> {
+                        Map<String, InMemoryCollection> colls = databases.get(name);
+                        return colls == null ? new ArrayList<>() : new ArrayList<>(colls.keySet());
+                    }).proxy();
+                case "createCollection":
+                    return respond(call.callback, () -> {
+                        Map<String, InMemoryCollection> colls = databases.computeIfAbsent(name, nm -> new ConcurrentHashMap<>());
+                        String collection = (String) call.get(0);
+                        if (colls.putIfAbsent(collection, new InMemoryCollection(new MongoNamespace(name, collection))) != null) {
+                            throw InMemoryCollection.commandError(48, "collection already exists");
+                        }
+                        return null;
+                    });
+                case "runCommand":
+                    return respond(call.callback, () -> command(toBson(call.get(0, Bson.class), registry), call.find(Class.class)));
+                case "drop":
+                    return respond(call.callback, () -> {
+                        databases.remove(name);
+                        return null;
+                    });
+                default:
+                    throw unsupported(method);
+            }
+        }
+
+        private Object command(BsonDocument command, Class<?> resultType) {
+            String cmd = command.keySet().iterator().next();
+            BsonDocument result = new BsonDocument();
+            switch (cmd) {
+                case "ping":
+                    break;
+                case "buildInfo":
+                    result.append("version", new BsonString("3.6.0"));
+                    break;
+                default:
+                    throw InMemoryCollection.commandError(59, "no such command: '" + cmd + "'");
+            }
+            result.append("ok", new BsonInt32(1));
+            return resultType == null ? decode(result, Document.class, registry) : decode(result, resultType, registry);
+        }
+
+        @Override
+        public String toString() {
+            return "InMemoryMongo database " + name;
+        }
+    }
+
+    /**
+     * Sessions are accepted so code which uses them runs, but provide no
+     * isolation or causal consistency.
+     */
+    private final class SessionHandler extends Handler {
+
+        private final Object options;
+
+        SessionHandler(Object options) {
+            this.options = options;
+        }
+
+        Object session() {
+            try {
+                // Newer drivers pass an async-specific subtype of ClientSession
+                Class<?> async = Class.forName("com.mongodb.async.client.ClientSession");
+                return proxy(ClientSession.class, async);
+            } catch (ClassNotFoundException ex) {
+                return proxy(ClientSession.class);
+            }
+        }
+
+        @Override
+        Object handle(Method method, Call call) throws Throwable {
+            if ("getOptions".equals(method.getName())) {
+                return options;
+            } else if (call.callback != null) {
+                return respond(call.callback, () -> null);
+            }
+            Class<?> type = method.getReturnType();
+            if (type == boolean.class) {
+                return false;
+            } else if (type == long.class) {
+                return 0L;
+            } else if (type == int.class) {
+                return 0;
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "InMemoryMongo session";
+        }
+    }
+
+    private static final class CallbackThreads implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread result = new Thread(r, "in-memory-mongo-" + count.incrementAndGet());
+            result.setDaemon(true);
+            return result;
+        }
+    }
+
+    /**
+     * Use this module in a test instead of MongoHarness.Module to run it
+     * against an InMemoryMongo rather than a real mongod.
+     */
+    public static class Module extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            bind(InMemoryMongo.class).asEagerSingleton();
+        }
+    }
+}
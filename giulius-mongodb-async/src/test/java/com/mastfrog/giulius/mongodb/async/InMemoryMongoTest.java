@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Named;
+import com.mastfrog.giulius.mongodb.async.InMemoryMongoTest.TestModule;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import org.bson.Document;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Runs the usual collection operations against the in-memory stand-in,
+ * without a mongod.
+ *
+ * @author agent
+ */
+@RunWith(GuiceRunner.class)
+@TestWith({TestModule.class, InMemoryMongo.Module.class})
+public class InMemoryMongoTest {
+
+    @Test(timeout = 20000)
+    public void testOperations(@Named("things") MongoFutureCollection<Document> things) throws Throwable {
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            docs.add(new Document("ix", i).append("even", i % 2 == 0).append("tags", "t" + (i % 5)));
+        }
+        things.insertMany(docs).get(5, SECONDS);
+        assertEquals(Long.valueOf(100), things.count().get(5, SECONDS));
+        assertEquals(Long.valueOf(50), things.count(Filters.eq("even", true)).get(5, SECONDS));
+
+        List<Document> found = things.find(Filters.and(Filters.gte("ix", 10), Filters.lt("ix", 20))).get(5, SECONDS);
+        assertEquals(10, found.size());
+        assertEquals(5, things.distinct("tags", String.class).get(5, SECONDS).size());
+
+        assertEquals(50L, things.updateMany(Filters.eq("even", false), Updates.inc("ix", 1000))
+                .get(5, SECONDS).getModifiedCount());
+        Document updated = things.findOneAndUpdate(Filters.eq("ix", 4), Updates.set("name", "four"),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)).get(5, SECONDS);
+        assertEquals("four", updated.getString("name"));
+
+        assertEquals(10L, things.deleteMany(Filters.eq("tags", "t0")).get(5, SECONDS).getDeletedCount());
+        assertEquals(Long.valueOf(90), things.count().get(5, SECONDS));
+    }
+
+    @Test(timeout = 20000)
+    public void testDuplicateIdsAreRejected(@Named("stuff") MongoFutureCollection<Document> stuff) throws Throwable {
+        stuff.insertOne(new Document("_id", "a")).get(5, SECONDS);
+        try {
+            stuff.insertOne(new Document("_id", "a")).get(5, SECONDS);
+            fail("Duplicate _id should not be accepted");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof MongoWriteException);
+            assertEquals(11000, ((MongoWriteException) ex.getCause()).getError().getCode());
+        }
+    }
+
+    static class TestModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            GiuliusMongoAsyncModule m = new GiuliusMongoAsyncModule();
+            m.bindCollection("things");
+            m.bindCollection("stuff");
+            install(m);
+        }
+    }
+}
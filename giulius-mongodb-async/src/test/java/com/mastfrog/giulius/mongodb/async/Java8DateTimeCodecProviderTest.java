@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.giulius.mongodb.async.Java8DateTimeCodecProvider.ZonedDateTimeStorage;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class Java8DateTimeCodecProviderTest {
+
+    private final Java8DateTimeCodecProvider provider = new Java8DateTimeCodecProvider();
+    private final ZonedDateTime when = ZonedDateTime.of(2018, 3, 12, 2, 30, 15, 123000000, ZoneId.of("America/New_York"));
+
+    @Test
+    public void testOnlyExactTypesMatch() {
+        assertNull(provider.get(Object.class, null));
+        assertNull(provider.get(Temporal.class, null));
+        assertNull(provider.get(Comparable.class, null));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        assertEquals(when.toInstant(), roundTrip(provider.get(ZonedDateTime.class, null), when).toInstant());
+        assertEquals(when.toInstant(), roundTrip(provider.get(OffsetDateTime.class, null), when.toOffsetDateTime()).toInstant());
+        assertEquals(when.toInstant(), roundTrip(provider.get(Instant.class, null), when.toInstant()));
+        LocalDateTime local = when.toLocalDateTime();
+        assertEquals(local, roundTrip(provider.get(LocalDateTime.class, null), local));
+        assertEquals(Duration.ofMillis(1234), roundTrip(provider.get(Duration.class, null), Duration.ofMillis(1234)));
+    }
+
+    @Test
+    public void testZonedDateTimeStorage() {
+        Codec<ZonedDateTime> defaultCodec = provider.get(ZonedDateTime.class, null);
+        for (ZonedDateTimeStorage storage : ZonedDateTimeStorage.values()) {
+            Codec<ZonedDateTime> codec = Java8DateTimeCodecProvider.zonedDateTimeCodec(storage);
+            BsonValue stored = encode(codec, when);
+            switch (storage) {
+                case DATE_TIME:
+                    assertTrue(stored.isDateTime());
+                    assertEquals(when.toInstant(), decode(defaultCodec, stored).toInstant());
+                    break;
+                case DOCUMENT:
+                    assertEquals(when.toInstant().toEpochMilli(), stored.asDocument().getDateTime("time").getValue());
+                    assertEquals("America/New_York", stored.asDocument().getString("zone").getValue());
+                    assertEquals(when, decode(defaultCodec, stored));
+                    break;
+                case STRING:
+                    assertTrue(stored.isString());
+                    assertEquals(when, decode(defaultCodec, stored));
+                    break;
+                default:
+                    throw new AssertionError(storage);
+            }
+        }
+    }
+
+    @Test
+    public void testEncodeAndDecodeManyTimestamps() {
+        Codec<ZonedDateTime> codec = provider.get(ZonedDateTime.class, null);
+        BsonDocument doc = new BsonDocument();
+        BsonDocumentWriter writer = new BsonDocumentWriter(doc);
+        writer.writeStartDocument();
+        writer.writeStartArray("times");
+        for (int i = 0; i < 1000000; i++) {
+            codec.encode(writer, when.plusSeconds(i), EncoderContext.builder().build());
+        }
+        writer.writeEndArray();
+        writer.writeEndDocument();
+        BsonDocumentReader reader = new BsonDocumentReader(doc);
+        reader.readStartDocument();
+        reader.readBsonType();
+        reader.readName("times");
+        reader.readStartArray();
+        int count = 0;
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            assertEquals(when.plusSeconds(count++).toInstant(), codec.decode(reader, DecoderContext.builder().build()).toInstant());
+        }
+        assertEquals(1000000, count);
+    }
+
+    private <T> T roundTrip(Codec<T> codec, T value) {
+        return decode(codec, encode(codec, value));
+    }
+
+    private <T> BsonValue encode(Codec<T> codec, T value) {
+        BsonDocument doc = new BsonDocument();
+        BsonDocumentWriter writer = new BsonDocumentWriter(doc);
+        writer.writeStartDocument();
+        writer.writeName("value");
+        codec.encode(writer, value, EncoderContext.builder().build());
+        writer.writeEndDocument();
+        return doc.get("value");
+    }
+
+    private <T> T decode(Codec<T> codec, BsonValue value) {
+        BsonDocumentReader reader = new BsonDocumentReader(new BsonDocument("value", value));
+        reader.readStartDocument();
+        reader.readBsonType();
+        reader.readName("value");
+        T result = codec.decode(reader, DecoderContext.builder().build());
+        reader.readEndDocument();
+        return result;
+    }
+}
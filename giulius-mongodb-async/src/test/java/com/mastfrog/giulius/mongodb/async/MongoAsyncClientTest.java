@@ -28,14 +28,19 @@ import com.google.inject.name.Named;
 import com.mastfrog.giulius.mongodb.async.MongoAsyncClientTest.TestModule;
 import com.mastfrog.giulius.tests.GuiceRunner;
 import com.mastfrog.giulius.tests.TestWith;
+import com.mongodb.ReadPreference;
 import com.mongodb.async.client.MongoClient;
 import com.mongodb.async.client.MongoClientSettings;
 import com.mongodb.async.client.MongoCollection;
 import java.util.Map;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import javax.inject.Inject;
+import javax.inject.Provider;
 import org.bson.Document;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -56,6 +61,33 @@ public class MongoAsyncClientTest {
         assertEquals(Document.class, mapsAsDocs.getDocumentClass());
     }
 
+    @Test
+    public void testProvisionIsMemoized(@Named("maps") Provider<MongoCollection<Map>> maps,
+            @Named("maps") Provider<MongoFutureCollection<Map>> futureMaps,
+            @Named("maps") Provider<MongoFutureCollection<Document>> futureDocs) {
+        assertSame(maps.get(), maps.get());
+        assertSame(futureMaps.get(), futureMaps.get());
+        assertSame(futureDocs.get(), futureDocs.get());
+        assertSame(maps.get(), futureMaps.get().collection());
+        assertSame(futureDocs.get().collection(), futureDocs.get().collection());
+        assertSame(futureMaps.get().withReadPreference(ReadPreference.secondaryPreferred()).collection(),
+                futureMaps.get().withReadPreference(ReadPreference.secondaryPreferred()).collection());
+    }
+
+    @Test
+    public void testMetricsAreRecorded(@Named("stuff") MongoFutureCollection<Document> stuff, MongoMetrics metrics,
+            @Named(GiuliusMongoAsyncModule.SETTINGS_KEY_DATABASE_NAME) String db) throws Exception {
+        stuff.insertOne(new Document("metrics", true)).get(10, SECONDS);
+        assertEquals(1, stuff.find(new Document("metrics", true)).get(10, SECONDS).size());
+        MongoMetrics.OperationMetrics finds = metrics.operation(db, "stuff", "find");
+        assertNotNull(metrics.toString(), finds);
+        assertTrue(finds.latency().count() >= 1);
+        assertEquals(0, finds.failures());
+        assertTrue(finds.latency().maxNanos() > 0);
+        assertNotNull(metrics.operation(db, "stuff", "insert"));
+        assertTrue(metrics.openConnections() > 0);
+    }
+
     static class TestModule extends AbstractModule {
 
         @Override
@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mastfrog.util.preconditions.ConfigurationError;
+import com.mongodb.ServerAddress;
+import com.mongodb.Tag;
+import com.mongodb.TagSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class MongoClientSettingsProviderTest {
+
+    @Test
+    public void testParseHosts() {
+        assertTrue(MongoClientSettingsProvider.parseHosts(null, 27017).isEmpty());
+        List<ServerAddress> hosts = MongoClientSettingsProvider.parseHosts("db1:27018, db2,[::1]:27019,[::2]", 27017);
+        assertEquals(Arrays.asList(new ServerAddress("db1", 27018), new ServerAddress("db2", 27017),
+                new ServerAddress("[::1]", 27019), new ServerAddress("[::2]", 27017)), hosts);
+    }
+
+    @Test(expected = ConfigurationError.class)
+    public void testBadPort() {
+        MongoClientSettingsProvider.parseHosts("db1:foo", 27017);
+    }
+
+    @Test
+    public void testParseTagSets() {
+        assertTrue(ReadPreferences.parseTagSets(null).isEmpty());
+        List<TagSet> sets = ReadPreferences.parseTagSets("dc:east, use:reporting;dc:east;");
+        assertEquals(Arrays.asList(
+                new TagSet(Arrays.asList(new Tag("dc", "east"), new Tag("use", "reporting"))),
+                new TagSet(new Tag("dc", "east")),
+                new TagSet(Collections.emptyList())), sets);
+    }
+
+    @Test(expected = ConfigurationError.class)
+    public void testTagsWithPrimaryAreRejected() {
+        ReadPreferences.PRIMARY.get(ReadPreferences.parseTagSets("dc:east"));
+    }
+
+    @Test(expected = ConfigurationError.class)
+    public void testMalformedTags() {
+        ReadPreferences.parseTagSets("dc");
+    }
+
+    @Test(expected = ConfigurationError.class)
+    public void testDuplicateTagNames() {
+        ReadPreferences.parseTagSets("dc:east,dc:west");
+    }
+}
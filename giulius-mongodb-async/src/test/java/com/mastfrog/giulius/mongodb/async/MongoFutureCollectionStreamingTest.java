@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Named;
+import com.mastfrog.giulius.mongodb.async.MongoFutureCollectionStreamingTest.TestModule;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Sorts;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.bson.Document;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests accumulating and streaming reads of a large collection.
+ *
+ * @author agent
+ */
+@RunWith(GuiceRunner.class)
+@TestWith({TestModule.class, MongoHarness.Module.class})
+public class MongoFutureCollectionStreamingTest {
+
+    private static final int COUNT = 100_000;
+
+    @Test(timeout = 240000)
+    public void testStreamingAndAccumulatingFind(@Named("big") MongoFutureCollection<Document> big) throws Throwable {
+        List<Document> docs = new ArrayList<>(1000);
+        for (int i = 0; i < COUNT; i++) {
+            docs.add(new Document("ix", i).append("name", "item-" + i));
+            if (docs.size() == 1000) {
+                big.insertMany(docs).get(30, TimeUnit.SECONDS);
+                docs = new ArrayList<>(1000);
+            }
+        }
+        assertEquals(Long.valueOf(COUNT), big.count().get(30, TimeUnit.SECONDS));
+
+        List<Document> all = big.find().get(60, TimeUnit.SECONDS);
+        assertEquals(COUNT, all.size());
+        all = null;
+
+        AtomicLong sum = new AtomicLong();
+        AtomicLong batches = new AtomicLong();
+        long streamed = big.findBatched(new Document(), 1000, batch -> {
+            batches.incrementAndGet();
+            for (Document d : batch) {
+                sum.addAndGet(d.getInteger("ix"));
+            }
+            // Demand the next batch asynchronously, as a real consumer
+            // writing to a socket would
+            return CompletableFuture.runAsync(() -> {
+            });
+        }).get(60, TimeUnit.SECONDS);
+        assertEquals(COUNT, streamed);
+        assertEquals(((long) COUNT * (COUNT - 1)) / 2, sum.get());
+        assertTrue(batches.get() > 1);
+    }
+
+    @Test(timeout = 240000)
+    public void testKeysetPaging(@Named("big") MongoFutureCollection<Document> big) throws Throwable {
+        int count = 2500;
+        List<Document> docs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Many documents share each group, so _id has to break ties
+            docs.add(new Document("ix", i).append("group", i % 7));
+        }
+        big.insertMany(docs).get(30, TimeUnit.SECONDS);
+
+        Set<Integer> seen = new HashSet<>();
+        int pages = 0;
+        int lastGroup = Integer.MAX_VALUE;
+        String token = null;
+        do {
+            Page<Document> page = big.page(new Document(), "group", false, 100, token).get(30, TimeUnit.SECONDS);
+            assertTrue(page.items().size() <= 100);
+            for (Document d : page) {
+                assertTrue("Out of order at " + d, d.getInteger("group") <= lastGroup);
+                lastGroup = d.getInteger("group");
+                assertTrue("Seen twice: " + d, seen.add(d.getInteger("ix")));
+            }
+            token = page.resumeToken();
+            pages++;
+        } while (token != null);
+        assertEquals(count, seen.size());
+        assertEquals(25, pages);
+
+        seen.clear();
+        token = null;
+        do {
+            Page<Document> page = big.page(new Document("group", 3), 50, token).get(30, TimeUnit.SECONDS);
+            for (Document d : page) {
+                assertEquals(Integer.valueOf(3), d.getInteger("group"));
+                assertTrue(seen.add(d.getInteger("ix")));
+            }
+            token = page.resumeToken();
+        } while (token != null);
+        assertEquals((count + 3) / 7, seen.size());
+    }
+
+    @Test(timeout = 240000)
+    public void testParallelScan(@Named("big") MongoFutureCollection<Document> big) throws Throwable {
+        int count = 5000;
+        List<Document> docs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            docs.add(new Document("ix", i).append("scanned", true));
+        }
+        big.insertMany(docs).get(30, TimeUnit.SECONDS);
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Set<Integer> seen = ConcurrentHashMap.newKeySet();
+            AtomicInteger duplicates = new AtomicInteger();
+            ScanResult result = big.parallelScan(new Document("scanned", true), 4, 100, pool, batch -> {
+                for (Document d : batch) {
+                    if (!seen.add(d.getInteger("ix"))) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                return null;
+            }).get(60, TimeUnit.SECONDS);
+            assertEquals(0, duplicates.get());
+            assertEquals(count, seen.size());
+            assertEquals(count, result.documents());
+            assertTrue(result.toString(), result.partitions() > 1 && result.partitions() <= 4);
+            assertTrue(result.documentsPerSecond() > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 240000)
+    public void testAggregationPipeline(@Named("big") MongoFutureCollection<Document> big) throws Throwable {
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            docs.add(new Document("ix", i).append("bucket", i % 10).append("aggregated", true));
+        }
+        big.insertMany(docs).get(30, TimeUnit.SECONDS);
+
+        AggregationPipeline<Document> pipeline = big.pipeline()
+                .match(new Document("aggregated", true))
+                .group("$bucket", Accumulators.sum("count", 1))
+                .sort(Sorts.ascending("_id"))
+                .allowDiskUse(true)
+                .batchSize(3);
+        List<Document> all = pipeline.toList().get(30, TimeUnit.SECONDS);
+        assertEquals(10, all.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), all.get(i).getInteger("_id"));
+            assertEquals(Integer.valueOf(100), all.get(i).getInteger("count"));
+        }
+
+        List<Document> streamed = new ArrayList<>();
+        AtomicInteger batches = new AtomicInteger();
+        long count = pipeline.stream(batch -> {
+            assertTrue(batch.size() <= 3);
+            batches.incrementAndGet();
+            streamed.addAll(batch);
+            return null;
+        }).get(30, TimeUnit.SECONDS);
+        assertEquals(10L, count);
+        assertEquals(all, streamed);
+        assertTrue(batches.get() >= 4);
+
+        try {
+            pipeline.out("aggregated").limit(1);
+            fail("$limit after $out should not be allowed");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    static class TestModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            GiuliusMongoAsyncModule m = new GiuliusMongoAsyncModule();
+            m.bindCollection("big");
+            install(m);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.ServerAddress;
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class MongoTransactionsTest {
+
+    @Test
+    public void testTransientErrorsAreRecognized() {
+        ServerAddress addr = new ServerAddress("localhost", 27017);
+        assertTrue(MongoTransactions.isTransient(new MongoSocketException("reset", addr)));
+        assertTrue(MongoTransactions.isTransient(new CompletionException(new MongoSocketException("reset", addr))));
+        assertTrue(MongoTransactions.isTransient(new MongoException(112, "WriteConflict")));
+        assertTrue(MongoTransactions.isTransient(new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(251))
+                .append("errorLabels", new BsonArray(Arrays.asList(new BsonString("TransientTransactionError")))), addr)));
+
+        assertFalse(MongoTransactions.isTransient(new MongoException(11000, "E11000 duplicate key")));
+        assertFalse(MongoTransactions.isTransient(new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(2)), addr)));
+        assertFalse(MongoTransactions.isTransient(new IllegalStateException()));
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import com.google.inject.util.Providers;
+import com.mastfrog.util.function.EnhCompletableFuture;
+import com.mongodb.MongoSocketException;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import com.mongodb.async.SingleResultCallback;
+import com.mongodb.async.client.MongoClients;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that identical concurrent reads through a MongoFutureCollection with
+ * read sharing issue one driver call, against the in-memory stand-in with
+ * its callbacks held until the test releases them.
+ *
+ * @author agent
+ */
+public class SharedReadsTest {
+
+    private static final ServerAddress ADDR = new ServerAddress("localhost", 27017);
+    private final Gate gate = new Gate();
+    private final AtomicInteger finds = new AtomicInteger();
+    private final AtomicInteger counts = new AtomicInteger();
+    private volatile Throwable failCounts;
+    private MongoFutureCollection<Document> coll;
+
+    @Test(timeout = 20000)
+    public void testConcurrentIdenticalReadsShareOneDriverCall() throws Throwable {
+        Bson query = Filters.gte("v", 2);
+        gate.close();
+        List<EnhCompletableFuture<List<Document>>> found = new ArrayList<>();
+        List<EnhCompletableFuture<Document>> foundOne = new ArrayList<>();
+        List<EnhCompletableFuture<Long>> counted = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            found.add(coll.find(Filters.gte("v", 2), null, Document.class));
+            foundOne.add(coll.findOne(query));
+            counted.add(coll.count(query));
+        }
+        // One find for the find() calls, one for the findOne() calls
+        assertEquals(2, finds.get());
+        assertEquals(1, counts.get());
+        gate.open();
+
+        List<Document> firstList = found.get(0).get(10, SECONDS);
+        assertEquals(2, firstList.size());
+        for (EnhCompletableFuture<List<Document>> f : found.subList(1, found.size())) {
+            List<Document> list = f.get(10, SECONDS);
+            assertEquals(firstList, list);
+            assertNotSame("Each caller should get its own list", firstList, list);
+        }
+        Document first = foundOne.get(0).get(10, SECONDS);
+        first.put("v", 99);
+        for (EnhCompletableFuture<Document> f : foundOne.subList(1, foundOne.size())) {
+            Document doc = f.get(10, SECONDS);
+            assertNotSame("Each findOne() caller should get its own copy", first, doc);
+            assertEquals(Integer.valueOf(2), doc.getInteger("v"));
+        }
+        for (EnhCompletableFuture<Long> f : counted) {
+            assertEquals(Long.valueOf(2), f.get(10, SECONDS));
+        }
+
+        // Completed reads are not cached
+        assertEquals(Long.valueOf(2), coll.count(query).get(10, SECONDS));
+        assertEquals(2, counts.get());
+    }
+
+    @Test(timeout = 20000)
+    public void testReadsWhichDifferAreNotShared() throws Throwable {
+        gate.close();
+        List<EnhCompletableFuture<?>> all = Arrays.asList(
+                coll.find(Filters.gte("v", 2), null, Document.class),
+                coll.find(Filters.gte("v", 2), Projections.include("v"), Document.class),
+                coll.find(Filters.gte("v", 2), null, BsonDocument.class),
+                coll.find(Filters.gte("v", 3), null, Document.class));
+        assertEquals(4, finds.get());
+        gate.open();
+        for (EnhCompletableFuture<?> f : all) {
+            f.get(10, SECONDS);
+        }
+    }
+
+    @Test
+    public void testKeys() {
+        MongoCollection<Document> primary = settings(ReadPreference.primary(), ReadConcern.DEFAULT);
+        Bson query = Filters.eq("_id", 1);
+        SharedReads.Key key = SharedReads.key(primary, "find", Document.class, query, null);
+        assertEquals(key, SharedReads.key(settings(ReadPreference.primary(), ReadConcern.DEFAULT),
+                "find", Document.class, Filters.eq("_id", 1), null));
+        assertEquals(key.hashCode(), SharedReads.key(primary, "find", Document.class, Filters.eq("_id", 1), null).hashCode());
+
+        assertNotEquals("Read preference", key, SharedReads.key(settings(ReadPreference.secondary(), ReadConcern.DEFAULT),
+                "find", Document.class, query, null));
+        assertNotEquals("Read concern", key, SharedReads.key(settings(ReadPreference.primary(), ReadConcern.MAJORITY),
+                "find", Document.class, query, null));
+        assertNotEquals("Projection", key, SharedReads.key(primary, "find", Document.class, query, Projections.include("v")));
+        assertNotEquals("Type", key, SharedReads.key(primary, "find", BsonDocument.class, query, null));
+        assertNotEquals("Query", key, SharedReads.key(primary, "find", Document.class, Filters.eq("_id", 2), null));
+        assertNotEquals("Operation", key, SharedReads.key(primary, "findOne", Document.class, query, null));
+    }
+
+    @Test(timeout = 20000)
+    public void testFailedReadFailsEveryWaiterAndIsForgotten() throws Throwable {
+        Bson query = Filters.gte("v", 2);
+        MongoSocketException failure = new MongoSocketException("Connection reset", ADDR);
+        failCounts = failure;
+        gate.close();
+        List<EnhCompletableFuture<Long>> counted = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            counted.add(coll.count(query));
+        }
+        assertEquals(1, counts.get());
+        gate.open();
+        for (EnhCompletableFuture<Long> f : counted) {
+            try {
+                f.get(10, SECONDS);
+                fail("Should have failed");
+            } catch (ExecutionException ex) {
+                assertSame(failure, ex.getCause());
+            }
+        }
+        failCounts = null;
+        assertEquals(Long.valueOf(2), coll.count(query).get(10, SECONDS));
+        assertEquals("The failed read should not have been joined", 2, counts.get());
+    }
+
+    @Before
+    public void setup() throws Throwable {
+        InMemoryMongo mongo = new InMemoryMongo(new MongoAsyncInitializer.Registry(null), gate);
+        MongoCollection<Document> real = mongo.client(MongoClients.getDefaultCodecRegistry())
+                .getDatabase("shared").getCollection("things");
+        @SuppressWarnings("unchecked")
+        MongoCollection<Document> counting = (MongoCollection<Document>) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{MongoCollection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "find":
+                            finds.incrementAndGet();
+                            break;
+                        case "count":
+                            counts.incrementAndGet();
+                            Throwable fail = failCounts;
+                            if (fail != null) {
+                                @SuppressWarnings("unchecked")
+                                SingleResultCallback<Long> callback = (SingleResultCallback<Long>) args[args.length - 1];
+                                gate.execute(() -> callback.onResult(null, fail));
+                                return null;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(real, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+        coll = new MongoFutureCollection<>(Providers.of(counting), null, null, new SharedReads(), null);
+        coll.insertMany(Arrays.asList(new Document("_id", 1).append("v", 1),
+                new Document("_id", 2).append("v", 2), new Document("_id", 3).append("v", 3)))
+                .get(10, SECONDS);
+        assertFalse(gate.isClosed());
+    }
+
+    @After
+    public void tearDown() {
+        gate.threads.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MongoCollection<Document> settings(ReadPreference pref, ReadConcern concern) {
+        return (MongoCollection<Document>) Proxy.newProxyInstance(SharedReadsTest.class.getClassLoader(),
+                new Class<?>[]{MongoCollection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getCodecRegistry":
+                            return MongoClients.getDefaultCodecRegistry();
+                        case "getReadPreference":
+                            return pref;
+                        case "getReadConcern":
+                            return concern;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Runs driver callbacks, or holds them while closed, so the test can
+     * issue several reads while the first is still in flight.
+     */
+    static final class Gate implements Executor {
+
+        private final List<Runnable> held = new ArrayList<>();
+        private final ExecutorService threads = Executors.newCachedThreadPool();
+        private boolean closed;
+
+        synchronized void close() {
+            closed = true;
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        void open() {
+            List<Runnable> release;
+            synchronized (this) {
+                closed = false;
+                release = new ArrayList<>(held);
+                held.clear();
+            }
+            release.forEach(threads::execute);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            synchronized (this) {
+                if (closed) {
+                    held.add(command);
+                    return;
+                }
+            }
+            threads.execute(command);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import java.util.Arrays;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class SlowOperationsTest {
+
+    @Test
+    public void testShapesRedactValues() {
+        BsonDocument find = new BsonDocument("find", new BsonString("people"))
+                .append("filter", new BsonDocument("age", new BsonDocument("$gt", new BsonInt32(30)))
+                        .append("name", new BsonString("Joe"))
+                        .append("tags", new BsonDocument("$in", new BsonArray(Arrays.asList(new BsonString("a"), new BsonString("b"))))))
+                .append("sort", new BsonDocument("age", new BsonInt32(-1)))
+                .append("$db", new BsonString("test"));
+        assertEquals("{age: {$gt: ?}, name: ?, tags: {$in: [?]}} sort {age: -1}", SlowOperations.shapeOf("find", find));
+
+        BsonDocument explainable = SlowOperations.explainable(find);
+        assertFalse(explainable.containsKey("$db"));
+        assertTrue(find.containsKey("$db"));
+
+        BsonDocument aggregate = new BsonDocument("aggregate", new BsonString("people")).append("pipeline", new BsonArray(Arrays.asList(
+                new BsonDocument("$match", new BsonDocument("dept", new BsonString("sales"))),
+                new BsonDocument("$group", new BsonDocument("_id", new BsonString("$dept"))))));
+        assertEquals("[{$match: {dept: ?}}, {$group: {_id: $dept}}]", SlowOperations.shapeOf("aggregate", aggregate));
+    }
+
+    @Test
+    public void testCollectionScansAreFound() {
+        BsonDocument plan = new BsonDocument("queryPlanner", new BsonDocument("winningPlan",
+                new BsonDocument("stage", new BsonString("FETCH"))
+                        .append("inputStage", new BsonDocument("stage", new BsonString("COLLSCAN")))));
+        assertTrue(SlowOperations.containsStage(plan, "COLLSCAN"));
+        assertFalse(SlowOperations.containsStage(plan, "IXSCAN"));
+    }
+}
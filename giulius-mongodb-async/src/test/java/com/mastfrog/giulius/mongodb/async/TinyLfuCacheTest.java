@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.mongodb.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class TinyLfuCacheTest {
+
+    @Test
+    public void testSizeIsBounded() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(100, SECONDS.toNanos(60));
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, "v" + i);
+            assertTrue(cache.size() + " at " + i, cache.size() <= 100);
+        }
+        assertEquals(100, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(9_999));
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScans() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(100, SECONDS.toNanos(60));
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, "hot" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals("hot" + i, cache.get(i));
+            }
+        }
+        // A scan of one-off keys, each requested once, should not be
+        // admitted over entries which are requested repeatedly
+        for (int i = 1000; i < 6000; i++) {
+            assertNull(cache.get(i));
+            cache.put(i, "cold" + i);
+        }
+        int survivors = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get(i) != null) {
+                survivors++;
+            }
+        }
+        assertTrue("Only " + survivors + " of 50 hot entries survived", survivors >= 45);
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    public void testEntriesExpire() throws InterruptedException {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10, MILLISECONDS.toNanos(20));
+        cache.put("a", "b");
+        assertEquals("b", cache.get("a"));
+        Thread.sleep(40);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        cache.put("a", "c");
+        assertEquals("c", cache.get("a"));
+    }
+
+    @Test
+    public void testReplacingKeepsOneEntry() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10, SECONDS.toNanos(60));
+        cache.put("a", "b");
+        cache.put("a", "c");
+        assertEquals("c", cache.get("a"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test(timeout = 60000)
+    public void testClearDuringConcurrentAccessKeepsBound() throws Throwable {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(64, SECONDS.toNanos(60));
+        AtomicBoolean done = new AtomicBoolean();
+        List<Throwable> failures = new ArrayList<>();
+        int threads = 4;
+        CountDownLatch exited = new CountDownLatch(threads + 1);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    while (!done.get()) {
+                        int key = rnd.nextInt(256);
+                        if (cache.get(key) == null) {
+                            cache.put(key, key);
+                        }
+                    }
+                } catch (Throwable ex) {
+                    synchronized (failures) {
+                        failures.add(ex);
+                    }
+                } finally {
+                    exited.countDown();
+                }
+            }).start();
+        }
+        new Thread(() -> {
+            try {
+                for (int i = 0; i < 2000; i++) {
+                    cache.clear();
+                    Thread.yield();
+                }
+            } finally {
+                done.set(true);
+                exited.countDown();
+            }
+        }).start();
+        assertTrue(exited.await(50, SECONDS));
+        synchronized (failures) {
+            if (!failures.isEmpty()) {
+                throw failures.get(0);
+            }
+        }
+        for (int i = 1000; i < 2000; i++) {
+            cache.put(i, i);
+        }
+        assertTrue("Cache grew to " + cache.size(), cache.size() <= 64);
+    }
+
+    @Test
+    public void testSketchCountsAndAges() {
+        TinyLfuCache.FrequencySketch sketch = new TinyLfuCache.FrequencySketch(16);
+        assertEquals(0, sketch.frequency(42));
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(42);
+        }
+        assertEquals(5, sketch.frequency(42));
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(42);
+        }
+        // Four bit counters saturate
+        assertEquals(15, sketch.frequency(42));
+        // Enough other additions halve every counter
+        for (int i = 0; i < 200; i++) {
+            sketch.increment(1000 + i);
+        }
+        assertTrue(String.valueOf(sketch.frequency(42)), sketch.frequency(42) < 15);
+    }
+}
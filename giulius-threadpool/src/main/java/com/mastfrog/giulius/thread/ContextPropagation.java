@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Applies a fixed set of ContextPropagators to tasks; allocates nothing when
+ * none of them has anything to propagate, and one wrapper and one array per
+ * task otherwise.
+ *
+ * @author agent
+ */
+final class ContextPropagation {
+
+    private final ContextPropagator<Object>[] propagators;
+
+    @SuppressWarnings("unchecked")
+    ContextPropagation(ContextPropagator<?>[] propagators) {
+        this.propagators = (ContextPropagator<Object>[]) propagators;
+    }
+
+    boolean isEmpty() {
+        return propagators.length == 0;
+    }
+
+    private Object[] capture() {
+        Object[] result = null;
+        for (int i = 0; i < propagators.length; i++) {
+            Object captured = propagators[i].capture();
+            if (captured != null) {
+                if (result == null) {
+                    result = new Object[propagators.length];
+                }
+                result[i] = captured;
+            }
+        }
+        return result;
+    }
+
+    Runnable wrap(Runnable run) {
+        Object[] captured = capture();
+        return captured == null ? run : new PropagatingRunnable(run, captured);
+    }
+
+    <T> Callable<T> wrap(Callable<T> call) {
+        Object[] captured = capture();
+        return captured == null ? call : new PropagatingCallable<>(call, captured);
+    }
+
+    // Recursion rather than a loop, so restoration happens in reverse order
+    // without allocating an array to hold the tokens
+    private <T> T call(int index, Object[] captured, Callable<T> call) throws Exception {
+        if (index == propagators.length) {
+            return call.call();
+        }
+        if (captured[index] == null) {
+            return call(index + 1, captured, call);
+        }
+        ContextPropagator<Object> p = propagators[index];
+        Object token = p.apply(captured[index]);
+        try {
+            return call(index + 1, captured, call);
+        } finally {
+            p.restore(token);
+        }
+    }
+
+    private void run(int index, Object[] captured, Runnable run) {
+        if (index == propagators.length) {
+            run.run();
+            return;
+        }
+        if (captured[index] == null) {
+            run(index + 1, captured, run);
+            return;
+        }
+        ContextPropagator<Object> p = propagators[index];
+        Object token = p.apply(captured[index]);
+        try {
+            run(index + 1, captured, run);
+        } finally {
+            p.restore(token);
+        }
+    }
+
+    private final class PropagatingRunnable implements Runnable {
+
+        private final Runnable delegate;
+        private final Object[] captured;
+
+        PropagatingRunnable(Runnable delegate, Object[] captured) {
+            this.delegate = delegate;
+            this.captured = captured;
+        }
+
+        @Override
+        public void run() {
+            ContextPropagation.this.run(0, captured, delegate);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    private final class PropagatingCallable<T> implements Callable<T> {
+
+        private final Callable<T> delegate;
+        private final Object[] captured;
+
+        PropagatingCallable(Callable<T> delegate, Object[] captured) {
+            this.delegate = delegate;
+            this.captured = captured;
+        }
+
+        @Override
+        public T call() throws Exception {
+            return ContextPropagation.this.call(0, captured, delegate);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
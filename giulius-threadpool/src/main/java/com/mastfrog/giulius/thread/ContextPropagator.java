@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import com.google.inject.TypeLiteral;
+import com.mastfrog.giulius.InjectionInfo;
+import com.mastfrog.util.thread.QuietAutoCloseable;
+
+/**
+ * Carries thread-local context (trace ids, logging MDC, the type currently
+ * being injected, etc.) from the thread which submits work to a pool bound by
+ * ThreadModule to the pool thread which runs it, so that work which hops
+ * threads does not need to be wrapped by hand.
+ * <p>
+ * <code>capture()</code> is called on the submitting thread when a task is
+ * submitted; if every propagator for a pool returns null, the task is
+ * submitted unwrapped and nothing is allocated. Otherwise, on the pool
+ * thread, <code>apply()</code> is called before the task runs, and
+ * <code>restore()</code> is called with its result afterwards, in reverse
+ * order of application.
+ * <p>
+ * Register propagators with <code>ThreadModule.withContextPropagator()</code>
+ * to apply them to all pools, or on an individual ExecutorServiceBuilder.
+ * Propagation applies to the ExecutorService, Executor and
+ * ScheduledExecutorService bindings; tasks submitted directly to an injected
+ * <code>ForkJoinPool</code> are not wrapped.
+ *
+ * @param <T> The type of captured context
+ * @author agent
+ */
+public interface ContextPropagator<T> {
+
+    /**
+     * Capture context on the submitting thread.
+     *
+     * @return The captured context, or null if there is nothing to propagate
+     */
+    T capture();
+
+    /**
+     * Apply previously captured context to the current (pool) thread.
+     *
+     * @param captured The non-null captured context
+     * @return Whatever is needed to restore the pool thread's previous state
+     * in <code>restore()</code>, possibly null
+     */
+    Object apply(T captured);
+
+    /**
+     * Restore the pool thread's state after the task has run.
+     *
+     * @param token The return value of <code>apply()</code>
+     */
+    void restore(Object token);
+
+    /**
+     * Propagates the type being injected (as used by namespace-aware Settings
+     * injection and InjectionInfo), for work submitted while an object is
+     * being provisioned.
+     */
+    ContextPropagator<TypeLiteral<?>[]> INJECTION_CONTEXT = new ContextPropagator<TypeLiteral<?>[]>() {
+        @Override
+        public TypeLiteral<?>[] capture() {
+            TypeLiteral<?> current = InjectionInfo.currentInjectionType();
+            return current == null ? null : new TypeLiteral<?>[]{current, InjectionInfo.previousInjectionType()};
+        }
+
+        @Override
+        public Object apply(TypeLiteral<?>[] captured) {
+            return InjectionInfo.enterInjectionContext(captured[0], captured[1]);
+        }
+
+        @Override
+        public void restore(Object token) {
+            ((QuietAutoCloseable) token).close();
+        }
+
+        @Override
+        public String toString() {
+            return "INJECTION_CONTEXT";
+        }
+    };
+}
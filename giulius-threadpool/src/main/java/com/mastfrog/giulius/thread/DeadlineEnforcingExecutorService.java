@@ -0,0 +1,272 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps an executor service, enforcing start and run deadlines on tasks
+ * submitted to it, using a timing wheel to fire deadline checks.
+ *
+ * @author agent
+ */
+final class DeadlineEnforcingExecutorService extends AbstractExecutorService implements DeadlineExecutorService {
+
+    private final ExecutorService delegate;
+    private final ScheduledExecutorService timer;
+    private final long defaultStartNanos;
+    private final long defaultRunNanos;
+    private final TaskDeadlineListener listener;
+    private final DeadlineMetrics metrics = new DeadlineMetrics();
+
+    DeadlineEnforcingExecutorService(ExecutorService delegate, ScheduledExecutorService timer,
+            long defaultStartNanos, long defaultRunNanos, TaskDeadlineListener listener) {
+        this.delegate = delegate;
+        this.timer = timer;
+        this.defaultStartNanos = defaultStartNanos;
+        this.defaultRunNanos = defaultRunNanos;
+        this.listener = listener;
+    }
+
+    ExecutorService delegate() {
+        return delegate;
+    }
+
+    private static long nanos(Duration d) {
+        return d == null ? 0 : Math.max(1, d.toNanos());
+    }
+
+    @Override
+    public DeadlineMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task, Duration startWithin, Duration runWithin) {
+        DeadlineTask<T> result = new DeadlineTask<>(task, task, nanos(startWithin), nanos(runWithin), false);
+        enqueue(result);
+        return result;
+    }
+
+    @Override
+    public Future<?> submit(Runnable task, Duration startWithin, Duration runWithin) {
+        DeadlineTask<Object> result = new DeadlineTask<>(Executors.callable(task), task,
+                nanos(startWithin), nanos(runWithin), false);
+        enqueue(result);
+        return result;
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new DeadlineTask<>(callable, callable, defaultStartNanos, defaultRunNanos, false);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new DeadlineTask<>(Executors.callable(runnable, value), runnable,
+                defaultStartNanos, defaultRunNanos, false);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command instanceof DeadlineTask<?>) {
+            enqueue((DeadlineTask<?>) command);
+        } else {
+            enqueue(new DeadlineTask<>(Executors.callable(command), command,
+                    defaultStartNanos, defaultRunNanos, true));
+        }
+    }
+
+    private void enqueue(DeadlineTask<?> task) {
+        metrics.submitted.increment();
+        task.armStartDeadline();
+        try {
+            delegate.execute(task);
+        } catch (RuntimeException ex) {
+            task.disarm();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+        timer.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        timer.shutdownNow();
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated() && timer.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!delegate.awaitTermination(timeout, unit)) {
+            return false;
+        }
+        return timer.awaitTermination(Math.max(0, deadline - System.nanoTime()), NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "DeadlineEnforcing(" + delegate + " " + metrics + ")";
+    }
+
+    private static final int QUEUED = 0;
+    private static final int STARTED = 1;
+    private static final int EXPIRED = 2;
+
+    final class DeadlineTask<T> extends FutureTask<T> {
+
+        private final Object original;
+        private final long submittedAt = System.nanoTime();
+        private final long startNanos;
+        private final long runNanos;
+        private final boolean fromExecute;
+        // Whichever of the timer and the pool thread moves this out of
+        // QUEUED owns the task, so it is never both started and expired
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private volatile long startedAt;
+        private volatile ScheduledFuture<?> deadlineTimer;
+
+        DeadlineTask(Callable<T> callable, Object original, long startNanos, long runNanos, boolean fromExecute) {
+            super(callable);
+            this.original = original;
+            this.startNanos = startNanos;
+            this.runNanos = runNanos;
+            this.fromExecute = fromExecute;
+        }
+
+        void armStartDeadline() {
+            if (startNanos > 0) {
+                deadlineTimer = timer.schedule(this::expireIfNotStarted, startNanos, NANOSECONDS);
+            }
+        }
+
+        void disarm() {
+            ScheduledFuture<?> t = deadlineTimer;
+            if (t != null) {
+                t.cancel(false);
+            }
+        }
+
+        private void expireIfNotStarted() {
+            if (state.compareAndSet(QUEUED, EXPIRED) && cancel(false)) {
+                onExpired(System.nanoTime());
+            }
+        }
+
+        private void onExpired(long now) {
+            metrics.expiredBeforeStart.increment();
+            listener.onExpiredBeforeStart(original, now - submittedAt);
+        }
+
+        private void expireIfRunning() {
+            if (!isDone() && cancel(true)) {
+                metrics.overrun.increment();
+                listener.onOverrun(original, System.nanoTime() - startedAt);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                // Already expired by the timer
+                return;
+            }
+            long now = System.nanoTime();
+            if (startNanos > 0 && now - submittedAt > startNanos) {
+                // The timer has not caught up with it yet
+                disarm();
+                expireIfNotStarted();
+                return;
+            }
+            if (!state.compareAndSet(QUEUED, STARTED)) {
+                // Lost the race with the start deadline
+                return;
+            }
+            startedAt = now;
+            disarm();
+            metrics.started.increment();
+            metrics.queueNanos.add(now - submittedAt);
+            if (runNanos > 0) {
+                deadlineTimer = timer.schedule(this::expireIfRunning, runNanos, NANOSECONDS);
+            }
+            try {
+                super.run();
+            } finally {
+                disarm();
+                // Clear any interrupt from an overrun which raced completion,
+                // so it does not leak into the next task on this thread
+                if (runNanos > 0 && isCancelled()) {
+                    Thread.interrupted();
+                }
+            }
+            if (fromExecute && !isCancelled()) {
+                // Preserve execute() semantics - failures reach the
+                // thread's uncaught exception handler rather than vanishing
+                // into an unobserved future
+                try {
+                    get();
+                } catch (ExecutionException ex) {
+                    Thread t = Thread.currentThread();
+                    t.getUncaughtExceptionHandler().uncaughtException(t, ex.getCause());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "DeadlineTask(" + original + ")";
+        }
+    }
+}
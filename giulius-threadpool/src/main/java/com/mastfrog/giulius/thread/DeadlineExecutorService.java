@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An ExecutorService whose tasks carry deadlines: a task which has not
+ * started running within its start deadline is cancelled and never run, and a
+ * task which runs longer than its run deadline is cancelled and interrupted.
+ * Tasks submitted through the plain ExecutorService methods get the defaults
+ * configured with <code>ExecutorServiceBuilder.withTaskDeadlines()</code>;
+ * the methods here allow per-task deadlines.
+ * <p>
+ * Bound under the pool's binding name when deadlines are configured for it;
+ * the ExecutorService and Executor bindings for the pool are the same
+ * instance.
+ *
+ * @author agent
+ */
+public interface DeadlineExecutorService extends ExecutorService {
+
+    /**
+     * Submit a task with explicit deadlines.
+     *
+     * @param <T> The result type
+     * @param task The task
+     * @param startWithin The maximum time the task may wait before it starts
+     * running, or null for no limit
+     * @param runWithin The maximum time the task may run before it is
+     * interrupted, or null for no limit
+     * @return A future, which will be cancelled if either deadline is missed
+     */
+    <T> Future<T> submit(Callable<T> task, Duration startWithin, Duration runWithin);
+
+    /**
+     * Submit a task with explicit deadlines.
+     *
+     * @param task The task
+     * @param startWithin The maximum time the task may wait before it starts
+     * running, or null for no limit
+     * @param runWithin The maximum time the task may run before it is
+     * interrupted, or null for no limit
+     * @return A future, which will be cancelled if either deadline is missed
+     */
+    Future<?> submit(Runnable task, Duration startWithin, Duration runWithin);
+
+    /**
+     * Get counts of tasks submitted, expired and interrupted.
+     *
+     * @return The metrics
+     */
+    DeadlineMetrics metrics();
+}
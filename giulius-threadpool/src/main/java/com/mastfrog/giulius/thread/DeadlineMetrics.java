@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for a {@link DeadlineExecutorService}.
+ *
+ * @author agent
+ */
+public final class DeadlineMetrics {
+
+    final LongAdder submitted = new LongAdder();
+    final LongAdder started = new LongAdder();
+    final LongAdder expiredBeforeStart = new LongAdder();
+    final LongAdder overrun = new LongAdder();
+    final LongAdder queueNanos = new LongAdder();
+
+    DeadlineMetrics() {
+    }
+
+    /**
+     * The number of tasks submitted.
+     *
+     * @return A count
+     */
+    public long submitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * The number of tasks which started running.
+     *
+     * @return A count
+     */
+    public long started() {
+        return started.sum();
+    }
+
+    /**
+     * The number of tasks dropped because they did not start within their
+     * start deadline.
+     *
+     * @return A count
+     */
+    public long expiredBeforeStart() {
+        return expiredBeforeStart.sum();
+    }
+
+    /**
+     * The number of tasks interrupted because they exceeded their run
+     * deadline.
+     *
+     * @return A count
+     */
+    public long overrun() {
+        return overrun.sum();
+    }
+
+    /**
+     * The mean time tasks which started waited in the queue.
+     *
+     * @return Nanoseconds
+     */
+    public long meanQueueNanos() {
+        long count = started.sum();
+        return count == 0 ? 0 : queueNanos.sum() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "submitted=" + submitted() + " started=" + started()
+                + " expiredBeforeStart=" + expiredBeforeStart() + " overrun=" + overrun()
+                + " meanQueueMicros=" + (meanQueueNanos() / 1000);
+    }
+}
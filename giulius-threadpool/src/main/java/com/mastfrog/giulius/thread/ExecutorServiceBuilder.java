@@ -26,6 +26,11 @@ package com.mastfrog.giulius.thread;
 import com.google.inject.Provider;
 import com.google.inject.util.Providers;
 import com.mastfrog.util.preconditions.Checks;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 
 /**
  * Builder for ExecutorService / Executor / ScheduledExecutorService bindings
@@ -46,6 +51,19 @@ public abstract class ExecutorServiceBuilder {
     boolean eager;
     ConventionalThreadSupplier supplier;
     int stackSize;
+    long wheelTickMillis = TimingWheelExecutorService.DEFAULT_TICK_MILLIS;
+    int wheelSize = TimingWheelExecutorService.DEFAULT_WHEEL_SIZE;
+    int corePoolSize = -1;
+    int maximumPoolSize = -1;
+    int minimumRunnable = -1;
+    long keepAliveMillis = -1;
+    Predicate<? super ForkJoinPool> saturate;
+    ThreadAffinityPolicy affinity;
+    final List<ContextPropagator<?>> propagators = new ArrayList<>(2);
+    boolean deadlines;
+    long startDeadlineMillis = -1;
+    long runDeadlineMillis = -1;
+    TaskDeadlineListener deadlineListener;
 
     ExecutorServiceBuilder(String bindingName) {
         this.bindingName = bindingName;
@@ -64,6 +82,131 @@ public abstract class ExecutorServiceBuilder {
         return this;
     }
 
+    /**
+     * Set the tick duration and number of slots used by a TIMING_WHEEL pool
+     * (ignored for other types); can be overridden in settings with
+     * <code>$BINDING_NAME.wheel.tick.millis</code> and
+     * <code>$BINDING_NAME.wheel.size</code>. Scheduled tasks may run up to one
+     * tick late; a wheel whose size times its tick duration covers the typical
+     * delay avoids tasks having to go around the wheel more than once. The
+     * default is a 10ms tick and 512 slots.
+     *
+     * @param tick The tick duration, minimum 1ms
+     * @param wheelSize The number of slots, rounded up to a power of two
+     * @return this
+     */
+    public ExecutorServiceBuilder withTimingWheel(Duration tick, int wheelSize) {
+        this.wheelTickMillis = Checks.notNull("tick", tick).toMillis();
+        this.wheelSize = Checks.nonNegative("wheelSize", Checks.nonZero("wheelSize", wheelSize));
+        return this.withThreadPoolType(ThreadPoolType.TIMING_WHEEL);
+    }
+
+    /**
+     * Set the sizing parameters for FORK_JOIN and WORK_STEALING pools (ignored
+     * for other types); values &lt; 0 mean use the JDK's default. Each can be
+     * overridden in settings using <code>$BINDING_NAME.forkjoin.core</code>,
+     * <code>$BINDING_NAME.forkjoin.max</code>,
+     * <code>$BINDING_NAME.forkjoin.minimumRunnable</code> and
+     * <code>$BINDING_NAME.forkjoin.keepAlive.millis</code>. See the javadoc
+     * of ForkJoinPool's extended constructor for their meaning. Only honored
+     * on JDK 9 and later; on JDK 8 a warning is logged and they are ignored.
+     * A keep-alive of zero, or a maximum pool size smaller than the thread
+     * count or core pool size, results in a ConfigurationError when the pool
+     * is created.
+     *
+     * @param corePoolSize The number of threads to keep alive
+     * @param maximumPoolSize The maximum number of threads allowed
+     * @param minimumRunnable The minimum number of threads not blocked by a
+     * join or ManagedBlocker
+     * @param keepAlive The time since last use before a thread is terminated
+     * @return this
+     */
+    public ExecutorServiceBuilder withForkJoinPoolSizing(int corePoolSize, int maximumPoolSize,
+            int minimumRunnable, Duration keepAlive) {
+        this.corePoolSize = corePoolSize;
+        this.maximumPoolSize = maximumPoolSize;
+        this.minimumRunnable = minimumRunnable;
+        this.keepAliveMillis = keepAlive == null ? -1 : keepAlive.toMillis();
+        return this;
+    }
+
+    /**
+     * Set the predicate a FORK_JOIN or WORK_STEALING pool invokes when it
+     * would need to create a thread beyond its maximum pool size in order to
+     * maintain its minimum runnable count; if it returns true, the pool
+     * continues without the additional thread rather than throwing a
+     * RejectedExecutionException. Only honored on JDK 9 and later.
+     *
+     * @param saturate The predicate
+     * @return this
+     */
+    public ExecutorServiceBuilder withForkJoinSaturationPolicy(Predicate<? super ForkJoinPool> saturate) {
+        this.saturate = Checks.notNull("saturate", saturate);
+        return this;
+    }
+
+    /**
+     * Set a policy which is called on each thread of the pool when it starts,
+     * which can pin it to particular CPUs or otherwise tune it, so that
+     * latency-critical pools can be isolated from batch pools on the same
+     * host.
+     *
+     * @param affinity The policy
+     * @return this
+     */
+    public ExecutorServiceBuilder withAffinityPolicy(ThreadAffinityPolicy affinity) {
+        this.affinity = Checks.notNull("affinity", affinity);
+        return this;
+    }
+
+    /**
+     * Add a ContextPropagator which applies only to this pool, in addition to
+     * any added to the ThreadModule.
+     *
+     * @param propagator A propagator
+     * @return this
+     */
+    public ExecutorServiceBuilder withContextPropagator(ContextPropagator<?> propagator) {
+        propagators.add(Checks.notNull("propagator", propagator));
+        return this;
+    }
+
+    /**
+     * Enforce deadlines on tasks submitted to this pool: a task which has not
+     * started within <code>startWithin</code> is dropped without running, and
+     * one which runs longer than <code>runWithin</code> is cancelled and
+     * interrupted. Either may be null for no limit; they can be overridden in
+     * settings with <code>$BINDING_NAME.deadline.start.millis</code> and
+     * <code>$BINDING_NAME.deadline.run.millis</code> (a value &lt;= 0 meaning
+     * no limit). The pool is then also bound as a
+     * {@link DeadlineExecutorService}, which allows per-task deadlines and
+     * exposes metrics. Not supported for SCHEDULED or TIMING_WHEEL pools.
+     *
+     * @param startWithin The default maximum queue time, or null
+     * @param runWithin The default maximum run time, or null
+     * @return this
+     */
+    public ExecutorServiceBuilder withTaskDeadlines(Duration startWithin, Duration runWithin) {
+        this.deadlines = true;
+        this.startDeadlineMillis = startWithin == null ? -1 : startWithin.toMillis();
+        this.runDeadlineMillis = runWithin == null ? -1 : runWithin.toMillis();
+        return this;
+    }
+
+    /**
+     * Set a listener to be notified when tasks miss their deadlines; implies
+     * <code>withTaskDeadlines(null, null)</code> if deadlines were not
+     * otherwise configured.
+     *
+     * @param listener The listener
+     * @return this
+     */
+    public ExecutorServiceBuilder withTaskDeadlineListener(TaskDeadlineListener listener) {
+        this.deadlineListener = Checks.notNull("listener", listener);
+        this.deadlines = true;
+        return this;
+    }
+
     /**
      * Use if you want to customize the thread class instantiated for thread
      * pools, such as using Netty's FastThreadLocalThread instead of the
@@ -241,4 +384,14 @@ public abstract class ExecutorServiceBuilder {
     public ExecutorServiceBuilder scheduled() {
         return this.withThreadPoolType(ThreadPoolType.SCHEDULED);
     }
+
+    /**
+     * Convenience method for
+     * <code>withThreadPoolType(ThreadPoolType.TIMING_WHEEL)</code>
+     *
+     * @return this
+     */
+    public ExecutorServiceBuilder timingWheel() {
+        return this.withThreadPoolType(ThreadPoolType.TIMING_WHEEL);
+    }
 }
@@ -24,15 +24,16 @@
 package com.mastfrog.giulius.thread;
 
 import com.google.inject.Provider;
-import com.mastfrog.giulius.thread.ThreadPoolType;
 import static com.mastfrog.giulius.thread.ThreadPoolType.FORK_JOIN;
-import static com.mastfrog.giulius.thread.ThreadPoolType.SCHEDULED;
 import static com.mastfrog.giulius.thread.ThreadPoolType.STANDARD;
 import com.mastfrog.giulius.ShutdownHookRegistry;
 import com.mastfrog.settings.Settings;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  *
@@ -47,25 +48,32 @@ final class ExecutorServiceProvider<T extends ExecutorService> implements Provid
     private final Provider<Thread.UncaughtExceptionHandler> uncaught;
     private final ThreadPoolType type;
     private final Provider<ShutdownHookRegistry> reg;
+    private final ExecutorServiceBuilder config;
+    private final Provider<ContextPropagation> propagation;
+    private static final long DEADLINE_TICK_MILLIS = 5;
 
     public ExecutorServiceProvider(GiuliusThreadFactory tf, ThreadCount count, Provider<Settings> settings, 
             Provider<Thread.UncaughtExceptionHandler> uncaught,
-            ThreadPoolType type, Provider<ShutdownHookRegistry> reg) {
+            ThreadPoolType type, Provider<ShutdownHookRegistry> reg, ExecutorServiceBuilder config,
+            Provider<ContextPropagation> propagation) {
         this.tf = tf;
         this.count = count;
         this.settings = settings;
         this.uncaught = uncaught;
         this.type = type;
         this.reg = reg;
+        this.config = config;
+        this.propagation = propagation;
     }
 
     ThreadPoolType type() {
         ThreadPoolType type = this.type;
         Boolean useForkJoin = settings.get().getBoolean("acteur.fork.join");
-        if (useForkJoin != null && useForkJoin && this.type != SCHEDULED) { // legacy support
+        boolean scheduled = this.type != null && this.type.isScheduled();
+        if (useForkJoin != null && useForkJoin && !scheduled) { // legacy support
             type = FORK_JOIN;
         } else if (useForkJoin != null && !useForkJoin) {
-            type = this.type == SCHEDULED ? SCHEDULED : STANDARD;
+            type = scheduled ? this.type : STANDARD;
         }
         if (type == null) {
             String typeName = settings.get().getString(tf.name() + ".type", ThreadPoolType.FORK_JOIN.name());
@@ -76,21 +84,88 @@ final class ExecutorServiceProvider<T extends ExecutorService> implements Provid
 
     @SuppressWarnings("unchecked")
     private T create() {
+        ExecutorService result = createUnwrapped();
+        ContextPropagation prop = propagation.get();
+        if (!prop.isEmpty()) {
+            if (result instanceof ScheduledExecutorService) {
+                result = new ContextPropagatingExecutorService.Scheduled((ScheduledExecutorService) result, prop);
+            } else {
+                result = new ContextPropagatingExecutorService<>(result, prop);
+            }
+        }
+        if (config.deadlines) {
+            result = withDeadlines(result);
+        }
+        return (T) result;
+    }
+
+    private ExecutorService withDeadlines(ExecutorService result) {
+        Settings s = settings.get();
+        String name = tf.name();
+        long start = s.getLong(name + ".deadline.start.millis", config.startDeadlineMillis);
+        long run = s.getLong(name + ".deadline.run.millis", config.runDeadlineMillis);
+        // Deadline checks only cancel futures, so one thread suffices, and
+        // it should not share the pool's naming or affinity policy
+        ThreadFactory timerThreads = r -> {
+            Thread t = new Thread(r, name + "-deadlines");
+            t.setDaemon(true);
+            return t;
+        };
+        TimingWheelExecutorService timer = new TimingWheelExecutorService(timerThreads, 1,
+                DEADLINE_TICK_MILLIS, MILLISECONDS, TimingWheelExecutorService.DEFAULT_WHEEL_SIZE);
+        TaskDeadlineListener listener = config.deadlineListener == null
+                ? new TaskDeadlineListener() {
+        } : config.deadlineListener;
+        return new DeadlineEnforcingExecutorService(result, timer,
+                start <= 0 ? 0 : MILLISECONDS.toNanos(start),
+                run <= 0 ? 0 : MILLISECONDS.toNanos(run), listener);
+    }
+
+    Provider<ForkJoinPool> forkJoinPoolProvider() {
+        return () -> {
+            ExecutorService result = get();
+            if (result instanceof DeadlineEnforcingExecutorService) {
+                result = ((DeadlineEnforcingExecutorService) result).delegate();
+            }
+            if (result instanceof ContextPropagatingExecutorService<?>) {
+                result = ((ContextPropagatingExecutorService<?>) result).delegate();
+            }
+            return (ForkJoinPool) result;
+        };
+    }
+
+    private ExecutorService createUnwrapped() {
         int threads = count.get();
         switch (type()) {
             case FORK_JOIN:
-                return (T) new ForkJoinPool(threads, tf, uncaught.get(), false);
+                return newForkJoinPool(threads, false);
             case WORK_STEALING:
-                return (T) new ForkJoinPool(threads, tf, uncaught.get(), true);
+                return newForkJoinPool(threads, true);
             case STANDARD:
-                return (T) (threads == 1 ? Executors.newSingleThreadExecutor(tf) : Executors.newFixedThreadPool(threads, tf));
+                return threads == 1 ? Executors.newSingleThreadExecutor(tf) : Executors.newFixedThreadPool(threads, tf);
             case SCHEDULED:
-                return (T) (threads == 1 ? Executors.newSingleThreadScheduledExecutor() : Executors.newScheduledThreadPool(threads, tf));
+                return threads == 1 ? Executors.newSingleThreadScheduledExecutor(tf) : Executors.newScheduledThreadPool(threads, tf);
+            case TIMING_WHEEL:
+                Settings s = settings.get();
+                long tick = s.getLong(tf.name() + ".wheel.tick.millis", config.wheelTickMillis);
+                int wheelSize = s.getInt(tf.name() + ".wheel.size", config.wheelSize);
+                return new TimingWheelExecutorService(tf, threads, tick, MILLISECONDS, wheelSize);
             default:
                 throw new AssertionError(type);
         }
     }
 
+    private ForkJoinPool newForkJoinPool(int threads, boolean async) {
+        Settings s = settings.get();
+        String name = tf.name();
+        return ForkJoinPools.create(name, threads, tf, uncaught.get(), async,
+                s.getInt(name + ".forkjoin.core", config.corePoolSize),
+                s.getInt(name + ".forkjoin.max", config.maximumPoolSize),
+                s.getInt(name + ".forkjoin.minimumRunnable", config.minimumRunnable),
+                config.saturate,
+                s.getLong(name + ".forkjoin.keepAlive.millis", config.keepAliveMillis));
+    }
+
     @Override
     public T get() {
         T service = this.svc;
@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import com.mastfrog.util.preconditions.ConfigurationError;
+import com.mastfrog.util.preconditions.Exceptions;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Creates ForkJoinPools using the extended constructor introduced in JDK 9
+ * (core and maximum pool size, minimum runnable, saturation predicate and
+ * keep-alive) when running on a JDK which has it, while remaining compilable
+ * and runnable on JDK 8, where the tuning parameters are ignored.
+ *
+ * @author agent
+ */
+final class ForkJoinPools {
+
+    private static final Constructor<ForkJoinPool> EXTENDED_CONSTRUCTOR = findExtendedConstructor();
+    private static volatile boolean warned;
+
+    private ForkJoinPools() {
+        throw new AssertionError();
+    }
+
+    private static Constructor<ForkJoinPool> findExtendedConstructor() {
+        try {
+            return ForkJoinPool.class.getConstructor(int.class,
+                    ForkJoinPool.ForkJoinWorkerThreadFactory.class,
+                    Thread.UncaughtExceptionHandler.class, boolean.class,
+                    int.class, int.class, int.class, Predicate.class,
+                    long.class, TimeUnit.class);
+        } catch (NoSuchMethodException | SecurityException ex) {
+            return null;
+        }
+    }
+
+    static boolean isTuningSupported() {
+        return EXTENDED_CONSTRUCTOR != null;
+    }
+
+    /**
+     * Create a fork join pool. Negative values for any of the tuning
+     * parameters mean use the JDK's default for it.
+     *
+     * @throws ConfigurationError if the keep-alive is zero, or the maximum
+     * pool size is smaller than the parallelism or the core pool size
+     */
+    static ForkJoinPool create(String name, int parallelism, ForkJoinPool.ForkJoinWorkerThreadFactory factory,
+            Thread.UncaughtExceptionHandler handler, boolean asyncMode, int corePoolSize,
+            int maximumPoolSize, int minimumRunnable, Predicate<? super ForkJoinPool> saturate,
+            long keepAliveMillis) {
+        boolean tuned = corePoolSize >= 0 || maximumPoolSize >= 0 || minimumRunnable >= 0
+                || saturate != null || keepAliveMillis >= 0;
+        if (!tuned) {
+            return new ForkJoinPool(parallelism, factory, handler, asyncMode);
+        }
+        validate(name, parallelism, corePoolSize, maximumPoolSize, keepAliveMillis);
+        if (EXTENDED_CONSTRUCTOR == null) {
+            if (!warned) {
+                warned = true;
+                System.err.println("Fork join pool " + name + " specifies core/max pool size, minimum runnable, "
+                        + "saturation or keep-alive parameters, but this JVM's ForkJoinPool does not support "
+                        + "them. Ignoring them.");
+            }
+            return new ForkJoinPool(parallelism, factory, handler, asyncMode);
+        }
+        // Defaults as documented in ForkJoinPool's javadoc
+        int core = corePoolSize < 0 ? parallelism : corePoolSize;
+        int max = maximumPoolSize < 0 ? parallelism + 256 : maximumPoolSize;
+        int minRunnable = minimumRunnable < 0 ? 1 : minimumRunnable;
+        long keepAlive = keepAliveMillis < 0 ? 60_000 : keepAliveMillis;
+        try {
+            return EXTENDED_CONSTRUCTOR.newInstance(parallelism, factory, handler, asyncMode, core,
+                    max, minRunnable, saturate, keepAlive, TimeUnit.MILLISECONDS);
+        } catch (InvocationTargetException ex) {
+            return Exceptions.chuck(ex.getCause() == null ? ex : ex.getCause());
+        } catch (InstantiationException | IllegalAccessException ex) {
+            return Exceptions.chuck(ex);
+        }
+    }
+
+    static void validate(String name, int parallelism, int corePoolSize, int maximumPoolSize,
+            long keepAliveMillis) {
+        if (keepAliveMillis == 0) {
+            throw new ConfigurationError("Fork join pool " + name + " has a keep-alive of 0 ms; "
+                    + "use a positive value, or a negative one for the default");
+        }
+        if (maximumPoolSize >= 0 && maximumPoolSize < parallelism) {
+            throw new ConfigurationError("Fork join pool " + name + " has a maximum pool size of "
+                    + maximumPoolSize + ", which is less than its parallelism of " + parallelism);
+        }
+        if (maximumPoolSize >= 0 && corePoolSize > maximumPoolSize) {
+            throw new ConfigurationError("Fork join pool " + name + " has a core pool size of "
+                    + corePoolSize + ", which is greater than its maximum pool size of "
+                    + maximumPoolSize);
+        }
+    }
+}
@@ -45,9 +45,11 @@ final class GiuliusThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoin
     private final Provider<Settings> settings;
     private final ConventionalThreadSupplier supplier;
     private final int stackSize;
+    private final ThreadAffinityPolicy affinity;
 
     GiuliusThreadFactory(String name, Provider<Thread.UncaughtExceptionHandler> app, int priority,
-            Provider<Settings> settings, ConventionalThreadSupplier supplier, int stackSize) {
+            Provider<Settings> settings, ConventionalThreadSupplier supplier, int stackSize,
+            ThreadAffinityPolicy affinity) {
         this.name = name;
         this.uncaught = app;
         tg = new ThreadGroup(Thread.currentThread().getThreadGroup(), name + "s");
@@ -65,6 +67,7 @@ final class GiuliusThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoin
         this.settings = settings;
         this.supplier = supplier == null ? ConventionalThreadSupplier.DEFAULT : supplier;
         this.stackSize = stackSize;
+        this.affinity = affinity;
     }
 
     ThreadGroup threadGroup() {
@@ -80,6 +83,9 @@ final class GiuliusThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoin
     public Thread newThread(Runnable r) {
         int index = count.getAndIncrement();
         String threadName = name + "-" + index;
+        if (affinity != null) {
+            r = new AffinityRunnable(r, index);
+        }
         Thread t = supplier.newThread(tg, r, settings.get(), stackSize, name, threadName);
         t.setPriority(settings.get().getInt(name + ".priority", priority));
         t.setUncaughtExceptionHandler(uncaught.get());
@@ -94,11 +100,11 @@ final class GiuliusThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoin
 
     @Override
     public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
-        FWT t = new FWT(pool, tg);
-        t.setPriority(priority);
+        int index = count.getAndIncrement();
+        FWT t = new FWT(pool, tg, index);
+        t.setPriority(settings.get().getInt(name + ".priority", priority));
         t.setUncaughtExceptionHandler(uncaught.get());
-        String nm = name + "-" + count.getAndIncrement();
-        t.setName(nm);
+        t.setName(name + "-" + index);
         return t;
     }
 
@@ -108,10 +114,56 @@ final class GiuliusThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoin
         return lt == null ? null : lt.get();
     }
 
-    static class FWT extends java.util.concurrent.ForkJoinWorkerThread {
+    private final class AffinityRunnable implements Runnable {
 
-        public FWT(ForkJoinPool pool, ThreadGroup group) {
+        private final Runnable delegate;
+        private final int index;
+
+        AffinityRunnable(Runnable delegate, int index) {
+            this.delegate = delegate;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            affinity.onThreadStart(Thread.currentThread(), name, index, settings.get());
+            delegate.run();
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    /**
+     * Fork join worker thread. Prior to JDK 19 there is no way to pass a
+     * thread group to a ForkJoinWorkerThread, so the workers belong to the
+     * group of whatever thread caused the pool to create them; the group
+     * bound for the pool is retained and exposed here so code that needs to
+     * identify a pool's threads can still do so.
+     */
+    final class FWT extends java.util.concurrent.ForkJoinWorkerThread {
+
+        private final ThreadGroup group;
+        private final int index;
+
+        FWT(ForkJoinPool pool, ThreadGroup group, int index) {
             super(pool);
+            this.group = group;
+            this.index = index;
+        }
+
+        ThreadGroup poolThreadGroup() {
+            return group;
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            if (affinity != null) {
+                affinity.onThreadStart(this, name, index, settings.get());
+            }
         }
     }
 }
@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+/**
+ * Notified when a task submitted to a {@link DeadlineExecutorService} misses
+ * a deadline. Called on the pool's timer thread or on a pool thread, so
+ * implementations should be quick.
+ *
+ * @author agent
+ */
+public interface TaskDeadlineListener {
+
+    /**
+     * Called when a task is dropped because it did not start within its
+     * start deadline; it will not be run.
+     *
+     * @param task The Runnable or Callable originally submitted
+     * @param waitedNanos How long it had been waiting
+     */
+    default void onExpiredBeforeStart(Object task, long waitedNanos) {
+        // do nothing
+    }
+
+    /**
+     * Called when a running task is cancelled and interrupted because it
+     * exceeded its run deadline.
+     *
+     * @param task The Runnable or Callable originally submitted
+     * @param ranNanos How long it had been running
+     */
+    default void onOverrun(Object task, long ranNanos) {
+        // do nothing
+    }
+}
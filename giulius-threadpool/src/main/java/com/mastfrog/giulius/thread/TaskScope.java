@@ -0,0 +1,430 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import static com.mastfrog.util.preconditions.Checks.notNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A scope for fanning out a set of subtasks to a thread pool and waiting for
+ * them as a unit, in the style of structured concurrency: subtasks are forked
+ * within the scope, the owner calls <code>join()</code>, and closing the scope
+ * cancels anything still running, so no subtask outlives the code that
+ * started it.
+ * <p>
+ * In {@link Mode#FAIL_FAST} mode, the first subtask to fail cancels (and
+ * interrupts) all of its siblings and causes <code>join()</code> to return
+ * immediately; in {@link Mode#ALL_COMPLETE} mode, <code>join()</code> waits for
+ * every subtask regardless of failures. If the scope has a deadline and it
+ * passes before <code>join()</code> completes, remaining subtasks are
+ * cancelled and a TimeoutException is thrown.
+ * <p>
+ * Each subtask records how long it waited in the pool's queue and how long it
+ * ran, which is usually the quickest way to find what is driving the tail
+ * latency of a fan-out request.
+ * <p>
+ * Obtain instances from a {@link TaskScopeFactory}, which ThreadModule binds
+ * under the same name as each pool. Typical usage:
+ * <pre>
+ * try (TaskScope scope = scopes.open(TaskScope.Mode.FAIL_FAST, Duration.ofMillis(200))) {
+ *     TaskScope.Subtask&lt;User&gt; user = scope.fork("user", () -&gt; loadUser(id));
+ *     TaskScope.Subtask&lt;List&lt;Order&gt;&gt; orders = scope.fork("orders", () -&gt; loadOrders(id));
+ *     scope.join().throwIfFailed();
+ *     return new Page(user.get(), orders.get());
+ * }
+ * </pre>
+ * Instances are intended to be used by a single owner thread.
+ *
+ * @author agent
+ */
+public final class TaskScope implements AutoCloseable {
+
+    /**
+     * How a scope reacts to a failed subtask.
+     */
+    public enum Mode {
+        /**
+         * Cancel all other subtasks as soon as one fails.
+         */
+        FAIL_FAST,
+        /**
+         * Wait for all subtasks to complete, successfully or not.
+         */
+        ALL_COMPLETE
+    }
+
+    /**
+     * The state of a subtask.
+     */
+    public enum SubtaskState {
+        /**
+         * Not yet completed.
+         */
+        UNAVAILABLE,
+        /**
+         * Completed with a result.
+         */
+        SUCCESS,
+        /**
+         * Completed by throwing an exception.
+         */
+        FAILED,
+        /**
+         * Cancelled because the scope was shut down, failed fast, timed
+         * out or was closed.
+         */
+        CANCELLED
+    }
+
+    private final Object lock = new Object();
+    private final String name;
+    private final Executor executor;
+    private final Mode mode;
+    private final long deadline;
+    private final boolean hasDeadline;
+    private final List<Subtask<?>> subtasks = new ArrayList<>();
+    private int running;
+    private boolean shutdown;
+    private boolean closed;
+    private Throwable firstFailure;
+
+    TaskScope(String name, Executor executor, Mode mode, long timeoutNanos) {
+        this.name = name;
+        this.executor = executor;
+        this.mode = mode;
+        this.hasDeadline = timeoutNanos > 0;
+        this.deadline = hasDeadline ? System.nanoTime() + timeoutNanos : 0;
+    }
+
+    /**
+     * Start a subtask.
+     *
+     * @param <T> The result type
+     * @param task The work
+     * @return A subtask whose result is available after join()
+     */
+    public <T> Subtask<T> fork(Callable<T> task) {
+        return fork(null, task);
+    }
+
+    /**
+     * Start a named subtask; the name appears in its toString() and is
+     * useful when logging timings.
+     *
+     * @param <T> The result type
+     * @param name The name, or null
+     * @param task The work
+     * @return A subtask whose result is available after join()
+     */
+    public <T> Subtask<T> fork(String name, Callable<T> task) {
+        Subtask<T> result = new Subtask<>(name, notNull("task", task));
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Scope " + this.name + " is closed");
+            }
+            subtasks.add(result);
+            running++;
+            if (shutdown) {
+                result.task.cancel(false);
+                return result;
+            }
+        }
+        try {
+            executor.execute(result.task);
+        } catch (RejectedExecutionException ex) {
+            result.task.fail(ex);
+        }
+        return result;
+    }
+
+    /**
+     * Wait for subtasks to complete (or, in FAIL_FAST mode, for the first
+     * failure).
+     *
+     * @return this
+     * @throws InterruptedException If interrupted
+     * @throws TimeoutException If the scope's deadline passes first, in which
+     * case remaining subtasks are cancelled
+     */
+    public TaskScope join() throws InterruptedException, TimeoutException {
+        synchronized (lock) {
+            while (running > 0 && !shutdown) {
+                if (hasDeadline) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        int incomplete = running;
+                        shutdownLocked();
+                        throw new TimeoutException("Scope " + name + " timed out with "
+                                + incomplete + " subtasks incomplete");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                } else {
+                    lock.wait();
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Throw an ExecutionException wrapping the first subtask failure, if
+     * any.
+     *
+     * @return this
+     * @throws ExecutionException If a subtask failed
+     */
+    public TaskScope throwIfFailed() throws ExecutionException {
+        Throwable failure;
+        synchronized (lock) {
+            failure = firstFailure;
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return this;
+    }
+
+    /**
+     * Cancel all incomplete subtasks; subsequently forked subtasks are
+     * cancelled immediately.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdownLocked();
+        }
+    }
+
+    private void shutdownLocked() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        // Cancelling calls back into onDone() on this thread; copy to avoid
+        // modifying the list while iterating it
+        for (Subtask<?> sub : new ArrayList<>(subtasks)) {
+            sub.task.cancel(true);
+        }
+        lock.notifyAll();
+    }
+
+    /**
+     * Get the subtasks forked so far, in order of forking.
+     *
+     * @return A list of subtasks
+     */
+    public List<Subtask<?>> subtasks() {
+        synchronized (lock) {
+            return Collections.unmodifiableList(new ArrayList<>(subtasks));
+        }
+    }
+
+    /**
+     * Cancel any subtasks which are still running and prevent new ones from
+     * being forked. Subtasks which do not respond to interruption may
+     * continue running in the pool after this method returns.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            shutdownLocked();
+        }
+    }
+
+    private void onDone(Subtask<?> sub) {
+        synchronized (lock) {
+            running--;
+            Throwable failure = sub.exception();
+            if (failure != null && firstFailure == null) {
+                firstFailure = failure;
+                if (mode == Mode.FAIL_FAST) {
+                    shutdownLocked();
+                }
+            }
+            if (running <= 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("TaskScope(").append(name).append(' ').append(mode);
+        for (Subtask<?> sub : subtasks()) {
+            sb.append(", ").append(sub);
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * One subtask of a scope.
+     *
+     * @param <T> The result type
+     */
+    public final class Subtask<T> {
+
+        private final String name;
+        private final Task task;
+        private final long forkedAt = System.nanoTime();
+        private volatile long startedAt;
+        private volatile long finishedAt;
+
+        Subtask(String name, Callable<T> work) {
+            this.name = name;
+            this.task = new Task(() -> {
+                startedAt = System.nanoTime();
+                return work.call();
+            });
+        }
+
+        /**
+         * Get the name passed when forking, if any.
+         *
+         * @return The name or null
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Get the current state.
+         *
+         * @return The state
+         */
+        public SubtaskState state() {
+            if (!task.isDone()) {
+                return SubtaskState.UNAVAILABLE;
+            }
+            if (task.isCancelled()) {
+                return SubtaskState.CANCELLED;
+            }
+            return exception() == null ? SubtaskState.SUCCESS : SubtaskState.FAILED;
+        }
+
+        /**
+         * Get the result.
+         *
+         * @return The result
+         * @throws IllegalStateException if the state is not SUCCESS
+         */
+        public T get() {
+            if (!task.isDone() || task.isCancelled()) {
+                throw new IllegalStateException(this + " has no result");
+            }
+            try {
+                return task.get();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(this + " failed", ex.getCause());
+            } catch (InterruptedException ex) {
+                // cannot happen - the task is done
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        /**
+         * Get the exception thrown by the subtask, if it failed.
+         *
+         * @return An exception or null
+         */
+        public Throwable exception() {
+            if (!task.isDone() || task.isCancelled()) {
+                return null;
+            }
+            try {
+                task.get();
+                return null;
+            } catch (ExecutionException ex) {
+                return ex.getCause();
+            } catch (InterruptedException | CancellationException ex) {
+                return null;
+            }
+        }
+
+        /**
+         * Get the time between forking and the subtask starting to run on a
+         * pool thread.
+         *
+         * @return Nanoseconds, or -1 if it has not started
+         */
+        public long queuedNanos() {
+            long start = startedAt;
+            return start == 0 ? -1 : start - forkedAt;
+        }
+
+        /**
+         * Get the time the subtask spent running.
+         *
+         * @return Nanoseconds, or -1 if it has not started and finished
+         */
+        public long runNanos() {
+            long start = startedAt;
+            long end = finishedAt;
+            return start == 0 || end == 0 ? -1 : end - start;
+        }
+
+        /**
+         * Get the total time between forking and completion.
+         *
+         * @return Nanoseconds, or -1 if it has not completed
+         */
+        public long elapsedNanos() {
+            long end = finishedAt;
+            return end == 0 ? -1 : end - forkedAt;
+        }
+
+        @Override
+        public String toString() {
+            return (name == null ? "subtask" : name) + ":" + state()
+                    + " queued=" + TimeUnit.NANOSECONDS.toMicros(queuedNanos())
+                    + "us run=" + TimeUnit.NANOSECONDS.toMicros(runNanos()) + "us";
+        }
+
+        private final class Task extends FutureTask<T> {
+
+            Task(Callable<T> callable) {
+                super(callable);
+            }
+
+            void fail(Throwable t) {
+                setException(t);
+            }
+
+            @Override
+            protected void done() {
+                finishedAt = System.nanoTime();
+                onDone(Subtask.this);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import com.google.inject.Provider;
+import com.google.inject.util.Providers;
+import static com.mastfrog.util.preconditions.Checks.notNull;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * Creates {@link TaskScope}s which run their subtasks on a particular thread
+ * pool. ThreadModule binds one of these for every pool it binds, under the
+ * same name, so code can inject e.g.
+ * <code>&#064;Named("background") TaskScopeFactory</code>.
+ * <p>
+ * Scopes can also be created over an arbitrary Executor using
+ * <code>forExecutor()</code> - for example, on JDK 21 and later, one which
+ * creates a virtual thread per task.
+ *
+ * @author agent
+ */
+public final class TaskScopeFactory {
+
+    private final String name;
+    private final Provider<? extends Executor> executor;
+
+    TaskScopeFactory(String name, Provider<? extends Executor> executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    /**
+     * Create a factory for scopes which run subtasks on the passed executor.
+     *
+     * @param name A name used in error messages and toString()
+     * @param executor The executor
+     * @return A factory
+     */
+    public static TaskScopeFactory forExecutor(String name, Executor executor) {
+        return new TaskScopeFactory(notNull("name", name), Providers.of(notNull("executor", executor)));
+    }
+
+    /**
+     * Open a scope with no deadline.
+     *
+     * @param mode The failure handling mode
+     * @return A scope
+     */
+    public TaskScope open(TaskScope.Mode mode) {
+        return new TaskScope(name, executor.get(), notNull("mode", mode), 0);
+    }
+
+    /**
+     * Open a scope whose join() fails with a TimeoutException, cancelling
+     * remaining subtasks, if they have not completed within the passed
+     * timeout of the scope being opened.
+     *
+     * @param mode The failure handling mode
+     * @param timeout The timeout
+     * @return A scope
+     */
+    public TaskScope open(TaskScope.Mode mode, Duration timeout) {
+        return new TaskScope(name, executor.get(), notNull("mode", mode),
+                Math.max(1, notNull("timeout", timeout).toNanos()));
+    }
+
+    /**
+     * Convenience method for <code>open(TaskScope.Mode.FAIL_FAST)</code>.
+     *
+     * @return A scope
+     */
+    public TaskScope failFast() {
+        return open(TaskScope.Mode.FAIL_FAST);
+    }
+
+    /**
+     * Convenience method for <code>open(TaskScope.Mode.ALL_COMPLETE)</code>.
+     *
+     * @return A scope
+     */
+    public TaskScope allComplete() {
+        return open(TaskScope.Mode.ALL_COMPLETE);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskScopeFactory(" + name + ")";
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.preconditions.ConfigurationError;
+import java.util.BitSet;
+
+/**
+ * Called on each newly started thread of a pool, <i>on that thread</i>, before
+ * it runs any work, so that it can be pinned to a set of CPUs or otherwise
+ * tuned - for example, to keep latency-critical pools off the cores used by
+ * batch pools on the same host. The JDK has no API for CPU affinity, so this
+ * allows that sort of customization (e.g. using OpenHFT's Java-Thread-Affinity)
+ * without this library having a dependency on such classes.
+ * <p>
+ * Applies to both conventional and fork-join pools.
+ *
+ * @author agent
+ */
+public interface ThreadAffinityPolicy {
+
+    /**
+     * Called on a pool thread when it starts.
+     *
+     * @param thread The thread, which is the current thread
+     * @param bindingName The binding name of the pool
+     * @param index The index of the thread within the pool, in order of
+     * creation
+     * @param settings The settings, which can be used to look up per-pool
+     * configuration
+     */
+    void onThreadStart(Thread thread, String bindingName, int index, Settings settings);
+
+    /**
+     * Parse the CPU set configured for a pool in settings as
+     * <code>$BINDING_NAME.cpus</code>, in the form <code>0-3,6,8-9</code>.
+     *
+     * @param settings The settings
+     * @param bindingName The binding name
+     * @return A set of CPU indices, or null if none is configured
+     * @throws ConfigurationError if the setting cannot be parsed
+     */
+    default BitSet cpuSet(Settings settings, String bindingName) {
+        String spec = settings.getString(bindingName + ".cpus");
+        if (spec == null || spec.trim().isEmpty()) {
+            return null;
+        }
+        BitSet result = new BitSet();
+        for (String part : spec.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            try {
+                int dash = part.indexOf('-');
+                if (dash > 0) {
+                    int start = Integer.parseInt(part.substring(0, dash).trim());
+                    int end = Integer.parseInt(part.substring(dash + 1).trim());
+                    if (end < start) {
+                        throw new ConfigurationError("Bad CPU range '" + part + "' in "
+                                + bindingName + ".cpus=" + spec);
+                    }
+                    result.set(start, end + 1);
+                } else {
+                    result.set(Integer.parseInt(part));
+                }
+            } catch (IndexOutOfBoundsException | NumberFormatException ex) {
+                throw new ConfigurationError("Bad CPU '" + part + "' in "
+                        + bindingName + ".cpus=" + spec);
+            }
+        }
+        return result;
+    }
+}
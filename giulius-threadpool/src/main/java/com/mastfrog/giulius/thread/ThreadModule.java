@@ -28,6 +28,7 @@ import com.google.inject.Binder;
 import com.google.inject.Module;
 import com.google.inject.Provider;
 import com.google.inject.name.Names;
+import com.google.inject.util.Providers;
 import static com.mastfrog.giulius.thread.ThreadPoolType.FORK_JOIN;
 import com.mastfrog.giulius.ShutdownHookRegistry;
 import com.mastfrog.settings.Settings;
@@ -58,20 +59,28 @@ import java.util.concurrent.ThreadFactory;
  * collected. This is only useful for the case of single-thread pools where
  * under some circumstances you want to interrupt the one thread in the pool.
  * Always inject a Provider&lt;Thread&gt; to use that, not an instance (which
- * will be null if the thread is not started), and do a null check.
+ * will be null if the thread is not started), and do a null check. A
+ * {@link TaskScopeFactory} is also bound under the binding name, for running
+ * groups of subtasks on the pool with structured cancellation. If task
+ * deadlines are configured, the pool is also bound as a
+ * {@link DeadlineExecutorService}.
  * <p>
  * Created ExecutorServices are automatically registered with
  * ShutdownHookRegistry so that they will be cleanly shut down in the event
  * Dependencies.shutdown() is called.
  * <p>
  * Limitations: ForkJoinPools offer less flexibility, so some features (thread
- * group, stack size) are not supported for them.
+ * group, stack size) are not supported for them. The core / maximum pool size,
+ * minimum runnable, saturation and keep-alive parameters of ForkJoinPool are
+ * only honored on JDK 9 and later.
  *
  * @author Tim Boudreau
  */
 public class ThreadModule extends AbstractModule {
 
     private final List<ExecutorServiceBuilderImpl> modules = new ArrayList<>();
+    private final List<ContextPropagator<?>> propagators = new ArrayList<>();
+    private final List<Class<? extends ContextPropagator<?>>> propagatorTypes = new ArrayList<>();
 
     @Override
     protected void configure() {
@@ -80,6 +89,31 @@ public class ThreadModule extends AbstractModule {
         });
     }
 
+    /**
+     * Add a ContextPropagator which will be applied to tasks submitted to all
+     * executors bound by this module, so thread-local state such as trace ids
+     * is carried from the submitting thread to the pool thread.
+     *
+     * @param propagator A propagator
+     * @return this
+     */
+    public ThreadModule withContextPropagator(ContextPropagator<?> propagator) {
+        propagators.add(notNull("propagator", propagator));
+        return this;
+    }
+
+    /**
+     * Add a ContextPropagator, instantiated by Guice, which will be applied
+     * to tasks submitted to all executors bound by this module.
+     *
+     * @param propagatorType A propagator type
+     * @return this
+     */
+    public ThreadModule withContextPropagator(Class<? extends ContextPropagator<?>> propagatorType) {
+        propagatorTypes.add(notNull("propagatorType", propagatorType));
+        return this;
+    }
+
     /**
      * Create a new ExecutorServiceBuilder.
      *
@@ -118,7 +152,7 @@ public class ThreadModule extends AbstractModule {
             Provider<UncaughtExceptionHandler> ueh = this.handler == null ? binder.getProvider(UncaughtExceptionHandler.class) : this.handler;
             Provider<Settings> settings = binder.getProvider(Settings.class);
 
-            GiuliusThreadFactory threadFactory = new GiuliusThreadFactory(bindingName, ueh, priority, settings, supplier, stackSize);
+            GiuliusThreadFactory threadFactory = new GiuliusThreadFactory(bindingName, ueh, priority, settings, supplier, stackSize, affinity);
             binder.bind(ThreadGroup.class).annotatedWith(Names.named(bindingName)).toInstance(threadFactory.tg);
             ThreadCount threadCount = new ThreadCount(binder.getProvider(Settings.class),
                     defaultThreadCount, explicitThreadCount, bindingName);
@@ -131,30 +165,50 @@ public class ThreadModule extends AbstractModule {
             }
             binder.bind(ThreadFactory.class).annotatedWith(Names.named(bindingName))
                     .toInstance(threadFactory);
-            if (type != ThreadPoolType.SCHEDULED) {
-                Provider<ExecutorService> exeProvider = new ExecutorServiceProvider<>(threadFactory,
-                        threadCount, settings, ueh, type, shutdown);
+            List<Provider<? extends ContextPropagator<?>>> propagatorProviders = new ArrayList<>();
+            ThreadModule.this.propagators.forEach(p -> propagatorProviders.add(Providers.of(p)));
+            propagatorTypes.forEach(t -> propagatorProviders.add(binder.getProvider(t)));
+            this.propagators.forEach(p -> propagatorProviders.add(Providers.of(p)));
+            Provider<ContextPropagation> propagation = new ContextPropagationProvider(propagatorProviders);
+            if (type == null || !type.isScheduled()) {
+                ExecutorServiceProvider<ExecutorService> exeProvider = new ExecutorServiceProvider<>(threadFactory,
+                        threadCount, settings, ueh, type, shutdown, this, propagation);
                 bindOne(binder, ExecutorService.class, bindingName, exeProvider);
                 bindOne(binder, Executor.class, bindingName, exeProvider);
                 bindOne(binder, Thread.class, bindingName, threadFactory);
+                bindTaskScopes(binder, exeProvider);
+                if (deadlines) {
+                    Provider<DeadlineExecutorService> deadlineProvider
+                            = () -> (DeadlineExecutorService) exeProvider.get();
+                    bindOne(binder, DeadlineExecutorService.class, bindingName, deadlineProvider);
+                    if (legacyName != null) {
+                        bindOne(binder, DeadlineExecutorService.class, legacyName, deadlineProvider);
+                    }
+                }
                 if (legacyName != null) {
                     bindOne(binder, ExecutorService.class, legacyName, exeProvider);
                     bindOne(binder, Executor.class, legacyName, exeProvider);
                     bindOne(binder, Thread.class, legacyName, threadFactory);
                 }
                 if (type == FORK_JOIN) {
-                    bindOne(binder, ForkJoinPool.class, bindingName, (Provider) exeProvider);
+                    Provider<ForkJoinPool> fjProvider = exeProvider.forkJoinPoolProvider();
+                    bindOne(binder, ForkJoinPool.class, bindingName, fjProvider);
                     if (legacyName != null) {
-                        bindOne(binder, ForkJoinPool.class, legacyName, (Provider) exeProvider);
+                        bindOne(binder, ForkJoinPool.class, legacyName, fjProvider);
                     }
                 }
             } else {
+                if (deadlines) {
+                    throw new ConfigurationError("Task deadlines are not supported for "
+                            + type + " pools, but requested for " + bindingName);
+                }
                 Provider<ScheduledExecutorService> exeProvider = new ExecutorServiceProvider<>(threadFactory,
-                        threadCount, settings, ueh, type, shutdown);
+                        threadCount, settings, ueh, type, shutdown, this, propagation);
                 bindOne(binder, ScheduledExecutorService.class, bindingName, exeProvider);
                 bindOne(binder, ExecutorService.class, bindingName, exeProvider);
                 bindOne(binder, Executor.class, bindingName, exeProvider);
                 bindOne(binder, Thread.class, bindingName, threadFactory);
+                bindTaskScopes(binder, exeProvider);
                 if (legacyName != null) {
                     bindOne(binder, ScheduledExecutorService.class, legacyName, exeProvider);
                     bindOne(binder, ExecutorService.class, legacyName, exeProvider);
@@ -164,6 +218,14 @@ public class ThreadModule extends AbstractModule {
             }
         }
 
+        private void bindTaskScopes(Binder binder, Provider<? extends Executor> exeProvider) {
+            TaskScopeFactory scopes = new TaskScopeFactory(bindingName, exeProvider);
+            binder.bind(TaskScopeFactory.class).annotatedWith(Names.named(bindingName)).toInstance(scopes);
+            if (legacyName != null) {
+                binder.bind(TaskScopeFactory.class).annotatedWith(Names.named(legacyName)).toInstance(scopes);
+            }
+        }
+
         private <T> void bindOne(Binder binder, Class<? super T> type, String name, Provider<T> provider) {
             if (eager) {
                 binder.bind(type).annotatedWith(Names.named(name)).toProvider(provider).asEagerSingleton();
@@ -172,4 +234,22 @@ public class ThreadModule extends AbstractModule {
             }
         }
     }
+
+    private static final class ContextPropagationProvider implements Provider<ContextPropagation> {
+
+        private final List<Provider<? extends ContextPropagator<?>>> providers;
+
+        ContextPropagationProvider(List<Provider<? extends ContextPropagator<?>>> providers) {
+            this.providers = providers;
+        }
+
+        @Override
+        public ContextPropagation get() {
+            ContextPropagator<?>[] result = new ContextPropagator<?>[providers.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = providers.get(i).get();
+            }
+            return new ContextPropagation(result);
+        }
+    }
 }
@@ -31,17 +31,38 @@ public enum ThreadPoolType {
      * The standard thread pool returned by
      * <code>Executors.newCachedThreadPool()</code> .
      */
-    STANDARD, /**
+    STANDARD,
+    /**
      * Create a fork-join pool.
      */
-    FORK_JOIN, /**
+    FORK_JOIN,
+    /**
      * Create a work-stealing pool (a fork join pool with its async parameter
      * set to true)..
      */
-    WORK_STEALING, /**
+    WORK_STEALING,
+    /**
      * Create a scheduled executor service and bind ScheduledExecutorService for
      * it, in addition to ExecutorService and Executor.
      */
-    SCHEDULED
+    SCHEDULED,
+    /**
+     * Create a scheduled executor service backed by a hashed timing wheel
+     * rather than a priority queue, and bind ScheduledExecutorService for it,
+     * in addition to ExecutorService and Executor. Scheduling and cancelling
+     * are O(1), which makes this the better choice for very large numbers of
+     * short timeouts which are usually cancelled before they fire (request
+     * deadlines and similar); the trade-off is that delays are only honored to
+     * the resolution of the wheel's tick duration.
+     */
+    TIMING_WHEEL;
 
+    /**
+     * Determine if this type results in a ScheduledExecutorService binding.
+     *
+     * @return true if it is a scheduled type
+     */
+    boolean isScheduled() {
+        return this == SCHEDULED || this == TIMING_WHEEL;
+    }
 }
@@ -0,0 +1,432 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ScheduledExecutorService backed by a hashed timing wheel, for the case of
+ * very large numbers of short delays which are mostly cancelled before they
+ * fire, where the O(log n) insertion and removal cost of the priority queue
+ * inside ScheduledThreadPoolExecutor dominates.
+ * <p>
+ * A single ticker thread owns the wheel; submitting and cancelling only touch
+ * lock-free queues, which the ticker drains once per tick. Expired tasks are
+ * handed off to a pool of worker threads, so a slow task cannot delay the
+ * wheel. Delays are honored to the resolution of the tick - a task may run up
+ * to one tick later than requested, never earlier.
+ * <p>
+ * On shutdown, delayed tasks which have not yet fired are cancelled (the
+ * equivalent of setting ScheduledThreadPoolExecutor's
+ * executeExistingDelayedTasksAfterShutdown policy to false), and tasks already
+ * handed to the workers are allowed to complete.
+ *
+ * @author agent
+ */
+final class TimingWheelExecutorService extends AbstractExecutorService implements ScheduledExecutorService {
+
+    static final long DEFAULT_TICK_MILLIS = 10;
+    static final int DEFAULT_WHEEL_SIZE = 512;
+    private static final long MIN_TICK_NANOS = MILLISECONDS.toNanos(1);
+    private static final long MAX_DELAY_NANOS = Long.MAX_VALUE / 4;
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+    private final ExecutorService workers;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<WheelTask<?>> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTask<?>> cancelled = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch tickerExited = new CountDownLatch(1);
+    private final long startTime;
+    private final Thread ticker;
+    private volatile boolean shutdown;
+    private long tick; // only touched by the ticker thread
+
+    TimingWheelExecutorService(ThreadFactory threadFactory, int threads, long tickDuration, TimeUnit unit, int wheelSize) {
+        this.tickNanos = Math.max(MIN_TICK_NANOS, unit.toNanos(tickDuration));
+        int size = wheelSizeFor(wheelSize);
+        wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = size - 1;
+        workers = threads <= 1 ? Executors.newSingleThreadExecutor(threadFactory)
+                : Executors.newFixedThreadPool(threads, threadFactory);
+        startTime = System.nanoTime();
+        ticker = threadFactory.newThread(this::runTicker);
+        ticker.setName(ticker.getName() + "-wheel");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    private static int wheelSizeFor(int requested) {
+        if (requested <= 0) {
+            return DEFAULT_WHEEL_SIZE;
+        }
+        if (requested > 1 << 20) {
+            throw new IllegalArgumentException("Wheel size too large: " + requested);
+        }
+        int result = 1;
+        while (result < requested) {
+            result <<= 1;
+        }
+        return result;
+    }
+
+    long tickNanos() {
+        return tickNanos;
+    }
+
+    int wheelSize() {
+        return wheel.length;
+    }
+
+    private long now() {
+        return System.nanoTime() - startTime;
+    }
+
+    private void runTicker() {
+        try {
+            while (!shutdown) {
+                long now = awaitTick(tickNanos * (tick + 1));
+                if (now < 0) {
+                    break;
+                }
+                removeCancelled();
+                transferPending();
+                expire(wheel[(int) (tick & mask)]);
+                tick++;
+            }
+        } finally {
+            for (Bucket bucket : wheel) {
+                bucket.cancelAll();
+            }
+            WheelTask<?> t;
+            while ((t = pending.poll()) != null) {
+                t.cancelNoEnqueue();
+            }
+            cancelled.clear();
+            workers.shutdown();
+            tickerExited.countDown();
+        }
+    }
+
+    private long awaitTick(long deadline) {
+        long remaining = deadline - now();
+        while (remaining > 0) {
+            LockSupport.parkNanos(this, remaining);
+            if (shutdown) {
+                return -1;
+            }
+            remaining = deadline - now();
+        }
+        return now();
+    }
+
+    private void removeCancelled() {
+        WheelTask<?> t;
+        while ((t = cancelled.poll()) != null) {
+            if (t.bucket != null) {
+                t.bucket.remove(t);
+            }
+        }
+    }
+
+    private void transferPending() {
+        // Bound the work done in a single tick so a flood of submissions
+        // cannot starve expiry
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            WheelTask<?> t = pending.poll();
+            if (t == null) {
+                break;
+            }
+            if (t.isCancelled()) {
+                continue;
+            }
+            long targetTick = t.deadline / tickNanos;
+            t.remainingRounds = (targetTick - tick) / wheel.length;
+            wheel[(int) (Math.max(targetTick, tick) & mask)].add(t);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        WheelTask<?> t = bucket.head;
+        while (t != null) {
+            WheelTask<?> next = t.next;
+            if (t.isCancelled()) {
+                bucket.remove(t);
+            } else if (t.remainingRounds <= 0) {
+                bucket.remove(t);
+                dispatch(t);
+            } else {
+                t.remainingRounds--;
+            }
+            t = next;
+        }
+    }
+
+    private void dispatch(WheelTask<?> t) {
+        try {
+            workers.execute(t);
+        } catch (RejectedExecutionException ex) {
+            t.cancelNoEnqueue();
+        }
+    }
+
+    private <V> WheelTask<V> enqueue(WheelTask<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException(this + " is shut down");
+        }
+        if (task.deadline <= now()) {
+            workers.execute(task);
+        } else {
+            pending.add(task);
+            if (shutdown) {
+                pending.remove(task);
+                task.cancelNoEnqueue();
+            }
+        }
+        return task;
+    }
+
+    private long deadlineFor(long delay, TimeUnit unit) {
+        long nanos = Math.min(MAX_DELAY_NANOS, Math.max(0, unit.toNanos(delay)));
+        return now() + nanos;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return enqueue(new WheelTask<Void>(command, null, deadlineFor(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return enqueue(new WheelTask<>(callable, deadlineFor(delay, unit)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be > 0 but is " + period);
+        }
+        return enqueue(new WheelTask<Void>(command, null, deadlineFor(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Delay must be > 0 but is " + delay);
+        }
+        return enqueue(new WheelTask<Void>(command, null, deadlineFor(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException(this + " is shut down");
+        }
+        workers.execute(command);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(ticker);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        return workers.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return tickerExited.getCount() == 0 && workers.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!tickerExited.await(timeout, unit)) {
+            return false;
+        }
+        return workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "TimingWheelExecutorService(" + ticker.getName() + ", tick="
+                + NANOSECONDS.toMillis(tickNanos) + "ms, size=" + wheel.length + ")";
+    }
+
+    /**
+     * A doubly linked list of tasks which hash to one slot of the wheel; only
+     * ever touched by the ticker thread.
+     */
+    static final class Bucket {
+
+        WheelTask<?> head;
+        WheelTask<?> tail;
+
+        void add(WheelTask<?> t) {
+            t.bucket = this;
+            if (head == null) {
+                head = tail = t;
+            } else {
+                tail.next = t;
+                t.prev = tail;
+                tail = t;
+            }
+        }
+
+        void remove(WheelTask<?> t) {
+            if (t.bucket != this) {
+                return;
+            }
+            if (t.prev != null) {
+                t.prev.next = t.next;
+            } else {
+                head = t.next;
+            }
+            if (t.next != null) {
+                t.next.prev = t.prev;
+            } else {
+                tail = t.prev;
+            }
+            t.prev = t.next = null;
+            t.bucket = null;
+        }
+
+        void cancelAll() {
+            WheelTask<?> t = head;
+            while (t != null) {
+                WheelTask<?> next = t.next;
+                t.prev = t.next = null;
+                t.bucket = null;
+                t.cancelNoEnqueue();
+                t = next;
+            }
+            head = tail = null;
+        }
+    }
+
+    final class WheelTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        // Nanoseconds relative to startTime; > 0 = fixed rate, < 0 = fixed delay
+        private final long period;
+        volatile long deadline;
+        long remainingRounds;
+        WheelTask<?> prev;
+        WheelTask<?> next;
+        Bucket bucket;
+
+        WheelTask(Runnable runnable, V result, long deadline, long period) {
+            super(runnable, result);
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        WheelTask(Callable<V> callable, long deadline) {
+            super(callable);
+            this.deadline = deadline;
+            this.period = 0;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset()) {
+                deadline = period > 0 ? deadline + period : now() - period;
+                if (shutdown) {
+                    cancelNoEnqueue();
+                } else {
+                    pending.add(this);
+                    // The ticker may have drained pending between the check
+                    // above and the add, in which case nothing else will
+                    // ever cancel this task
+                    if (shutdown) {
+                        pending.remove(this);
+                        cancelNoEnqueue();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean result = super.cancel(mayInterruptIfRunning);
+            if (result && !shutdown) {
+                cancelled.add(this);
+            }
+            return result;
+        }
+
+        void cancelNoEnqueue() {
+            super.cancel(false);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - now(), NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o == this) {
+                return 0;
+            }
+            return Long.compare(getDelay(NANOSECONDS), o.getDelay(NANOSECONDS));
+        }
+    }
+}
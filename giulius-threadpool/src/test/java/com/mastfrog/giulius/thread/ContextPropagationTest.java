@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class ContextPropagationTest {
+
+    private static final ThreadLocal<String> TRACE_ID = new ThreadLocal<>();
+    private ExecutorService raw;
+    private ExecutorService exe;
+    private ContextPropagation propagation;
+
+    @Test
+    public void testContextIsCarriedAndRestored() throws Throwable {
+        TRACE_ID.set("abc");
+        try {
+            assertEquals("abc", exe.submit(TRACE_ID::get).get(10, SECONDS));
+        } finally {
+            TRACE_ID.remove();
+        }
+        assertNull("Pool thread not restored", raw.submit(TRACE_ID::get).get(10, SECONDS));
+    }
+
+    @Test
+    public void testNothingWrappedWithoutContext() throws Throwable {
+        Runnable r = () -> {
+        };
+        assertSame(r, propagation.wrap(r));
+        assertNull(exe.submit(TRACE_ID::get).get(10, SECONDS));
+    }
+
+    @Before
+    public void setup() {
+        propagation = new ContextPropagation(new ContextPropagator<?>[]{new TraceIdPropagator()});
+        raw = Executors.newSingleThreadExecutor();
+        exe = new ContextPropagatingExecutorService<>(raw, propagation);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        exe.shutdownNow();
+        exe.awaitTermination(5, SECONDS);
+    }
+
+    static final class TraceIdPropagator implements ContextPropagator<String> {
+
+        @Override
+        public String capture() {
+            return TRACE_ID.get();
+        }
+
+        @Override
+        public Object apply(String captured) {
+            String old = TRACE_ID.get();
+            TRACE_ID.set(captured);
+            return old;
+        }
+
+        @Override
+        public void restore(Object token) {
+            TRACE_ID.set((String) token);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class DeadlineEnforcingExecutorServiceTest {
+
+    private ExecutorService pool;
+    private DeadlineEnforcingExecutorService svc;
+    private final AtomicInteger expired = new AtomicInteger();
+    private final AtomicInteger overrun = new AtomicInteger();
+    private final CountDownLatch overrunNotified = new CountDownLatch(1);
+
+    @Test
+    public void testQueuedTasksExpire() throws Throwable {
+        CountDownLatch block = new CountDownLatch(1);
+        svc.submit(() -> {
+            block.await();
+            return null;
+        });
+        AtomicInteger ran = new AtomicInteger();
+        Future<?> f = svc.submit(ran::incrementAndGet, Duration.ofMillis(30), null);
+        try {
+            f.get(5, SECONDS);
+            fail("Should have been cancelled");
+        } catch (CancellationException ex) {
+            // ok
+        }
+        block.countDown();
+        svc.submit(() -> null).get(5, SECONDS);
+        assertEquals(0, ran.get());
+        assertEquals(1, expired.get());
+        assertEquals(1, svc.metrics().expiredBeforeStart());
+    }
+
+    @Test
+    public void testOverrunningTasksAreInterrupted() throws Throwable {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Future<?> f = svc.submit(() -> {
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException ex) {
+                interrupted.countDown();
+            }
+        }, null, Duration.ofMillis(30));
+        assertTrue(interrupted.await(5, SECONDS));
+        assertTrue(overrunNotified.await(5, SECONDS));
+        assertTrue(f.isCancelled());
+        assertEquals(1, overrun.get());
+        assertEquals(1, svc.metrics().overrun());
+    }
+
+    @Test
+    public void testTasksWithinDeadlinesComplete() throws Throwable {
+        Future<String> f = svc.submit(() -> "hello", Duration.ofSeconds(5), Duration.ofSeconds(5));
+        assertEquals("hello", f.get(5, SECONDS));
+        assertFalse(f.isCancelled());
+        // Let the disarmed run-deadline timer pass without effect
+        Thread.sleep(20);
+        assertEquals(0, expired.get() + overrun.get());
+        assertEquals(1, svc.metrics().started());
+    }
+
+    @Test
+    public void testTasksAreEitherStartedOrExpired() throws Throwable {
+        // Queue tasks so that many reach the pool thread right around their
+        // start deadline, when the timer and the pool race to claim them
+        AtomicInteger ran = new AtomicInteger();
+        Future<?>[] futures = new Future<?>[2000];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = svc.submit(() -> {
+                ran.incrementAndGet();
+                long until = System.nanoTime() + 30_000;
+                while (System.nanoTime() < until) {
+                    Thread.yield();
+                }
+            }, Duration.ofMillis(30), null);
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get(30, SECONDS);
+            } catch (CancellationException ex) {
+                // expired
+            }
+        }
+        DeadlineMetrics metrics = svc.metrics();
+        assertEquals(metrics.toString(), futures.length, metrics.started() + metrics.expiredBeforeStart());
+        assertEquals(metrics.toString(), ran.get(), metrics.started());
+        assertEquals(expired.get(), metrics.expiredBeforeStart());
+    }
+
+    @Before
+    public void setup() {
+        pool = Executors.newSingleThreadExecutor();
+        TaskDeadlineListener listener = new TaskDeadlineListener() {
+            @Override
+            public void onExpiredBeforeStart(Object task, long waitedNanos) {
+                assertTrue(waitedNanos >= MILLISECONDS.toNanos(30));
+                expired.incrementAndGet();
+            }
+
+            @Override
+            public void onOverrun(Object task, long ranNanos) {
+                assertTrue(ranNanos > 0);
+                overrun.incrementAndGet();
+                overrunNotified.countDown();
+            }
+        };
+        svc = new DeadlineEnforcingExecutorService(pool,
+                new TimingWheelExecutorService(Executors.defaultThreadFactory(), 1, 5, MILLISECONDS, 64),
+                0, 0, listener);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        svc.shutdownNow();
+        svc.awaitTermination(5, SECONDS);
+    }
+}
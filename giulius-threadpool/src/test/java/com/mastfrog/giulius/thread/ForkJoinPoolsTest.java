@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import com.google.inject.Key;
+import com.google.inject.ProvisionException;
+import com.google.inject.name.Names;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.settings.SettingsBuilder;
+import com.mastfrog.util.preconditions.ConfigurationError;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class ForkJoinPoolsTest {
+
+    @Test
+    public void testSizingFromSettings() throws Throwable {
+        Dependencies deps = deps(new SettingsBuilder()
+                .add("fj.forkjoin.core", 2)
+                .add("fj.forkjoin.max", 4)
+                .add("fj.forkjoin.minimumRunnable", 1)
+                .add("fj.forkjoin.keepAlive.millis", 500)
+                .build());
+        try {
+            ForkJoinPool pool = deps.getInstance(Key.get(ForkJoinPool.class, Names.named("fj")));
+            assertEquals(2, pool.getParallelism());
+            assertEquals("hello", pool.submit(() -> "hello").get(10, SECONDS));
+        } finally {
+            deps.shutdown();
+        }
+    }
+
+    @Test
+    public void testSettingsOverrideBuilderSizing() throws Throwable {
+        // The builder's values are valid; the setting is not, and wins
+        assertRejected(new SettingsBuilder().add("fj.forkjoin.keepAlive.millis", 0).build(), "keep-alive");
+        assertRejected(new SettingsBuilder().add("fj.forkjoin.max", 1).build(), "maximum pool size");
+        assertRejected(new SettingsBuilder().add("fj.forkjoin.core", 8).build(), "core pool size");
+    }
+
+    @Test
+    public void testValidation() {
+        ForkJoinPools.validate("x", 4, -1, -1, -1);
+        ForkJoinPools.validate("x", 4, 4, 4, 1);
+        try {
+            ForkJoinPools.validate("x", 4, -1, -1, 0);
+            fail("Zero keep-alive accepted");
+        } catch (ConfigurationError ex) {
+            // ok
+        }
+        try {
+            ForkJoinPools.validate("x", 4, -1, 3, -1);
+            fail("Maximum pool size below parallelism accepted");
+        } catch (ConfigurationError ex) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testCpuSetParsing() throws Throwable {
+        ThreadAffinityPolicy policy = (thread, bindingName, index, settings) -> {
+        };
+        BitSet expected = new BitSet();
+        expected.set(0, 4);
+        expected.set(6);
+        expected.set(8, 10);
+        assertEquals(expected, policy.cpuSet(new SettingsBuilder().add("fj.cpus", "0-3, 6,,8 - 9").build(), "fj"));
+        assertNull(policy.cpuSet(new SettingsBuilder().build(), "fj"));
+        assertNull(policy.cpuSet(new SettingsBuilder().add("fj.cpus", " ").build(), "fj"));
+        for (String bad : new String[]{"3-1", "a", "1-x", "-2", "1,,z"}) {
+            try {
+                policy.cpuSet(new SettingsBuilder().add("fj.cpus", bad).build(), "fj");
+                fail("Accepted " + bad);
+            } catch (ConfigurationError ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains("fj.cpus"));
+            }
+        }
+    }
+
+    private static void assertRejected(Settings settings, String msg) throws Throwable {
+        Dependencies deps = deps(settings);
+        try {
+            deps.getInstance(Key.get(ForkJoinPool.class, Names.named("fj")));
+            fail("Pool created despite bad settings " + settings);
+        } catch (ProvisionException ex) {
+            Throwable cause = ex.getCause();
+            assertTrue(String.valueOf(cause), cause instanceof ConfigurationError);
+            assertTrue(cause.getMessage(), cause.getMessage().contains(msg));
+        } finally {
+            deps.shutdown();
+        }
+    }
+
+    private static Dependencies deps(Settings settings) throws Throwable {
+        return Dependencies.builder().add(settings).add(new ThreadModule().builder("fj")
+                .forkJoin()
+                .withExplicitThreadCount(2)
+                .withForkJoinPoolSizing(2, 6, 1, Duration.ofSeconds(30))
+                .bind()).build();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.SettingsBuilder;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests that single-thread scheduled pools get their thread from the
+ * binding's thread factory, not the JDK's default one.
+ *
+ * @author agent
+ */
+public class ScheduledThreadPoolTest {
+
+    @Test
+    public void testSingleThreadScheduledPoolUsesConfiguredFactory() throws Throwable {
+        Set<Thread> supplied = ConcurrentHashMap.newKeySet();
+        ConventionalThreadSupplier supplier = (group, run, settings, stackSize, bindingName, threadName) -> {
+            Thread t = ConventionalThreadSupplier.DEFAULT.newThread(group, run, settings, stackSize, bindingName, threadName);
+            supplied.add(t);
+            return t;
+        };
+        Dependencies deps = Dependencies.builder().add(new SettingsBuilder().build())
+                .add(new ThreadModule().builder("sched")
+                        .scheduled()
+                        .withExplicitThreadCount(1)
+                        .withThreadSupplier(supplier)
+                        .bind()).build();
+        try {
+            ScheduledExecutorService svc = deps.getInstance(Key.get(ScheduledExecutorService.class, Names.named("sched")));
+            ThreadGroup group = deps.getInstance(Key.get(ThreadGroup.class, Names.named("sched")));
+            Thread worker = svc.schedule(Thread::currentThread, 10, MILLISECONDS).get(10, SECONDS);
+            assertEquals("sched-0", worker.getName());
+            assertSame(group, worker.getThreadGroup());
+            assertEquals("scheds", group.getName());
+            assertTrue("Worker was not created by the configured supplier", supplied.contains(worker));
+            assertSame("A one-thread pool should reuse its thread", worker,
+                    svc.submit(Thread::currentThread).get(10, SECONDS));
+            assertEquals(1, supplied.size());
+        } finally {
+            deps.shutdown();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class TaskScopeTest {
+
+    private ExecutorService exe;
+    private TaskScopeFactory scopes;
+
+    @Test
+    public void testAllSucceed() throws Throwable {
+        try (TaskScope scope = scopes.failFast()) {
+            TaskScope.Subtask<String> a = scope.fork("a", () -> "a");
+            TaskScope.Subtask<Integer> b = scope.fork("b", () -> 2);
+            scope.join().throwIfFailed();
+            assertEquals("a", a.get());
+            assertEquals(Integer.valueOf(2), b.get());
+            assertSame(TaskScope.SubtaskState.SUCCESS, a.state());
+            assertTrue(a.runNanos() >= 0);
+            assertTrue(a.queuedNanos() >= 0);
+        }
+    }
+
+    @Test
+    public void testFailFastCancelsSiblings() throws Throwable {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        try (TaskScope scope = scopes.failFast()) {
+            TaskScope.Subtask<String> slow = scope.fork("slow", () -> {
+                try {
+                    Thread.sleep(30_000);
+                } catch (InterruptedException ex) {
+                    interrupted.countDown();
+                    throw ex;
+                }
+                return "slow";
+            });
+            scope.fork("bad", () -> {
+                Thread.sleep(20);
+                throw new IllegalStateException("bad");
+            });
+            scope.join();
+            try {
+                scope.throwIfFailed();
+                fail("Should have thrown");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof IllegalStateException);
+            }
+            assertSame(TaskScope.SubtaskState.CANCELLED, slow.state());
+            assertTrue(interrupted.await(10, SECONDS));
+        }
+    }
+
+    @Test
+    public void testAllCompleteWaitsDespiteFailure() throws Throwable {
+        try (TaskScope scope = scopes.allComplete()) {
+            scope.fork(() -> {
+                throw new IllegalArgumentException();
+            });
+            TaskScope.Subtask<String> later = scope.fork(() -> {
+                Thread.sleep(50);
+                return "later";
+            });
+            scope.join();
+            assertEquals("later", later.get());
+        }
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testDeadline() throws Throwable {
+        try (TaskScope scope = scopes.open(TaskScope.Mode.ALL_COMPLETE, Duration.ofMillis(50))) {
+            scope.fork(() -> {
+                Thread.sleep(30_000);
+                return null;
+            });
+            scope.join();
+        }
+    }
+
+    @Before
+    public void setup() {
+        exe = Executors.newFixedThreadPool(4);
+        scopes = TaskScopeFactory.forExecutor("test", exe);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        exe.shutdownNow();
+        exe.awaitTermination(5, SECONDS);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 agent.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.giulius.thread;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class TimingWheelExecutorServiceTest {
+
+    private TimingWheelExecutorService svc;
+
+    @Test
+    public void testDelaysAreHonored() throws Throwable {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        long[] ranAt = new long[1];
+        svc.schedule(() -> {
+            ranAt[0] = System.nanoTime();
+            latch.countDown();
+        }, 50, MILLISECONDS);
+        assertTrue(latch.await(5, SECONDS));
+        long elapsed = MILLISECONDS.convert(ranAt[0] - start, NANOSECONDS);
+        assertTrue("Ran too early: " + elapsed, elapsed >= 50);
+    }
+
+    @Test
+    public void testDelaysLongerThanOneRotation() throws Throwable {
+        // 8 slots * 5ms = 40ms per rotation
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        svc.schedule(latch::countDown, 130, MILLISECONDS);
+        assertTrue(latch.await(5, SECONDS));
+        assertTrue(System.nanoTime() - start >= MILLISECONDS.toNanos(130));
+    }
+
+    @Test
+    public void testCancelledTasksDoNotRun() throws Throwable {
+        AtomicInteger runs = new AtomicInteger();
+        for (int i = 0; i < 1000; i++) {
+            ScheduledFuture<?> f = svc.schedule(runs::incrementAndGet, 30, MILLISECONDS);
+            assertTrue(f.cancel(false));
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        svc.schedule(latch::countDown, 60, MILLISECONDS);
+        assertTrue(latch.await(5, SECONDS));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void testFixedRate() throws Throwable {
+        CountDownLatch latch = new CountDownLatch(5);
+        ScheduledFuture<?> f = svc.scheduleAtFixedRate(latch::countDown, 5, 10, MILLISECONDS);
+        assertTrue(latch.await(5, SECONDS));
+        f.cancel(false);
+        assertTrue(f.isCancelled());
+    }
+
+    @Test
+    public void testCallableResult() throws Throwable {
+        ScheduledFuture<String> f = svc.schedule(() -> "hello", 10, MILLISECONDS);
+        assertEquals("hello", f.get(5, SECONDS));
+    }
+
+    @Test
+    public void testShutdownCancelsDelayedTasks() throws Throwable {
+        ScheduledFuture<?> f = svc.schedule(() -> {
+        }, 10, SECONDS);
+        svc.shutdown();
+        assertTrue(svc.awaitTermination(5, SECONDS));
+        assertTrue(f.isCancelled());
+    }
+
+    @Test
+    public void testShutdownCompletesRunningPeriodicTasks() throws Throwable {
+        // Periodic tasks re-add themselves to the pending queue after each
+        // run; shutting down while many are mid-reschedule must still leave
+        // every one of their futures done
+        ScheduledFuture<?>[] futures = new ScheduledFuture<?>[200];
+        CountDownLatch ran = new CountDownLatch(futures.length);
+        for (int i = 0; i < futures.length; i++) {
+            AtomicInteger count = new AtomicInteger();
+            futures[i] = svc.scheduleAtFixedRate(() -> {
+                if (count.getAndIncrement() == 0) {
+                    ran.countDown();
+                }
+            }, 0, 1, MILLISECONDS);
+        }
+        assertTrue(ran.await(5, SECONDS));
+        svc.shutdown();
+        assertTrue(svc.awaitTermination(5, SECONDS));
+        for (ScheduledFuture<?> f : futures) {
+            assertTrue(f.isDone());
+        }
+    }
+
+    @Before
+    public void setup() {
+        svc = new TimingWheelExecutorService(Executors.defaultThreadFactory(), 2, 5, MILLISECONDS, 8);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        svc.shutdownNow();
+        svc.awaitTermination(5, SECONDS);
+    }
+}
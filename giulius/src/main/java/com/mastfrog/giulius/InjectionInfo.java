@@ -26,6 +26,7 @@ package com.mastfrog.giulius;
 
 import com.google.inject.Provider;
 import com.google.inject.TypeLiteral;
+import com.mastfrog.util.thread.QuietAutoCloseable;
 
 /**
  * Provides info for error messages about what is being injected into.
@@ -47,6 +48,43 @@ public class InjectionInfo implements Provider<String> {
         return sb.toString();
     }
 
+    /**
+     * Get the type currently being injected on the calling thread, if any.
+     *
+     * @return A type or null
+     */
+    public static TypeLiteral<?> currentInjectionType() {
+        return Dependencies.currentType.get();
+    }
+
+    /**
+     * Get the type which the type currently being injected on the calling
+     * thread is (possibly) being injected into, if any.
+     *
+     * @return A type or null
+     */
+    public static TypeLiteral<?> previousInjectionType() {
+        return Dependencies.prevType.get();
+    }
+
+    /**
+     * Set the current and previous injection types on the calling thread,
+     * for use by code which propagates injection context from one thread to
+     * another; closing the result restores the prior values.
+     *
+     * @param current The current type, or null
+     * @param previous The previous type, or null
+     * @return A closeable which restores the previous state
+     */
+    public static QuietAutoCloseable enterInjectionContext(TypeLiteral<?> current, TypeLiteral<?> previous) {
+        QuietAutoCloseable prev = Dependencies.prevType.set(previous);
+        QuietAutoCloseable curr = Dependencies.currentType.set(current);
+        return () -> {
+            curr.close();
+            prev.close();
+        };
+    }
+
     @Override
     public String get() {
         return injectionInfo();